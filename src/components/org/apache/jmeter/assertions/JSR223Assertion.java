@@ -41,7 +41,7 @@ public class JSR223Assertion extends JSR223TestElement implements Cloneable, Ass
         AssertionResult result = new AssertionResult(getName());
         try {
             ScriptEngine scriptEngine = getScriptEngine();
-            Bindings bindings = scriptEngine.createBindings();
+            Bindings bindings = getBindings(scriptEngine);
             bindings.put("SampleResult", response);
             bindings.put("AssertionResult", result);
             processFileOrScript(scriptEngine, bindings);
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.assertions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds which of a set of strings occur in a text in a single pass over it,
+ * using an Aho-Corasick automaton.
+ * <p>
+ * Immutable once built.
+ * @since 3.2
+ */
+final class MultiSubstringMatcher {
+
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final int patternCount;
+
+    /** Patterns which are empty, found in any text */
+    private final int[] emptyPatterns;
+
+    /** Sorted characters of the transitions of each state */
+    private final char[][] transitionChars;
+
+    /** Target states of the transitions of each state */
+    private final int[][] transitionTargets;
+
+    /** Failure link of each state */
+    private final int[] failures;
+
+    /** Patterns ending at each state, including the ones of its failure links */
+    private final int[][] outputs;
+
+    /**
+     * @param patterns strings to find
+     */
+    MultiSubstringMatcher(List<String> patterns) {
+        this.patternCount = patterns.size();
+        List<StringBuilder> chars = new ArrayList<>();
+        List<List<Integer>> targets = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        List<Integer> empty = new ArrayList<>();
+        newState(chars, targets, ends);
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            if (pattern.isEmpty()) {
+                empty.add(p);
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                int index = chars.get(state).indexOf(String.valueOf(c));
+                if (index >= 0) {
+                    state = targets.get(state).get(index);
+                } else {
+                    int next = newState(chars, targets, ends);
+                    chars.get(state).append(c);
+                    targets.get(state).add(next);
+                    state = next;
+                }
+            }
+            ends.get(state).add(p);
+        }
+        int stateCount = chars.size();
+        transitionChars = new char[stateCount][];
+        transitionTargets = new int[stateCount][];
+        for (int s = 0; s < stateCount; s++) {
+            sortTransitions(s, chars.get(s), targets.get(s));
+        }
+        emptyPatterns = toArray(empty);
+        failures = new int[stateCount];
+        outputs = new int[stateCount][];
+        outputs[0] = toArray(ends.get(0));
+        // Breadth first, so that the failure link of a state is computed before its children
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        for (int target : transitionTargets[0]) {
+            failures[target] = 0;
+            outputs[target] = toArray(ends.get(target));
+            queue[tail++] = target;
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (int t = 0; t < transitionChars[state].length; t++) {
+                char c = transitionChars[state][t];
+                int target = transitionTargets[state][t];
+                int failure = failures[state];
+                int next;
+                while ((next = next(failure, c)) < 0 && failure != 0) {
+                    failure = failures[failure];
+                }
+                failures[target] = next < 0 ? 0 : next;
+                outputs[target] = merge(toArray(ends.get(target)), outputs[failures[target]]);
+                queue[tail++] = target;
+            }
+        }
+    }
+
+    private static int newState(List<StringBuilder> chars, List<List<Integer>> targets, List<List<Integer>> ends) {
+        chars.add(new StringBuilder(1));
+        targets.add(new ArrayList<Integer>(1));
+        ends.add(new ArrayList<Integer>(0));
+        return chars.size() - 1;
+    }
+
+    private void sortTransitions(int state, StringBuilder chars, List<Integer> targets) {
+        int count = chars.length();
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = ((long) chars.charAt(i) << 32) | targets.get(i);
+        }
+        Arrays.sort(sorted);
+        transitionChars[state] = new char[count];
+        transitionTargets[state] = new int[count];
+        for (int i = 0; i < count; i++) {
+            transitionChars[state][i] = (char) (sorted[i] >>> 32);
+            transitionTargets[state][i] = (int) sorted[i];
+        }
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        if (values.isEmpty()) {
+            return NO_OUTPUT;
+        }
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private static int[] merge(int[] first, int[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+        if (first.length == 0) {
+            return second;
+        }
+        int[] merged = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, merged, first.length, second.length);
+        return merged;
+    }
+
+    /**
+     * @return state reached from state with c, -1 if there is no transition
+     */
+    private int next(int state, char c) {
+        int index = Arrays.binarySearch(transitionChars[state], c);
+        return index < 0 ? -1 : transitionTargets[state][index];
+    }
+
+    /**
+     * @param text text to search
+     * @return for each pattern, true if it occurs in text.
+     *  Text is read until all patterns have been found.
+     */
+    boolean[] find(CharSequence text) {
+        boolean[] found = new boolean[patternCount];
+        int remaining = patternCount;
+        for (int p : emptyPatterns) {
+            found[p] = true;
+            remaining--;
+        }
+        int state = 0;
+        int length = text.length();
+        for (int i = 0; i < length && remaining > 0; i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = next(state, c)) < 0 && state != 0) {
+                state = failures[state];
+            }
+            state = next < 0 ? 0 : next;
+            for (int p : outputs[state]) {
+                if (!found[p]) {
+                    found[p] = true;
+                    remaining--;
+                }
+            }
+        }
+        return found;
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.jmeter.assertions;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jmeter.samplers.SampleResult;
@@ -30,14 +31,14 @@ import org.apache.jmeter.testelement.property.IntegerProperty;
 import org.apache.jmeter.testelement.property.JMeterProperty;
 import org.apache.jmeter.testelement.property.NullProperty;
 import org.apache.jmeter.testelement.property.StringProperty;
+import org.apache.jmeter.util.ByteArrayCharSequence;
 import org.apache.jmeter.util.Document;
 import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jmeter.util.regex.RegexEngine;
+import org.apache.jmeter.util.regex.RegexPattern;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 import org.apache.oro.text.MalformedCachePatternException;
-import org.apache.oro.text.regex.Pattern;
-import org.apache.oro.text.regex.Perl5Compiler;
-import org.apache.oro.text.regex.Perl5Matcher;
 
 // @see org.apache.jmeter.assertions.ResponseAssertionTest for unit tests
 
@@ -101,6 +102,25 @@ public class ResponseAssertion extends AbstractScopedAssertion implements Serial
     private static final String DIFF_DELTA_END
             = JMeterUtils.getPropDefault("assertion.equals_diff_delta_end", "]]]");
 
+    /** Characters having a special meaning in Perl5 regular expressions */
+    private static final String REGEX_META_CHARS = "\\^$.|?*+()[]{}"; // $NON-NLS-1$
+
+    /** Test strings and type the fields below were computed for */
+    private transient List<String> preparedTestStrings;
+    private transient int preparedTestType;
+
+    /** For each test string, true if it does not need a regular expression */
+    private transient boolean[] literals;
+
+    /** For each test string, its index in {@link #substringMatcher}, -1 if it is not searched by it */
+    private transient int[] matcherIndexes;
+
+    /** Searches in one pass the test strings which are substrings, null if there are less than 2 */
+    private transient MultiSubstringMatcher substringMatcher;
+
+    /** True if some test strings are matched as regular expressions */
+    private transient boolean usesRegex;
+
     public ResponseAssertion() {
         setProperty(new CollectionProperty(TEST_STRINGS, new ArrayList<String>()));
     }
@@ -263,17 +283,26 @@ public class ResponseAssertion extends AbstractScopedAssertion implements Serial
      */
     private AssertionResult evaluateResponse(SampleResult response) {
         AssertionResult result = new AssertionResult(getName());
-        String toCheck = ""; // The string to check (Url or data)
+        CharSequence toCheck = ""; // The string to check (Url or data)
 
         if (getAssumeSuccess()) {
             response.setSuccessful(true);// Allow testing of failure codes
         }
 
+        List<String> testStrings = new ArrayList<>(getTestStrings().size());
+        for (JMeterProperty jMeterProperty : getTestStrings()) {
+            testStrings.add(jMeterProperty.getStringValue());
+        }
+        prepareTestStrings(testStrings);
+
         // What are we testing against?
         if (isScopeVariable()){
             toCheck = getThreadContext().getVariables().get(getVariableName());
         } else if (isTestFieldResponseData()) {
-            toCheck = response.getResponseDataAsString(); // (bug25052)
+            // A view of the response bytes avoids decoding them, unless the regex engine needs a String anyway
+            toCheck = usesRegex && !RegexEngine.getDefault().readsCharSequence()
+                    ? response.getResponseDataAsString() // (bug25052)
+                    : response.getResponseDataAsCharSequence();
         } else if (isTestFieldResponseDataAsDocument()) {
             toCheck = Document.getTextFromDocument(response.getResponseData()); 
         } else if (isTestFieldResponseCode()) {
@@ -314,30 +343,33 @@ public class ResponseAssertion extends AbstractScopedAssertion implements Serial
         }
 
         boolean pass = true;
+        // All the substrings are searched in a single pass over the text
+        boolean[] substringsFound = substringMatcher == null ? null : substringMatcher.find(toCheck);
         try {
-            // Get the Matcher for this thread
-            Perl5Matcher localMatcher = JMeterUtils.getMatcher();
-            for (JMeterProperty jMeterProperty : getTestStrings()) {
-                String stringPattern = jMeterProperty.getStringValue();
-                Pattern pattern = null;
-                if (contains || matches) {
-                    pattern = JMeterUtils.getPatternCache().getPattern(stringPattern, Perl5Compiler.READ_ONLY_MASK);
-                }
+            for (int i = 0; i < testStrings.size(); i++) {
+                String stringPattern = testStrings.get(i);
                 boolean found;
-                if (contains) {
-                    found = localMatcher.contains(toCheck, pattern);
+                if (substringsFound != null && matcherIndexes[i] >= 0) {
+                    found = substringsFound[matcherIndexes[i]];
                 } else if (equals) {
-                    found = toCheck.equals(stringPattern);
-                } else if (substring) {
-                    found = toCheck.contains(stringPattern);
+                    found = stringPattern.contentEquals(toCheck);
+                } else if (substring || (contains && literals[i])) {
+                    found = ByteArrayCharSequence.indexOf(toCheck, stringPattern, 0) >= 0;
+                } else if (matches && literals[i]) {
+                    found = stringPattern.contentEquals(toCheck);
                 } else {
-                    found = localMatcher.matches(toCheck, pattern);
+                    RegexPattern pattern = RegexEngine.getDefault().getPattern(stringPattern);
+                    if (contains) {
+                        found = pattern.contains(toCheck);
+                    } else {
+                        found = pattern.matches(toCheck);
+                    }
                 }
                 pass = notTest ? !found : found;
                 if (!pass) {
                     if (debugEnabled){log.debug("Failed: "+stringPattern);}
                     result.setFailure(true);
-                    result.setFailureMessage(getFailText(stringPattern,toCheck));
+                    result.setFailureMessage(getFailText(stringPattern,toCheck.toString()));
                     break;
                 }
                 if (debugEnabled){log.debug("Passed: "+stringPattern);}
@@ -350,6 +382,53 @@ public class ResponseAssertion extends AbstractScopedAssertion implements Serial
         return result;
     }
 
+    /**
+     * Find out which test strings can be tested without a regular expression
+     * and build the automaton searching the substrings, unless already done for these test strings
+     * @param testStrings current test strings
+     */
+    private void prepareTestStrings(List<String> testStrings) {
+        int testType = getTestType();
+        if (testType == preparedTestType && testStrings.equals(preparedTestStrings)) {
+            return;
+        }
+        boolean substring = (testType & SUBSTRING) != 0;
+        boolean contains = (testType & CONTAINS) != 0;
+        boolean equals = (testType & EQUALS) != 0;
+        boolean matches = (testType & MATCH) != 0;
+        literals = new boolean[testStrings.size()];
+        matcherIndexes = new int[testStrings.size()];
+        usesRegex = false;
+        List<String> substrings = new ArrayList<>(testStrings.size());
+        for (int i = 0; i < testStrings.size(); i++) {
+            literals[i] = isLiteral(testStrings.get(i));
+            if (substring || (contains && literals[i])) {
+                matcherIndexes[i] = substrings.size();
+                substrings.add(testStrings.get(i));
+            } else {
+                matcherIndexes[i] = -1;
+                usesRegex |= !equals && !(matches && literals[i]);
+            }
+        }
+        // String.contains is faster for a single substring
+        substringMatcher = substrings.size() > 1 ? new MultiSubstringMatcher(substrings) : null;
+        preparedTestStrings = testStrings;
+        preparedTestType = testType;
+    }
+
+    /**
+     * @param stringPattern test string
+     * @return true if stringPattern is a regular expression which only matches itself
+     */
+    private static boolean isLiteral(String stringPattern) {
+        for (int i = 0; i < stringPattern.length(); i++) {
+            if (REGEX_META_CHARS.indexOf(stringPattern.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Generate the failure reason from the TestType
      *
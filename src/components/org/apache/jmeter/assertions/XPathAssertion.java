@@ -18,10 +18,9 @@
 
 package org.apache.jmeter.assertions;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.Serializable;
-import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -33,7 +32,6 @@ import org.apache.jmeter.testelement.property.StringProperty;
 import org.apache.jmeter.util.TidyException;
 import org.apache.jmeter.util.XPathUtil;
 import org.apache.jorphan.logging.LoggingManager;
-import org.apache.jorphan.util.JOrphanUtils;
 import org.apache.log.Logger;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
@@ -75,20 +73,24 @@ public class XPathAssertion extends AbstractScopedAssertion implements Serializa
         result.setFailure(false);
         result.setFailureMessage("");
 
-        byte[] responseData = null;
+        // String (converted to UTF-8) or bytes to parse
+        Object responseData = null;
         Document doc = null;
 
         try {
             if (isScopeVariable()){
                 String inputString=getThreadContext().getVariables().get(getVariableName());
                 if (!StringUtils.isEmpty(inputString)) {
-                    responseData = inputString.getBytes(StandardCharsets.UTF_8);
+                    responseData = inputString;
                 } 
             } else {
-                responseData = response.getResponseData();
+                byte[] data = response.getResponseData();
+                if (data != null && data.length > 0) {
+                    responseData = data;
+                }
             }
             
-            if (responseData == null || responseData.length == 0) {
+            if (responseData == null) {
                 return result.setResultForNull();
             }
     
@@ -97,12 +99,18 @@ public class XPathAssertion extends AbstractScopedAssertion implements Serializa
                 log.debug(new StringBuilder("Whitespace is set to ").append(isWhitespace()).toString());
                 log.debug(new StringBuilder("Tolerant is set to ").append(isTolerant()).toString());
             }
-    
-    
-            boolean isXML = JOrphanUtils.isXML(responseData);
 
-            doc = XPathUtil.makeDocument(new ByteArrayInputStream(responseData), isValidating(),
-                    isWhitespace(), isNamespace(), isTolerant(), isQuiet(), showWarnings() , reportErrors(), isXML
+            // Parsing stops at first match, when expression can be evaluated without the Document
+            List<String> matches = XPathUtil.streamValuesForXPath(responseData, getXPathString(), isValidating(),
+                    isWhitespace(), isNamespace(), isTolerant(), isDownloadDTDs(), 1);
+            if (matches != null) {
+                XPathUtil.computeAssertionResult(result, matches.size(), getXPathString(), isNegated());
+                return result;
+            }
+    
+            // Document is shared with the other elements parsing the same response with the same options
+            doc = XPathUtil.getDocument(responseData, isValidating(),
+                    isWhitespace(), isNamespace(), isTolerant(), isQuiet(), showWarnings() , reportErrors()
                     , isDownloadDTDs());
         } catch (SAXException e) {
             log.debug("Caught sax exception: " + e);
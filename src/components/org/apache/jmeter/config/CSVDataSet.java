@@ -28,11 +28,13 @@ import org.apache.jmeter.engine.event.LoopIterationEvent;
 import org.apache.jmeter.engine.event.LoopIterationListener;
 import org.apache.jmeter.engine.util.NoConfigMerge;
 import org.apache.jmeter.save.CSVSaveService;
+import org.apache.jmeter.services.DataSetCursor;
 import org.apache.jmeter.services.FileServer;
 import org.apache.jmeter.testbeans.TestBean;
 import org.apache.jmeter.testbeans.gui.GenericTestBeanCustomizer;
 import org.apache.jmeter.testelement.property.JMeterProperty;
 import org.apache.jmeter.testelement.property.StringProperty;
+import org.apache.jmeter.threads.AbstractThreadGroup;
 import org.apache.jmeter.threads.JMeterContext;
 import org.apache.jmeter.threads.JMeterVariables;
 import org.apache.jmeter.util.JMeterUtils;
@@ -64,6 +66,17 @@ import org.apache.log.Logger;
  * for individual threads, the thread hashcode is used as the suffix.
  * Or the user can provide their own suffix, in which case the file is shared between all
  * threads with the same suffix.
+ * <p>
+ * If the property csvdataset.indexed is true, and the character set of the file is ASCII compatible,
+ * the file is memory-mapped and indexed once by the FileServer, and each alias gets a cursor which the threads
+ * advance without locking. The mapping is only released when the file is garbage collected,
+ * which prevents the file from being modified or deleted on Windows until then, so the property is false by default.
+ * The selection modes other than sequential and the partitions always need the index.
+ * The index also allows the rows to be selected randomly, in a random order without reusing them,
+ * or to be partitioned between the threads of the thread group, each thread reading its own rows
+ * whatever the sharing mode.
+ * In a distributed test, the rows can also be partitioned between the remote engines,
+ * each engine only reading the rows of its own partition.
  *
  */
 public class CSVDataSet extends ConfigTestElement 
@@ -75,6 +88,9 @@ public class CSVDataSet extends ConfigTestElement
     private static final String EOFVALUE = // value to return at EOF
         JMeterUtils.getPropDefault("csvdataset.eofstring", "<EOF>"); //$NON-NLS-1$ //$NON-NLS-2$
 
+    private static final boolean INDEXED =
+        JMeterUtils.getPropDefault("csvdataset.indexed", false); //$NON-NLS-1$
+
     private transient String filename;
 
     private transient String fileEncoding;
@@ -94,6 +110,12 @@ public class CSVDataSet extends ConfigTestElement
     private transient String alias;
 
     private transient String shareMode;
+
+    private transient String selectionMode;
+
+    private transient boolean partitionByEngine;
+
+    private transient DataSetCursor cursor;
     
     private boolean firstLineIsNames = false;
 
@@ -174,8 +196,45 @@ public class CSVDataSet extends ConfigTestElement
                     break;
             }
             final String names = getVariableNames();
-            if (names == null || names.length()==0) {
-                String header = server.reserveFile(_fileName, getFileEncoding(), alias, true);
+            final boolean hasHeader = names == null || names.length()==0;
+            DataSetCursor.Selection selection = DataSetCursor.Selection.SEQUENTIAL;
+            int partition = 0;
+            int partitions = 1;
+            switch (CSVDataSetBeanInfo.getSelectionModeAsInt(getSelectionMode())) {
+                case CSVDataSetBeanInfo.SELECTION_RANDOM:
+                    selection = DataSetCursor.Selection.RANDOM;
+                    break;
+                case CSVDataSetBeanInfo.SELECTION_UNIQUE:
+                    selection = DataSetCursor.Selection.UNIQUE;
+                    break;
+                case CSVDataSetBeanInfo.SELECTION_PARTITIONED:
+                    AbstractThreadGroup threadGroup = context.getThreadGroup();
+                    if (threadGroup != null) {
+                        partitions = Math.max(1, threadGroup.getNumThreads());
+                    }
+                    partition = context.getThreadNum() % partitions;
+                    alias = _fileName+"@"+System.identityHashCode(context.getThread())+"#"+partition;
+                    break;
+                default:
+                    break;
+            }
+            if (getPartitionByEngine()) {
+                // the partitions of the engines are split again between the threads if needed
+                int engineCount = server.getEngineCount();
+                partition = server.getEngineIndex() + engineCount * partition;
+                partitions *= engineCount;
+            }
+            if (INDEXED || selection != DataSetCursor.Selection.SEQUENTIAL || partitions > 1) {
+                cursor = server.reserveDataSet(_fileName, getFileEncoding(), alias, hasHeader, getQuotedData(),
+                        selection, partition, partitions);
+            }
+            if (cursor == null && (selection != DataSetCursor.Selection.SEQUENTIAL || partitions > 1)) {
+                log.warn("Cannot index file:" + _fileName + " for selection mode:" + getSelectionMode()
+                        + ", the rows are read sequentially");
+            }
+            if (hasHeader) {
+                String header = cursor != null ? cursor.getHeaderLine()
+                        : server.reserveFile(_fileName, getFileEncoding(), alias, true);
                 try {
                     vars = CSVSaveService.csvSplitString(header, delim.charAt(0));
                     firstLineIsNames = true;
@@ -183,7 +242,9 @@ public class CSVDataSet extends ConfigTestElement
                     throw new IllegalArgumentException("Could not split CSV header line from file:" + _fileName,e);
                 }
             } else {
-                server.reserveFile(_fileName, getFileEncoding(), alias);
+                if (cursor == null) {
+                    server.reserveFile(_fileName, getFileEncoding(), alias);
+                }
                 vars = JOrphanUtils.split(names, ","); // $NON-NLS-1$
             }
             trimVarNames(vars);
@@ -193,7 +254,9 @@ public class CSVDataSet extends ConfigTestElement
         JMeterVariables threadVars = context.getVariables();
         String[] lineValues = {};
         try {
-            if (getQuotedData()) {
+            if (cursor != null) {
+                lineValues = cursor.next(recycle, delim);
+            } else if (getQuotedData()) {
                 lineValues = server.getParsedLine(alias, recycle, firstLineIsNames, delim.charAt(0));
             } else {
                 String line = server.readLine(alias, recycle, firstLineIsNames);
@@ -310,4 +373,20 @@ public class CSVDataSet extends ConfigTestElement
     public void setShareMode(String value) {
         this.shareMode = value;
     }
+
+    public String getSelectionMode() {
+        return selectionMode;
+    }
+
+    public void setSelectionMode(String value) {
+        this.selectionMode = value;
+    }
+
+    public boolean getPartitionByEngine() {
+        return partitionByEngine;
+    }
+
+    public void setPartitionByEngine(boolean partitionByEngine) {
+        this.partitionByEngine = partitionByEngine;
+    }
 }
@@ -34,6 +34,8 @@ public class CSVDataSetBeanInfo extends BeanInfoSupport {
     private static final String STOPTHREAD = "stopThread";           //$NON-NLS-1$
     private static final String QUOTED_DATA = "quotedData";          //$NON-NLS-1$
     private static final String SHAREMODE = "shareMode";             //$NON-NLS-1$
+    private static final String SELECTIONMODE = "selectionMode";     //$NON-NLS-1$
+    private static final String PARTITION_BY_ENGINE = "partitionByEngine"; //$NON-NLS-1$
 
     // Access needed from CSVDataSet
     static final String[] SHARE_TAGS = new String[3];
@@ -48,11 +50,25 @@ public class CSVDataSetBeanInfo extends BeanInfoSupport {
         SHARE_TAGS[SHARE_THREAD] = "shareMode.thread"; //$NON-NLS-1$        
     }
 
+    static final String[] SELECTION_TAGS = new String[4];
+    static final int SELECTION_SEQUENTIAL  = 0;
+    static final int SELECTION_RANDOM      = 1;
+    static final int SELECTION_UNIQUE      = 2;
+    static final int SELECTION_PARTITIONED = 3;
+
+    static {
+        SELECTION_TAGS[SELECTION_SEQUENTIAL]  = "selectionMode.sequential"; //$NON-NLS-1$
+        SELECTION_TAGS[SELECTION_RANDOM]      = "selectionMode.random"; //$NON-NLS-1$
+        SELECTION_TAGS[SELECTION_UNIQUE]      = "selectionMode.unique"; //$NON-NLS-1$
+        SELECTION_TAGS[SELECTION_PARTITIONED] = "selectionMode.partitioned"; //$NON-NLS-1$
+    }
+
     public CSVDataSetBeanInfo() {
         super(CSVDataSet.class);
 
         createPropertyGroup("csv_data",             //$NON-NLS-1$
-                new String[] { FILENAME, FILE_ENCODING, VARIABLE_NAMES, DELIMITER, QUOTED_DATA, RECYCLE, STOPTHREAD, SHAREMODE });
+                new String[] { FILENAME, FILE_ENCODING, VARIABLE_NAMES, DELIMITER, QUOTED_DATA, RECYCLE, STOPTHREAD, SHAREMODE,
+                        SELECTIONMODE, PARTITION_BY_ENGINE });
 
         PropertyDescriptor p = property(FILENAME);
         p.setValue(NOT_UNDEFINED, Boolean.TRUE);
@@ -93,6 +109,18 @@ public class CSVDataSetBeanInfo extends BeanInfoSupport {
         p.setValue(NOT_OTHER, Boolean.FALSE);
         p.setValue(NOT_EXPRESSION, Boolean.FALSE);
         p.setValue(TAGS, SHARE_TAGS);
+
+        p = property(SELECTIONMODE, TypeEditor.ComboStringEditor);
+        p.setValue(RESOURCE_BUNDLE, getBeanDescriptor().getValue(RESOURCE_BUNDLE));
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, SELECTION_TAGS[SELECTION_SEQUENTIAL]);
+        p.setValue(NOT_OTHER, Boolean.TRUE);
+        p.setValue(NOT_EXPRESSION, Boolean.TRUE);
+        p.setValue(TAGS, SELECTION_TAGS);
+
+        p = property(PARTITION_BY_ENGINE);
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Boolean.FALSE);
     }
 
     public static int getShareModeAsInt(String mode) {
@@ -106,4 +134,17 @@ public class CSVDataSetBeanInfo extends BeanInfoSupport {
         }
         return -1;
     }
+
+    /**
+     * @param mode the selection mode resource key
+     * @return the index of the mode, {@link #SELECTION_SEQUENTIAL} if it is not defined
+     */
+    public static int getSelectionModeAsInt(String mode) {
+        for (int i = 0; i < SELECTION_TAGS.length; i++) {
+            if (SELECTION_TAGS[i].equals(mode)) {
+                return i;
+            }
+        }
+        return SELECTION_SEQUENTIAL; // e.g. if test plan does not have definition
+    }
 }
@@ -0,0 +1,541 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.extractor;
+
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.jmeter.processor.PostProcessor;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.AbstractScopedTestElement;
+import org.apache.jmeter.testelement.property.IntegerProperty;
+import org.apache.jmeter.threads.JMeterContext;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jmeter.util.ByteArrayCharSequence;
+import org.apache.jmeter.util.Document;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Extracts the text between a left and a right boundary.
+ * <p>
+ * The response body is searched as bytes, with the boundaries encoded in the response encoding,
+ * when the encoding allows it (UTF-8 and single byte encodings), so that it is not decoded:
+ * only the extracted values are.
+ * Other fields and variables are searched as Strings.
+ * An empty left boundary matches the start of the text, an empty right boundary its end.
+ * @since 3.2
+ */
+// @see org.apache.jmeter.extractor.TestBoundaryExtractor for unit tests
+public class BoundaryExtractor extends AbstractScopedTestElement implements PostProcessor, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    // What to match against. N.B. do not change the string value or test plans will break!
+    private static final String MATCH_AGAINST = "BoundaryExtractor.useHeaders"; // $NON-NLS-1$
+
+    private static final String REFNAME = "BoundaryExtractor.refname"; // $NON-NLS-1$
+
+    private static final String MATCH_NUMBER = "BoundaryExtractor.match_number"; // $NON-NLS-1$
+
+    private static final String L_BOUNDARY = "BoundaryExtractor.lboundary"; // $NON-NLS-1$
+
+    private static final String R_BOUNDARY = "BoundaryExtractor.rboundary"; // $NON-NLS-1$
+
+    private static final String DEFAULT = "BoundaryExtractor.default"; // $NON-NLS-1$
+
+    private static final String DEFAULT_EMPTY_VALUE = "BoundaryExtractor.default_empty_value"; // $NON-NLS-1$
+
+    private static final String REF_MATCH_NR = "_matchNr"; // $NON-NLS-1$
+
+    private static final String UNDERSCORE = "_"; // $NON-NLS-1$
+
+    private static final boolean DEFAULT_VALUE_FOR_DEFAULT_EMPTY_VALUE = false;
+
+    /** Boundaries and encoding the byte patterns below were computed for */
+    private transient String preparedLeft;
+    private transient String preparedRight;
+    private transient String preparedEncoding;
+
+    /** Charset of the byte patterns, null if the response must be searched as a String */
+    private transient Charset preparedCharset;
+
+    private transient byte[] leftBytes;
+    private transient int[] leftShifts;
+    private transient byte[] rightBytes;
+    private transient int[] rightShifts;
+
+    /**
+     * Extracts the text between the boundaries and saves it into variables for use later in the test.
+     *
+     * @see org.apache.jmeter.processor.PostProcessor#process()
+     */
+    @Override
+    public void process() {
+        JMeterContext context = getThreadContext();
+        SampleResult previousResult = context.getPreviousResult();
+        if (previousResult == null) {
+            return;
+        }
+        JMeterVariables vars = context.getVariables();
+        String refName = getRefName();
+        int matchNumber = getMatchNumber();
+
+        final String defaultValue = getDefaultValue();
+        if (defaultValue.length() > 0 || isEmptyDefaultValue()) {// Only replace default if it is provided or empty default value is explicitly requested
+            vars.put(refName, defaultValue);
+        }
+
+        List<Text> texts = getTexts(previousResult, vars);
+        int prevCount = 0;
+        String prevString = vars.get(refName + REF_MATCH_NR);
+        if (prevString != null) {
+            vars.remove(refName + REF_MATCH_NR);// ensure old value is not left defined
+            try {
+                prevCount = Integer.parseInt(prevString);
+            } catch (NumberFormatException e) {
+                log.warn("Could not parse " + prevString + " " + e);
+            }
+        }
+        int matchCount = 0;// Number of refName_n variable sets to keep
+        if (matchNumber >= 0) {
+            if (matchNumber == 0) { // Random match
+                int count = countMatches(texts);
+                matchNumber = count > 0 ? JMeterUtils.getRandomInt(count) + 1 : 0;
+            }
+            String value = matchNumber > 0 ? findMatch(texts, matchNumber) : null;
+            if (value != null) {
+                vars.put(refName, value);
+            }
+            // else refname has already been set to the default (if present)
+        } else { // < 0 means we save all the matches
+            StringBuilder refNameN = new StringBuilder(refName).append(UNDERSCORE);
+            final int prefixLength = refNameN.length();
+            for (Text text : texts) {
+                int from = 0;
+                while ((from = text.find(from)) >= 0) {
+                    matchCount++;
+                    refNameN.setLength(prefixLength);
+                    vars.put(refNameN.append(matchCount).toString(), text.value());
+                }
+            }
+            vars.put(refName + REF_MATCH_NR, Integer.toString(matchCount));// Save the count
+        }
+        // Remove any left-over variables
+        for (int i = matchCount + 1; i <= prevCount; i++) {
+            vars.remove(refName + UNDERSCORE + i);
+        }
+    }
+
+    /**
+     * @return the texts to search, with the boundaries to search in them
+     */
+    private List<Text> getTexts(SampleResult result, JMeterVariables vars) {
+        String left = getLeftBoundary();
+        String right = getRightBoundary();
+        if (isScopeVariable()) {
+            String inputString = vars.get(getVariableName());
+            if (inputString == null) {
+                log.warn("No variable '" + getVariableName() + "' found to process by BoundaryExtractor '"
+                        + getName() + "', skipping processing");
+                return Collections.emptyList();
+            }
+            return Collections.<Text>singletonList(new CharsText(inputString, left, right));
+        }
+        List<SampleResult> sampleList = getSampleList(result);
+        List<Text> texts = new ArrayList<>(sampleList.size());
+        for (SampleResult sr : sampleList) {
+            texts.add(getText(sr, left, right));
+        }
+        return texts;
+    }
+
+    private Text getText(SampleResult result, String left, String right) {
+        if (useBody()) {
+            prepareBytePatterns(left, right, result.getDataEncodingWithDefault());
+            if (preparedCharset != null) {
+                return new BytesText(result.getResponseData(), preparedCharset,
+                        leftBytes, leftShifts, rightBytes, rightShifts);
+            }
+            return new CharsText(result.getResponseDataAsCharSequence(), left, right);
+        }
+        String inputString = useUrl() ? result.getUrlAsString()
+                : useHeaders() ? result.getResponseHeaders()
+                : useRequestHeaders() ? result.getRequestHeaders()
+                : useCode() ? result.getResponseCode()
+                : useMessage() ? result.getResponseMessage()
+                : useUnescapedBody() ? StringEscapeUtils.unescapeHtml4(result.getResponseDataAsString())
+                : Document.getTextFromDocument(result.getResponseData()) // useBodyAsDocument
+                ;
+        return new CharsText(inputString, left, right);
+    }
+
+    /**
+     * Encode the boundaries in encoding, unless already done for them
+     * @param left left boundary
+     * @param right right boundary
+     * @param encoding encoding of the response
+     */
+    private void prepareBytePatterns(String left, String right, String encoding) {
+        if (left.equals(preparedLeft) && right.equals(preparedRight) && encoding.equals(preparedEncoding)) {
+            return;
+        }
+        preparedCharset = getByteSearchableCharset(encoding, left, right);
+        if (preparedCharset != null) {
+            leftBytes = left.getBytes(preparedCharset);
+            leftShifts = shifts(leftBytes);
+            rightBytes = right.getBytes(preparedCharset);
+            rightShifts = shifts(rightBytes);
+        }
+        preparedLeft = left;
+        preparedRight = right;
+        preparedEncoding = encoding;
+    }
+
+    /**
+     * @return the charset if a match of the encoded boundaries is always a match of the boundaries,
+     * i.e. for UTF-8 and single byte charsets which can encode them, null otherwise
+     */
+    private static Charset getByteSearchableCharset(String encoding, String left, String right) {
+        try {
+            Charset charset = Charset.forName(encoding);
+            if (!charset.canEncode()) {
+                return null;
+            }
+            CharsetEncoder encoder = charset.newEncoder();
+            if ((StandardCharsets.UTF_8.equals(charset) || encoder.maxBytesPerChar() == 1f)
+                    && encoder.canEncode(left) && encoder.canEncode(right)) {
+                return charset;
+            }
+        } catch (IllegalArgumentException e) { // Unknown or illegal charset name
+            log.debug("Cannot search response encoded in " + encoding + " as bytes: " + e);
+        }
+        return null;
+    }
+
+    /**
+     * @param pattern searched bytes
+     * @return shifts of the Boyer-Moore-Horspool search of pattern, by byte value
+     */
+    private static int[] shifts(byte[] pattern) {
+        int[] shifts = new int[256];
+        Arrays.fill(shifts, pattern.length);
+        for (int i = 0; i < pattern.length - 1; i++) {
+            shifts[pattern[i] & 0xff] = pattern.length - 1 - i;
+        }
+        return shifts;
+    }
+
+    /**
+     * Boyer-Moore-Horspool search
+     * @return index of the first occurrence of pattern in text at or after from, -1 if there is none
+     */
+    private static int indexOf(byte[] text, byte[] pattern, int[] shifts, int from) {
+        final int last = pattern.length - 1;
+        final int end = text.length - last;
+        int i = from;
+        while (i < end) {
+            int j = last;
+            while (text[i + j] == pattern[j]) {
+                if (j == 0) {
+                    return i;
+                }
+                j--;
+            }
+            i += shifts[text[i + last] & 0xff];
+        }
+        return -1;
+    }
+
+    private static int countMatches(List<Text> texts) {
+        int count = 0;
+        for (Text text : texts) {
+            int from = 0;
+            while ((from = text.find(from)) >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the value of the matchNumber-th match, null if there are less matches
+     */
+    private static String findMatch(List<Text> texts, int matchNumber) {
+        int count = 0;
+        for (Text text : texts) {
+            int from = 0;
+            while ((from = text.find(from)) >= 0) {
+                if (++count == matchNumber) {
+                    return text.value();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Text searched for the boundaries, remembering the last match found
+     */
+    private abstract static class Text {
+        private final int length;
+        private final int leftLength;
+        private final int rightLength;
+        private int valueStart;
+        private int valueEnd;
+
+        Text(int length, int leftLength, int rightLength) {
+            this.length = length;
+            this.leftLength = leftLength;
+            this.rightLength = rightLength;
+        }
+
+        /**
+         * @param from index from which the left boundary is searched
+         * @return index from which to search the next match, -1 if no match was found
+         */
+        final int find(int from) {
+            int left;
+            if (leftLength == 0) {
+                if (from != 0) {
+                    return -1;
+                }
+                left = 0;
+            } else {
+                left = indexOfLeft(from);
+                if (left < 0) {
+                    return -1;
+                }
+            }
+            int start = left + leftLength;
+            if (rightLength == 0) {
+                valueStart = start;
+                valueEnd = length;
+                return length + 1; // No other match
+            }
+            int end = indexOfRight(start);
+            if (end < 0) {
+                return -1;
+            }
+            valueStart = start;
+            valueEnd = end;
+            return end + rightLength;
+        }
+
+        /**
+         * @return the value of the last match
+         */
+        final String value() {
+            return value(valueStart, valueEnd);
+        }
+
+        abstract int indexOfLeft(int from);
+
+        abstract int indexOfRight(int from);
+
+        abstract String value(int start, int end);
+    }
+
+    private static final class BytesText extends Text {
+        private final byte[] data;
+        private final Charset charset;
+        private final byte[] left;
+        private final int[] leftShifts;
+        private final byte[] right;
+        private final int[] rightShifts;
+
+        BytesText(byte[] data, Charset charset, byte[] left, int[] leftShifts, byte[] right, int[] rightShifts) {
+            super(data.length, left.length, right.length);
+            this.data = data;
+            this.charset = charset;
+            this.left = left;
+            this.leftShifts = leftShifts;
+            this.right = right;
+            this.rightShifts = rightShifts;
+        }
+
+        @Override
+        int indexOfLeft(int from) {
+            return indexOf(data, left, leftShifts, from);
+        }
+
+        @Override
+        int indexOfRight(int from) {
+            return indexOf(data, right, rightShifts, from);
+        }
+
+        @Override
+        String value(int start, int end) {
+            return new String(data, start, end - start, charset);
+        }
+    }
+
+    private static final class CharsText extends Text {
+        private final CharSequence text;
+        private final String left;
+        private final String right;
+
+        CharsText(CharSequence text, String left, String right) {
+            super(text == null ? 0 : text.length(), left.length(), right.length());
+            this.text = text == null ? "" : text; // $NON-NLS-1$
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        int indexOfLeft(int from) {
+            return ByteArrayCharSequence.indexOf(text, left, from);
+        }
+
+        @Override
+        int indexOfRight(int from) {
+            return ByteArrayCharSequence.indexOf(text, right, from);
+        }
+
+        @Override
+        String value(int start, int end) {
+            return text.subSequence(start, end).toString();
+        }
+    }
+
+    public void setRefName(String refName) {
+        setProperty(REFNAME, refName);
+    }
+
+    public String getRefName() {
+        return getPropertyAsString(REFNAME);
+    }
+
+    /**
+     * Set which Match to use. This can be any positive number, indicating the
+     * exact match to use, <code>0</code>, which is interpreted as meaning random,
+     * or a negative number, meaning all the matches.
+     *
+     * @param matchNumber
+     *            The number of the match to be used
+     */
+    public void setMatchNumber(int matchNumber) {
+        setProperty(new IntegerProperty(MATCH_NUMBER, matchNumber));
+    }
+
+    public void setMatchNumber(String matchNumber) {
+        setProperty(MATCH_NUMBER, matchNumber);
+    }
+
+    public int getMatchNumber() {
+        return getPropertyAsInt(MATCH_NUMBER);
+    }
+
+    public String getMatchNumberAsString() {
+        return getPropertyAsString(MATCH_NUMBER);
+    }
+
+    public void setLeftBoundary(String leftBoundary) {
+        setProperty(L_BOUNDARY, leftBoundary);
+    }
+
+    public String getLeftBoundary() {
+        return getPropertyAsString(L_BOUNDARY);
+    }
+
+    public void setRightBoundary(String rightBoundary) {
+        setProperty(R_BOUNDARY, rightBoundary);
+    }
+
+    public String getRightBoundary() {
+        return getPropertyAsString(R_BOUNDARY);
+    }
+
+    /**
+     * Sets the value of the variable if no matches are found
+     *
+     * @param defaultValue The default value for the variable
+     */
+    public void setDefaultValue(String defaultValue) {
+        setProperty(DEFAULT, defaultValue);
+    }
+
+    /**
+     * Set default value to "" value when if it's empty
+     *
+     * @param defaultEmptyValue The default value for the variable
+     */
+    public void setDefaultEmptyValue(boolean defaultEmptyValue) {
+        setProperty(DEFAULT_EMPTY_VALUE, defaultEmptyValue, DEFAULT_VALUE_FOR_DEFAULT_EMPTY_VALUE);
+    }
+
+    public String getDefaultValue() {
+        return getPropertyAsString(DEFAULT);
+    }
+
+    public boolean isEmptyDefaultValue() {
+        return getPropertyAsBoolean(DEFAULT_EMPTY_VALUE, DEFAULT_VALUE_FOR_DEFAULT_EMPTY_VALUE);
+    }
+
+    public boolean useHeaders() {
+        return RegexExtractor.USE_HDRS.equalsIgnoreCase(getPropertyAsString(MATCH_AGAINST));
+    }
+
+    public boolean useRequestHeaders() {
+        return RegexExtractor.USE_REQUEST_HDRS.equalsIgnoreCase(getPropertyAsString(MATCH_AGAINST));
+    }
+
+    // Allow for property not yet being set (probably only applies to Test cases)
+    public boolean useBody() {
+        String prop = getPropertyAsString(MATCH_AGAINST);
+        return prop.length() == 0 || RegexExtractor.USE_BODY.equalsIgnoreCase(prop);
+    }
+
+    public boolean useUnescapedBody() {
+        return RegexExtractor.USE_BODY_UNESCAPED.equalsIgnoreCase(getPropertyAsString(MATCH_AGAINST));
+    }
+
+    public boolean useBodyAsDocument() {
+        return RegexExtractor.USE_BODY_AS_DOCUMENT.equalsIgnoreCase(getPropertyAsString(MATCH_AGAINST));
+    }
+
+    public boolean useUrl() {
+        return RegexExtractor.USE_URL.equalsIgnoreCase(getPropertyAsString(MATCH_AGAINST));
+    }
+
+    public boolean useCode() {
+        return RegexExtractor.USE_CODE.equalsIgnoreCase(getPropertyAsString(MATCH_AGAINST));
+    }
+
+    public boolean useMessage() {
+        return RegexExtractor.USE_MESSAGE.equalsIgnoreCase(getPropertyAsString(MATCH_AGAINST));
+    }
+
+    /**
+     * @param actionCommand one of the <code>USE_*</code> constants of {@link RegexExtractor}
+     */
+    public void setUseField(String actionCommand) {
+        setProperty(MATCH_AGAINST, actionCommand);
+    }
+}
@@ -34,7 +34,8 @@ public interface Extractor extends Serializable {
      * @param inputString Page or excerpt
      * @param result List of results
      * @param found current matches found
-     * @param cacheKey If not null, the implementation is encouraged to cache parsing result and use this key as part of cache key
+     * @param cacheKey If not null, the implementation is encouraged to cache parsing result for the current sample,
+     *  see {@link org.apache.jmeter.util.ParsedResponseCache}
      * @return match found updated
      */
     int extract(
@@ -196,7 +196,7 @@ public class HtmlExtractor extends AbstractScopedTestElement implements PostProc
             for (SampleResult sr : sampleList) {
                 String inputString = sr.getResponseDataAsString();
                 found = getExtractorImpl().extract(expression, attribute, matchNumber, inputString, result, found,
-                        i>0 ? null : Integer.toString(i));
+                        Integer.toString(i));
                 i++;
                 if (matchNumber > 0 && found == matchNumber){// no need to process further
                     break;
@@ -20,7 +20,7 @@ package org.apache.jmeter.extractor;
 
 import java.util.List;
 
-import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.util.ParsedResponseCache;
 import org.apache.jorphan.util.JOrphanUtils;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -39,7 +39,8 @@ public class JSoupExtractor implements Extractor {
      */
     private static final long serialVersionUID = -6308012192067714191L;
 
-    private static final String CACHE_KEY_PREFIX = JSoupExtractor.class.getName()+"_PARSED_BODY";
+    /** Kind of the parsed document in {@link ParsedResponseCache} */
+    private static final String JSOUP_DOCUMENT = "jsoup"; // $NON-NLS-1$
 
     /**
      * 
@@ -57,11 +58,10 @@ public class JSoupExtractor implements Extractor {
             String cacheKey) {
         Document document = null;
         if (cacheKey != null) {
-            document = (Document) 
-                    JMeterContextService.getContext().getSamplerContext().get(CACHE_KEY_PREFIX+cacheKey);
+            document = (Document) ParsedResponseCache.get(inputString, JSOUP_DOCUMENT);
             if(document==null) {
                 document = Jsoup.parse(inputString);
-                JMeterContextService.getContext().getSamplerContext().put(CACHE_KEY_PREFIX+cacheKey, document);
+                ParsedResponseCache.put(inputString, JSOUP_DOCUMENT, document);
             }
         } else {
             document = Jsoup.parse(inputString);
@@ -26,7 +26,7 @@ import jodd.lagarto.dom.NodeSelector;
 import jodd.log.LoggerFactory;
 import jodd.log.impl.Slf4jLoggerFactory;
 
-import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.util.ParsedResponseCache;
 import org.apache.jorphan.util.JOrphanUtils;
 
 /**
@@ -41,7 +41,8 @@ public class JoddExtractor implements Extractor {
      */
     private static final long serialVersionUID = -7235814605293262972L;
 
-    private static final String CACHE_KEY_PREFIX = JoddExtractor.class.getName()+"_PARSED_BODY";
+    /** Kind of the parsed document in {@link ParsedResponseCache} */
+    private static final String JODD_NODE_SELECTOR = "jodd"; // $NON-NLS-1$
     
     static {
         LoggerFactory.setLoggerFactory(new Slf4jLoggerFactory());
@@ -63,13 +64,12 @@ public class JoddExtractor implements Extractor {
             String cacheKey) {
         NodeSelector nodeSelector = null;
         if (cacheKey != null) {
-            nodeSelector = (NodeSelector) 
-                    JMeterContextService.getContext().getSamplerContext().get(CACHE_KEY_PREFIX+cacheKey);
+            nodeSelector = (NodeSelector) ParsedResponseCache.get(inputString, JODD_NODE_SELECTOR);
             if(nodeSelector==null) {
                 LagartoDOMBuilder domBuilder = new LagartoDOMBuilder();
                 jodd.lagarto.dom.Document doc = domBuilder.parse(inputString);
                 nodeSelector = new NodeSelector(doc);
-                JMeterContextService.getContext().getSamplerContext().put(CACHE_KEY_PREFIX+cacheKey, nodeSelector);
+                ParsedResponseCache.put(inputString, JODD_NODE_SELECTOR, nodeSelector);
             }
         } else {
             LagartoDOMBuilder domBuilder = new LagartoDOMBuilder();
@@ -32,6 +32,8 @@ import org.apache.jmeter.threads.JMeterContext;
 import org.apache.jmeter.threads.JMeterVariables;
 import org.apache.jmeter.util.Document;
 import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jmeter.util.regex.RegexEngine;
+import org.apache.jmeter.util.regex.RegexPattern;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 import org.apache.oro.text.MalformedCachePatternException;
@@ -40,7 +42,6 @@ import org.apache.oro.text.regex.Pattern;
 import org.apache.oro.text.regex.PatternMatcher;
 import org.apache.oro.text.regex.PatternMatcherInput;
 import org.apache.oro.text.regex.Perl5Compiler;
-import org.apache.oro.text.regex.Perl5Matcher;
 
 // @see org.apache.jmeter.extractor.TestRegexExtractor for unit tests
 
@@ -83,6 +84,9 @@ public class RegexExtractor extends AbstractScopedTestElement implements PostPro
 
     private static final String TEMPLATE = "RegexExtractor.template"; // $NON-NLS-1$
 
+    /** Name of the {@link RegexEngine}, the default one is used if empty */
+    private static final String REGEX_ENGINE = "RegexExtractor.regex_engine"; // $NON-NLS-1$
+
     private static final String REF_MATCH_NR = "_matchNr"; // $NON-NLS-1$
 
     private static final String UNDERSCORE = "_";  // $NON-NLS-1$
@@ -117,12 +121,12 @@ public class RegexExtractor extends AbstractScopedTestElement implements PostPro
             vars.put(refName, defaultValue);
         }
         
-        Perl5Matcher matcher = JMeterUtils.getMatcher();
         String regex = getRegex();
-        Pattern pattern = null;
         try {
-            pattern = JMeterUtils.getPatternCache().getPattern(regex, Perl5Compiler.READ_ONLY_MASK);
-            List<MatchResult> matches = processMatches(pattern, regex, previousResult, matchNumber, vars);
+            RegexEngine engine = RegexEngine.getEngine(getRegexEngine());
+            RegexPattern pattern = engine.getPattern(regex);
+            List<MatchResult> matches = processMatches(pattern, regex, previousResult, matchNumber, vars,
+                    engine.readsCharSequence());
             int prevCount = 0;
             String prevString = vars.get(refName + REF_MATCH_NR);
             if (prevString != null) {
@@ -170,19 +174,23 @@ public class RegexExtractor extends AbstractScopedTestElement implements PostPro
             }
         } catch (MalformedCachePatternException e) {
             log.error("Error in pattern: " + regex);
-        } finally {
-            JMeterUtils.clearMatcherMemory(matcher, pattern);
         }
     }
 
-    private String getInputString(SampleResult result) {
-        String inputString = useUrl() ? result.getUrlAsString() // Bug 39707
+    /**
+     * @param result sample whose field is matched
+     * @param charSequence true if the response body can be returned as a view of the response bytes
+     * @return the field of result to match
+     */
+    private CharSequence getInputString(SampleResult result, boolean charSequence) {
+        CharSequence inputString = useUrl() ? result.getUrlAsString() // Bug 39707
                 : useHeaders() ? result.getResponseHeaders()
                 : useRequestHeaders() ? result.getRequestHeaders()
                 : useCode() ? result.getResponseCode() // Bug 43451
                 : useMessage() ? result.getResponseMessage() // Bug 43451
                 : useUnescapedBody() ? StringEscapeUtils.unescapeHtml4(result.getResponseDataAsString())
                 : useBodyAsDocument() ? Document.getTextFromDocument(result.getResponseData())
+                : charSequence ? result.getResponseDataAsCharSequence()
                 : result.getResponseDataAsString() // Bug 36898
                 ;
        if (log.isDebugEnabled()) {
@@ -191,12 +199,12 @@ public class RegexExtractor extends AbstractScopedTestElement implements PostPro
        return inputString;
     }
 
-    private List<MatchResult> processMatches(Pattern pattern, String regex, SampleResult result, int matchNumber, JMeterVariables vars) {
+    private List<MatchResult> processMatches(RegexPattern pattern, String regex, SampleResult result, int matchNumber,
+            JMeterVariables vars, boolean charSequence) {
         if (log.isDebugEnabled()) {
             log.debug("Regex = " + regex);
         }
 
-        Perl5Matcher matcher = JMeterUtils.getMatcher();
         List<MatchResult> matches = new ArrayList<>();
         int found = 0;
 
@@ -206,13 +214,13 @@ public class RegexExtractor extends AbstractScopedTestElement implements PostPro
                 log.warn("No variable '"+getVariableName()+"' found to process by RegexExtractor '"+getName()+"', skipping processing");
                 return Collections.emptyList();
             }
-            matchStrings(matchNumber, matcher, pattern, matches, found,
+            matchStrings(matchNumber, pattern, matches, found,
                     inputString);
         } else {
             List<SampleResult> sampleList = getSampleList(result);
             for (SampleResult sr : sampleList) {
-                String inputString = getInputString(sr);
-                found = matchStrings(matchNumber, matcher, pattern, matches, found,
+                CharSequence inputString = getInputString(sr, charSequence);
+                found = matchStrings(matchNumber, pattern, matches, found,
                         inputString);
                 if (matchNumber > 0 && found == matchNumber){// no need to process further
                     break;
@@ -222,20 +230,18 @@ public class RegexExtractor extends AbstractScopedTestElement implements PostPro
         return matches;
     }
 
-    private int matchStrings(int matchNumber, Perl5Matcher matcher,
-            Pattern pattern, List<MatchResult> matches, int found,
-            String inputString) {
-        PatternMatcherInput input = new PatternMatcherInput(inputString);
-        while (matchNumber <=0 || found != matchNumber) {
-            if (matcher.contains(input, pattern)) {
-                log.debug("RegexExtractor: Match found!");
-                matches.add(matcher.getMatch());
-                found++;
-            } else {
-                break;
-            }
+    private int matchStrings(int matchNumber, RegexPattern pattern,
+            List<MatchResult> matches, int found,
+            CharSequence inputString) {
+        if (matchNumber > 0 && found >= matchNumber) {
+            return found;
+        }
+        List<MatchResult> inputMatches = pattern.findAll(inputString, matchNumber > 0 ? matchNumber - found : 0);
+        if (log.isDebugEnabled()) {
+            log.debug("RegexExtractor: " + inputMatches.size() + " match(es) found");
         }
-        return found;
+        matches.addAll(inputMatches);
+        return found + inputMatches.size();
     }
 
     /**
@@ -479,6 +485,20 @@ public class RegexExtractor extends AbstractScopedTestElement implements PostPro
         return getPropertyAsString(TEMPLATE);
     }
 
+    /**
+     * @param regexEngine name of the {@link RegexEngine} to use, empty for the default one
+     */
+    public void setRegexEngine(String regexEngine) {
+        setProperty(REGEX_ENGINE, regexEngine, ""); // $NON-NLS-1$
+    }
+
+    /**
+     * @return name of the {@link RegexEngine} to use, empty for the default one
+     */
+    public String getRegexEngine() {
+        return getPropertyAsString(REGEX_ENGINE);
+    }
+
     public boolean useHeaders() {
         return USE_HDRS.equalsIgnoreCase( getPropertyAsString(MATCH_AGAINST));
     }
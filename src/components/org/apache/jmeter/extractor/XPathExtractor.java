@@ -17,10 +17,8 @@
  */
 package org.apache.jmeter.extractor;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.Serializable;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -38,7 +36,6 @@ import org.apache.jmeter.util.TidyException;
 import org.apache.jmeter.util.XPathUtil;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.jorphan.util.JMeterError;
-import org.apache.jorphan.util.JOrphanUtils;
 import org.apache.log.Logger;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
@@ -130,8 +127,7 @@ public class XPathExtractor extends AbstractScopedTestElement implements
                 String inputString=vars.get(getVariableName());
                 if(inputString != null) {
                     if(inputString.length()>0) {
-                        Document d =  parseResponse(inputString);
-                        getValuesForXPath(d,getXPathQuery(),matches);
+                        getValuesForXPath(inputString, matches);
                     }
                 } else {
                     log.warn("No variable '"+getVariableName()+"' found to process by XPathExtractor '"+getName()+"', skipping processing");
@@ -139,8 +135,7 @@ public class XPathExtractor extends AbstractScopedTestElement implements
             } else {
                 List<SampleResult> samples = getSampleList(previousResult);
                 for (SampleResult res : samples) {
-                    Document d = parseResponse(res.getResponseDataAsString());
-                    getValuesForXPath(d,getXPathQuery(),matches);
+                    getValuesForXPath(res.getResponseDataAsString(), matches);
                 }
             }
             final int matchCount = matches.size();
@@ -294,13 +289,26 @@ public class XPathExtractor extends AbstractScopedTestElement implements
       // NOTE: responseData encoding is server specific
       //       Therefore we do byte -> unicode -> byte conversion
       //       to ensure UTF-8 encoding as required by XPathUtil
-      // convert unicode String -> UTF-8 bytes
-      byte[] utf8data = unicodeData.getBytes(StandardCharsets.UTF_8);
-      ByteArrayInputStream in = new ByteArrayInputStream(utf8data);
-      boolean isXML = JOrphanUtils.isXML(utf8data);
-      // this method assumes UTF-8 input data
-      return XPathUtil.makeDocument(in,false,false,useNameSpace(),isTolerant(),isQuiet(),showWarnings(),reportErrors()
-              ,isXML, isDownloadDTDs());
+      // Document is shared with the other elements parsing the same response with the same options
+      return XPathUtil.getDocument(unicodeData,false,false,useNameSpace(),isTolerant(),isQuiet(),showWarnings(),reportErrors()
+              ,isDownloadDTDs());
+    }
+
+    /**
+     * Extract value from (X)HTML response by XPath query, while parsing it
+     * when possible, otherwise from its DOM object Tree.
+     * @param unicodeData the response
+     * @param matchStrings list of matched strings (may include nulls)
+     */
+    private void getValuesForXPath(String unicodeData, List<String> matchStrings)
+        throws IOException, ParserConfigurationException, SAXException, TidyException, TransformerException {
+        List<String> streamed = getFragment() ? null : XPathUtil.streamValuesForXPath(unicodeData, getXPathQuery(),
+                false, false, useNameSpace(), isTolerant(), isDownloadDTDs(), 0);
+        if (streamed != null) {
+            matchStrings.addAll(streamed);
+        } else {
+            getValuesForXPath(parseResponse(unicodeData), getXPathQuery(), matchStrings);
+        }
     }
 
     /**
@@ -38,6 +38,9 @@ import org.apache.jmeter.processor.gui.AbstractPostProcessorGui;
 import org.apache.jmeter.testelement.AbstractScopedTestElement;
 import org.apache.jmeter.testelement.TestElement;
 import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jmeter.util.regex.RegexEngine;
+import org.apache.jorphan.gui.JLabeledChoice;
+import org.apache.jorphan.gui.JLabeledField;
 import org.apache.jorphan.gui.JLabeledTextField;
 
 /**
@@ -56,6 +59,8 @@ public class RegexExtractorGui extends AbstractPostProcessorGui {
 
     private JLabeledTextField refNameField;
 
+    private JLabeledChoice regexEngineField;
+
     private JRadioButton useBody;
 
     private JRadioButton useUnescapedBody;
@@ -106,6 +111,7 @@ public class RegexExtractorGui extends AbstractPostProcessorGui {
             emptyDefaultValue.setSelected(re.isEmptyDefaultValue());
             matchNumberField.setText(re.getMatchNumberAsString());
             refNameField.setText(re.getRefName());
+            regexEngineField.setText(re.getRegexEngine());
         }
     }
 
@@ -137,6 +143,7 @@ public class RegexExtractorGui extends AbstractPostProcessorGui {
             regex.setDefaultValue(defaultField.getText());
             regex.setDefaultEmptyValue(emptyDefaultValue.isSelected());
             regex.setMatchNumber(matchNumberField.getText());
+            regex.setRegexEngine(regexEngineField.getText());
         }
     }
 
@@ -155,6 +162,7 @@ public class RegexExtractorGui extends AbstractPostProcessorGui {
         emptyDefaultValue.setSelected(false);
         refNameField.setText(""); //$NON-NLS-1$
         matchNumberField.setText(""); //$NON-NLS-1$
+        regexEngineField.setText(""); //$NON-NLS-1$
     }
 
     private void init() { // WARNING: called from ctor so must not be overridden (i.e. must be private or final)
@@ -221,6 +229,11 @@ public class RegexExtractorGui extends AbstractPostProcessorGui {
         templateField = new JLabeledTextField(JMeterUtils.getResString("template_field")); //$NON-NLS-1$
         refNameField = new JLabeledTextField(JMeterUtils.getResString("ref_name_field")); //$NON-NLS-1$
         matchNumberField = new JLabeledTextField(JMeterUtils.getResString("match_num_field")); //$NON-NLS-1$
+        String[] engines = RegexEngine.getEngineNames();
+        String[] engineChoices = new String[engines.length + 1];
+        engineChoices[0] = ""; //$NON-NLS-1$
+        System.arraycopy(engines, 0, engineChoices, 1, engines.length);
+        regexEngineField = new JLabeledChoice(JMeterUtils.getResString("regex_engine_field"), engineChoices); //$NON-NLS-1$
 
         JPanel panel = new JPanel(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
@@ -233,6 +246,8 @@ public class RegexExtractorGui extends AbstractPostProcessorGui {
         resetContraints(gbc);
         addField(panel, matchNumberField, gbc);
         resetContraints(gbc);
+        addField(panel, regexEngineField, gbc);
+        resetContraints(gbc);
         gbc.weighty = 1;
         
         defaultField = new JLabeledTextField(JMeterUtils.getResString("default_value_field")); //$NON-NLS-1$
@@ -261,7 +276,7 @@ public class RegexExtractorGui extends AbstractPostProcessorGui {
         return panel;
     }
 
-    private void addField(JPanel panel, JLabeledTextField field, GridBagConstraints gbc) {
+    private void addField(JPanel panel, JLabeledField field, GridBagConstraints gbc) {
         List<JComponent> item = field.getComponentList();
         panel.add(item.get(0), gbc.clone());
         gbc.gridx++;
@@ -18,6 +18,10 @@
 
 package org.apache.jmeter.extractor.json.jsonpath;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -25,6 +29,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.ParsedResponseCache;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 
@@ -46,6 +52,8 @@ public class JSONManager {
     private static final Logger log = LoggingManager.getLoggerForClass();
     private static final Configuration DEFAULT_CONFIGURATION =
             Configuration.defaultConfiguration().addOptions(Option.ALWAYS_RETURN_LIST);
+    /** Kind of the JSON tree in {@link ParsedResponseCache} */
+    private static final String JSON_TREE = "json"; //$NON-NLS-1$
     /**
      * This Map can hardly grow above 10 elements as it is used within JSONPostProcessor to 
      * store the computed JsonPath for the set of JSON Path Expressions.
@@ -53,6 +61,9 @@ public class JSONManager {
      */
     private Map<String, JsonPath> expressionToJsonPath = new HashMap<>(2);
 
+    /** Streaming version of the expressions, null if they cannot be streamed */
+    private Map<String, JSONStreamingPath> expressionToStreamingPath = new HashMap<>(2);
+
     private JsonPath getJsonPath(String jsonPathExpression) {
         JsonPath jsonPath = expressionToJsonPath.get(jsonPathExpression);
         if (jsonPath == null) {
@@ -65,6 +76,46 @@ public class JSONManager {
     
     public void reset() {
         expressionToJsonPath.clear();
+        expressionToStreamingPath.clear();
+    }
+
+    /**
+     * Parse jsonString, the tree is shared by all the expressions applied
+     * to the same response during a sample
+     * @param jsonString JSON String
+     * @return JSON tree
+     */
+    private static Object parse(String jsonString) {
+        Object document = ParsedResponseCache.get(jsonString, JSON_TREE);
+        if (document == null) {
+            if (jsonString == null || jsonString.isEmpty()) {
+                throw new IllegalArgumentException("json string can not be null or empty");
+            }
+            document = DEFAULT_CONFIGURATION.jsonProvider().parse(jsonString);
+            ParsedResponseCache.put(jsonString, JSON_TREE, document);
+        }
+        return document;
+    }
+
+    /**
+     * Parse the response of result from its bytes, without decoding it into a String.
+     * Like {@link #parse(String)}, the tree is shared during a sample,
+     * by the expressions applied to the same response bytes.
+     * @param result {@link SampleResult} whose response is parsed
+     * @return JSON tree
+     */
+    private static Object parse(SampleResult result) {
+        byte[] responseData = result.getResponseData();
+        Object document = ParsedResponseCache.get(responseData, JSON_TREE);
+        if (document == null) {
+            if (responseData.length == 0) {
+                throw new IllegalArgumentException("json string can not be null or empty");
+            }
+            document = DEFAULT_CONFIGURATION.jsonProvider().parse(
+                    new ByteArrayInputStream(responseData), result.getDataEncodingWithDefault());
+            ParsedResponseCache.put(responseData, JSON_TREE, document);
+        }
+        return document;
     }
 
     /**
@@ -76,15 +127,25 @@ public class JSONManager {
      */
     public List<Object> extractWithJsonPath(String jsonString, String jsonPath)
             throws ParseException {
+        return extractFromTree(parse(jsonString), jsonString, jsonPath);
+    }
+
+    /**
+     * @param document JSON tree
+     * @param source what document was parsed from, for the messages
+     * @param jsonPath JSON-PATH expression
+     * @return List of JSON Strings of the extracted data
+     */
+    private List<Object> extractFromTree(Object document, Object source, String jsonPath) {
         JsonPath jsonPathParser = getJsonPath(jsonPath);
         List<Object> extractedObjects;
         try {
-            extractedObjects = jsonPathParser.read(jsonString,
+            extractedObjects = jsonPathParser.read(document,
                     DEFAULT_CONFIGURATION);
         } catch (PathNotFoundException e) {
             if (log.isDebugEnabled()) {
                 log.debug("Could not find JSON Path " + jsonPath + " in ["
-                        + jsonString + "]: " + e.getLocalizedMessage());
+                        + source + "]: " + e.getLocalizedMessage());
             }
             return Collections.emptyList();
         }
@@ -95,6 +156,43 @@ public class JSONManager {
         return results;
     }
 
+    /**
+     * Same as {@link #extractWithJsonPath(String, String)} but simple expressions
+     * (see {@link JSONStreamingPath}) are evaluated while reading the response bytes,
+     * without building the JSON tree nor decoding the whole response, and reading
+     * stops once maxMatches values have been found.
+     * Other expressions, and responses which are not strict JSON, are evaluated on the tree,
+     * which is also parsed from the response bytes.
+     * @param result {@link SampleResult} whose response is read
+     * @param jsonPath JSON-PATH expression
+     * @param maxMatches number of matches after which evaluation may stop, 0 for all
+     * @return List of JSON Strings of the extracted data, in document order when streamed
+     * @throws ParseException
+     */
+    public List<Object> extractWithJsonPath(SampleResult result, String jsonPath, int maxMatches)
+            throws ParseException {
+        if (!expressionToStreamingPath.containsKey(jsonPath)) {
+            expressionToStreamingPath.put(jsonPath, JSONStreamingPath.compile(jsonPath));
+        }
+        JSONStreamingPath streamingPath = expressionToStreamingPath.get(jsonPath);
+        if (streamingPath != null) {
+            try (Reader reader = new InputStreamReader(
+                    new ByteArrayInputStream(result.getResponseData()), result.getDataEncodingWithDefault())) {
+                List<Object> extractedObjects = streamingPath.read(reader, DEFAULT_CONFIGURATION.jsonProvider(), maxMatches);
+                List<Object> results = new ArrayList<>(extractedObjects.size());
+                for (Object obj: extractedObjects) {
+                    results.add(stringifyJSONObject(obj));
+                }
+                return results;
+            } catch (IOException | JSONStreamingPath.NotStreamableException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Cannot stream JSON Path " + jsonPath + ", using JSON tree: " + e.getMessage());
+                }
+            }
+        }
+        return extractFromTree(parse(result), result, jsonPath);
+    }
+
     @SuppressWarnings("unchecked")
     private String stringifyJSONObject(Object obj) {
         if (obj instanceof Map) {
@@ -53,6 +53,13 @@ public class JSONPostProcessor extends AbstractScopedTestElement implements Seri
     private static final String JSON_CONCATENATION_SEPARATOR = ","; //$NON-NLS-1$
     private static final String SEPARATOR = ";"; // $NON-NLS-1$
     public static final boolean COMPUTE_CONCATENATION_DEFAULT_VALUE = false;
+
+    /**
+     * Responses of at least this size (in bytes) are evaluated in streaming mode
+     * when the expression allows it, 0 disables streaming
+     */
+    private static final long STREAMING_MIN_SIZE =
+            JMeterUtils.getPropDefault("jsonpostprocessor.streaming.min_size", 0L); // $NON-NLS-1$
     
     private static final ThreadLocal<JSONManager> localMatcher = new ThreadLocal<JSONManager>() {
         @Override
@@ -65,7 +72,8 @@ public class JSONPostProcessor extends AbstractScopedTestElement implements Seri
     public void process() {
         JMeterContext context = getThreadContext();
         JMeterVariables vars = context.getVariables();
-        String jsonResponse;
+        String jsonResponse = null;
+        SampleResult streamedResult = null;
         if (isScopeVariable()) {
             jsonResponse = vars.get(getVariableName());
             if (log.isDebugEnabled()) {
@@ -76,9 +84,14 @@ public class JSONPostProcessor extends AbstractScopedTestElement implements Seri
             if (previousResult == null) {
                 return;
             }
-            jsonResponse = previousResult.getResponseDataAsString();
-            if (log.isDebugEnabled()) {
-                log.debug("JSON Extractor " + getName() + " working on Response:" + jsonResponse);
+            if (STREAMING_MIN_SIZE > 0 && previousResult.getResponseData().length >= STREAMING_MIN_SIZE) {
+                // Response is not decoded, only the matched values will be
+                streamedResult = previousResult;
+            } else {
+                jsonResponse = previousResult.getResponseDataAsString();
+                if (log.isDebugEnabled()) {
+                    log.debug("JSON Extractor " + getName() + " working on Response:" + jsonResponse);
+                }
             }
         }
         String[] refNames = getRefNames().split(SEPARATOR);
@@ -100,12 +113,14 @@ public class JSONPostProcessor extends AbstractScopedTestElement implements Seri
             String currentRefName = refNames[i].trim();
             String currentJsonPath = jsonPathExpressions[i].trim();
             try {
-                if (jsonResponse.isEmpty()) {
+                if (streamedResult == null && jsonResponse.isEmpty()) {
                     vars.put(currentRefName, defaultValues[i]);
                 } else {
 
-                    List<Object> extractedValues = localMatcher.get()
-                            .extractWithJsonPath(jsonResponse, currentJsonPath);
+                    List<Object> extractedValues = streamedResult != null
+                            ? localMatcher.get().extractWithJsonPath(streamedResult, currentJsonPath,
+                                    matchNumber > 0 ? matchNumber : 0)
+                            : localMatcher.get().extractWithJsonPath(jsonResponse, currentJsonPath);
                     // if no values extracted, default value added
                     if (extractedValues.isEmpty()) {
                         vars.put(currentRefName, defaultValues[i]);
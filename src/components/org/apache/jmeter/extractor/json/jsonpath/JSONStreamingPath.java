@@ -0,0 +1,554 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.extractor.json.jsonpath;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
+/**
+ * Evaluates simple JSON Path expressions while reading a document, without building its tree.
+ * <p>
+ * Supported expressions start with <code>$</code> and are made of children
+ * (<code>.name</code>, <code>['name']</code>), array indexes (<code>[2]</code>)
+ * and wildcards (<code>.*</code>, <code>[*]</code>), for which document order is the order
+ * of the tree based engine. Deep scans (<code>..name</code>) are not streamed, as the tree based
+ * engine returns the property of an object before the matches found in its other members.
+ * Only the matched values are materialized, with the same {@link JsonProvider} as the
+ * tree based engine so that they are rendered identically, and reading stops
+ * once the requested number of matches has been found.
+ * <p>
+ * Documents which are not strict JSON (accepted by the permissive parser of
+ * the tree based engine) or which have duplicate keys are rejected with
+ * {@link NotStreamableException}.
+ * Not thread-safe for reading, instances are used by one thread.
+ * @since 3.2
+ */
+final class JSONStreamingPath {
+
+    /**
+     * Thrown when a document cannot be evaluated in streaming mode,
+     * the tree based engine must be used instead
+     */
+    static final class NotStreamableException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        NotStreamableException(String message) {
+            super(message);
+        }
+    }
+
+    private static final int CHILD = 0;
+    private static final int INDEX = 1;
+    private static final int WILDCARD = 2;
+
+    /** States are a bit set of segment positions, the last bit being the match */
+    private static final int MAX_SEGMENTS = 62;
+
+    private final String expression;
+
+    private final int[] types;
+
+    private final String[] names;
+
+    private final int[] indexes;
+
+    /** State reached when all the segments matched */
+    private final long matchState;
+
+    private JSONStreamingPath(String expression, List<Object[]> segments) {
+        this.expression = expression;
+        int size = segments.size();
+        types = new int[size];
+        names = new String[size];
+        indexes = new int[size];
+        for (int i = 0; i < size; i++) {
+            Object[] segment = segments.get(i);
+            types[i] = ((Integer) segment[0]).intValue();
+            if (types[i] == INDEX) {
+                indexes[i] = ((Integer) segment[1]).intValue();
+            } else {
+                names[i] = (String) segment[1];
+            }
+        }
+        matchState = 1L << size;
+    }
+
+    /**
+     * @param expression JSON Path expression
+     * @return compiled expression or null if it cannot be evaluated in streaming mode
+     */
+    static JSONStreamingPath compile(String expression) {
+        String path = expression.trim();
+        if (!path.startsWith("$")) { // $NON-NLS-1$
+            return null;
+        }
+        List<Object[]> segments = new ArrayList<>();
+        int length = path.length();
+        int i = 1;
+        while (i < length) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                int start = i + 1;
+                if (start < length && path.charAt(start) == '.') {
+                    // Deep scan
+                    return null;
+                }
+                if (start < length && path.charAt(start) == '*') {
+                    segments.add(new Object[]{Integer.valueOf(WILDCARD), null});
+                    i = start + 1;
+                    continue;
+                }
+                int end = start;
+                while (end < length && isNameChar(path.charAt(end))) {
+                    end++;
+                }
+                if (end == start) {
+                    return null;
+                }
+                segments.add(new Object[]{Integer.valueOf(CHILD), path.substring(start, end)});
+                i = end;
+            } else if (c == '[') {
+                int close = path.indexOf(']', i);
+                if (close < 0) {
+                    return null;
+                }
+                Object[] segment = parseBracket(path.substring(i + 1, close).trim());
+                if (segment == null) {
+                    return null;
+                }
+                segments.add(segment);
+                i = close + 1;
+            } else {
+                return null;
+            }
+        }
+        if (segments.isEmpty() || segments.size() > MAX_SEGMENTS) {
+            return null;
+        }
+        return new JSONStreamingPath(expression, segments);
+    }
+
+    private static Object[] parseBracket(String content) {
+        if ("*".equals(content)) { // $NON-NLS-1$
+            return new Object[]{Integer.valueOf(WILDCARD), null};
+        }
+        int length = content.length();
+        if (length >= 2 && (content.charAt(0) == '\'' || content.charAt(0) == '"')
+                && content.charAt(length - 1) == content.charAt(0)) {
+            String name = content.substring(1, length - 1);
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (c == '\'' || c == '"' || c == '\\' || c == ',') {
+                    return null;
+                }
+            }
+            return new Object[]{Integer.valueOf(CHILD), name};
+        }
+        if (length == 0 || length > 9) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            if (!Character.isDigit(content.charAt(i))) {
+                return null;
+            }
+        }
+        return new Object[]{Integer.valueOf(INDEX), Integer.valueOf(content)};
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-';
+    }
+
+    /**
+     * Compute the states reached from states through the member name of an object or the
+     * element index of an array
+     * @param states current states
+     * @param name member name or null for an array element
+     * @param index element index, ignored for a member
+     * @return new states
+     */
+    private long step(long states, String name, int index) {
+        long next = 0;
+        for (int i = 0; i < types.length; i++) {
+            if ((states & (1L << i)) == 0) {
+                continue;
+            }
+            switch (types[i]) {
+                case CHILD:
+                    if (name != null && name.equals(names[i])) {
+                        next |= 1L << (i + 1);
+                    }
+                    break;
+                case INDEX:
+                    if (name == null && index == indexes[i]) {
+                        next |= 1L << (i + 1);
+                    }
+                    break;
+                default: // WILDCARD
+                    next |= 1L << (i + 1);
+                    break;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @param reader JSON document
+     * @param provider used to materialize matched values
+     * @param maxMatches number of matches after which reading stops, 0 for all
+     * @return matched values in document order
+     * @throws IOException if reader fails
+     * @throws NotStreamableException if the document must be evaluated by the tree based engine
+     */
+    List<Object> read(Reader reader, JsonProvider provider, int maxMatches)
+            throws IOException, NotStreamableException {
+        Evaluation evaluation = new Evaluation(reader, provider, maxMatches);
+        evaluation.readValue(1L);
+        if (!evaluation.isDone()) {
+            int c = evaluation.nextNonBlank();
+            if (c != -1) {
+                throw evaluation.unexpected(c);
+            }
+        }
+        return evaluation.results;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * State of the evaluation of a document
+     */
+    private final class Evaluation {
+        private final Reader reader;
+        private final JsonProvider provider;
+        private final int maxMatches;
+        private final List<Object> results = new ArrayList<>();
+        private final char[] buffer = new char[8192];
+        private int position;
+        private int limit;
+        /** Pushed back character, -2 if none */
+        private int pushedBack = -2;
+        /** Raw text of the value being materialized, null if none */
+        private StringBuilder capture;
+
+        Evaluation(Reader reader, JsonProvider provider, int maxMatches) {
+            this.reader = reader;
+            this.provider = provider;
+            this.maxMatches = maxMatches;
+        }
+
+        boolean isDone() {
+            return maxMatches > 0 && results.size() >= maxMatches;
+        }
+
+        void readValue(long states) throws IOException, NotStreamableException {
+            int c = nextNonBlank();
+            if (states == 0) {
+                skipValue(c);
+            } else if ((states & matchState) != 0) {
+                capture = new StringBuilder();
+                capture.append((char) c);
+                skipValue(c);
+                Object value;
+                try {
+                    value = provider.parse(capture.toString());
+                } catch (RuntimeException e) { // NOSONAR Rejected by the provider, let the tree based engine report it
+                    throw new NotStreamableException(e.getMessage());
+                }
+                capture = null;
+                if (!isDone()) {
+                    results.add(value);
+                }
+            } else if (c == '{') {
+                readObject(states);
+            } else if (c == '[') {
+                readArray(states);
+            } else {
+                skipValue(c);
+            }
+        }
+
+        private void readObject(long states) throws IOException, NotStreamableException {
+            int c = nextNonBlank();
+            if (c == '}') {
+                return;
+            }
+            Set<String> keys = null;
+            while (true) {
+                if (c != '"') {
+                    throw unexpected(c);
+                }
+                String name = readString();
+                expect(':');
+                long next = step(states, name, -1);
+                if (next != 0) {
+                    if (keys == null) {
+                        keys = new HashSet<>();
+                    }
+                    if (!keys.add(name)) {
+                        throw new NotStreamableException("Duplicate key '" + name + "'");
+                    }
+                }
+                readValue(next);
+                if (isDone()) {
+                    return;
+                }
+                c = nextNonBlank();
+                if (c == '}') {
+                    return;
+                }
+                if (c != ',') {
+                    throw unexpected(c);
+                }
+                c = nextNonBlank();
+            }
+        }
+
+        private void readArray(long states) throws IOException, NotStreamableException {
+            int c = nextNonBlank();
+            if (c == ']') {
+                return;
+            }
+            pushBack(c);
+            int index = 0;
+            while (true) {
+                readValue(step(states, null, index++));
+                if (isDone()) {
+                    return;
+                }
+                c = nextNonBlank();
+                if (c == ']') {
+                    return;
+                }
+                if (c != ',') {
+                    throw unexpected(c);
+                }
+            }
+        }
+
+        /**
+         * Skip a value whose first character has been read, its characters being kept if it is captured
+         */
+        private void skipValue(int first) throws IOException, NotStreamableException {
+            switch (first) {
+                case '{':
+                    skipContainer('}');
+                    break;
+                case '[':
+                    skipContainer(']');
+                    break;
+                case '"':
+                    skipString();
+                    break;
+                case 't':
+                    expectLiteral("rue"); // $NON-NLS-1$
+                    break;
+                case 'f':
+                    expectLiteral("alse"); // $NON-NLS-1$
+                    break;
+                case 'n':
+                    expectLiteral("ull"); // $NON-NLS-1$
+                    break;
+                default:
+                    if (first == '-' || (first >= '0' && first <= '9')) {
+                        skipNumber();
+                    } else {
+                        throw unexpected(first);
+                    }
+                    break;
+            }
+        }
+
+        private void skipContainer(char close) throws IOException, NotStreamableException {
+            boolean object = close == '}';
+            int c = nextNonBlank();
+            if (c == close) {
+                return;
+            }
+            while (true) {
+                if (object) {
+                    if (c != '"') {
+                        throw unexpected(c);
+                    }
+                    skipString();
+                    expect(':');
+                    c = nextNonBlank();
+                }
+                skipValue(c);
+                c = nextNonBlank();
+                if (c == close) {
+                    return;
+                }
+                if (c != ',') {
+                    throw unexpected(c);
+                }
+                c = nextNonBlank();
+            }
+        }
+
+        private void skipNumber() throws IOException {
+            while (true) {
+                int c = next();
+                if (!((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-')) {
+                    pushBack(c);
+                    return;
+                }
+            }
+        }
+
+        private void skipString() throws IOException, NotStreamableException {
+            while (true) {
+                int c = next();
+                if (c == '"') {
+                    return;
+                }
+                if (c == '\\') {
+                    c = next();
+                }
+                if (c == -1) {
+                    throw unexpected(c);
+                }
+            }
+        }
+
+        /**
+         * Read the remaining of a string whose opening quote has been read
+         */
+        private String readString() throws IOException, NotStreamableException {
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                int c = next();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c == -1) {
+                    throw unexpected(c);
+                }
+                if (c != '\\') {
+                    sb.append((char) c);
+                    continue;
+                }
+                c = next();
+                switch (c) {
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(next(), 16);
+                            if (digit < 0) {
+                                throw new NotStreamableException("Invalid unicode escape");
+                            }
+                            code = code * 16 + digit;
+                        }
+                        sb.append((char) code);
+                        break;
+                    case '"':
+                    case '\\':
+                    case '/':
+                        sb.append((char) c);
+                        break;
+                    default:
+                        throw unexpected(c);
+                }
+            }
+        }
+
+        private void expectLiteral(String rest) throws IOException, NotStreamableException {
+            for (int i = 0; i < rest.length(); i++) {
+                int c = next();
+                if (c != rest.charAt(i)) {
+                    throw unexpected(c);
+                }
+            }
+        }
+
+        private void expect(char expected) throws IOException, NotStreamableException {
+            int c = nextNonBlank();
+            if (c != expected) {
+                throw unexpected(c);
+            }
+        }
+
+        NotStreamableException unexpected(int c) {
+            return new NotStreamableException(c == -1 ? "Unexpected end of document"
+                    : "Unexpected character '" + (char) c + "'");
+        }
+
+        int nextNonBlank() throws IOException {
+            while (true) {
+                int c = next();
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    return c;
+                }
+            }
+        }
+
+        private int next() throws IOException {
+            int c;
+            if (pushedBack != -2) {
+                c = pushedBack;
+                pushedBack = -2;
+            } else {
+                if (position == limit) {
+                    limit = reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return -1;
+                    }
+                }
+                c = buffer[position++];
+            }
+            if (capture != null && c != -1) {
+                capture.append((char) c);
+            }
+            return c;
+        }
+
+        private void pushBack(int c) {
+            pushedBack = c;
+            if (capture != null && c != -1) {
+                capture.setLength(capture.length() - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.timers;
+
+import java.util.Arrays;
+
+/**
+ * Target rate made of segments during which the rate changes linearly from a start rate to an end rate.
+ * The end rate of the last segment is kept after the end of the profile.
+ * <p>
+ * The arrivals are scheduled by inverting the number of arrivals expected since the start of the profile,
+ * which is the integral of the rate: the arrival n is at the time when n arrivals are expected.
+ * So the time of any arrival is computed directly from its number, and the threads can claim the arrivals
+ * with an atomic increment.
+ * @since 3.2
+ */
+final class LoadProfile implements PacingClock.Schedule {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    // Start of each segment, followed by the end of the profile, in seconds
+    private final double[] startTimes;
+
+    // Number of arrivals expected at the start of each segment, followed by the number at the end of the profile
+    private final double[] startArrivals;
+
+    private final double[] startRates;
+
+    private final double[] endRates;
+
+    /**
+     * @param durations duration of each segment, in seconds
+     * @param startRates rate at the start of each segment, in arrivals per second
+     * @param endRates rate at the end of each segment, in arrivals per second
+     * @throws IllegalArgumentException if there is no segment, or if a duration or rate is negative or not finite
+     */
+    LoadProfile(double[] durations, double[] startRates, double[] endRates) {
+        int segments = durations.length;
+        if (segments == 0 || startRates.length != segments || endRates.length != segments) {
+            throw new IllegalArgumentException("The profile must have at least one segment, with a duration and two rates");
+        }
+        this.startTimes = new double[segments + 1];
+        this.startArrivals = new double[segments + 1];
+        this.startRates = startRates.clone();
+        this.endRates = endRates.clone();
+        for (int i = 0; i < segments; i++) {
+            checkValue("duration", i, durations[i]);
+            checkValue("start rate", i, startRates[i]);
+            checkValue("end rate", i, endRates[i]);
+            startTimes[i + 1] = startTimes[i] + durations[i];
+            startArrivals[i + 1] = startArrivals[i] + (startRates[i] + endRates[i]) / 2 * durations[i];
+        }
+    }
+
+    private static void checkValue(String name, int segment, double value) {
+        if (!(value >= 0) || Double.isInfinite(value)) { // also rejects NaN
+            throw new IllegalArgumentException("Invalid " + name + " " + value + " for segment " + (segment + 1));
+        }
+    }
+
+    /**
+     * @return the duration of the profile, in seconds
+     */
+    double getDuration() {
+        return startTimes[startTimes.length - 1];
+    }
+
+    /**
+     * @param elapsedNanos time since the start of the profile, in nanoseconds
+     * @return the target rate at that time, in arrivals per second
+     */
+    double getRate(long elapsedNanos) {
+        double time = elapsedNanos / NANOS_PER_SECOND;
+        int segment = findSegment(startTimes, time);
+        if (segment < 0) {
+            return startRates[0];
+        }
+        if (segment == endRates.length) {
+            return endRates[segment - 1];
+        }
+        double duration = startTimes[segment + 1] - startTimes[segment];
+        return startRates[segment] + (endRates[segment] - startRates[segment]) * (time - startTimes[segment]) / duration;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTime(long arrival) {
+        double count = arrival;
+        int segment = findSegment(startArrivals, count);
+        int last = endRates.length;
+        if (segment == last) {
+            double rate = endRates[last - 1];
+            if (rate == 0) {
+                return -1;
+            }
+            return toNanos(startTimes[last] + (count - startArrivals[last]) / rate);
+        }
+        // Solves a.t + (b - a).t^2 / 2d = x, in a form which is stable when b is close to a
+        double a = startRates[segment];
+        double slope = (endRates[segment] - a) / (startTimes[segment + 1] - startTimes[segment]);
+        double x = count - startArrivals[segment];
+        double discriminant = Math.max(0, a * a + 2 * slope * x);
+        double time = x == 0 ? 0 : 2 * x / (a + Math.sqrt(discriminant));
+        return toNanos(startTimes[segment] + time);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getArrivals(long elapsedNanos) {
+        double time = elapsedNanos / NANOS_PER_SECOND;
+        int segment = findSegment(startTimes, time);
+        if (segment < 0) {
+            return 0;
+        }
+        int last = endRates.length;
+        double expected;
+        if (segment == last) {
+            expected = startArrivals[last] + endRates[last - 1] * (time - startTimes[last]);
+        } else {
+            double t = time - startTimes[segment];
+            double duration = startTimes[segment + 1] - startTimes[segment];
+            expected = startArrivals[segment] + startRates[segment] * t
+                    + (endRates[segment] - startRates[segment]) * t * t / (2 * duration);
+        }
+        return (long) Math.ceil(expected);
+    }
+
+    private static long toNanos(double seconds) {
+        return Math.round(seconds * NANOS_PER_SECOND);
+    }
+
+    /**
+     * @return the index of the last segment starting at or before the value, or the number of segments
+     *         if the value is after the end, or -1 if it is before the start
+     */
+    private static int findSegment(double[] starts, double value) {
+        int index = Arrays.binarySearch(starts, value);
+        if (index < 0) {
+            index = -index - 2; // insertion point - 1
+        } else {
+            // the segments without duration or arrivals start at the same value as the next one
+            while (index + 1 < starts.length && starts[index + 1] == value) {
+                index++;
+            }
+        }
+        return index;
+    }
+}
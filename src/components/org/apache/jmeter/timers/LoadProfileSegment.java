@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.timers;
+
+import org.apache.jmeter.testelement.AbstractTestElement;
+
+/**
+ * Row of the schedule of a {@link LoadProfileTimer}: during the duration, the target rate
+ * changes linearly from the start rate to the end rate.
+ * @since 3.2
+ */
+public class LoadProfileSegment extends AbstractTestElement {
+    private static final long serialVersionUID = 1;
+
+    // These constants are used both for the JMX file and for the setters/getters
+    public static final String DURATION = "duration"; // $NON-NLS-1$
+
+    public static final String START_RATE = "startRate"; // $NON-NLS-1$
+
+    public static final String END_RATE = "endRate"; // $NON-NLS-1$
+
+    public LoadProfileSegment() {
+        super();
+    }
+
+    /**
+     * @return duration in seconds
+     */
+    public String getDuration() {
+        return getProperty(DURATION).getStringValue();
+    }
+
+    public void setDuration(String duration) {
+        setProperty(DURATION, duration);
+    }
+
+    /**
+     * @return rate at the start of the segment, in samples per second
+     */
+    public String getStartRate() {
+        return getProperty(START_RATE).getStringValue();
+    }
+
+    public void setStartRate(String startRate) {
+        setProperty(START_RATE, startRate);
+    }
+
+    /**
+     * @return rate at the end of the segment, in samples per second
+     */
+    public String getEndRate() {
+        return getProperty(END_RATE).getStringValue();
+    }
+
+    public void setEndRate(String endRate) {
+        setProperty(END_RATE, endRate);
+    }
+}
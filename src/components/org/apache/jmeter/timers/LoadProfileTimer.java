@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.timers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jmeter.testbeans.TestBean;
+import org.apache.jmeter.testelement.AbstractTestElement;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JMeterStopThreadException;
+import org.apache.log.Logger;
+
+/**
+ * Paces the samplers of all the threads using the timer so that they follow a load profile:
+ * a table of segments during which the target rate changes linearly from a start rate to an end rate,
+ * for example to generate steps, ramps or spikes.
+ * <p>
+ * The arrivals of the profile are claimed by the threads from a {@link PacingClock} shared by all the copies of
+ * the timer with the same name, and the timer waits itself until them, as {@link PreciseThroughputTimer} does.
+ * The end rate of the last segment is kept after the end of the profile; if it is 0, the threads are stopped
+ * when there are no more arrivals.
+ * <p>
+ * The current target rate is published in the JMeter property <code>&lt;timer name&gt;.target_rate</code>,
+ * so that thread groups or scripts can start threads when needed, and the achieved rate is logged
+ * and published in <code>&lt;timer name&gt;.achieved_rate</code> every <code>pacing_timer.report_interval</code> seconds.
+ * @since 3.2
+ */
+public class LoadProfileTimer extends AbstractTestElement implements Timer, TestStateListener, TestBean {
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(
+            JMeterUtils.getPropDefault("pacing_timer.report_interval", 10)); // $NON-NLS-1$
+
+    // Minimum interval between the updates of the target_rate property, which is synchronized
+    private static final long TARGET_PUBLISH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Profile and clock shared by the copies of a timer
+     */
+    private static final class SharedProfile {
+        private final LoadProfile profile;
+
+        private final PacingClock clock = new PacingClock();
+
+        private final AtomicLong lastPublished = new AtomicLong(clock.getStartTime() - TARGET_PUBLISH_INTERVAL_NANOS);
+
+        private SharedProfile(LoadProfile profile) {
+            this.profile = profile;
+        }
+
+        private double getTargetRate(long now) {
+            return profile.getRate(now - clock.getStartTime());
+        }
+    }
+
+    // Keyed by timer name
+    private static final ConcurrentMap<String, SharedProfile> sharedProfiles = new ConcurrentHashMap<>();
+
+    private Collection<LoadProfileSegment> segments = new ArrayList<>();
+
+    public LoadProfileTimer() {
+    }
+
+    /**
+     * @return the segments of the profile
+     */
+    public Collection<LoadProfileSegment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * @param segments the segments of the profile
+     */
+    public void setSegments(Collection<LoadProfileSegment> segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * @param timerName name of a load profile timer
+     * @return the current target rate of the timer in samples per second,
+     *         or {@link Double#NaN} if no thread has used the timer in the current test
+     */
+    public static double getTargetRate(String timerName) {
+        SharedProfile shared = sharedProfiles.get(timerName);
+        if (shared == null) {
+            return Double.NaN;
+        }
+        return shared.getTargetRate(System.nanoTime());
+    }
+
+    /**
+     * Waits until the next arrival of the profile.
+     *
+     * @return 0, as the timer has already waited
+     * @throws JMeterStopThreadException if the profile is invalid, or has no more arrivals
+     * @see org.apache.jmeter.timers.Timer#delay()
+     */
+    @Override
+    public long delay() {
+        SharedProfile shared = getSharedProfile();
+        long slot = shared.clock.claim(shared.profile);
+        if (slot == Long.MIN_VALUE) {
+            throw new JMeterStopThreadException("End of the load profile of " + getName());
+        }
+        if (PacingClock.await(slot)) {
+            long now = System.nanoTime();
+            long published = shared.lastPublished.get();
+            if (now - published >= TARGET_PUBLISH_INTERVAL_NANOS && shared.lastPublished.compareAndSet(published, now)) {
+                JMeterUtils.setProperty(getName() + ".target_rate", format(shared.getTargetRate(now))); // $NON-NLS-1$
+            }
+            PacingClock.Report report = shared.clock.released(now, REPORT_INTERVAL_NANOS);
+            if (report != null) {
+                String achieved = format(report.getRate());
+                log.info(getName() + ": " + achieved + " samples/s for a target of "
+                        + format(shared.getTargetRate(now)) + " samples/s over the last "
+                        + TimeUnit.NANOSECONDS.toMillis(report.getEndTime() - report.getStartTime()) + " ms");
+                JMeterUtils.setProperty(getName() + ".achieved_rate", achieved); // $NON-NLS-1$
+            }
+        }
+        return 0;
+    }
+
+    private SharedProfile getSharedProfile() {
+        String key = getName();
+        SharedProfile shared = sharedProfiles.get(key);
+        if (shared == null) {
+            try {
+                shared = new SharedProfile(createProfile());
+            } catch (IllegalArgumentException e) {
+                throw new JMeterStopThreadException("Invalid load profile of " + getName() + ": " + e.getMessage(), e);
+            }
+            SharedProfile previous = sharedProfiles.putIfAbsent(key, shared);
+            if (previous != null) { // We did not replace the entry
+                shared = previous; // so use the existing one
+            }
+        }
+        return shared;
+    }
+
+    private LoadProfile createProfile() {
+        Collection<LoadProfileSegment> rows = getSegments();
+        int count = rows == null ? 0 : rows.size();
+        double[] durations = new double[count];
+        double[] startRates = new double[count];
+        double[] endRates = new double[count];
+        int i = 0;
+        if (rows != null) {
+            for (LoadProfileSegment segment : rows) {
+                durations[i] = parse(segment.getDuration(), i);
+                startRates[i] = parse(segment.getStartRate(), i);
+                endRates[i] = parse(segment.getEndRate(), i);
+                i++;
+            }
+        }
+        LoadProfile profile = new LoadProfile(durations, startRates, endRates);
+        log.info("Load profile of " + getName() + ": " + count + " segments for " + profile.getDuration() + " s");
+        return profile;
+    }
+
+    private static double parse(String value, int segment) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number '" + value + "' for segment " + (segment + 1), e);
+        }
+    }
+
+    // The properties are read by scripts, so they do not depend on the locale
+    private static String format(double rate) {
+        return String.format(Locale.ROOT, "%.1f", Double.valueOf(rate)); // $NON-NLS-1$
+    }
+
+    /**
+     * Get the timer ready to follow the profile from its start in a new test.
+     * <p>
+     * {@inheritDoc}
+     */
+    @Override
+    public void testStarted() {
+        log.debug("Test started - reset load profiles.");
+        sharedProfiles.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testEnded() {
+        //NOOP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testStarted(String host) {
+        testStarted();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testEnded(String host) {
+        //NOOP
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.timers;
+
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+
+import org.apache.jmeter.testbeans.BeanInfoSupport;
+import org.apache.jmeter.testbeans.gui.TableEditor;
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * BeanInfo for the LoadProfileTimer.
+ *
+ */
+public class LoadProfileTimerBeanInfo extends BeanInfoSupport {
+
+    public LoadProfileTimerBeanInfo() {
+        super(LoadProfileTimer.class);
+
+        createPropertyGroup("profile", new String[] { "segments" }); //$NON-NLS-1$ $NON-NLS-2$
+
+        PropertyDescriptor p = property("segments"); //$NON-NLS-1$
+        p.setPropertyEditorClass(TableEditor.class);
+        p.setValue(TableEditor.CLASSNAME, LoadProfileSegment.class.getName());
+        p.setValue(TableEditor.HEADERS, new String[]{
+                JMeterUtils.getResString("load_profile_duration"), //$NON-NLS-1$
+                JMeterUtils.getResString("load_profile_start_rate"), //$NON-NLS-1$
+                JMeterUtils.getResString("load_profile_end_rate")}); //$NON-NLS-1$
+        p.setValue(TableEditor.OBJECT_PROPERTIES, // These are the names of the get/set methods
+                new String[]{LoadProfileSegment.DURATION, LoadProfileSegment.START_RATE, LoadProfileSegment.END_RATE});
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, new ArrayList<>());
+        p.setValue(MULTILINE, Boolean.TRUE);
+    }
+
+}
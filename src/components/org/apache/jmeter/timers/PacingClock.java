@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.timers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * Schedule of the times, in nanoseconds, at which the threads paced by a timer may run their samplers.
+ * <p>
+ * Each thread claims the next slot with an atomic add, so the threads never wait for each other,
+ * then waits until the slot: it parks while the slot is far, and spins for the last
+ * <code>pacing_timer.spin_threshold</code> microseconds, as parking is not precise enough at high rates.
+ * The slots are absolute times, so neither the lateness of the threads nor the rounding of the delays accumulates.
+ * When the threads fall more than {@link #MAX_LAG_NANOS} behind, the schedule restarts from the current time
+ * instead of letting all the late samplers run at once.
+ * <p>
+ * A clock is either used with intervals, when only the current rate is known, or with a {@link Schedule}
+ * giving the time of each arrival.
+ * @since 3.2
+ */
+final class PacingClock {
+
+    static final long MAX_LAG_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final long SPIN_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(
+            JMeterUtils.getPropDefault("pacing_timer.spin_threshold", 200)); // $NON-NLS-1$
+
+    /**
+     * Times at which the samplers may run, numbered from 0
+     */
+    interface Schedule {
+        /**
+         * @param arrival number of the arrival
+         * @return the time of the arrival in nanoseconds from the start of the clock, or -1 if there is none
+         */
+        long getTime(long arrival);
+
+        /**
+         * @param elapsedNanos time from the start of the clock, in nanoseconds
+         * @return the number of arrivals scheduled before that time
+         */
+        long getArrivals(long elapsedNanos);
+    }
+
+    /**
+     * Number of samplers released by a clock during an interval
+     */
+    static final class Report {
+        private final long startTime;
+
+        private final long endTime;
+
+        private final long count;
+
+        private Report(long startTime, long endTime, long count) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.count = count;
+        }
+
+        /**
+         * @return start of the interval, as given by {@link System#nanoTime()}
+         */
+        long getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * @return end of the interval, as given by {@link System#nanoTime()}
+         */
+        long getEndTime() {
+            return endTime;
+        }
+
+        /**
+         * @return number of samplers released per second during the interval
+         */
+        double getRate() {
+            return count * 1e9 / Math.max(1, endTime - startTime);
+        }
+    }
+
+    private final long startTime;
+
+    private final AtomicLong nextSlot;
+
+    private final AtomicLong nextArrival = new AtomicLong();
+
+    private final AtomicLong released = new AtomicLong();
+
+    private final AtomicLong reportStart;
+
+    // only written by the thread which won the report
+    private volatile long releasedAtReportStart;
+
+    PacingClock() {
+        startTime = System.nanoTime();
+        nextSlot = new AtomicLong(startTime);
+        reportStart = new AtomicLong(startTime);
+    }
+
+    /**
+     * @return creation time of the clock, as given by {@link System#nanoTime()}
+     */
+    long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Claims the next slot, and moves the following one intervalNanos later
+     * @param intervalNanos interval between this slot and the next one
+     * @return the time of the slot, as given by {@link System#nanoTime()}
+     */
+    long claim(long intervalNanos) {
+        long now = System.nanoTime();
+        long slot = nextSlot.getAndAdd(intervalNanos);
+        if (slot - now < -MAX_LAG_NANOS
+                // too late: restart the schedule, unless another thread has just claimed a slot
+                && nextSlot.compareAndSet(slot + intervalNanos, now + intervalNanos)) {
+            return now;
+        }
+        return slot;
+    }
+
+    /**
+     * Claims the next arrival of the schedule
+     * @param schedule the schedule, which must be the same for all the claims of this clock
+     * @return the time of the arrival, as given by {@link System#nanoTime()}, or {@link Long#MIN_VALUE}
+     *         if the schedule has no more arrivals
+     */
+    long claim(Schedule schedule) {
+        long now = System.nanoTime() - startTime;
+        long arrival = nextArrival.getAndIncrement();
+        long time = schedule.getTime(arrival);
+        if (time < 0) {
+            return Long.MIN_VALUE;
+        }
+        if (time - now < -MAX_LAG_NANOS) {
+            // too late: skip the arrivals already due, unless another thread has just claimed an arrival
+            long next = schedule.getArrivals(now);
+            if (next > arrival + 1 && nextArrival.compareAndSet(arrival + 1, next + 1)) {
+                time = schedule.getTime(next);
+                if (time < 0) {
+                    return Long.MIN_VALUE;
+                }
+            }
+        }
+        return startTime + time;
+    }
+
+    /**
+     * Waits until the deadline, parking then spinning
+     * @param deadline time given by {@link System#nanoTime()}
+     * @return false if the thread was interrupted before the deadline
+     */
+    static boolean await(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > SPIN_THRESHOLD_NANOS) {
+            LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+        while (deadline - System.nanoTime() > 0) {
+            Thread.yield();
+        }
+        return true;
+    }
+
+    /**
+     * Counts a released sampler
+     * @param now current time, as given by {@link System#nanoTime()}
+     * @param reportIntervalNanos duration of the report intervals, 0 for no reports
+     * @return the report of the interval which has just ended, to be published by the caller, or null
+     */
+    Report released(long now, long reportIntervalNanos) {
+        long count = released.incrementAndGet();
+        if (reportIntervalNanos > 0) {
+            long start = reportStart.get();
+            if (now - start >= reportIntervalNanos && reportStart.compareAndSet(start, now)) {
+                long previous = releasedAtReportStart;
+                releasedAtReportStart = count;
+                return new Report(start, now, count - previous);
+            }
+        }
+        return null;
+    }
+}
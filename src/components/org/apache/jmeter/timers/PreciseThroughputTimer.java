@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.timers;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jmeter.testbeans.TestBean;
+import org.apache.jmeter.testelement.AbstractTestElement;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.threads.AbstractThreadGroup;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Paces the samplers under its influence so that they start at a constant rate, with a precision
+ * of a few microseconds, which the millisecond delays of {@link ConstantThroughputTimer} cannot reach
+ * at thousands of samples per second.
+ * <p>
+ * The start times are given by a {@link PacingClock} shared by the threads of the scope. As the
+ * delay of a {@link Timer} is in milliseconds, the timer waits itself until the start time
+ * and returns a delay of 0, as {@link SyncTimer} does.
+ * <p>
+ * When the scope is shared, the rate achieved by the threads is logged every
+ * <code>pacing_timer.report_interval</code> seconds, and published in the JMeter properties
+ * <code>&lt;timer name&gt;.target_rate</code> and <code>&lt;timer name&gt;.achieved_rate</code>.
+ * @since 3.2
+ */
+public class PreciseThroughputTimer extends AbstractTestElement implements Timer, TestStateListener, TestBean {
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(
+            JMeterUtils.getPropDefault("pacing_timer.report_interval", 10)); // $NON-NLS-1$
+
+    /**
+     * Threads which share the rate
+     */
+    public enum Scope {
+        ThisThreadOnly("scope.1"),
+        AllThreadsInCurrentThreadGroup("scope.2"),
+        AllThreads("scope.3"),
+        ;
+
+        private final String propertyName; // The property name to be used to look up the display string
+
+        Scope(String name) {
+            this.propertyName = name;
+        }
+
+        @Override
+        public String toString() {
+            return propertyName;
+        }
+    }
+
+    // Clocks of the shared scopes, keyed by timer name, and by thread group for AllThreadsInCurrentThreadGroup
+    private static final ConcurrentMap<Object, PacingClock> sharedClocks = new ConcurrentHashMap<>();
+
+    private transient PacingClock threadClock;
+
+    private Scope scope = Scope.ThisThreadOnly;
+
+    /**
+     * Desired throughput, in samples per second.
+     */
+    private double throughput;
+
+    public PreciseThroughputTimer() {
+    }
+
+    /**
+     * @param throughput desired rate, in samples per second
+     */
+    public void setThroughput(double throughput) {
+        this.throughput = throughput;
+    }
+
+    /**
+     * @return the rate at which samples should occur, in samples per second
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public int getScope() {
+        return scope.ordinal();
+    }
+
+    public void setScope(int scope) {
+        this.scope = Scope.values()[scope];
+    }
+
+    /**
+     * Waits until the next start time of the scope.
+     *
+     * @return 0, as the timer has already waited
+     * @see org.apache.jmeter.timers.Timer#delay()
+     */
+    @Override
+    public long delay() {
+        // N.B. we fetch the throughput each time, as it may vary during a test
+        double rate = getThroughput();
+        if (rate <= 0) {
+            return 0;
+        }
+        PacingClock clock = getClock();
+        long slot = clock.claim(Math.round(NANOS_PER_SECOND / rate));
+        if (PacingClock.await(slot) && scope != Scope.ThisThreadOnly) {
+            PacingClock.Report report = clock.released(System.nanoTime(), REPORT_INTERVAL_NANOS);
+            if (report != null) {
+                publish(report, rate);
+            }
+        }
+        return 0;
+    }
+
+    private PacingClock getClock() {
+        if (scope == Scope.ThisThreadOnly) {
+            if (threadClock == null) {
+                threadClock = new PacingClock();
+            }
+            return threadClock;
+        }
+        Object key = getName();
+        if (scope == Scope.AllThreadsInCurrentThreadGroup) {
+            AbstractThreadGroup group = JMeterContextService.getContext().getThreadGroup();
+            key = Arrays.asList(group, key);
+        }
+        PacingClock clock = sharedClocks.get(key);
+        if (clock == null) {
+            clock = new PacingClock();
+            PacingClock previous = sharedClocks.putIfAbsent(key, clock);
+            if (previous != null) { // We did not replace the entry
+                clock = previous; // so use the existing one
+            }
+        }
+        return clock;
+    }
+
+    void publish(PacingClock.Report report, double targetRate) {
+        // The properties are read by scripts, so they do not depend on the locale
+        String achieved = String.format(Locale.ROOT, "%.1f", Double.valueOf(report.getRate())); // $NON-NLS-1$
+        String target = String.format(Locale.ROOT, "%.1f", Double.valueOf(targetRate)); // $NON-NLS-1$
+        log.info(getName() + ": " + achieved + " samples/s for a target of " + target + " samples/s over the last "
+                + TimeUnit.NANOSECONDS.toMillis(report.getEndTime() - report.getStartTime()) + " ms");
+        JMeterUtils.setProperty(getName() + ".achieved_rate", achieved); // $NON-NLS-1$
+        JMeterUtils.setProperty(getName() + ".target_rate", target); // $NON-NLS-1$
+    }
+
+    /**
+     * Get the timer ready to compute delays for a new test.
+     * <p>
+     * {@inheritDoc}
+     */
+    @Override
+    public void testStarted() {
+        log.debug("Test started - reset pacing clocks.");
+        sharedClocks.clear();
+        threadClock = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testEnded() {
+        //NOOP
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testStarted(String host) {
+        testStarted();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testEnded(String host) {
+        //NOOP
+    }
+}
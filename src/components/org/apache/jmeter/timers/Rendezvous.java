@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.timers;
+
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Cyclic rendezvous of a number of parties, which scales to thousands of threads.
+ * <p>
+ * The arrivals are counted by a combining tree: the parties are split into batches, each batch being a leaf
+ * with its own counter, and only the party which fills a leaf increments the counter of the root.
+ * The threads start from different leaves, so they seldom update the same counter.
+ * <p>
+ * The party which fills the last leaf trips the rendezvous, and only wakes up the first party of each batch.
+ * That party waits until the release time of its batch, the batches being evenly spread over the release spread,
+ * then wakes up the other parties of its batch. So the threads are woken up by many threads at once,
+ * and the release can be staggered so that thousands of threads do not compete for the CPU at the same time.
+ * <p>
+ * A party which times out or is interrupted breaks the current generation, releasing all its parties at once,
+ * as {@link java.util.concurrent.CyclicBarrier} does. Each generation is a new tree, so the rendezvous never
+ * needs to be reset.
+ * @since 3.2
+ */
+final class Rendezvous {
+
+    /**
+     * Simultaneity achieved by a generation of the rendezvous
+     */
+    interface Listener {
+        /**
+         * @param arrivalSkewNanos time between the first and the last arrival
+         * @param releaseSkewNanos maximum time between the scheduled release of a batch and the wake up
+         *            of its last party, which does not include the release spread
+         */
+        void released(long arrivalSkewNanos, long releaseSkewNanos);
+    }
+
+    // Decided once per generation, by the party which trips it or breaks it
+    private static final class Release {
+        private final long start;
+
+        private final long spread;
+
+        private final boolean broken;
+
+        private Release(long start, long spread, boolean broken) {
+            this.start = start;
+            this.spread = spread;
+            this.broken = broken;
+        }
+    }
+
+    private static final class Leaf {
+        private final int index;
+
+        private final int capacity;
+
+        private final AtomicInteger arrived = new AtomicInteger();
+
+        private final AtomicReferenceArray<Thread> waiters;
+
+        private volatile boolean released;
+
+        private final AtomicInteger awake = new AtomicInteger();
+
+        private final AtomicLong lastWakeup = new AtomicLong();
+
+        private Leaf(int index, int capacity) {
+            this.index = index;
+            this.capacity = capacity;
+            this.waiters = new AtomicReferenceArray<>(capacity);
+        }
+
+        /**
+         * @return the position claimed in the leaf, or -1 if it is full
+         */
+        private int claim() {
+            while (true) {
+                int count = arrived.get();
+                if (count >= capacity) {
+                    return -1;
+                }
+                if (arrived.compareAndSet(count, count + 1)) {
+                    return count;
+                }
+            }
+        }
+    }
+
+    private final class Generation {
+        private final Leaf[] leaves;
+
+        private final AtomicInteger fullLeaves = new AtomicInteger();
+
+        private final AtomicReference<Release> release = new AtomicReference<>();
+
+        private final AtomicInteger started = new AtomicInteger();
+
+        private volatile long firstArrival;
+
+        private final AtomicInteger awakeLeaves = new AtomicInteger();
+
+        private Generation() {
+            leaves = new Leaf[(parties + batchSize - 1) / batchSize];
+            for (int i = 0; i < leaves.length; i++) {
+                leaves[i] = new Leaf(i, Math.min(batchSize, parties - i * batchSize));
+            }
+        }
+
+        private long getReleaseTime(Release decided, Leaf leaf) {
+            if (leaves.length == 1) {
+                return decided.start;
+            }
+            return decided.start + decided.spread * leaf.index / (leaves.length - 1);
+        }
+    }
+
+    private final int parties;
+
+    private final int batchSize;
+
+    private final long spreadNanos;
+
+    private final Listener listener;
+
+    private final AtomicReference<Generation> current;
+
+    /**
+     * @param parties number of parties of each generation
+     * @param batchSize number of parties of each batch
+     * @param spreadNanos time between the release of the first batch and the release of the last one
+     * @param listener notified of the simultaneity of each generation which was not broken, may be null
+     */
+    Rendezvous(int parties, int batchSize, long spreadNanos, Listener listener) {
+        if (parties < 1 || batchSize < 1 || spreadNanos < 0) {
+            throw new IllegalArgumentException("Invalid rendezvous of " + parties + " parties in batches of "
+                    + batchSize + " over " + spreadNanos + " ns");
+        }
+        this.parties = parties;
+        this.batchSize = batchSize;
+        this.spreadNanos = spreadNanos;
+        this.listener = listener;
+        this.current = new AtomicReference<>(new Generation());
+    }
+
+    /**
+     * @return the number of parties of each generation
+     */
+    int getParties() {
+        return parties;
+    }
+
+    /**
+     * Waits until all the parties have arrived, and the batch of this party is released
+     * @param timeoutNanos maximum time to wait for the other parties, 0 to wait without timeout
+     * @return true if all the parties arrived, false if the generation was broken by another party,
+     *         or if this party was interrupted, in which case its interrupted status is kept
+     * @throws TimeoutException if this party timed out and broke the generation
+     */
+    boolean await(long timeoutNanos) throws TimeoutException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        Generation generation;
+        Leaf leaf;
+        int position;
+        long start = Thread.currentThread().getId();
+        while (true) {
+            generation = current.get();
+            if (generation.started.get() == 0 && generation.started.compareAndSet(0, 1)) {
+                generation.firstArrival = System.nanoTime();
+            }
+            Leaf[] leaves = generation.leaves;
+            leaf = null;
+            position = -1;
+            if (generation.release.get() == null) {
+                for (int i = 0; i < leaves.length && position < 0; i++) {
+                    leaf = leaves[(int) ((start + i) % leaves.length)];
+                    position = leaf.claim();
+                }
+            }
+            if (position >= 0) {
+                break;
+            }
+            // The generation is complete or broken, and the next one is being installed
+            Thread.yield();
+        }
+        leaf.waiters.set(position, Thread.currentThread());
+        if (position == leaf.capacity - 1
+                && generation.fullLeaves.incrementAndGet() == generation.leaves.length) {
+            decide(generation, new Release(System.nanoTime(), spreadNanos, false));
+        }
+        boolean timedOut = false;
+        Release decided;
+        if (position == 0) {
+            // First party of the batch: waits for the rendezvous, then releases the batch
+            while ((decided = generation.release.get()) == null) {
+                if (!park(generation, timeoutNanos, deadline)) {
+                    timedOut = !Thread.currentThread().isInterrupted();
+                }
+            }
+            PacingClock.await(generation.getReleaseTime(decided, leaf));
+            leaf.lastWakeup.set(System.nanoTime());
+            leaf.released = true;
+            for (int i = 1; i < leaf.capacity; i++) {
+                Thread waiter = leaf.waiters.get(i);
+                if (waiter != null) {
+                    LockSupport.unpark(waiter);
+                }
+            }
+        } else {
+            while (!leaf.released) {
+                if (generation.release.get() != null) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        break; // do not wait for the release of the batch
+                    }
+                    LockSupport.park(this);
+                } else if (!park(generation, timeoutNanos, deadline)) {
+                    timedOut = !Thread.currentThread().isInterrupted();
+                }
+            }
+            decided = generation.release.get();
+        }
+        boolean interrupted = Thread.currentThread().isInterrupted();
+        if (!decided.broken && !interrupted) {
+            awake(generation, leaf);
+        }
+        if (timedOut) {
+            throw new TimeoutException();
+        }
+        return !decided.broken && !interrupted;
+    }
+
+    /**
+     * Parks until the generation is decided or the deadline
+     * @return false if the generation was broken by this party, as it timed out or was interrupted
+     */
+    private boolean park(Generation generation, long timeoutNanos, long deadline) {
+        long remaining = deadline - System.nanoTime();
+        if (timeoutNanos > 0 && remaining <= 0 || Thread.currentThread().isInterrupted()) {
+            return !decide(generation, new Release(System.nanoTime(), 0, true));
+        }
+        if (timeoutNanos > 0) {
+            LockSupport.parkNanos(this, remaining);
+        } else {
+            LockSupport.park(this);
+        }
+        return true;
+    }
+
+    /**
+     * Trips or breaks the generation, unless it is already decided
+     * @return true if the release was decided by this call
+     */
+    private boolean decide(Generation generation, Release decided) {
+        if (!generation.release.compareAndSet(null, decided)) {
+            return false;
+        }
+        current.compareAndSet(generation, new Generation());
+        for (Leaf leaf : generation.leaves) {
+            Thread first = leaf.waiters.get(0);
+            if (first != null) {
+                LockSupport.unpark(first);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the wake up of a party, and notifies the listener once all the parties of the generation are awake
+     */
+    private void awake(Generation generation, Leaf leaf) {
+        updateLast(leaf.lastWakeup, System.nanoTime());
+        if (leaf.awake.incrementAndGet() < leaf.capacity) {
+            return;
+        }
+        // last party of the batch
+        if (generation.awakeLeaves.incrementAndGet() < generation.leaves.length || listener == null) {
+            return;
+        }
+        // last batch of the generation
+        Release decided = generation.release.get();
+        long releaseSkew = 0;
+        for (Leaf each : generation.leaves) {
+            // Each batch is compared to its own release time, so the spread of the releases is not counted
+            // (the times are compared by difference, as System.nanoTime() may overflow)
+            releaseSkew = Math.max(releaseSkew, each.lastWakeup.get() - generation.getReleaseTime(decided, each));
+        }
+        listener.released(decided.start - generation.firstArrival, releaseSkew);
+    }
+
+    private static void updateLast(AtomicLong last, long time) {
+        long value;
+        while (time - (value = last.get()) > 0 && !last.compareAndSet(value, time)) {
+            // retry
+        }
+    }
+}
@@ -19,16 +19,17 @@
 package org.apache.jmeter.timers;
 
 import java.io.Serializable;
-import java.util.concurrent.BrokenBarrierException;
-import java.util.concurrent.CyclicBarrier;
+import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.jmeter.testbeans.TestBean;
 import org.apache.jmeter.testelement.AbstractTestElement;
 import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jmeter.testelement.ThreadListener;
 import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 
@@ -36,86 +37,72 @@ import org.apache.log.Logger;
  * The purpose of the SyncTimer is to block threads until X number of threads
  * have been blocked, and then they are all released at once. A SyncTimer can
  * thus create large instant loads at various points of the test plan.
- *
+ * <p>
+ * The threads can be released in batches spread over a given time. The time between the first and the last
+ * arrival is published in the property <code>&lt;timer name&gt;.arrival_skew</code>, and the maximum delay
+ * between the scheduled release of a batch and the wake up of its last thread, which does not include
+ * the release spread, in the property <code>&lt;timer name&gt;.release_skew</code>.
  */
 public class SyncTimer extends AbstractTestElement implements Timer, Serializable, TestBean, TestStateListener, ThreadListener {
     private static final Logger LOGGER = LoggingManager.getLoggerForClass();
 
+    // Number of threads released by each batch, also used to count the arrivals without contention
+    private static final int BATCH_SIZE = JMeterUtils.getPropDefault("synctimer.batch_size", 32); // $NON-NLS-1$
+
     /**
-     * Wrapper to {@link CyclicBarrier} to allow lazy init of CyclicBarrier when SyncTimer is configured with 0
+     * Wrapper to {@link Rendezvous} to allow lazy init of the Rendezvous when SyncTimer is configured with 0
      */
     private static class BarrierWrapper implements Cloneable {
 
-        private CyclicBarrier barrier;
+        private final String name;
+
+        private final long spreadNanos;
+
+        private final AtomicReference<Rendezvous> rendezvous = new AtomicReference<>();
 
         /**
-         *
+         * @param name Name of the timer
+         * @param spreadNanos Time between the release of the first and the last batch of parties
          */
-        public BarrierWrapper() {
-            this.barrier = null;
+        public BarrierWrapper(String name, long spreadNanos) {
+            this.name = name;
+            this.spreadNanos = spreadNanos;
         }
 
         /**
+         * @param name Name of the timer
          * @param parties Number of parties
+         * @param spreadNanos Time between the release of the first and the last batch of parties
          */
-        public BarrierWrapper(int parties) {
-            this.barrier = new CyclicBarrier(parties);
+        public BarrierWrapper(String name, int parties, long spreadNanos) {
+            this(name, spreadNanos);
+            setup(parties);
         }
 
         /**
-         * Synchronized is required to ensure CyclicBarrier is initialized only once per Thread Group
+         * Compare and set ensures the Rendezvous is initialized only once per Thread Group
          * @param parties Number of parties
          */
-        public synchronized void setup(int parties) {
-            if(this.barrier== null) {
-                this.barrier = new CyclicBarrier(parties);
+        public void setup(int parties) {
+            if (rendezvous.get() == null) {
+                rendezvous.compareAndSet(null,
+                        new Rendezvous(parties, BATCH_SIZE, spreadNanos, new SkewPublisher(name)));
             }
         }
 
-
-        /**
-         * Wait until all threads called await on this timer
-         * 
-         * @return The arrival index of the current thread
-         * @throws InterruptedException
-         *             when interrupted while waiting, or the interrupted status
-         *             is set on entering this method
-         * @throws BrokenBarrierException
-         *             if the barrier is reset while waiting or broken on
-         *             entering or while waiting
-         * @see java.util.concurrent.CyclicBarrier#await()
-         */
-        public int await() throws InterruptedException, BrokenBarrierException{
-            return barrier.await();
-        }
-        
         /**
-         * Wait until all threads called await on this timer
-         * 
-         * @param timeout
-         *            The timeout in <code>timeUnit</code> units
-         * @param timeUnit
-         *            The time unit for the <code>timeout</code>
-         * @return The arrival index of the current thread
-         * @throws InterruptedException
-         *             when interrupted while waiting, or the interrupted status
-         *             is set on entering this method
-         * @throws BrokenBarrierException
-         *             if the barrier is reset while waiting or broken on
-         *             entering or while waiting
+         * Wait until all threads called await on this timer, and the batch of the current thread is released
+         *
+         * @param timeoutNanos
+         *            The timeout in nanoseconds, 0 for no timeout
+         * @return true if all threads arrived, false if another thread timed out
+         *         or the current thread was interrupted
          * @throws TimeoutException
          *             if the specified time elapses
-         * @see java.util.concurrent.CyclicBarrier#await()
-         */
-        public int await(long timeout, TimeUnit timeUnit) throws InterruptedException, BrokenBarrierException, TimeoutException {
-            return barrier.await(timeout, timeUnit);
-        }
-
-        /**
-         * @see java.util.concurrent.CyclicBarrier#reset()
+         * @see Rendezvous#await(long)
          */
-        public void reset() {
-            barrier.reset();
+        public boolean await(long timeoutNanos) throws TimeoutException {
+            return rendezvous.get().await(timeoutNanos);
         }
 
         /**
@@ -125,8 +112,8 @@ public class SyncTimer extends AbstractTestElement implements Timer, Serializabl
         protected Object clone()  {
             BarrierWrapper barrierWrapper=  null;
             try {
+                // the AtomicReference is shared by the clones
                 barrierWrapper = (BarrierWrapper) super.clone();
-                barrierWrapper.barrier = this.barrier;
             } catch (CloneNotSupportedException e) {
                 //Cannot happen
             }
@@ -134,6 +121,30 @@ public class SyncTimer extends AbstractTestElement implements Timer, Serializabl
         }
     }
 
+    /**
+     * Publishes the simultaneity achieved by each release
+     */
+    private static class SkewPublisher implements Rendezvous.Listener {
+        private final String name;
+
+        private SkewPublisher(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void released(long arrivalSkewNanos, long releaseSkewNanos) {
+            // The properties are read by scripts, so they do not depend on the locale
+            String arrivalSkew = String.format(Locale.ROOT, "%.3f", Double.valueOf(arrivalSkewNanos / 1e6)); // $NON-NLS-1$
+            String releaseSkew = String.format(Locale.ROOT, "%.3f", Double.valueOf(releaseSkewNanos / 1e6)); // $NON-NLS-1$
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("SyncTimer " + name + " released users arrived within " + arrivalSkew
+                        + "ms, at most " + releaseSkew + "ms late");
+            }
+            JMeterUtils.setProperty(name + ".arrival_skew", arrivalSkew); // $NON-NLS-1$
+            JMeterUtils.setProperty(name + ".release_skew", releaseSkew); // $NON-NLS-1$
+        }
+    }
+
     private static final long serialVersionUID = 2;
 
     private transient BarrierWrapper barrier;
@@ -142,6 +153,8 @@ public class SyncTimer extends AbstractTestElement implements Timer, Serializabl
     
     private long timeoutInMs;
 
+    private long releaseSpreadInMs;
+
     // Ensure transient object is created by the server
     private Object readResolve(){
         createBarrier();
@@ -169,24 +182,13 @@ public class SyncTimer extends AbstractTestElement implements Timer, Serializabl
     @Override
     public long delay() {
         if(getGroupSize()>=0) {
-            int arrival = 0;
+            if(timeoutInMs < 0) {
+                throw new IllegalArgumentException("Negative value for timeout:"+timeoutInMs+" in Synchronizing Timer "+getName());
+            }
             try {
-                if(timeoutInMs==0) {
-                    arrival = this.barrier.await();                    
-                } else if(timeoutInMs > 0){
-                    arrival = this.barrier.await(timeoutInMs, TimeUnit.MILLISECONDS);
-                } else {
-                    throw new IllegalArgumentException("Negative value for timeout:"+timeoutInMs+" in Synchronizing Timer "+getName());
-                }
-            } catch (InterruptedException | BrokenBarrierException e) {
-                return 0;
+                this.barrier.await(TimeUnit.MILLISECONDS.toNanos(timeoutInMs));
             } catch (TimeoutException e) {
                 LOGGER.warn("SyncTimer "+ getName() + " timeouted waiting for users after:"+getTimeoutInMs()+"ms");
-                return 0;
-            } finally {
-                if(arrival == 0) {
-                    barrier.reset();
-                }
             }
         }
         return 0;
@@ -240,11 +242,12 @@ public class SyncTimer extends AbstractTestElement implements Timer, Serializabl
      *
      */
     private void createBarrier() {
+        long spreadNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, getReleaseSpreadInMs()));
         if(getGroupSize() == 0) {
             // Lazy init
-            this.barrier = new BarrierWrapper();
+            this.barrier = new BarrierWrapper(getName(), spreadNanos);
         } else {
-            this.barrier = new BarrierWrapper(getGroupSize());
+            this.barrier = new BarrierWrapper(getName(), getGroupSize(), spreadNanos);
         }
     }
 
@@ -252,7 +255,7 @@ public class SyncTimer extends AbstractTestElement implements Timer, Serializabl
     public void threadStarted() {
         if(getGroupSize() == 0) {
             int numThreadsInGroup = JMeterContextService.getContext().getThreadGroup().getNumThreads();
-            // Unique Barrier creation ensured by synchronized setup
+            // Unique Rendezvous creation ensured by compare and set in setup
             this.barrier.setup(numThreadsInGroup);
         }
     }
@@ -275,4 +278,18 @@ public class SyncTimer extends AbstractTestElement implements Timer, Serializabl
     public void setTimeoutInMs(long timeoutInMs) {
         this.timeoutInMs = timeoutInMs;
     }
+
+    /**
+     * @return the time between the release of the first and the last batch of threads
+     */
+    public long getReleaseSpreadInMs() {
+        return releaseSpreadInMs;
+    }
+
+    /**
+     * @param releaseSpreadInMs the time between the release of the first and the last batch of threads
+     */
+    public void setReleaseSpreadInMs(long releaseSpreadInMs) {
+        this.releaseSpreadInMs = releaseSpreadInMs;
+    }
 }
@@ -27,7 +27,7 @@ public class SyncTimerBeanInfo extends BeanInfoSupport {
     public SyncTimerBeanInfo() {
         super(SyncTimer.class);
 
-        createPropertyGroup("grouping", new String[] { "groupSize", "timeoutInMs" });
+        createPropertyGroup("grouping", new String[] { "groupSize", "timeoutInMs", "releaseSpreadInMs" });
 
         PropertyDescriptor p = property("groupSize");
         p.setValue(NOT_UNDEFINED, Boolean.TRUE);
@@ -37,6 +37,10 @@ public class SyncTimerBeanInfo extends BeanInfoSupport {
         p.setValue(NOT_UNDEFINED, Boolean.TRUE);
         p.setValue(DEFAULT, Long.valueOf(0));
 
+        p = property("releaseSpreadInMs");
+        p.setValue(NOT_UNDEFINED, Boolean.TRUE);
+        p.setValue(DEFAULT, Long.valueOf(0));
+
     }
 
 }
@@ -44,7 +44,7 @@ public class JSR223Listener extends JSR223TestElement
     public void sampleOccurred(SampleEvent event) {
         try {
             ScriptEngine scriptEngine = getScriptEngine();
-            Bindings bindings = scriptEngine.createBindings();
+            Bindings bindings = getBindings(scriptEngine);
             bindings.put("sampleEvent", event);
             bindings.put("sampleResult", event.getResult());
             processFileOrScript(scriptEngine, bindings);
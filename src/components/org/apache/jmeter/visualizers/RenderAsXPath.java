@@ -23,9 +23,7 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -51,7 +49,6 @@ import org.apache.jmeter.util.XPathUtil;
 import org.apache.jorphan.gui.GuiUtils;
 import org.apache.jorphan.gui.JLabeledTextField;
 import org.apache.jorphan.logging.LoggingManager;
-import org.apache.jorphan.util.JOrphanUtils;
 import org.apache.log.Logger;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
@@ -167,14 +164,9 @@ public class RenderAsXPath implements ResultRenderer, ActionListener {
       // NOTE: responseData encoding is server specific
       //       Therefore we do byte -> unicode -> byte conversion
       //       to ensure UTF-8 encoding as required by XPathUtil
-      // convert unicode String -> UTF-8 bytes
-      byte[] utf8data = unicodeData.getBytes(StandardCharsets.UTF_8);
-      ByteArrayInputStream in = new ByteArrayInputStream(utf8data);
-      boolean isXML = JOrphanUtils.isXML(utf8data);
-      // this method assumes UTF-8 input data
-      return XPathUtil.makeDocument(in,false,false,extractor.useNameSpace(),
+      return XPathUtil.getDocument(unicodeData,false,false,extractor.useNameSpace(),
               extractor.isTolerant(),extractor.isQuiet(),extractor.showWarnings(),
-              extractor.reportErrors(),isXML, extractor.isDownloadDTDs());
+              extractor.reportErrors(), extractor.isDownloadDTDs());
     }
 
 
@@ -20,6 +20,8 @@ package org.apache.jmeter.visualizers.backend;
 
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.jmeter.control.TransactionController;
+import org.apache.jmeter.samplers.AggregatedSampleResult;
+import org.apache.jmeter.samplers.ResponseTimeHistogram;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.util.JMeterUtils;
 
@@ -53,10 +55,11 @@ public class SamplerMetric {
      * @param result {@link SampleResult} to be used
      */
     public synchronized void add(SampleResult result) {
-        if(result.isSuccessful()) {
-            successes+=result.getSampleCount()-result.getErrorCount();
-        } else {
-            failures+=result.getErrorCount();
+        successes+=result.getSampleCount()-result.getErrorCount();
+        failures+=result.getErrorCount();
+        if (result instanceof AggregatedSampleResult) {
+            addAggregated((AggregatedSampleResult) result);
+            return;
         }
         long time = result.getTime();
         allResponsesStats.addValue(time);
@@ -70,6 +73,40 @@ public class SamplerMetric {
         addHits(result);
     }
 
+    /**
+     * Add the times of the samples of an aggregated result, keeping at most
+     * about SLIDING_WINDOW_SIZE values with the same distribution
+     * @param result {@link AggregatedSampleResult}
+     */
+    private void addAggregated(AggregatedSampleResult result) {
+        ResponseTimeHistogram all = result.getHistogram();
+        ResponseTimeHistogram errors = result.getErrorHistogram();
+        long total = all.getTotalCount();
+        for (int i = 0; i < all.getBucketCount(); i++) {
+            long allCount = all.getCount(i);
+            if (allCount == 0) {
+                continue;
+            }
+            long koCount = i < errors.getBucketCount() ? errors.getCount(i) : 0;
+            double time = ResponseTimeHistogram.getBucketValue(i);
+            addValues(allResponsesStats, time, allCount, total);
+            addValues(okResponsesStats, time, allCount - koCount, total);
+            addValues(koResponsesStats, time, koCount, total);
+        }
+        hits += result.getSampleCount();
+    }
+
+    private static void addValues(DescriptiveStatistics stats, double value, long count, long total) {
+        if (count == 0) {
+            return;
+        }
+        // keep at least one value so that the extremes are not lost
+        long scaled = Math.max(1L, Math.min(count, Math.round((double) count * SLIDING_WINDOW_SIZE / total)));
+        for (long i = 0; i < scaled; i++) {
+            stats.addValue(value);
+        }
+    }
+
     /**
      * Compute hits from res
      * @param res {@link SampleResult}
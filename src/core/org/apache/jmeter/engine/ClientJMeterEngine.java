@@ -25,6 +25,7 @@ import java.rmi.NotBoundException;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.rmi.server.RemoteObject;
+import java.util.List;
 import java.util.Properties;
 
 import org.apache.jmeter.services.FileServer;
@@ -48,6 +49,17 @@ public class ClientJMeterEngine implements JMeterEngine {
 
     private final String host;
 
+    // Data files to send to the server, null if they are not sent
+    private DataFileBundle dataFiles;
+
+    // Position of the engine among the ones started together, to partition the data sets
+    private int engineIndex = 0;
+
+    private int engineCount = 1;
+
+    // Token returned by the server which owns the prepared test, passed back to the following calls
+    private String owner;
+
     private static RemoteJMeterEngine getEngine(String h) throws MalformedURLException, RemoteException,
             NotBoundException {
        final String name = "//" + h + "/" + RemoteJMeterEngineImpl.JMETER_ENGINE_RMI_NAME; // $NON-NLS-1$ $NON-NLS-2$
@@ -92,29 +104,48 @@ public class ClientJMeterEngine implements JMeterEngine {
     public void reset() {
         try {
             try {
-                remote.rreset();
+                resetRemote();
             } catch (java.rmi.ConnectException e) {
                 log.info("Retry reset after: "+e);
                 remote = getEngine(host);
-                remote.rreset();
+                resetRemote();
             }
         } catch (Exception ex) {
             log.error("Failed to reset remote engine", ex); // $NON-NLS-1$
         }
     }
 
+    private void resetRemote() throws RemoteException {
+        if (owner != null) {
+            remote.rreset(owner);
+        } else {
+            remote.rreset();
+        }
+    }
+
     @Override
     public void runTest() throws JMeterEngineException {
         log.info("running clientengine run method");
-        
+        prepareTest();
+        startTest(0);
+    }
+
+    /**
+     * Sends the test plan, the properties and the data files to the server
+     * @throws JMeterEngineException if the test could not be sent
+     */
+    void prepareTest() throws JMeterEngineException {
         // See https://bz.apache.org/bugzilla/show_bug.cgi?id=55510
         JMeterContextService.clearTotalThreads();
         HashTree testTree = test;
 
-        synchronized(testTree) {
-            testTree.traverse(new PreCompiler(true));  // limit the changes to client only test elements
-            testTree.traverse(new TurnElementsOn());
-            testTree.traverse(new ConvertListeners());
+        // The engines are prepared in parallel, but their trees may share objects
+        synchronized(LOCK) {
+            synchronized(testTree) {
+                testTree.traverse(new PreCompiler(true));  // limit the changes to client only test elements
+                testTree.traverse(new TurnElementsOn());
+                testTree.traverse(new ConvertListeners());
+            }
         }
 
         String methodName="unknown";
@@ -127,25 +158,35 @@ public class ClientJMeterEngine implements JMeterEngine {
             */
             File baseDirRelative = FileServer.getFileServer().getBaseDirRelative();
             String scriptName = FileServer.getFileServer().getScriptName();
+            methodName="rconfigure()";
+            byte[] testPlan;
             synchronized(LOCK)
             {
-                methodName="rconfigure()";
-                remote.rconfigure(testTree, host, baseDirRelative, scriptName);
+                testPlan = RemoteTestPlan.encode(testTree);
             }
-            log.info("sent test to " + host + " basedir='"+baseDirRelative+"'"); // $NON-NLS-1$
+            // Only the serialisation needs the lock, the test plans are sent to the servers in parallel
+            owner = remote.rconfigure(testPlan, host, baseDirRelative, scriptName, engineIndex, engineCount);
+            log.info("sent test of " + testPlan.length + " bytes to " + host + " basedir='"+baseDirRelative+"'"); // $NON-NLS-1$
             if(savep == null) {
                 savep = new Properties();
             }
             log.info("Sending properties "+savep);
             try {
                 methodName="rsetProperties()";
-                remote.rsetProperties(savep);
+                remote.rsetProperties(owner, savep);
             } catch (RemoteException e) {
                 log.warn("Could not set properties: " + e.toString());
             }
-            methodName="rrunTest()";
-            remote.rrunTest();
-            log.info("sent run command to "+ host);
+            if (dataFiles != null) {
+                methodName="rgetMissingFiles()";
+                List<String> missingFiles = remote.rgetMissingFiles(owner, dataFiles.getHashes());
+                if (!missingFiles.isEmpty()) {
+                    methodName="rsendFiles()";
+                    remote.rsendFiles(owner, dataFiles.getCompressedContents(missingFiles));
+                }
+                log.info("sent " + missingFiles.size() + " of " + dataFiles.getHashes().size()
+                        + " data files to " + host);
+            }
         } catch (IllegalStateException ex) {
             log.error("Error in "+methodName+" method "+ex); // $NON-NLS-1$ $NON-NLS-2$
             tidyRMI(log);
@@ -157,6 +198,42 @@ public class ClientJMeterEngine implements JMeterEngine {
         }
     }
 
+    /**
+     * Starts the test sent by {@link #prepareTest()}
+     * @param startDelay delay in milliseconds after which the server starts the test
+     * @throws JMeterEngineException if the test could not be started
+     */
+    void startTest(long startDelay) throws JMeterEngineException {
+        try {
+            remote.rrunTest(owner, startDelay);
+            log.info("sent run command to "+ host);
+        } catch (IllegalStateException ex) {
+            log.error("Error in rrunTest() method "+ex); // $NON-NLS-1$
+            tidyRMI(log);
+            throw ex; // Don't wrap this error - display it as is
+        } catch (Exception ex) {
+            log.error("Error in rrunTest() method "+ex); // $NON-NLS-1$
+            tidyRMI(log);
+            throw new JMeterEngineException("Error in rrunTest() method "+ex, ex); // $NON-NLS-1$
+        }
+    }
+
+    /**
+     * @param dataFiles data files to send to the server, null to send none
+     */
+    void setDataFiles(DataFileBundle dataFiles) {
+        this.dataFiles = dataFiles;
+    }
+
+    /**
+     * @param engineIndex index of this engine among the engines started together, from 0
+     * @param engineCount number of engines started together
+     */
+    void setEnginePartition(int engineIndex, int engineCount) {
+        this.engineIndex = engineIndex;
+        this.engineCount = engineCount;
+    }
+
     /**
      * Tidy up RMI access to allow JMeter client to exit.
      * Currently just interrups the "RMI Reaper" thread.
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.property.JMeterProperty;
+import org.apache.jmeter.testelement.property.MultiProperty;
+import org.apache.jmeter.testelement.property.PropertyIterator;
+import org.apache.jorphan.collections.HashTree;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Data files referenced by a test plan, sent by the client to the servers which do not have them.
+ * <p>
+ * The files are the values of properties of the test elements which are names, relative to the base directory
+ * of the test plan, of existing files of this directory or of its sub-directories.
+ * The servers only receive the files whose SHA-256 hashes differ from the ones of their copies,
+ * and the files are read and compressed once for all the servers.
+ * @since 3.2
+ */
+final class DataFileBundle {
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private final File baseDir;
+
+    private final HashMap<String, String> hashes = new HashMap<>();
+
+    private final Map<String, byte[]> compressedContents = new HashMap<>();
+
+    private DataFileBundle(File baseDir) {
+        this.baseDir = baseDir;
+    }
+
+    /**
+     * Finds the data files referenced by a test plan
+     * @param testTree test plan
+     * @param baseDir base directory of the test plan
+     * @return the data files
+     * @throws IOException if a file cannot be read
+     */
+    static DataFileBundle create(HashTree testTree, File baseDir) throws IOException {
+        DataFileBundle bundle = new DataFileBundle(baseDir);
+        bundle.addFiles(testTree);
+        return bundle;
+    }
+
+    private void addFiles(HashTree tree) throws IOException {
+        for (Object item : tree.list()) {
+            if (item instanceof TestElement) {
+                addFiles(((TestElement) item).propertyIterator());
+            }
+            addFiles(tree.getTree(item));
+        }
+    }
+
+    private void addFiles(PropertyIterator iterator) throws IOException {
+        while (iterator.hasNext()) {
+            JMeterProperty property = iterator.next();
+            if (property instanceof MultiProperty) {
+                addFiles(((MultiProperty) property).iterator());
+            } else {
+                String name = property.getStringValue();
+                if (name != null && !name.isEmpty() && !name.contains("${") // $NON-NLS-1$
+                        && !hashes.containsKey(name)) {
+                    File file;
+                    try {
+                        file = resolve(baseDir, name);
+                    } catch (IOException e) { // not a valid file name
+                        continue;
+                    }
+                    if (file != null && file.isFile()) {
+                        try (InputStream in = new FileInputStream(file)) {
+                            hashes.put(name, DigestUtils.sha256Hex(in));
+                        }
+                        log.info("Data file to send to the servers: " + file);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return SHA-256 hashes of the files by name relative to the base directory
+     */
+    HashMap<String, String> getHashes() {
+        return hashes;
+    }
+
+    /**
+     * @param names names of files of the bundle
+     * @return compressed contents of the files by name
+     * @throws IOException if a file cannot be read
+     */
+    synchronized HashMap<String, byte[]> getCompressedContents(List<String> names) throws IOException {
+        HashMap<String, byte[]> contents = new HashMap<>();
+        for (String name : names) {
+            byte[] content = compressedContents.get(name);
+            if (content == null) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (InputStream in = new FileInputStream(resolve(baseDir, name));
+                        OutputStream out = new DeflaterOutputStream(bytes)) {
+                    IOUtils.copy(in, out);
+                }
+                content = bytes.toByteArray();
+                compressedContents.put(name, content);
+            }
+            contents.put(name, content);
+        }
+        return contents;
+    }
+
+    /**
+     * Used by the server to find the files it must receive
+     * @param baseDir base directory of the test plan on the server
+     * @param hashes SHA-256 hashes of the files of the client by name relative to the base directory
+     * @return names of the files which do not exist or differ on the server
+     * @throws IOException if a file cannot be read or is not in the base directory
+     */
+    static ArrayList<String> getMissingFiles(File baseDir, Map<String, String> hashes) throws IOException {
+        ArrayList<String> missing = new ArrayList<>();
+        for (Map.Entry<String, String> entry : hashes.entrySet()) {
+            File file = checkedResolve(baseDir, entry.getKey());
+            if (file.isFile()) {
+                try (InputStream in = new FileInputStream(file)) {
+                    if (DigestUtils.sha256Hex(in).equals(entry.getValue())) {
+                        continue;
+                    }
+                }
+            }
+            missing.add(entry.getKey());
+        }
+        return missing;
+    }
+
+    /**
+     * Used by the server to write the files sent by the client
+     * @param baseDir base directory of the test plan on the server
+     * @param contents compressed contents of the files by name relative to the base directory
+     * @throws IOException if a file cannot be written or is not in the base directory
+     */
+    static void writeFiles(File baseDir, Map<String, byte[]> contents) throws IOException {
+        for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+            File file = checkedResolve(baseDir, entry.getKey());
+            File parent = file.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Could not create directory " + parent);
+            }
+            try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(entry.getValue()));
+                    OutputStream out = new FileOutputStream(file)) {
+                IOUtils.copy(in, out);
+            }
+            log.info("Received data file " + file);
+        }
+    }
+
+    private static File checkedResolve(File baseDir, String name) throws IOException {
+        File file = resolve(baseDir, name);
+        if (file == null) {
+            throw new IOException("Data file " + name + " is not in the directory " + baseDir);
+        }
+        return file;
+    }
+
+    /**
+     * @return the file named name relative to baseDir, or null if it is not in baseDir or one of its sub-directories
+     */
+    private static File resolve(File baseDir, String name) throws IOException {
+        if (new File(name).isAbsolute()) {
+            return null;
+        }
+        File file = new File(baseDir, name).getCanonicalFile();
+        String base = baseDir.getCanonicalPath() + File.separator;
+        return file.getPath().startsWith(base) ? file : null;
+    }
+}
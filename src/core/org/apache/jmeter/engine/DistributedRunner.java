@@ -18,12 +18,14 @@
 
 package org.apache.jmeter.engine;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.net.MalformedURLException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -31,7 +33,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.apache.jmeter.services.FileServer;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.collections.HashTree;
 import org.apache.jorphan.logging.LoggingManager;
@@ -50,11 +58,18 @@ public class DistributedRunner {
     public static final String RETRIES_NUMBER = "client.tries"; // $NON-NLS-1$
     public static final String RETRIES_DELAY = "client.retries_delay"; // $NON-NLS-1$
     public static final String CONTINUE_ON_FAIL = "client.continue_on_fail"; // $NON-NLS-1$
+    public static final String DISTRIBUTION_THREADS = "client.distribution_threads"; // $NON-NLS-1$
+    public static final String DISTRIBUTE_FILES = "client.distribute_files"; // $NON-NLS-1$
+    public static final String START_DELAY = "client.start_delay"; // $NON-NLS-1$
 
     private final Properties remoteProps;
     private final boolean continueOnFail;
     private final int retriesDelay;
     private final int retriesNumber;
+    private final int distributionThreads;
+    private final boolean distributeFiles;
+    private final long startDelay;
+    private DataFileBundle dataFiles;
     private PrintStream stdout = new PrintStream(new SilentOutputStream());
     private PrintStream stderr = new PrintStream(new SilentOutputStream());
     private final Map<String, JMeterEngine> engines = new HashMap<>();
@@ -69,12 +84,23 @@ public class DistributedRunner {
         retriesNumber = JMeterUtils.getPropDefault(RETRIES_NUMBER, 1);
         continueOnFail = JMeterUtils.getPropDefault(CONTINUE_ON_FAIL, false);
         retriesDelay = JMeterUtils.getPropDefault(RETRIES_DELAY, 5000);
+        distributionThreads = Math.max(1, JMeterUtils.getPropDefault(DISTRIBUTION_THREADS, 10));
+        distributeFiles = JMeterUtils.getPropDefault(DISTRIBUTE_FILES, false);
+        startDelay = JMeterUtils.getPropDefault(START_DELAY, 1000L);
     }
 
     public void init(List<String> addresses, HashTree tree) {
         // converting list into mutable version
         List<String> addrs = new LinkedList<>(addresses);
 
+        if (distributeFiles) {
+            try {
+                dataFiles = DataFileBundle.create(tree, new File(FileServer.getFileServer().getBaseDir()));
+            } catch (IOException e) {
+                throw new RuntimeException("Could not read the data files to send to the remote engines", e);
+            }
+        }
+
         for (int tryNo = 0; tryNo < retriesNumber; tryNo++) {
             if (tryNo > 0) {
                 println("Following remote engines will retry configuring: " + addrs);
@@ -118,26 +144,107 @@ public class DistributedRunner {
     }
 
     /**
-     * Starts a remote testing engines
+     * Starts a remote testing engines.
+     * <p>
+     * The test plan and the data files are first sent to all the engines in parallel,
+     * then the engines which received them are asked to start the test together,
+     * once the delay set by the {@value #START_DELAY} property has elapsed.
      *
      * @param addresses list of the DNS names or IP addresses of the remote testing engines
      */
     public void start(List<String> addresses) {
         println("Starting remote engines");
-        long now = System.currentTimeMillis();
-        println("Starting the test @ " + new Date(now) + " (" + now + ")");
+        final List<JMeterEngine> toStart = new ArrayList<>();
         for (String address : addresses) {
+            if (engines.containsKey(address)) {
+                toStart.add(engines.get(address));
+            } else {
+                log.warn("Host not found in list of active engines: " + address);
+            }
+        }
+        for (int i = 0; i < toStart.size(); i++) {
+            JMeterEngine engine = toStart.get(i);
+            if (engine instanceof ClientJMeterEngine) {
+                ((ClientJMeterEngine) engine).setEnginePartition(i, toStart.size());
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(distributionThreads, Math.max(1, toStart.size())));
+        List<JMeterEngine> prepared;
+        try {
+            List<Callable<Void>> preparations = new ArrayList<>();
+            for (final JMeterEngine engine : toStart) {
+                preparations.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws JMeterEngineException {
+                        if (engine instanceof ClientJMeterEngine) {
+                            ((ClientJMeterEngine) engine).prepareTest();
+                        }
+                        return null;
+                    }
+                });
+            }
+            prepared = runAll(executor, toStart, preparations);
+        } finally {
+            executor.shutdown();
+        }
+        println("Test sent to " + prepared.size() + " remote engines");
+
+        // The start calls are all sent at once, so that no engine waits for a thread to be started
+        ExecutorService starter = Executors.newFixedThreadPool(Math.max(1, prepared.size()));
+        try {
+            final long startTime = System.currentTimeMillis() + startDelay;
+            println("Starting the test @ " + new Date(startTime) + " (" + startTime + ")");
+            List<Callable<Void>> starts = new ArrayList<>();
+            for (final JMeterEngine engine : prepared) {
+                starts.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws JMeterEngineException {
+                        if (engine instanceof ClientJMeterEngine) {
+                            ((ClientJMeterEngine) engine).startTest(startTime - System.currentTimeMillis());
+                        } else {
+                            engine.runTest();
+                        }
+                        return null;
+                    }
+                });
+            }
+            runAll(starter, prepared, starts);
+        } finally {
+            starter.shutdown();
+        }
+        println("Remote engines have been started");
+    }
+
+    /**
+     * Runs a task for each engine in parallel, and reports the failures to the user
+     * @param executor runs the tasks
+     * @param engines engines of the tasks
+     * @param tasks task of each engine
+     * @return engines whose task succeeded
+     */
+    private List<JMeterEngine> runAll(ExecutorService executor, List<JMeterEngine> engines, List<Callable<Void>> tasks) {
+        List<JMeterEngine> succeeded = new ArrayList<>();
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Callable<Void> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        for (int i = 0; i < futures.size(); i++) {
             try {
-                if (engines.containsKey(address)) {
-                    engines.get(address).runTest();
+                futures.get(i).get();
+                succeeded.add(engines.get(i));
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IllegalStateException || cause instanceof JMeterEngineException) {
+                    JMeterUtils.reportErrorToUser(cause.getMessage(), JMeterUtils.getResString("remote_error_starting")); // $NON-NLS-1$
                 } else {
-                    log.warn("Host not found in list of active engines: " + address);
+                    throw new RuntimeException("Failed to start remote engine", cause);
                 }
-            } catch (IllegalStateException | JMeterEngineException e) {
-                JMeterUtils.reportErrorToUser(e.getMessage(), JMeterUtils.getResString("remote_error_starting")); // $NON-NLS-1$
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while starting remote engines", e);
             }
         }
-        println("Remote engines have been started");
+        return succeeded;
     }
 
     /**
@@ -212,6 +319,9 @@ public class DistributedRunner {
         try {
             engine = createEngine(address);
             engine.configure(testTree);
+            if (engine instanceof ClientJMeterEngine) {
+                ((ClientJMeterEngine) engine).setDataFiles(dataFiles);
+            }
             if (!remoteProps.isEmpty()) {
                 engine.setProperties(remoteProps);
             }
@@ -21,6 +21,8 @@ package org.apache.jmeter.engine;
 import java.io.File;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.jorphan.collections.HashTree;
@@ -31,13 +33,79 @@ import org.apache.jorphan.collections.HashTree;
 public interface RemoteJMeterEngine extends Remote {
     void rconfigure(HashTree testTree, String host, File jmxBase, String scriptName) throws RemoteException;
 
+    /**
+     * Same as {@link #rconfigure(HashTree, String, File, String)} with a test plan encoded by the client
+     *
+     * @param testPlan test plan encoded by {@link RemoteTestPlan}
+     * @param host host of the client
+     * @param jmxBase base directory of the test plan
+     * @param scriptName name of the test plan
+     * @param engineIndex index of the server among the engines started by the client, from 0,
+     * used to partition the data sets
+     * @param engineCount number of engines started by the client
+     * @return owner token to pass to the following calls, which may not be received by the same RMI thread
+     * @throws RemoteException if the test plan cannot be decoded
+     * @since 3.2
+     */
+    String rconfigure(byte[] testPlan, String host, File jmxBase, String scriptName, int engineIndex, int engineCount)
+            throws RemoteException;
+
+    /**
+     * @param owner token returned by {@link #rconfigure(byte[], String, File, String, int, int)}
+     * @param fileHashes SHA-256 hashes of the data files of the client by name relative to the base directory
+     * @return names of the data files which the server does not have
+     * @throws RemoteException if the files cannot be read
+     * @since 3.2
+     */
+    List<String> rgetMissingFiles(String owner, Map<String, String> fileHashes) throws RemoteException;
+
+    /**
+     * @param owner token returned by {@link #rconfigure(byte[], String, File, String, int, int)}
+     * @param files compressed contents of data files by name relative to the base directory
+     * @throws RemoteException if the files cannot be written
+     * @since 3.2
+     */
+    void rsendFiles(String owner, Map<String, byte[]> files) throws RemoteException;
+
     void rrunTest() throws RemoteException, JMeterEngineException;
 
+    /**
+     * Runs the test once the delay has elapsed, so that all the servers start together.
+     * A positive delay is waited for by the server, the call returns at once.
+     *
+     * @param owner token returned by {@link #rconfigure(byte[], String, File, String, int, int)}
+     * @param startDelay delay in milliseconds
+     * @throws RemoteException if the test cannot be started
+     * @throws JMeterEngineException if the test cannot be started
+     * @since 3.2
+     */
+    void rrunTest(String owner, long startDelay) throws RemoteException, JMeterEngineException;
+
     void rstopTest(boolean now) throws RemoteException;
 
     void rreset() throws RemoteException;
 
+    /**
+     * Same as {@link #rreset()} for an engine configured by {@link #rconfigure(byte[], String, File, String, int, int)}
+     *
+     * @param owner token returned by {@link #rconfigure(byte[], String, File, String, int, int)}
+     * @throws RemoteException if the engine cannot be reset
+     * @since 3.2
+     */
+    void rreset(String owner) throws RemoteException;
+
     void rsetProperties(Properties p) throws RemoteException;
 
+    /**
+     * Same as {@link #rsetProperties(Properties)} for an engine configured by
+     * {@link #rconfigure(byte[], String, File, String, int, int)}
+     *
+     * @param owner token returned by {@link #rconfigure(byte[], String, File, String, int, int)}
+     * @param p properties to set
+     * @throws RemoteException if the properties cannot be set
+     * @since 3.2
+     */
+    void rsetProperties(String owner, Properties p) throws RemoteException;
+
     void rexit() throws RemoteException;
 }
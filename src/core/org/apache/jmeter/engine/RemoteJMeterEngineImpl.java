@@ -19,6 +19,7 @@
 package org.apache.jmeter.engine;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.rmi.NotBoundException;
@@ -26,7 +27,12 @@ import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.ServerNotActiveException;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.UUID;
 
 import org.apache.jmeter.services.FileServer;
 import org.apache.jmeter.util.JMeterUtils;
@@ -48,6 +54,15 @@ public final class RemoteJMeterEngineImpl extends java.rmi.server.UnicastRemoteO
     
     private transient Thread ownerThread;
 
+    // Token returned to the client which owns the engine, null if the engine is owned by ownerThread
+    private transient String ownerToken;
+
+    // Waits for the start of the tests run with a delay
+    private transient Timer startTimer;
+
+    // Start of the test which is waiting for its delay, null if none
+    private transient TimerTask pendingStart;
+
     private static final int DEFAULT_RMI_PORT =
         JMeterUtils.getPropDefault("server.rmi.port", 1099); // $NON-NLS-1$
 
@@ -70,7 +85,7 @@ public final class RemoteJMeterEngineImpl extends java.rmi.server.UnicastRemoteO
 
     private Properties remotelySetProperties;
 
-    private RemoteJMeterEngineImpl(int localPort, int rmiPort) throws RemoteException {
+    RemoteJMeterEngineImpl(int localPort, int rmiPort) throws RemoteException {
         super(localPort); // Create this object using the specified port (0 means anonymous)
         this.rmiPort = rmiPort;
         System.out.println("Created remote object: "+this.getRef().remoteToString());
@@ -140,6 +155,35 @@ public final class RemoteJMeterEngineImpl extends java.rmi.server.UnicastRemoteO
      */
     @Override
     public void rconfigure(HashTree testTree, String host, File jmxBase, String scriptName) throws RemoteException {
+        configure(testTree, host, jmxBase, scriptName, null);
+        FileServer.getFileServer().setEnginePartition(0, 1);
+    }
+
+    @Override
+    public String rconfigure(byte[] testPlan, String host, File jmxBase, String scriptName,
+            int engineIndex, int engineCount) throws RemoteException {
+        log.info("Received test plan of " + testPlan.length + " bytes");
+        HashTree testTree;
+        try {
+            testTree = RemoteTestPlan.decode(testPlan);
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RemoteException("Could not read the test plan", e);
+        }
+        String token = UUID.randomUUID().toString();
+        configure(testTree, host, jmxBase, scriptName, token);
+        FileServer.getFileServer().setEnginePartition(engineIndex, engineCount);
+        return token;
+    }
+
+    /**
+     * Creates the backing engine
+     * @param testTree test plan
+     * @param host host of the client
+     * @param jmxBase base directory of the test plan
+     * @param scriptName name of the test plan
+     * @param token owner token of the engine, null if the engine is owned by the current thread
+     */
+    private void configure(HashTree testTree, String host, File jmxBase, String scriptName, String token) {
         log.info("Creating JMeter engine on host "+host+" base '"+jmxBase+"'");
         try {
             log.info("Remote client host: " + getClientHost());
@@ -151,7 +195,9 @@ public final class RemoteJMeterEngineImpl extends java.rmi.server.UnicastRemoteO
                 log.warn("Engine is busy - cannot create JMeter engine");
                 throw new IllegalStateException("Engine is busy - please try later");
             }
+            cancelPendingStart();
             ownerThread = Thread.currentThread();
+            ownerToken = token;
             backingEngine = new StandardJMeterEngine(host);
             backingEngine.configure(testTree); // sets active = true
         }
@@ -159,19 +205,93 @@ public final class RemoteJMeterEngineImpl extends java.rmi.server.UnicastRemoteO
         FileServer.getFileServer().setBase(jmxBase);
     }
 
+    @Override
+    public List<String> rgetMissingFiles(String owner, Map<String, String> fileHashes)
+            throws RemoteException, IllegalStateException {
+        checkOwner(owner, "getMissingFiles");
+        try {
+            return DataFileBundle.getMissingFiles(new File(FileServer.getFileServer().getBaseDir()), fileHashes);
+        } catch (IOException e) {
+            throw new RemoteException("Could not check the data files", e);
+        }
+    }
+
+    @Override
+    public void rsendFiles(String owner, Map<String, byte[]> files) throws RemoteException, IllegalStateException {
+        checkOwner(owner, "sendFiles");
+        try {
+            DataFileBundle.writeFiles(new File(FileServer.getFileServer().getBaseDir()), files);
+        } catch (IOException e) {
+            throw new RemoteException("Could not write the data files", e);
+        }
+    }
+
     @Override
     public void rrunTest() throws RemoteException, JMeterEngineException, IllegalStateException {
         log.info("Running test");
-        checkOwner("runTest");
+        checkOwner(null, "runTest");
         backingEngine.runTest();
     }
 
+    @Override
+    public void rrunTest(String owner, long startDelay)
+            throws RemoteException, JMeterEngineException, IllegalStateException {
+        checkOwner(owner, "runTest");
+        if (startDelay <= 0) {
+            log.info("Running test");
+            backingEngine.runTest();
+            return;
+        }
+        log.info("Running test in " + startDelay + " ms");
+        // The call returns at once, so that the client does not need a thread per server to start them together
+        final JMeterEngine engine = backingEngine;
+        synchronized(LOCK) {
+            cancelPendingStart();
+            if (startTimer == null) {
+                startTimer = new Timer("JMeter start", true); // $NON-NLS-1$
+            }
+            pendingStart = new TimerTask() {
+                @Override
+                public void run() {
+                    try {
+                        engine.runTest();
+                    } catch (JMeterEngineException | RuntimeException e) {
+                        log.error("Could not start the test", e);
+                    }
+                }
+            };
+            startTimer.schedule(pendingStart, startDelay);
+        }
+    }
+
+    /**
+     * Cancels the start of the test which is waiting for its delay, if any
+     */
+    private void cancelPendingStart() {
+        synchronized(LOCK) {
+            if (pendingStart != null) {
+                pendingStart.cancel();
+                pendingStart = null;
+            }
+        }
+    }
+
     @Override
     public void rreset() throws RemoteException, IllegalStateException {
+        reset(null);
+    }
+
+    @Override
+    public void rreset(String owner) throws RemoteException, IllegalStateException {
+        reset(owner);
+    }
+
+    private void reset(String owner) {
         // Mail on userlist reported NPE here - looks like only happens if there are network errors, but check anyway
         if (backingEngine != null) {
             log.info("Reset");
-            checkOwner("reset");
+            checkOwner(owner, "reset");
+            cancelPendingStart();
             backingEngine.reset();
         } else {
             log.warn("Backing engine is null, ignoring reset");
@@ -185,6 +305,7 @@ public final class RemoteJMeterEngineImpl extends java.rmi.server.UnicastRemoteO
         } else {
             log.info("Shutting test ...");
         }
+        cancelPendingStart();
         backingEngine.stopTest(now);
         log.info("... stopped");
     }
@@ -220,7 +341,16 @@ public final class RemoteJMeterEngineImpl extends java.rmi.server.UnicastRemoteO
 
     @Override
     public void rsetProperties(Properties p) throws RemoteException, IllegalStateException {
-        checkOwner("setProperties");
+        setProperties(null, p);
+    }
+
+    @Override
+    public void rsetProperties(String owner, Properties p) throws RemoteException, IllegalStateException {
+        setProperties(owner, p);
+    }
+
+    private void setProperties(String owner, Properties p) {
+        checkOwner(owner, "setProperties");
         if(remotelySetProperties != null) {
             Properties jmeterProperties = JMeterUtils.getJMeterProperties();
             log.info("Cleaning previously set properties "+remotelySetProperties);
@@ -234,11 +364,19 @@ public final class RemoteJMeterEngineImpl extends java.rmi.server.UnicastRemoteO
 
     /**
      * Check if the caller owns the engine.
+     * @param owner the token passed by the caller, null if it did not pass one
      * @param methodName the name of the method for the log message
      * @throws IllegalStateException if the caller is not the owner.
      */
-    private void checkOwner(String methodName) throws IllegalStateException {
-        if (ownerThread != null && ownerThread != Thread.currentThread()){
+    private void checkOwner(String owner, String methodName) throws IllegalStateException {
+        if (ownerToken != null) {
+            // RMI may receive the calls of the owner on any thread
+            if (!ownerToken.equals(owner)) {
+                String msg = "The engine is not owned by this client - cannot call "+methodName;
+                log.warn(msg);
+                throw new IllegalStateException(msg);
+            }
+        } else if (ownerThread != null && ownerThread != Thread.currentThread()){
             String msg = "The engine is not owned by this thread - cannot call "+methodName;
             log.warn(msg);
             throw new IllegalStateException(msg);            
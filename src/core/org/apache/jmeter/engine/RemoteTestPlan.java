@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.jorphan.collections.HashTree;
+
+/**
+ * Format in which the client sends a test plan to the servers:
+ * a header with a version, followed by the serialized {@link HashTree} compressed with deflate.
+ * <p>
+ * The plan is serialized once on the client, so that it can be sent without holding a lock,
+ * and so that RMI only copies an array of bytes.
+ * @since 3.2
+ */
+final class RemoteTestPlan {
+
+    private static final int MAGIC = 0x4A4D5450; // "JMTP"
+
+    private static final int VERSION = 1;
+
+    private RemoteTestPlan() {
+        super();
+    }
+
+    /**
+     * @param testTree test plan
+     * @return the encoded test plan
+     * @throws IOException if the test plan cannot be serialized
+     */
+    static byte[] encode(HashTree testTree) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.flush();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (ObjectOutputStream oos = new ObjectOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            oos.writeObject(testTree);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param testPlan test plan encoded by {@link #encode(HashTree)}
+     * @return the test plan
+     * @throws IOException if the test plan is invalid or was encoded with an unknown version
+     * @throws ClassNotFoundException if a class of the test plan is not available
+     */
+    static HashTree decode(byte[] testPlan) throws IOException, ClassNotFoundException {
+        ByteArrayInputStream bytes = new ByteArrayInputStream(testPlan);
+        DataInputStream header = new DataInputStream(bytes);
+        if (header.readInt() != MAGIC) {
+            throw new StreamCorruptedException("Not a test plan");
+        }
+        int version = header.readInt();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported test plan version " + version
+                    + ", the client and the server must use the same JMeter version");
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new InflaterInputStream(bytes))) {
+            return (HashTree) ois.readObject();
+        }
+    }
+}
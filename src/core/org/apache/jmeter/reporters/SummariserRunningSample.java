@@ -20,6 +20,7 @@ package org.apache.jmeter.reporters;
 
 import java.text.DecimalFormat;
 
+import org.apache.jmeter.samplers.AggregatedSampleResult;
 import org.apache.jmeter.samplers.SampleResult;
 
 /**
@@ -122,11 +123,17 @@ class SummariserRunningSample {
         errorCount += res.getErrorCount();
         long aTimeInMillis = res.getTime();
         runningSum += aTimeInMillis;
-        if (aTimeInMillis > max) {
-            max = aTimeInMillis;
+        long maxTime = aTimeInMillis;
+        long minTime = aTimeInMillis;
+        if (res instanceof AggregatedSampleResult) {
+            maxTime = ((AggregatedSampleResult) res).getMaxTime();
+            minTime = ((AggregatedSampleResult) res).getMinTime();
         }
-        if (aTimeInMillis < min) {
-            min = aTimeInMillis;
+        if (maxTime > max) {
+            max = maxTime;
+        }
+        if (minTime < min) {
+            min = minTime;
         }
         // We want end time to be current time so sample rates reflect real time
         endTime = System.currentTimeMillis();
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Aggregates the samples of each label on the server during fixed intervals,
+ * and only sends one {@link AggregatedSampleResult} per label and interval,
+ * so that the load of the client depends on the number of labels and intervals, not on the number of samples.
+ * <p>
+ * Intervals are aligned on the clock, so that the intervals of all the servers match.
+ * @since 3.2
+ */
+public class AggregateSampleSender extends AbstractSampleSender implements Serializable {
+
+    private static final long serialVersionUID = 320L;
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final long DEFAULT_INTERVAL = 1000L;
+
+    private static final long SERVER_CONFIGURED_INTERVAL =
+            JMeterUtils.getPropDefault("sample_sender_aggregate_interval", DEFAULT_INTERVAL); // $NON-NLS-1$
+
+    // instance fields are copied from the client instance
+    private final long clientConfiguredInterval =
+            JMeterUtils.getPropDefault("sample_sender_aggregate_interval", DEFAULT_INTERVAL); // $NON-NLS-1$
+
+    private final RemoteSampleListener listener;
+
+    // Configuration items, set up by readResolve
+    private transient long interval;
+
+    // Aggregates of the current interval by label; the sampler threads share the read lock to add samples,
+    // the sending thread takes the write lock to start a new interval
+    private transient ReadWriteLock lock;
+
+    private transient ConcurrentMap<String, SampleEvent> aggregates;
+
+    private transient Thread worker;
+
+    /**
+     * @deprecated only for use by test code
+     */
+    @Deprecated
+    public AggregateSampleSender() {
+        this(null);
+        log.warn("Constructor only intended for use in testing"); // $NON-NLS-1$
+    }
+
+    // Created by SampleSenderFactory
+    AggregateSampleSender(RemoteSampleListener listener) {
+        this.listener = listener;
+        log.info("Using AggregateSampleSender for this run, interval: " + getInterval() + " ms"); // client log file
+    }
+
+    /**
+     * Processed by the RMI server code; acts as testStarted().
+     *
+     * @return this
+     * @throws ObjectStreamException never
+     */
+    private Object readResolve() throws ObjectStreamException {
+        interval = Math.max(getInterval(), 1L);
+        lock = new ReentrantReadWriteLock();
+        aggregates = new ConcurrentHashMap<>();
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sendAtEachInterval();
+            }
+        }, "AggregateSampleSender"); // $NON-NLS-1$
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Using AggregateSampleSender for this run, interval: " + interval + " ms"); // server log file
+        return this;
+    }
+
+    private long getInterval() {
+        return isClientConfigured() ? clientConfiguredInterval : SERVER_CONFIGURED_INTERVAL;
+    }
+
+    @Override
+    public void sampleOccurred(SampleEvent e) {
+        SampleResult result = e.getResult();
+        String label = result.getSampleLabel();
+        lock.readLock().lock();
+        try {
+            SampleEvent aggregate = aggregates.get(label);
+            if (aggregate == null) {
+                SampleEvent created = new SampleEvent(new AggregatedSampleResult(result), e.getThreadGroup());
+                aggregate = aggregates.putIfAbsent(label, created);
+                if (aggregate == null) {
+                    aggregate = created;
+                }
+            }
+            AggregatedSampleResult aggregatedResult = (AggregatedSampleResult) aggregate.getResult();
+            synchronized (aggregatedResult) {
+                aggregatedResult.add(result);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void testEnded(String host) {
+        log.info("Test Ended on " + host);
+        worker.interrupt();
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sendAggregates();
+        try {
+            listener.testEnded(host);
+        } catch (RemoteException err) {
+            log.warn("testEnded(hostname)", err);
+        }
+    }
+
+    /**
+     * Loop of the worker thread, ended by testEnded()
+     */
+    private void sendAtEachInterval() {
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                Thread.sleep(interval - now % interval);
+                sendAggregates();
+            }
+        } catch (InterruptedException e) {
+            // end of test
+        }
+    }
+
+    /**
+     * Sends the aggregates of the current interval, and starts a new interval
+     */
+    private void sendAggregates() {
+        ConcurrentMap<String, SampleEvent> sent;
+        lock.writeLock().lock();
+        try {
+            sent = aggregates;
+            aggregates = new ConcurrentHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (sent.isEmpty()) {
+            return;
+        }
+        List<SampleEvent> events = new ArrayList<>(sent.values());
+        for (SampleEvent event : events) {
+            ((AggregatedSampleResult) event.getResult()).setErrorsAsResponseMessage();
+        }
+        try {
+            listener.processBatch(events);
+        } catch (RemoteException err) {
+            log.error("Failed to send aggregated samples", err);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summary of the samples of a label during an interval, created by the Aggregate remote mode
+ * (see {@link AggregateSampleSender}).
+ * <p>
+ * In addition to the totals of {@link StatisticalSampleResult}, it keeps the minimum and maximum times,
+ * histograms of the times of all and of failed samples from which percentiles can be computed, and the number of errors by response code.
+ * @since 3.2
+ */
+public class AggregatedSampleResult extends StatisticalSampleResult implements Serializable {
+
+    private static final long serialVersionUID = 320L;
+
+    private long minTime = Long.MAX_VALUE;
+
+    private long maxTime = Long.MIN_VALUE;
+
+    private ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+
+    private ResponseTimeHistogram errorHistogram = new ResponseTimeHistogram();
+
+    private Map<String, Integer> errorsByCode = new TreeMap<>();
+
+    public AggregatedSampleResult() {
+        super();
+    }
+
+    /**
+     * Create an aggregated sample result with the label and thread name of a sample result.
+     *
+     * @param res the sample result
+     */
+    public AggregatedSampleResult(SampleResult res) {
+        super(res);
+    }
+
+    @Override
+    public void add(SampleResult res) {
+        super.add(res);
+        long time = res.getTime();
+        int count = res.getSampleCount();
+        if (count > 1) { // already aggregated, the mean is the best we know
+            time /= count;
+        }
+        int errors = res.getErrorCount();
+        if (!res.isSuccessful()) {
+            // StatisticalSampleResult counts one error per failed result, whatever its number of samples
+            setErrorCount(getErrorCount() - 1 + errors);
+        }
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+        histogram.add(time, Math.max(count, 1));
+        if (errors > 0) {
+            errorHistogram.add(time, errors);
+            String code = res.getResponseCode();
+            Integer codeErrors = errorsByCode.get(code);
+            errorsByCode.put(code, Integer.valueOf(codeErrors == null ? errors : codeErrors.intValue() + errors));
+            setResponseCode(code); // last error
+        }
+        setGroupThreads(res.getGroupThreads());
+        setAllThreads(res.getAllThreads());
+    }
+
+    /**
+     * @return the smallest time of the samples, {@link Long#MAX_VALUE} if there is none
+     */
+    public long getMinTime() {
+        return minTime;
+    }
+
+    /**
+     * @return the largest time of the samples, {@link Long#MIN_VALUE} if there is none
+     */
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    /**
+     * @return histogram of the times of the samples
+     */
+    public ResponseTimeHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * @return histogram of the times of the failed samples
+     */
+    public ResponseTimeHistogram getErrorHistogram() {
+        return errorHistogram;
+    }
+
+    /**
+     * @return number of failed samples by response code, sorted by response code
+     */
+    public Map<String, Integer> getErrorsByCode() {
+        return Collections.unmodifiableMap(errorsByCode);
+    }
+
+    /**
+     * Sets the response message to the number of errors by response code, e.g. <code>404=2, 500=1</code>
+     */
+    void setErrorsAsResponseMessage() {
+        if (!errorsByCode.isEmpty()) {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, Integer> entry : errorsByCode.entrySet()) {
+                if (sb.length() > 0) {
+                    sb.append(", "); // $NON-NLS-1$
+                }
+                sb.append(entry.getKey()).append('=').append(entry.getValue());
+            }
+            setResponseMessage(sb.toString());
+        }
+    }
+}
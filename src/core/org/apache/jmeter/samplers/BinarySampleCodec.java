@@ -0,0 +1,832 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jmeter.assertions.AssertionResult;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Binary encoding of the sample events sent by {@link BinarySampleSender}.
+ * <p>
+ * Samples are encoded field by field, following a schema made of the fields of their class.
+ * The schema of a class is sent once, before the first sample of that class, and the receiver
+ * sets the fields it finds by name in its own version of the class.
+ * Labels, thread names and other strings which repeat between samples are sent once,
+ * then replaced by their index in a dictionary kept by both ends.
+ * Samples whose class cannot be described by a schema are sent with Java serialization.
+ * <p>
+ * The encoder and the decoder keep the state of a connection, so each must only be used
+ * by one thread, and must see all the records of the connection in order.
+ * @since 3.2
+ */
+final class BinarySampleCodec {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    // Record kinds
+    private static final int RECORD_SCHEMA = 0;
+    private static final int RECORD_SAMPLE = 1;
+    private static final int RECORD_SERIALIZED_SAMPLE = 2;
+    private static final int RECORD_TEST_ENDED = 3;
+
+    // Field types
+    private static final int TYPE_BOOLEAN = 0;
+    private static final int TYPE_INT = 1;
+    private static final int TYPE_LONG = 2;
+    private static final int TYPE_STRING = 3;
+    private static final int TYPE_TOKEN = 4;
+    private static final int TYPE_BYTES = 5;
+    private static final int TYPE_URL = 6;
+    private static final int TYPE_ASSERTIONS = 7;
+    private static final int TYPE_SUB_RESULTS = 8;
+
+    // Codes of dictionary strings, followed by the index of the string in the dictionary
+    private static final int TOKEN_NULL = 0;
+    private static final int TOKEN_LITERAL = 1;
+    private static final int TOKEN_NEW = 2;
+    private static final int TOKEN_INDEX = 3;
+
+    /** Maximum number of strings in the dictionary of a connection */
+    private static final int MAX_DICTIONARY_SIZE = 16384;
+
+    /** Longer strings are not added to the dictionary */
+    private static final int MAX_TOKEN_LENGTH = 256;
+
+    /** Fields of SampleResult which are not sent: configuration of the sending JVM, link to the parent sample */
+    private static final Set<String> SKIPPED_FIELDS = new HashSet<>(Arrays.asList(
+            "saveConfig", // $NON-NLS-1$
+            "parent")); // $NON-NLS-1$
+
+    /** String fields whose values usually repeat between samples */
+    private static final Set<String> TOKEN_FIELDS = new HashSet<>(Arrays.asList(
+            "label", // $NON-NLS-1$
+            "threadName", // $NON-NLS-1$
+            "responseCode", // $NON-NLS-1$
+            "responseMessage", // $NON-NLS-1$
+            "dataType", // $NON-NLS-1$
+            "dataEncoding", // $NON-NLS-1$
+            "contentType", // $NON-NLS-1$
+            "method")); // $NON-NLS-1$ HTTPSampleResult
+
+    private BinarySampleCodec() {
+        super();
+    }
+
+    /**
+     * Receives the records read by a {@link Decoder}
+     */
+    interface RecordListener {
+        /**
+         * @param listenerId id of the listener of the sample
+         * @param event decoded sample
+         */
+        void sampleOccurred(int listenerId, SampleEvent event);
+
+        /**
+         * @param listenerId id of the listener
+         * @param host host on which the test ended
+         */
+        void testEnded(int listenerId, String host);
+    }
+
+    /**
+     * Encodes records in an in-memory buffer, which is sent then reset by the caller
+     */
+    static final class Encoder {
+
+        private final Output out = new Output();
+
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        private final Map<Class<?>, Schema> schemas = new HashMap<>();
+
+        /**
+         * Appends a sample
+         * @param listenerId id of the listener of the sample
+         * @param event sample to encode
+         * @throws IOException if the sample cannot be serialized
+         */
+        void writeSample(int listenerId, SampleEvent event) throws IOException {
+            SampleResult result = event.getResult();
+            String[] values = event.getVarValues();
+            if (result != null && values != null && prepare(result)) {
+                out.writeByte(RECORD_SAMPLE);
+                out.writeVarInt(listenerId);
+                out.writeByte(event.isTransactionSampleEvent() ? 1 : 0);
+                writeToken(event.getThreadGroup());
+                writeToken(event.getHostname());
+                out.writeVarInt(values.length);
+                for (String value : values) {
+                    writeString(value);
+                }
+                writeResult(result);
+            } else {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                    oos.writeObject(event);
+                }
+                out.writeByte(RECORD_SERIALIZED_SAMPLE);
+                out.writeVarInt(listenerId);
+                writeBytes(bytes.toByteArray());
+            }
+        }
+
+        /**
+         * Appends the end of the test of a listener
+         * @param listenerId id of the listener
+         * @param host host on which the test ended
+         */
+        void writeTestEnded(int listenerId, String host) {
+            out.writeByte(RECORD_TEST_ENDED);
+            out.writeVarInt(listenerId);
+            writeToken(host);
+        }
+
+        /**
+         * @return buffer of the records written since the last reset
+         */
+        byte[] getBuffer() {
+            return out.buffer;
+        }
+
+        /**
+         * @return number of bytes written since the last reset
+         */
+        int size() {
+            return out.count;
+        }
+
+        /**
+         * Empties the buffer, keeping the schemas and the dictionary
+         */
+        void reset() {
+            out.count = 0;
+        }
+
+        /**
+         * Empties the buffer, the schemas and the dictionary,
+         * so that the next records can be decoded on their own by a new {@link Decoder}
+         */
+        void clear() {
+            out.count = 0;
+            dictionary.clear();
+            schemas.clear();
+        }
+
+        /**
+         * Writes the schemas of result and its sub-results which have not been sent yet
+         * @return true if result can be written with the schemas
+         */
+        private boolean prepare(SampleResult result) {
+            Schema schema = schemas.get(result.getClass());
+            if (schema == null) {
+                schema = Schema.create(result.getClass(), schemas.size());
+                schemas.put(result.getClass(), schema);
+                if (schema.isEncodable()) {
+                    out.writeByte(RECORD_SCHEMA);
+                    writeString(schema.className);
+                    out.writeVarInt(schema.names.length);
+                    for (int i = 0; i < schema.names.length; i++) {
+                        writeString(schema.names[i]);
+                        out.writeByte(schema.types[i]);
+                    }
+                } else {
+                    log.info("Samples of " + result.getClass().getName() + " will be sent serialized");
+                }
+            }
+            if (!schema.isEncodable()) {
+                return false;
+            }
+            for (AssertionResult assertionResult : result.getAssertionResults()) {
+                if (assertionResult.getClass() != AssertionResult.class) {
+                    return false;
+                }
+            }
+            for (SampleResult subResult : result.getSubResults()) {
+                if (!prepare(subResult)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void writeResult(SampleResult result) {
+            Schema schema = schemas.get(result.getClass());
+            out.writeVarInt(schema.id);
+            try {
+                for (int i = 0; i < schema.fields.length; i++) {
+                    writeField(result, schema.fields[i], schema.types[i]);
+                }
+            } catch (IllegalAccessException e) { // fields are made accessible by the schema
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void writeField(SampleResult result, Field field, int type) throws IllegalAccessException {
+            switch (type) {
+            case TYPE_BOOLEAN:
+                out.writeByte(field.getBoolean(result) ? 1 : 0);
+                break;
+            case TYPE_INT:
+                out.writeVarLong(field.getInt(result));
+                break;
+            case TYPE_LONG:
+                out.writeVarLong(field.getLong(result));
+                break;
+            case TYPE_STRING:
+                writeString((String) field.get(result));
+                break;
+            case TYPE_TOKEN:
+                writeToken((String) field.get(result));
+                break;
+            case TYPE_BYTES:
+                writeBytes((byte[]) field.get(result));
+                break;
+            case TYPE_URL:
+                URL url = (URL) field.get(result);
+                writeToken(url == null ? null : url.toString());
+                break;
+            case TYPE_ASSERTIONS:
+                @SuppressWarnings("unchecked") // checked by the schema
+                List<AssertionResult> assertionResults = (List<AssertionResult>) field.get(result);
+                if (assertionResults == null) {
+                    out.writeVarInt(0);
+                } else {
+                    out.writeVarInt(assertionResults.size() + 1);
+                    for (AssertionResult assertionResult : assertionResults) {
+                        writeToken(assertionResult.getName());
+                        out.writeByte((assertionResult.isFailure() ? 1 : 0) | (assertionResult.isError() ? 2 : 0));
+                        writeToken(assertionResult.getFailureMessage());
+                    }
+                }
+                break;
+            case TYPE_SUB_RESULTS:
+                @SuppressWarnings("unchecked") // checked by the schema
+                List<SampleResult> subResults = (List<SampleResult>) field.get(result);
+                if (subResults == null) {
+                    out.writeVarInt(0);
+                } else {
+                    out.writeVarInt(subResults.size() + 1);
+                    for (SampleResult subResult : subResults) {
+                        writeResult(subResult);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown field type: " + type);
+            }
+        }
+
+        private void writeToken(String value) {
+            if (value == null) {
+                out.writeVarInt(TOKEN_NULL);
+                return;
+            }
+            Integer index = dictionary.get(value);
+            if (index != null) {
+                out.writeVarInt(index.intValue() + TOKEN_INDEX);
+            } else if (value.length() <= MAX_TOKEN_LENGTH && dictionary.size() < MAX_DICTIONARY_SIZE) {
+                dictionary.put(value, Integer.valueOf(dictionary.size()));
+                out.writeVarInt(TOKEN_NEW);
+                out.writeUTF8(value);
+            } else {
+                out.writeVarInt(TOKEN_LITERAL);
+                out.writeUTF8(value);
+            }
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                out.writeByte(0);
+            } else {
+                out.writeByte(1);
+                out.writeUTF8(value);
+            }
+        }
+
+        private void writeBytes(byte[] value) {
+            if (value == null) {
+                out.writeVarInt(0);
+            } else {
+                out.writeVarInt(value.length + 1);
+                out.write(value, 0, value.length);
+            }
+        }
+    }
+
+    /**
+     * Decodes the records written by an {@link Encoder}
+     */
+    static final class Decoder {
+
+        private final Input in = new Input();
+
+        private final List<String> dictionary = new ArrayList<>();
+
+        private final List<Schema> schemas = new ArrayList<>();
+
+        /**
+         * Decodes the records of buffer
+         * @param buffer encoded records
+         * @param length number of bytes of the records
+         * @param listener receives the decoded records
+         * @throws IOException if the records are invalid
+         */
+        void decode(byte[] buffer, int length, RecordListener listener) throws IOException {
+            in.buffer = buffer;
+            in.position = 0;
+            in.limit = length;
+            while (in.position < in.limit) {
+                int kind = in.readByte();
+                switch (kind) {
+                case RECORD_SCHEMA:
+                    readSchema();
+                    break;
+                case RECORD_SAMPLE:
+                    listener.sampleOccurred(in.readVarInt(), readSample());
+                    break;
+                case RECORD_SERIALIZED_SAMPLE:
+                    listener.sampleOccurred(in.readVarInt(), readSerializedSample());
+                    break;
+                case RECORD_TEST_ENDED:
+                    listener.testEnded(in.readVarInt(), readToken());
+                    break;
+                default:
+                    throw new IOException("Unknown record kind: " + kind);
+                }
+            }
+        }
+
+        private void readSchema() throws IOException {
+            String className = readString();
+            int count = in.readVarInt();
+            String[] names = new String[count];
+            int[] types = new int[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = readString();
+                types[i] = in.readByte();
+            }
+            schemas.add(Schema.resolve(className, names, types, schemas.size()));
+        }
+
+        private SampleEvent readSample() throws IOException {
+            boolean isTransaction = in.readByte() != 0;
+            String threadGroup = readToken();
+            String hostname = readToken();
+            String[] values = new String[in.readVarInt()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = readString();
+            }
+            return new SampleEvent(readResult(), threadGroup, hostname, values, isTransaction);
+        }
+
+        private SampleEvent readSerializedSample() throws IOException {
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(readBytes()))) {
+                return (SampleEvent) ois.readObject();
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException("Could not read serialized sample", e);
+            }
+        }
+
+        private SampleResult readResult() throws IOException {
+            int id = in.readVarInt();
+            if (id >= schemas.size()) {
+                throw new IOException("Unknown schema: " + id);
+            }
+            Schema schema = schemas.get(id);
+            SampleResult result;
+            try {
+                result = schema.resultClass.newInstance();
+                for (int i = 0; i < schema.fields.length; i++) {
+                    readField(result, schema.fields[i], schema.types[i]);
+                }
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new IOException("Could not create sample of " + schema.className, e);
+            }
+            return result;
+        }
+
+        /**
+         * Reads a value, and sets it if field is not null
+         */
+        private void readField(SampleResult result, Field field, int type) throws IOException,
+                IllegalAccessException {
+            switch (type) {
+            case TYPE_BOOLEAN:
+                boolean b = in.readByte() != 0;
+                if (field != null) {
+                    field.setBoolean(result, b);
+                }
+                break;
+            case TYPE_INT:
+                int i = (int) in.readVarLong();
+                if (field != null) {
+                    field.setInt(result, i);
+                }
+                break;
+            case TYPE_LONG:
+                long l = in.readVarLong();
+                if (field != null) {
+                    field.setLong(result, l);
+                }
+                break;
+            case TYPE_STRING:
+                setField(result, field, readString());
+                break;
+            case TYPE_TOKEN:
+                setField(result, field, readToken());
+                break;
+            case TYPE_BYTES:
+                byte[] bytes = readBytes();
+                setField(result, field, bytes != null && bytes.length == 0 ? SampleResult.EMPTY_BA : bytes);
+                break;
+            case TYPE_URL:
+                String url = readToken();
+                try {
+                    setField(result, field, url == null ? null : new URL(url));
+                } catch (MalformedURLException e) {
+                    log.warn("Could not read URL of sample: " + url);
+                }
+                break;
+            case TYPE_ASSERTIONS:
+                int assertionCount = in.readVarInt() - 1;
+                List<AssertionResult> assertionResults = null;
+                if (assertionCount >= 0) {
+                    assertionResults = new ArrayList<>(assertionCount);
+                    for (int j = 0; j < assertionCount; j++) {
+                        AssertionResult assertionResult = new AssertionResult(readToken());
+                        int flags = in.readByte();
+                        assertionResult.setFailure((flags & 1) != 0);
+                        assertionResult.setError((flags & 2) != 0);
+                        assertionResult.setFailureMessage(readToken());
+                        assertionResults.add(assertionResult);
+                    }
+                }
+                setField(result, field, assertionResults);
+                break;
+            case TYPE_SUB_RESULTS:
+                int subResultCount = in.readVarInt() - 1;
+                List<SampleResult> subResults = null;
+                if (subResultCount >= 0) {
+                    subResults = new ArrayList<>(subResultCount);
+                    for (int j = 0; j < subResultCount; j++) {
+                        SampleResult subResult = readResult();
+                        subResult.setParent(result);
+                        subResults.add(subResult);
+                    }
+                }
+                setField(result, field, subResults);
+                break;
+            default:
+                throw new IOException("Unknown field type: " + type);
+            }
+        }
+
+        private static void setField(SampleResult result, Field field, Object value) throws IllegalAccessException {
+            if (field != null) {
+                field.set(result, value);
+            }
+        }
+
+        private String readToken() throws IOException {
+            int code = in.readVarInt();
+            switch (code) {
+            case TOKEN_NULL:
+                return null;
+            case TOKEN_LITERAL:
+                return in.readUTF8();
+            case TOKEN_NEW:
+                String value = in.readUTF8();
+                dictionary.add(value);
+                return value;
+            default:
+                int index = code - TOKEN_INDEX;
+                if (index >= dictionary.size()) {
+                    throw new IOException("Unknown dictionary index: " + index);
+                }
+                return dictionary.get(index);
+            }
+        }
+
+        private String readString() throws IOException {
+            return in.readByte() == 0 ? null : in.readUTF8();
+        }
+
+        private byte[] readBytes() throws IOException {
+            int length = in.readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.read(bytes);
+            return bytes;
+        }
+    }
+
+    /**
+     * Fields of a sample class sent by the encoder
+     */
+    private static final class Schema {
+
+        private final int id;
+
+        private final String className;
+
+        /** Class instantiated by the decoder */
+        private final Class<? extends SampleResult> resultClass;
+
+        /** Fields, null for the fields the decoder does not know, or for a class which cannot be encoded */
+        private final Field[] fields;
+
+        private final String[] names;
+
+        private final int[] types;
+
+        private Schema(int id, String className, Class<? extends SampleResult> resultClass,
+                Field[] fields, String[] names, int[] types) {
+            this.id = id;
+            this.className = className;
+            this.resultClass = resultClass;
+            this.fields = fields;
+            this.names = names;
+            this.types = types;
+        }
+
+        private boolean isEncodable() {
+            return fields != null;
+        }
+
+        /**
+         * Creates the schema of the encoder
+         * @param resultClass class of the samples
+         * @param id index of the schema
+         * @return schema of resultClass, whose fields are null if it cannot be encoded
+         */
+        private static Schema create(Class<? extends SampleResult> resultClass, int id) {
+            String className = resultClass.getName();
+            List<Field> fields = new ArrayList<>();
+            Set<String> names = new HashSet<>();
+            try {
+                resultClass.getConstructor(); // needed by the decoder
+            } catch (NoSuchMethodException e) {
+                return new Schema(id, className, resultClass, null, null, null);
+            }
+            for (Class<?> c = resultClass; ; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!isSent(field)) {
+                        continue;
+                    }
+                    // A field hiding another one could not be found by name
+                    if (getType(field) < 0 || !names.add(field.getName())) {
+                        return new Schema(id, className, resultClass, null, null, null);
+                    }
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+                if (c == SampleResult.class) {
+                    break;
+                }
+            }
+            int[] types = new int[fields.size()];
+            String[] fieldNames = new String[fields.size()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = getType(fields.get(i));
+                fieldNames[i] = fields.get(i).getName();
+            }
+            return new Schema(id, className, resultClass, fields.toArray(new Field[fields.size()]), fieldNames, types);
+        }
+
+        /**
+         * Creates the schema of the decoder, finding the fields of the class in the local JVM
+         * @param className name of the class of the samples
+         * @param names names of the fields
+         * @param types types of the fields
+         * @param id index of the schema
+         * @return schema for the sent schema
+         */
+        private static Schema resolve(String className, String[] names, int[] types, int id) {
+            Class<? extends SampleResult> resultClass;
+            try {
+                // not initialized before it is known to be a sample
+                resultClass = Class.forName(className, false, SampleResult.class.getClassLoader())
+                        .asSubclass(SampleResult.class);
+                resultClass.getConstructor();
+            } catch (ClassNotFoundException | ClassCastException | NoSuchMethodException e) {
+                log.warn("Samples of " + className + " will be received as " + SampleResult.class.getName()
+                        + ": " + e);
+                resultClass = SampleResult.class;
+            }
+            Field[] fields = new Field[names.length];
+            for (int i = 0; i < names.length; i++) {
+                fields[i] = findField(resultClass, names[i], types[i]);
+                if (fields[i] == null && log.isDebugEnabled()) {
+                    log.debug("Field " + names[i] + " of " + className + " will be ignored");
+                }
+            }
+            return new Schema(id, className, resultClass, fields, names, types);
+        }
+
+        private static Field findField(Class<? extends SampleResult> resultClass, String name, int type) {
+            for (Class<?> c = resultClass; ; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (field.getName().equals(name) && isSent(field) && getType(field) == type) {
+                        field.setAccessible(true);
+                        return field;
+                    }
+                }
+                if (c == SampleResult.class) {
+                    return null;
+                }
+            }
+        }
+
+        private static boolean isSent(Field field) {
+            int modifiers = field.getModifiers();
+            return !Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)
+                    && !Modifier.isFinal(modifiers) // set per instance by the constructor
+                    && !(field.getDeclaringClass() == SampleResult.class && SKIPPED_FIELDS.contains(field.getName()));
+        }
+
+        /**
+         * @return type of field, -1 if it cannot be encoded
+         */
+        private static int getType(Field field) {
+            Class<?> type = field.getType();
+            if (type == boolean.class) {
+                return TYPE_BOOLEAN;
+            } else if (type == int.class) {
+                return TYPE_INT;
+            } else if (type == long.class) {
+                return TYPE_LONG;
+            } else if (type == String.class) {
+                return TOKEN_FIELDS.contains(field.getName()) ? TYPE_TOKEN : TYPE_STRING;
+            } else if (type == byte[].class) {
+                return TYPE_BYTES;
+            } else if (type == URL.class) {
+                return TYPE_URL;
+            } else if (type == List.class && field.getGenericType() instanceof ParameterizedType) {
+                Type elementType = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+                if (elementType == AssertionResult.class) {
+                    return TYPE_ASSERTIONS;
+                } else if (elementType == SampleResult.class) {
+                    return TYPE_SUB_RESULTS;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Growable byte buffer
+     */
+    private static final class Output {
+
+        private byte[] buffer = new byte[8192];
+
+        private int count;
+
+        private void ensureCapacity(int length) {
+            if (count + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + length));
+            }
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            buffer[count++] = (byte) b;
+        }
+
+        void write(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+        }
+
+        /** Writes a non negative int in 1 to 5 bytes */
+        void writeVarInt(int value) {
+            ensureCapacity(5);
+            int v = value;
+            while ((v & ~0x7F) != 0) {
+                buffer[count++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buffer[count++] = (byte) v;
+        }
+
+        /** Writes a long in 1 to 10 bytes, small negative values being short too */
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            long v = (value << 1) ^ (value >> 63); // ZigZag encoding
+            while ((v & ~0x7FL) != 0) {
+                buffer[count++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buffer[count++] = (byte) v;
+        }
+
+        void writeUTF8(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Reader of a byte array
+     */
+    private static final class Input {
+
+        private byte[] buffer;
+
+        private int position;
+
+        private int limit;
+
+        int readByte() throws IOException {
+            if (position >= limit) {
+                throw new EOFException("Truncated record");
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        void read(byte[] bytes) throws IOException {
+            if (bytes.length > limit - position) {
+                throw new EOFException("Truncated record");
+            }
+            System.arraycopy(buffer, position, bytes, 0, bytes.length);
+            position += bytes.length;
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid int");
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (value >>> 1) ^ -(value & 1);
+                }
+            }
+            throw new IOException("Invalid long");
+        }
+
+        String readUTF8() throws IOException {
+            int length = readVarInt();
+            if (length > limit - position) {
+                throw new EOFException("Truncated record");
+            }
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
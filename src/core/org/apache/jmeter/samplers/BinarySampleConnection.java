@@ -0,0 +1,379 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Connection of a server to the {@link BinarySampleReceiver} of the client,
+ * shared by the {@link BinarySampleSender}s of the server which send to that receiver.
+ * <p>
+ * The sampler threads queue the samples, which a worker thread encodes and writes in frames.
+ * Each frame uses a credit granted by the receiver, which grants a new credit once it has processed a frame:
+ * when the client lags, the worker waits for credits, the queue fills up and the sampler threads wait.
+ * <p>
+ * If the connection fails, the worker sends the samples with RMI, still in the order they were queued,
+ * so that the end of a test is never sent before its samples.
+ * @since 3.2
+ */
+final class BinarySampleConnection {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** First bytes sent on the connection: "JMSB" */
+    static final int MAGIC = 0x4A4D5342;
+
+    static final int VERSION = 1;
+
+    /** Flag of the handshake set when the frames are compressed */
+    static final int FLAG_DEFLATE = 1;
+
+    /** Size of the frame header: length of the records, length of the frame payload */
+    static final int FRAME_HEADER_SIZE = 8;
+
+    /** Open connections by receiver address */
+    private static final Map<String, BinarySampleConnection> CONNECTIONS = new HashMap<>(); // guarded by itself
+
+    private final String address;
+
+    private final SocketChannel channel;
+
+    private final BlockingQueue<Entry> queue;
+
+    private final int maxFrameSamples;
+
+    private final Semaphore credits = new Semaphore(0);
+
+    private final BinarySampleCodec.Encoder encoder = new BinarySampleCodec.Encoder();
+
+    private final Deflater deflater; // null if frames are not compressed
+
+    private byte[] compressed; // used by the worker only
+
+    private int users; // guarded by CONNECTIONS
+
+    private volatile boolean broken;
+
+    private volatile boolean closing;
+
+    /**
+     * Queued sample or end of test, or end of the connection if sender is null
+     */
+    private static final class Entry {
+        private final BinarySampleSender sender;
+
+        private final SampleEvent event;
+
+        private final String host;
+
+        private Entry(BinarySampleSender sender, SampleEvent event, String host) {
+            this.sender = sender;
+            this.event = event;
+            this.host = host;
+        }
+    }
+
+    private static final Entry CLOSE = new Entry(null, null, null);
+
+    private BinarySampleConnection(String host, int port, int capacity, boolean deflate) throws IOException {
+        this.address = host + ":" + port;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxFrameSamples = capacity;
+        this.deflater = deflate ? new Deflater(Deflater.BEST_SPEED) : null;
+        this.compressed = deflate ? new byte[8192] : null;
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        try {
+            channel.socket().setTcpNoDelay(true); // frames are already batched
+            ByteBuffer handshake = ByteBuffer.allocate(6);
+            handshake.putInt(MAGIC).put((byte) VERSION).put((byte) (deflate ? FLAG_DEFLATE : 0)).flip();
+            writeFully(handshake);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        Thread creditReader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readCredits();
+            }
+        }, "BinarySampleSender credits " + address); // $NON-NLS-1$
+        creditReader.setDaemon(true);
+        creditReader.start();
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sendQueuedSamples();
+            }
+        }, "BinarySampleSender " + address); // $NON-NLS-1$
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Gets the connection to a receiver, opening it if needed.
+     * Each call must be followed by a call to {@link #testEnded(BinarySampleSender, String)}.
+     *
+     * @param host host of the receiver
+     * @param port port of the receiver
+     * @param capacity size of the queue of samples, used if the connection is opened
+     * @param deflate true to compress the frames, used if the connection is opened
+     * @return the connection
+     * @throws IOException if the connection cannot be opened
+     */
+    static BinarySampleConnection open(String host, int port, int capacity, boolean deflate) throws IOException {
+        String address = host + ":" + port;
+        synchronized (CONNECTIONS) {
+            BinarySampleConnection connection = CONNECTIONS.get(address);
+            if (connection == null || connection.broken) {
+                connection = new BinarySampleConnection(host, port, capacity, deflate);
+                log.info("Sending samples to " + address + ", queue size: " + capacity + ", compression: " + deflate);
+                CONNECTIONS.put(address, connection);
+            }
+            connection.users++;
+            return connection;
+        }
+    }
+
+    /**
+     * Queues a sample, waiting if the queue is full
+     * @param sender sender of the sample
+     * @param event sample
+     * @return false if the sample must be sent by the caller as the thread was interrupted
+     */
+    boolean sampleOccurred(BinarySampleSender sender, SampleEvent event) {
+        return queue(new Entry(sender, event, null));
+    }
+
+    /**
+     * Queues the end of the test of sender, and closes the connection if it was its last user
+     * @param sender sender whose test ended
+     * @param host host on which the test ended
+     * @return false if the end of the test must be sent by the caller as the thread was interrupted
+     */
+    boolean testEnded(BinarySampleSender sender, String host) {
+        boolean queued = queue(new Entry(sender, null, host));
+        boolean close;
+        synchronized (CONNECTIONS) {
+            close = --users == 0;
+            if (close && CONNECTIONS.get(address) == this) {
+                CONNECTIONS.remove(address);
+            }
+        }
+        if (close) {
+            try {
+                queue.put(CLOSE); // the worker drains the queue even if the connection failed
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Queues the entry even if the connection failed, as the worker may still be sending with RMI
+     * the entries queued before: it is alive until the last user has ended its test.
+     */
+    private boolean queue(Entry entry) {
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Loop of the worker thread
+     */
+    private void sendQueuedSamples() {
+        List<Entry> frameEntries = new ArrayList<>();
+        boolean closed = false;
+        try {
+            while (!closed) {
+                Entry entry = queue.take();
+                do {
+                    if (entry == CLOSE) {
+                        closed = true;
+                        break;
+                    }
+                    frameEntries.add(entry);
+                    if (!broken) {
+                        encode(entry);
+                    }
+                } while (frameEntries.size() < maxFrameSamples && (entry = queue.poll()) != null);
+                if (!broken && encoder.size() > 0) {
+                    try {
+                        writeFrame();
+                    } catch (IOException e) {
+                        if (!broken) {
+                            broken = true;
+                            log.error("Could not send samples to " + address + ", sending them with RMI", e);
+                        }
+                    }
+                }
+                encoder.reset();
+                if (broken) {
+                    // The entries queued after the failure are sent with RMI too
+                    for (Entry frameEntry : frameEntries) {
+                        if (frameEntry.event != null) {
+                            frameEntry.sender.sampleOccurredRemotely(frameEntry.event);
+                        } else {
+                            frameEntry.sender.testEndedRemotely(frameEntry.host);
+                        }
+                    }
+                }
+                frameEntries.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close();
+        }
+        log.debug("Worker ended");
+    }
+
+    private void encode(Entry entry) {
+        int listenerId = entry.sender.getListenerId();
+        if (entry.event == null) {
+            encoder.writeTestEnded(listenerId, entry.host);
+            return;
+        }
+        try {
+            encoder.writeSample(listenerId, entry.event);
+        } catch (IOException e) {
+            log.error("Could not encode sample " + entry.event.getResult().getSampleLabel(), e);
+        }
+    }
+
+    private void writeFrame() throws IOException, InterruptedException {
+        byte[] payload = encoder.getBuffer();
+        int length = encoder.size();
+        int payloadLength = length;
+        if (deflater != null) {
+            payloadLength = deflate(payload, length);
+            payload = compressed;
+        }
+        while (!credits.tryAcquire(1, TimeUnit.SECONDS)) {
+            if (broken) {
+                throw new IOException("Connection to " + address + " failed while waiting for credits");
+            }
+        }
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+        header.putInt(length).putInt(payloadLength).flip();
+        ByteBuffer[] frame = { header, ByteBuffer.wrap(payload, 0, payloadLength) };
+        while (frame[1].hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    /**
+     * Compresses the records of the frame. The compression is flushed but not ended,
+     * so that the strings of previous frames are still used to compress the next ones.
+     * @return length of the compressed records, written in {@link #compressed}
+     */
+    private int deflate(byte[] records, int length) {
+        deflater.setInput(records, 0, length);
+        int count = 0;
+        while (true) {
+            count += deflater.deflate(compressed, count, compressed.length - count, Deflater.SYNC_FLUSH);
+            if (count < compressed.length) {
+                return count;
+            }
+            compressed = Arrays.copyOf(compressed, compressed.length * 2);
+        }
+    }
+
+    /**
+     * Loop of the credit reader thread
+     */
+    private void readCredits() {
+        ByteBuffer credit = ByteBuffer.allocate(4);
+        try {
+            while (true) {
+                credit.clear();
+                while (credit.hasRemaining()) {
+                    if (channel.read(credit) < 0) {
+                        throw new EOFException("Connection closed by " + address);
+                    }
+                }
+                credit.flip();
+                credits.release(credit.getInt());
+            }
+        } catch (IOException e) {
+            if (!closing) {
+                broken = true;
+                log.error("Connection to " + address + " failed, sending samples with RMI", e);
+            }
+        } finally {
+            closeChannel();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Ends the sending of samples. The receiver closes the connection once it has read the last frame,
+     * which ends the credit reader.
+     */
+    private void close() {
+        closing = true;
+        if (deflater != null) {
+            deflater.end();
+        }
+        if (!broken) {
+            try {
+                channel.shutdownOutput();
+                return;
+            } catch (IOException e) {
+                log.warn("Could not end connection to " + address, e);
+            }
+        }
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Could not close connection to " + address, e);
+        }
+    }
+}
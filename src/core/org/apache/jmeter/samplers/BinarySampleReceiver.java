@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Receives on the client the samples sent by the {@link BinarySampleSender}s of the servers,
+ * and passes them to the listeners of the client.
+ * <p>
+ * Each server opens one connection, read by a thread of the receiver.
+ * The receiver grants the server credits for a few frames, then a new credit each time it has processed a frame.
+ * @since 3.2
+ */
+final class BinarySampleReceiver {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** Number of frames a server can send before the receiver has processed them */
+    private static final int CREDITS = JMeterUtils.getPropDefault("binary.sample_sender.credits", 8); // $NON-NLS-1$
+
+    private static BinarySampleReceiver instance; // guarded by class
+
+    private final ServerSocketChannel serverChannel;
+
+    private final String host;
+
+    private final int port;
+
+    private final ConcurrentMap<Integer, RemoteSampleListener> listeners = new ConcurrentHashMap<>();
+
+    private final AtomicInteger lastListenerId = new AtomicInteger();
+
+    private BinarySampleReceiver() throws IOException {
+        // Servers use the same address as for RMI callbacks by default
+        host = JMeterUtils.getPropDefault("binary.sample_sender.host", // $NON-NLS-1$
+                System.getProperty("java.rmi.server.hostname", JMeterUtils.getLocalHostIP())); // $NON-NLS-1$
+        serverChannel = ServerSocketChannel.open();
+        try {
+            // The samples are not authenticated, so only the address given to the servers is listened on
+            serverChannel.bind(new InetSocketAddress(InetAddress.getByName(host),
+                    JMeterUtils.getPropDefault("binary.sample_sender.port", 0))); // $NON-NLS-1$
+        } catch (IOException e) {
+            serverChannel.close();
+            throw e;
+        }
+        port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "BinarySampleReceiver"); // $NON-NLS-1$
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Receiving samples on " + host + ":" + port + ", credits: " + CREDITS);
+    }
+
+    /**
+     * @return the receiver, started on first call
+     * @throws IOException if the receiver cannot be started
+     */
+    static synchronized BinarySampleReceiver getInstance() throws IOException {
+        if (instance == null) {
+            instance = new BinarySampleReceiver();
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a listener until the end of its test
+     * @param listener listener of the samples
+     * @return id of the listener, sent with its samples
+     */
+    int register(RemoteSampleListener listener) {
+        int id = lastListenerId.incrementAndGet();
+        listeners.put(Integer.valueOf(id), listener);
+        return id;
+    }
+
+    /**
+     * @return host the servers connect to
+     */
+    String getHost() {
+        return host;
+    }
+
+    /**
+     * @return port the servers connect to
+     */
+    int getPort() {
+        return port;
+    }
+
+    private void acceptConnections() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                log.error("Stopped receiving samples", e);
+                return;
+            }
+            Thread reader = new Thread(new Connection(channel), "BinarySampleReceiver " + remoteAddress(channel)); // $NON-NLS-1$
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    private static String remoteAddress(SocketChannel channel) {
+        try {
+            SocketAddress address = channel.getRemoteAddress();
+            return String.valueOf(address);
+        } catch (IOException e) {
+            return "?"; // $NON-NLS-1$
+        }
+    }
+
+    /**
+     * Reads the frames of a server
+     */
+    private final class Connection implements Runnable, BinarySampleCodec.RecordListener {
+
+        private final SocketChannel channel;
+
+        private final String address;
+
+        private final BinarySampleCodec.Decoder decoder = new BinarySampleCodec.Decoder();
+
+        private final ByteBuffer header = ByteBuffer.allocate(BinarySampleConnection.FRAME_HEADER_SIZE);
+
+        private final ByteBuffer credit = ByteBuffer.allocate(4);
+
+        private Inflater inflater; // null if frames are not compressed
+
+        private byte[] payload = new byte[8192];
+
+        private byte[] records = new byte[8192];
+
+        /** Consecutive samples of the same listener, passed as one batch */
+        private List<SampleEvent> batch = new ArrayList<>();
+
+        private int batchListenerId;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.address = remoteAddress(channel);
+        }
+
+        @Override
+        public void run() {
+            try {
+                ByteBuffer handshake = ByteBuffer.allocate(6);
+                if (!readFully(handshake)) {
+                    throw new EOFException("No handshake");
+                }
+                handshake.flip();
+                if (handshake.getInt() != BinarySampleConnection.MAGIC) {
+                    throw new IOException("Not a sample sender");
+                }
+                int version = handshake.get();
+                if (version != BinarySampleConnection.VERSION) {
+                    throw new IOException("Unsupported version: " + version);
+                }
+                if ((handshake.get() & BinarySampleConnection.FLAG_DEFLATE) != 0) {
+                    inflater = new Inflater();
+                }
+                log.info("Receiving samples from " + address);
+                grantCredits(CREDITS);
+                while (readFrame()) {
+                    decoder.decode(records, header.getInt(0), this);
+                    sendBatch();
+                    grantCredits(1);
+                }
+                log.info("Connection closed by " + address);
+            } catch (IOException | RuntimeException e) {
+                log.error("Stopped receiving samples from " + address, e);
+            } finally {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.warn("Could not close connection from " + address, e);
+                }
+                if (inflater != null) {
+                    inflater.end();
+                }
+            }
+        }
+
+        /**
+         * Reads a frame, and uncompresses its records in {@link #records}
+         * @return false if the connection was closed
+         */
+        private boolean readFrame() throws IOException {
+            header.clear();
+            if (!readFully(header)) {
+                return false;
+            }
+            int length = header.getInt(0);
+            int payloadLength = header.getInt(4);
+            if (length < 0 || payloadLength < 0) {
+                throw new IOException("Invalid frame length: " + length + ", " + payloadLength);
+            }
+            if (records.length < length) {
+                records = new byte[Math.max(length, records.length * 2)];
+            }
+            if (inflater == null) {
+                readFully(records, payloadLength);
+                return true;
+            }
+            if (payload.length < payloadLength) {
+                payload = new byte[Math.max(payloadLength, payload.length * 2)];
+            }
+            readFully(payload, payloadLength);
+            inflater.setInput(payload, 0, payloadLength);
+            int count = 0;
+            try {
+                while (count < length) {
+                    int inflated = inflater.inflate(records, count, length - count);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Truncated compressed frame");
+                    }
+                    count += inflated;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Invalid compressed frame", e);
+            }
+            return true;
+        }
+
+        private void readFully(byte[] bytes, int length) throws IOException {
+            if (!readFully(ByteBuffer.wrap(bytes, 0, length))) {
+                throw new EOFException("Truncated frame");
+            }
+        }
+
+        /**
+         * @return false if the connection was closed before any byte was read
+         */
+        private boolean readFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    if (buffer.position() == 0) {
+                        return false;
+                    }
+                    throw new EOFException("Truncated frame");
+                }
+            }
+            return true;
+        }
+
+        private void grantCredits(int count) throws IOException {
+            credit.clear();
+            credit.putInt(count).flip();
+            while (credit.hasRemaining()) {
+                channel.write(credit);
+            }
+        }
+
+        @Override
+        public void sampleOccurred(int listenerId, SampleEvent event) {
+            if (listenerId != batchListenerId) {
+                sendBatch();
+                batchListenerId = listenerId;
+            }
+            batch.add(event);
+        }
+
+        @Override
+        public void testEnded(int listenerId, String testHost) {
+            sendBatch();
+            RemoteSampleListener listener = listeners.remove(Integer.valueOf(listenerId));
+            if (listener == null) {
+                log.warn("Test ended on " + testHost + " for unknown listener " + listenerId);
+                return;
+            }
+            try {
+                listener.testEnded(testHost);
+            } catch (RemoteException e) {
+                log.warn("testEnded(host)" + e);
+            }
+        }
+
+        private void sendBatch() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            RemoteSampleListener listener = listeners.get(Integer.valueOf(batchListenerId));
+            if (listener == null) {
+                log.warn("Dropping " + batch.size() + " samples of unknown listener " + batchListenerId
+                        + " from " + address);
+                batch.clear();
+                return;
+            }
+            List<SampleEvent> samples = batch;
+            batch = new ArrayList<>(samples.size());
+            try {
+                listener.processBatch(samples);
+            } catch (RemoteException e) {
+                log.error("Failed to process samples from " + address, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.rmi.RemoteException;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JMeterError;
+import org.apache.log.Logger;
+
+/**
+ * Sends samples in a separate thread, over a socket opened by the server to the client
+ * instead of RMI, using a compact binary encoding (see {@link BinarySampleCodec}).
+ * <p>
+ * The samples of all the listeners of a server share one connection, whose frames may be compressed.
+ * The client grants credits to the server, so that the server waits when the client cannot keep up.
+ * If the connection cannot be opened or fails, the samples are sent with RMI.
+ * @since 3.2
+ */
+public class BinarySampleSender extends AbstractSampleSender implements Serializable {
+
+    private static final long serialVersionUID = 320L;
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    private static final String COMPRESSION_DEFLATE = "deflate"; // $NON-NLS-1$
+
+    private static final int serverConfiguredCapacity =
+            JMeterUtils.getPropDefault("binary.sample_sender.queue.size", DEFAULT_QUEUE_SIZE); // $NON-NLS-1$
+
+    private static final boolean serverConfiguredDeflate = COMPRESSION_DEFLATE.equalsIgnoreCase(
+            JMeterUtils.getPropDefault("binary.sample_sender.compression", "none")); // $NON-NLS-1$ // $NON-NLS-2$
+
+    // instance fields are copied from the client instance
+    private final int clientConfiguredCapacity =
+            JMeterUtils.getPropDefault("binary.sample_sender.queue.size", DEFAULT_QUEUE_SIZE); // $NON-NLS-1$
+
+    private final boolean clientConfiguredDeflate = COMPRESSION_DEFLATE.equalsIgnoreCase(
+            JMeterUtils.getPropDefault("binary.sample_sender.compression", "none")); // $NON-NLS-1$ // $NON-NLS-2$
+
+    // created by client, used if the connection fails
+    private final RemoteSampleListener listener;
+
+    // id of the listener in the receiver of the client
+    private final int listenerId;
+
+    private final String receiverHost;
+
+    private final int receiverPort;
+
+    private transient BinarySampleConnection connection; // created by server in readResolve method, null if it failed
+
+    // Created by SampleSenderFactory
+    protected BinarySampleSender(RemoteSampleListener listener) {
+        this.listener = listener;
+        BinarySampleReceiver receiver;
+        try {
+            receiver = BinarySampleReceiver.getInstance();
+        } catch (IOException e) {
+            throw new JMeterError("Could not start receiving samples", e);
+        }
+        listenerId = receiver.register(listener);
+        receiverHost = receiver.getHost();
+        receiverPort = receiver.getPort();
+        log.info("Using Binary Remote Sampler for this test run, queue size " + getCapacity()); // client log file
+    }
+
+    /**
+     * Processed by the RMI server code.
+     *
+     * @return this
+     * @throws ObjectStreamException never
+     */
+    private Object readResolve() throws ObjectStreamException {
+        int capacity = getCapacity();
+        boolean deflate = isClientConfigured() ? clientConfiguredDeflate : serverConfiguredDeflate;
+        try {
+            connection = BinarySampleConnection.open(receiverHost, receiverPort, capacity, deflate);
+        } catch (IOException e) {
+            log.error("Could not connect to " + receiverHost + ":" + receiverPort
+                    + " to send samples, sending them with RMI", e); // server log file
+        }
+        return this;
+    }
+
+    /**
+     * @return capacity
+     */
+    private int getCapacity() {
+        return isClientConfigured() ?
+                clientConfiguredCapacity : serverConfiguredCapacity;
+    }
+
+    /**
+     * @return id of the listener in the receiver of the client
+     */
+    int getListenerId() {
+        return listenerId;
+    }
+
+    @Override
+    public void testEnded(String host) {
+        log.debug("Test Ended on " + host);
+        if (connection == null || !connection.testEnded(this, host)) {
+            testEndedRemotely(host);
+        }
+    }
+
+    @Override
+    public void sampleOccurred(SampleEvent e) {
+        if (connection == null || !connection.sampleOccurred(this, e)) {
+            sampleOccurredRemotely(e);
+        }
+    }
+
+    /**
+     * Sends a sample with RMI
+     * @param e sample
+     */
+    void sampleOccurredRemotely(SampleEvent e) {
+        try {
+            listener.sampleOccurred(e);
+        } catch (RemoteException err) {
+            log.error("sampleOccurred", err);
+        }
+    }
+
+    /**
+     * Sends the end of the test with RMI
+     * @param host host on which the test ended
+     */
+    void testEndedRemotely(String host) {
+        try {
+            listener.testEnded(host);
+        } catch (RemoteException ex) {
+            log.warn("testEnded(host)" + ex);
+        }
+    }
+}
@@ -19,27 +19,40 @@
 package org.apache.jmeter.samplers;
 
 import org.apache.log.Logger;
-import org.apache.commons.io.IOUtils;
+import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.logging.LoggingManager;
-import org.apache.jorphan.util.JMeterError;
 
 import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.ObjectStreamException;
-import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Version of HoldSampleSender that stores the samples on disk as a serialised stream.
+ * Version of HoldSampleSender that stores the samples on disk, in an append-only spool file.
+ * <p>
+ * Each sampler thread encodes its samples in its own buffer (see {@link BinarySampleCodec}),
+ * which is appended to the spool file by a single writer thread as a frame that can be decoded on its own.
+ * A worker thread sends the frames to the client during the test, and the remaining ones at the end of the test.
+ * Frames are decoded in parallel, and sent by chunks; the offset of the next frame to send only moves
+ * when a chunk has been received by the client, so a chunk which failed is sent again.
  */
 
 public class DiskStoreSampleSender extends AbstractSampleSender implements Serializable {
@@ -47,11 +60,73 @@ public class DiskStoreSampleSender extends AbstractSampleSender implements Seria
 
     private static final long serialVersionUID = 252L;
 
+    private static final int DEFAULT_BUFFER_SIZE = 16384;
+
+    private static final long DEFAULT_SEND_INTERVAL = 1000L;
+
+    /** Size of the frames read, decoded and sent together */
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    /** Number of times the last chunks are sent again at the end of the test, when they fail */
+    private static final int MAX_RETRIES = 5;
+
+    private static final long RETRY_DELAY = 1000L;
+
+    private static final int FRAME_HEADER_SIZE = 4;
+
+    private static final int serverConfiguredBufferSize =
+            JMeterUtils.getPropDefault("diskstore.sample_sender.buffer.size", DEFAULT_BUFFER_SIZE); // $NON-NLS-1$
+
+    private static final long serverConfiguredSendInterval =
+            JMeterUtils.getPropDefault("diskstore.sample_sender.send.interval", DEFAULT_SEND_INTERVAL); // $NON-NLS-1$
+
+    // instance fields are copied from the client instance
+    private final int clientConfiguredBufferSize =
+            JMeterUtils.getPropDefault("diskstore.sample_sender.buffer.size", DEFAULT_BUFFER_SIZE); // $NON-NLS-1$
+
+    private final long clientConfiguredSendInterval =
+            JMeterUtils.getPropDefault("diskstore.sample_sender.send.interval", DEFAULT_SEND_INTERVAL); // $NON-NLS-1$
+
     private final RemoteSampleListener listener;
 
-    private transient volatile ObjectOutputStream oos;
     private transient volatile File temporaryFile;
-    private transient volatile ExecutorService singleExecutor;
+
+    private transient volatile FileChannel channel;
+
+    // Configuration items, set up by readResolve
+    private transient int bufferSize;
+
+    private transient long sendInterval;
+
+    private transient ThreadLocal<SpoolBuffer> buffers;
+
+    // All the buffers, so that they can be written when the threads do not sample any more
+    private transient Queue<SpoolBuffer> allBuffers;
+
+    // Appends the frames to the file; the file is only used by this thread and the worker thread,
+    // which are never interrupted, as interrupting a thread using a FileChannel closes it
+    private transient ExecutorService singleExecutor;
+
+    // Length of the frames completely written to the file
+    private transient volatile long writtenLength;
+
+    // Offset of the first frame which has not been received by the client, only used by the sending thread
+    private transient long sentOffset;
+
+    private transient ExecutorService decoders;
+
+    private transient Thread worker;
+
+    private transient CountDownLatch ended;
+
+    /**
+     * Buffer of the samples of a thread, appended to the file when full
+     */
+    private static final class SpoolBuffer {
+        private final BinarySampleCodec.Encoder encoder = new BinarySampleCodec.Encoder();
+
+        private long firstSampleTime;
+    }
 
     /**
      * @deprecated only for use by test code
@@ -70,74 +145,212 @@ public class DiskStoreSampleSender extends AbstractSampleSender implements Seria
     @Override
     public void testEnded(String host) {
         log.info("Test Ended on " + host);
-        singleExecutor.submit(new Runnable(){
-            @Override
-            public void run() {
-                try {
-                    oos.close(); // ensure output is flushed
-                } catch (IOException e) {
-                    log.error("Failed to close data file ", e);
-                }                
-            }});
-        singleExecutor.shutdown(); // finish processing samples
         try {
-            if (!singleExecutor.awaitTermination(3, TimeUnit.SECONDS)) {
-                log.error("Executor did not terminate in a timely fashion");
-            }
-        } catch (InterruptedException e1) {
-            log.error("Executor did not terminate in a timely fashion", e1);
-        }
-        ObjectInputStream ois = null;
-        try {
-            ois = new ObjectInputStream(new FileInputStream(temporaryFile));
-            Object obj = null;
-            while((obj = ois.readObject()) != null) {
-                if (obj instanceof SampleEvent) {
-                    try {
-                        listener.sampleOccurred((SampleEvent) obj);
-                    } catch (RemoteException err) {
-                        if (err.getCause() instanceof java.net.ConnectException){
-                            throw new JMeterError("Could not return sample",err);
-                        }
-                        log.error("returning sample", err);
+            if (channel != null) {
+                for (SpoolBuffer buffer : allBuffers) {
+                    synchronized (buffer) {
+                        append(buffer);
                     }
-                } else {
-                    log.error("Unexpected object type found in data file "+obj.getClass().getName());
                 }
-            }                    
-        } catch (EOFException err) {
-            // expected
-        } catch (IOException | ClassNotFoundException err) {
-            log.error("returning sample", err);
+                singleExecutor.shutdown(); // finish writing samples
+                if (!singleExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    log.error("Executor did not terminate in a timely fashion");
+                }
+                ended.countDown(); // the worker sends the remaining samples
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            log.error("Samples may not have been returned", e);
+            Thread.currentThread().interrupt();
         } finally {
             try {
                 listener.testEnded(host);
             } catch (RemoteException e) {
                 log.error("returning sample", e);
             }
-            IOUtils.closeQuietly(ois);
-            if(!temporaryFile.delete()) {
-                log.warn("Could not delete file:"+temporaryFile.getAbsolutePath());
+            decoders.shutdown();
+            if (channel != null) {
+                close();
             }
         }
     }
 
     @Override
     public void sampleOccurred(final SampleEvent e) {
-        // sampleOccurred is called from multiple threads; not safe to write from multiple threads.
-        // also decouples the file IO from sample generation
-        singleExecutor.submit(new Runnable() {
+        if (channel == null) {
+            return; // reported by readResolve
+        }
+        SpoolBuffer buffer = buffers.get();
+        synchronized (buffer) {
+            try {
+                if (buffer.encoder.size() == 0) {
+                    buffer.firstSampleTime = System.currentTimeMillis();
+                }
+                buffer.encoder.writeSample(0, e);
+                if (buffer.encoder.size() >= bufferSize) {
+                    append(buffer);
+                }
+            } catch (IOException err) {
+                log.error("sampleOccurred", err);
+            }
+        }
+    }
+
+    /**
+     * Appends the samples of a buffer to the file as a frame, and empties the buffer;
+     * the caller must synchronize on the buffer
+     * @param buffer buffer to write
+     */
+    private void append(SpoolBuffer buffer) {
+        int size = buffer.encoder.size();
+        if (size == 0) {
+            return;
+        }
+        final ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + size);
+        frame.putInt(size).put(buffer.encoder.getBuffer(), 0, size).flip();
+        buffer.encoder.clear();
+        try {
+            singleExecutor.submit(new Runnable() {
                 @Override
                 public void run() {
                     try {
-                        oos.writeObject(e);
+                        writtenLength += writeFully(frame, writtenLength);
                     } catch (IOException err) {
                         log.error("sampleOccurred", err);
-                    }                
+                    }
+                }
+            });
+        } catch (RejectedExecutionException err) {
+            log.error("Sample received after the end of the test", err);
+        }
+    }
+
+    private int writeFully(ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    /**
+     * Loop of the worker thread, which sends the frames during the test if enabled,
+     * then the remaining ones once testEnded() has written them
+     */
+    private void sendSamples() {
+        try {
+            if (sendInterval > 0) {
+                while (!ended.await(sendInterval, TimeUnit.MILLISECONDS)) {
+                    long oldest = System.currentTimeMillis() - sendInterval;
+                    for (SpoolBuffer buffer : allBuffers) {
+                        synchronized (buffer) {
+                            if (buffer.encoder.size() > 0 && buffer.firstSampleTime <= oldest) {
+                                append(buffer);
+                            }
+                        }
+                    }
+                    sendFrames(false);
                 }
-            
+            } else {
+                ended.await();
             }
-        );
+            sendFrames(true);
+        } catch (InterruptedException | IOException e) {
+            log.error("returning sample", e);
+        }
+    }
+
+    /**
+     * Sends the frames written to the file which have not been received by the client yet
+     * @param testEnded true at the end of the test, to retry chunks which fail; false to give up until the next call
+     * @throws IOException if the file cannot be read
+     * @throws InterruptedException if interrupted while decoding or retrying
+     */
+    private void sendFrames(boolean testEnded) throws IOException, InterruptedException {
+        long end = writtenLength;
+        while (sentOffset < end) {
+            long chunkEnd = sentOffset;
+            List<Future<List<SampleEvent>>> decoded = new ArrayList<>();
+            while (chunkEnd < end && (chunkEnd == sentOffset || chunkEnd - sentOffset < CHUNK_SIZE)) {
+                ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+                readFully(header, chunkEnd);
+                int size = header.getInt(0);
+                final ByteBuffer frame = ByteBuffer.allocate(size);
+                readFully(frame, chunkEnd + FRAME_HEADER_SIZE);
+                decoded.add(decoders.submit(new Callable<List<SampleEvent>>() {
+                    @Override
+                    public List<SampleEvent> call() throws IOException {
+                        return decode(frame);
+                    }
+                }));
+                chunkEnd += FRAME_HEADER_SIZE + size;
+            }
+            List<SampleEvent> events = new ArrayList<>();
+            for (Future<List<SampleEvent>> future : decoded) {
+                try {
+                    events.addAll(future.get());
+                } catch (ExecutionException e) {
+                    throw new IOException("Invalid frame in " + temporaryFile, e.getCause());
+                }
+            }
+            int failures = 0;
+            while (!send(events)) {
+                if (!testEnded) {
+                    return;
+                }
+                if (++failures > MAX_RETRIES) {
+                    log.error("Could not return " + (writtenLength - sentOffset) + " bytes of samples");
+                    return;
+                }
+                TimeUnit.MILLISECONDS.sleep(RETRY_DELAY);
+            }
+            sentOffset = chunkEnd;
+        }
+    }
+
+    private boolean send(List<SampleEvent> events) {
+        try {
+            listener.processBatch(events);
+            return true;
+        } catch (RemoteException err) {
+            log.warn("Failed to return " + events.size() + " samples, they will be sent again: " + err);
+            return false;
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of " + temporaryFile);
+            }
+        }
+    }
+
+    private static List<SampleEvent> decode(ByteBuffer frame) throws IOException {
+        final List<SampleEvent> events = new ArrayList<>();
+        new BinarySampleCodec.Decoder().decode(frame.array(), frame.capacity(), new BinarySampleCodec.RecordListener() {
+            @Override
+            public void sampleOccurred(int listenerId, SampleEvent event) {
+                events.add(event);
+            }
+
+            @Override
+            public void testEnded(int listenerId, String host) {
+                // not written in the file
+            }
+        });
+        return events;
+    }
+
+    private void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close data file " + temporaryFile, e);
+        }
+        if(!temporaryFile.delete()) {
+            log.warn("Could not delete file:"+temporaryFile.getAbsolutePath());
+        }
     }
 
     /**
@@ -150,24 +363,44 @@ public class DiskStoreSampleSender extends AbstractSampleSender implements Seria
     // TODO should errors be thrown back through RMI?
     private Object readResolve() throws ObjectStreamException{
         log.info("Using DiskStoreSampleSender for this test run"); // server log file
+        bufferSize = isClientConfigured() ? clientConfiguredBufferSize : serverConfiguredBufferSize;
+        sendInterval = isClientConfigured() ? clientConfiguredSendInterval : serverConfiguredSendInterval;
         singleExecutor = Executors.newSingleThreadExecutor();
+        ended = new CountDownLatch(1);
+        allBuffers = new ConcurrentLinkedQueue<>();
+        buffers = new ThreadLocal<SpoolBuffer>() {
+            @Override
+            protected SpoolBuffer initialValue() {
+                SpoolBuffer buffer = new SpoolBuffer();
+                allBuffers.add(buffer);
+                return buffer;
+            }
+        };
+        decoders = Executors.newFixedThreadPool(Math.min(4, Runtime.getRuntime().availableProcessors()),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "DiskStoreSampleSender decoder"); // $NON-NLS-1$
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
         try {
             temporaryFile = File.createTempFile("SerialisedSampleSender", ".ser");
             temporaryFile.deleteOnExit();
-            singleExecutor.submit(new Runnable(){
-                @Override
-                public void run() {
-                    OutputStream anOutputStream;
-                    try {
-                        anOutputStream = new FileOutputStream(temporaryFile);
-                        oos = new ObjectOutputStream(anOutputStream);
-                    } catch (IOException e) {
-                        log.error("Failed to create output Stream", e);
-                    }
-                }});
+            channel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
         } catch (IOException e) {
             log.error("Failed to create output file", e);
+            return this;
         }
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sendSamples();
+            }
+        }, "DiskStoreSampleSender"); // $NON-NLS-1$
+        worker.setDaemon(true);
+        worker.start();
         return this;
     }
 }
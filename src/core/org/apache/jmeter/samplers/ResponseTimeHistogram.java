@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Histogram of response times which can be merged with other histograms,
+ * so that percentiles can be computed from the histograms of several samples or hosts.
+ * <p>
+ * Values up to 127 are counted exactly. Larger values are counted in buckets
+ * whose width is less than 1/64th of their values, so percentiles are accurate to 2%.
+ * <p>
+ * Not thread-safe.
+ * @since 3.2
+ */
+public class ResponseTimeHistogram implements Serializable {
+
+    private static final long serialVersionUID = 320L;
+
+    /** Number of buckets of width 1, then of buckets per power of 2 */
+    private static final int EXACT_BUCKETS = 128;
+
+    private static final int BUCKETS_PER_POWER = EXACT_BUCKETS / 2;
+
+    private static final int PRECISION_BITS = 7; // EXACT_BUCKETS = 1 << PRECISION_BITS
+
+    private transient long[] counts = new long[EXACT_BUCKETS];
+
+    private transient long totalCount;
+
+    /**
+     * @param value value to count, negative values being counted as 0
+     */
+    public void add(long value) {
+        add(value, 1);
+    }
+
+    /**
+     * @param value value to count, negative values being counted as 0
+     * @param count number of times value occurred
+     */
+    public void add(long value, long count) {
+        int index = getIndex(Math.max(value, 0));
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length + BUCKETS_PER_POWER));
+        }
+        counts[index] += count;
+        totalCount += count;
+    }
+
+    /**
+     * Adds the counts of another histogram
+     * @param other histogram to merge in this one
+     */
+    public void add(ResponseTimeHistogram other) {
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+    }
+
+    /**
+     * @return number of values counted
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @param percent percentage between 0 and 100
+     * @return value below or at which percent of the values are, 0 if there is none
+     */
+    public long getValueAtPercentile(double percent) {
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * totalCount));
+        long cumulated = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulated += counts[i];
+            if (cumulated >= rank) {
+                return getBucketValue(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return number of buckets, some of which may be empty
+     */
+    public int getBucketCount() {
+        return counts.length;
+    }
+
+    /**
+     * @param index index of a bucket
+     * @return number of values counted in the bucket
+     */
+    public long getCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * @param index index of a bucket
+     * @return value representing the values counted in the bucket
+     */
+    public static long getBucketValue(int index) {
+        if (index < EXACT_BUCKETS) {
+            return index;
+        }
+        int shift = (index - EXACT_BUCKETS) / BUCKETS_PER_POWER + 1;
+        long lowest = (long) ((index - EXACT_BUCKETS) % BUCKETS_PER_POWER + BUCKETS_PER_POWER) << shift;
+        return lowest + ((1L << shift) - 1) / 2;
+    }
+
+    private static int getIndex(long value) {
+        if (value < EXACT_BUCKETS) {
+            return (int) value;
+        }
+        // Keep the PRECISION_BITS - 1 bits after the highest one
+        int shift = 64 - Long.numberOfLeadingZeros(value) - PRECISION_BITS;
+        return EXACT_BUCKETS + (shift - 1) * BUCKETS_PER_POWER + (int) (value >>> shift) - BUCKETS_PER_POWER;
+    }
+
+    /**
+     * Only writes the buckets which are not empty
+     * @param out stream
+     * @throws IOException if the histogram cannot be written
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        int used = 0;
+        for (long count : counts) {
+            if (count != 0) {
+                used++;
+            }
+        }
+        out.writeInt(used);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                out.writeInt(i);
+                out.writeLong(counts[i]);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        counts = new long[EXACT_BUCKETS];
+        int used = in.readInt();
+        for (int i = 0; i < used; i++) {
+            int index = in.readInt();
+            if (index < 0) {
+                throw new IOException("Invalid bucket: " + index);
+            }
+            long count = in.readLong();
+            if (index >= counts.length) {
+                counts = Arrays.copyOf(counts, index + 1);
+            }
+            counts[index] = count;
+            totalCount += count;
+        }
+    }
+}
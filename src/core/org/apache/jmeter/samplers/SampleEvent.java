@@ -133,6 +133,30 @@ public class SampleEvent implements Serializable {
         this.isTransactionSampleEvent = isTransactionSampleEvent;
     }
 
+    /**
+     * Only intended for use when receiving samples from a server.
+     *
+     * @param result
+     *            The SampleResult to be associated with this event
+     * @param threadGroup
+     *            The name of the thread, the {@link SampleResult} was recorded
+     * @param hostname
+     *            The name of the host, for which the {@link SampleResult} was
+     *            recorded
+     * @param values
+     *            The values of the variables saved with the sample
+     * @param isTransactionSampleEvent
+     *            Flag whether this event is an transaction sample event
+     */
+    SampleEvent(SampleResult result, String threadGroup, String hostname, String[] values,
+            boolean isTransactionSampleEvent) {
+        this.result = result;
+        this.threadGroup = threadGroup;
+        this.hostname = hostname;
+        this.values = values;
+        this.isTransactionSampleEvent = isTransactionSampleEvent;
+    }
+
     /**
      * @param result
      *            The SampleResult to be associated with this event
@@ -192,6 +216,13 @@ public class SampleEvent implements Serializable {
         }
     }
 
+    /**
+     * @return the values of the variables saved with the sample
+     */
+    String[] getVarValues() {
+        return values;
+    }
+
     /**
      * Get the {@link SampleResult} associated with this event
      * 
@@ -32,6 +32,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.apache.jmeter.assertions.AssertionResult;
 import org.apache.jmeter.gui.Searchable;
+import org.apache.jmeter.util.ByteArrayCharSequence;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.jorphan.util.JOrphanUtils;
@@ -193,6 +194,16 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
      */
     private long connectTime = 0;
 
+    /**
+     * time spent waiting for a connection to be available in the pool
+     */
+    private long connectionWaitTime = 0;
+
+    /**
+     * time spent in TLS handshakes
+     */
+    private long handshakeTime = 0;
+
     /** Should thread start next iteration ? */
     private boolean startNextThreadLoop = false;
 
@@ -267,6 +278,11 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
      * Cache for responseData as string to avoid multiple computations
      */
     private volatile transient String responseDataAsString;
+
+    /**
+     * Cache for {@link #getResponseDataAsCharSequence()}
+     */
+    private volatile transient CharSequence responseDataAsCharSequence;
     
     private long sentBytes;
 
@@ -318,6 +334,8 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
         label = res.label;//OK
         latency = res.latency;
         connectTime = res.connectTime;
+        connectionWaitTime = res.connectionWaitTime;
+        handshakeTime = res.handshakeTime;
         location = res.location;//OK
         parent = res.parent; // TODO ??
         pauseTime = res.pauseTime;
@@ -325,6 +343,7 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
         responseCode = res.responseCode;//OK
         responseData = res.responseData;//OK
         responseDataAsString = null;
+        responseDataAsCharSequence = null;
         responseHeaders = res.responseHeaders;//OK
         responseMessage = res.responseMessage;//OK
         // Don't copy this; it is per instance resultFileName = res.resultFileName;
@@ -672,6 +691,7 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
      */
     public void setResponseData(byte[] response) {
         responseDataAsString = null;
+        responseDataAsCharSequence = null;
         responseData = response == null ? EMPTY_BA : response;
     }
 
@@ -687,6 +707,7 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
     @Deprecated
     public void setResponseData(String response) {
         responseDataAsString = null;
+        responseDataAsCharSequence = null;
         try {
             responseData = response.getBytes(getDataEncodingWithDefault());
         } catch (UnsupportedEncodingException e) {
@@ -704,6 +725,7 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
      */
     public void setResponseData(final String response, final String encoding) {
         responseDataAsString = null;
+        responseDataAsCharSequence = null;
         String encodeUsing = encoding != null? encoding : DEFAULT_CHARSET;
         try {
             responseData = response.getBytes(encodeUsing);
@@ -747,6 +769,33 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
         }
     }
 
+    /**
+     * Gets the responseData of the SampleResult object as a CharSequence.
+     * <p>
+     * When each byte of the response is one character in its encoding (ISO-8859-1,
+     * or US-ASCII and UTF-8 responses only made of ASCII characters), the result is a
+     * view of the response bytes which decodes characters as they are read,
+     * so that the response is not held a second time as a String.
+     * Otherwise, or if the String has already been computed, this is {@link #getResponseDataAsString()}.
+     *
+     * @return the responseData value as a CharSequence, converted according to the encoding
+     */
+    public CharSequence getResponseDataAsCharSequence() {
+        String asString = responseDataAsString;
+        if (asString != null) {
+            return asString;
+        }
+        CharSequence asCharSequence = responseDataAsCharSequence;
+        if (asCharSequence == null) {
+            asCharSequence = ByteArrayCharSequence.forEncoding(responseData, getDataEncodingWithDefault());
+            if (asCharSequence == null) {
+                asCharSequence = getResponseDataAsString();
+            }
+            responseDataAsCharSequence = asCharSequence;
+        }
+        return asCharSequence;
+    }
+
     public void setSamplerData(String s) {
         samplerData = s;
     }
@@ -918,6 +967,7 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
      */
     public void setDataEncoding(String dataEncoding) {
         this.dataEncoding = dataEncoding;
+        this.responseDataAsCharSequence = null;
     }
 
     /**
@@ -1304,6 +1354,38 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
         this.connectTime = time;
     }
 
+    /**
+     * @return time spent waiting for a connection to be available in a pool
+     * @since 3.2
+     */
+    public long getConnectionWaitTime() {
+        return connectionWaitTime;
+    }
+
+    /**
+     * @param time time spent waiting for a connection to be available in a pool
+     * @since 3.2
+     */
+    public void setConnectionWaitTime(long time) {
+        this.connectionWaitTime = time;
+    }
+
+    /**
+     * @return time spent in TLS handshakes, it is part of the connect time
+     * @since 3.2
+     */
+    public long getHandshakeTime() {
+        return handshakeTime;
+    }
+
+    /**
+     * @param time time spent in TLS handshakes
+     * @since 3.2
+     */
+    public void setHandshakeTime(long time) {
+        this.handshakeTime = time;
+    }
+
     /**
      * This is only intended for use by SampleResultConverter!
      *
@@ -1483,10 +1565,16 @@ public class SampleResult implements Serializable, Cloneable, Searchable {
     }
 
     /**
-     * Clean up cached data
+     * Clean up cached data, including the data of sub results
      */
     public void cleanAfterSample() {
         this.responseDataAsString = null;
+        this.responseDataAsCharSequence = null;
+        if (subResults != null) {
+            for (SampleResult subResult : subResults) {
+                subResult.cleanAfterSample();
+            }
+        }
     }
 
     @Override
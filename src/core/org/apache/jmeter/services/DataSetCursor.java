@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.services;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Position in an {@link IndexedDataFile} shared by the threads which use the same file alias.
+ * Each read claims the next row with an atomic increment, so that the threads never wait for each other.
+ * <p>
+ * The cursor may only see a partition of the rows: with n partitions, the partition k contains
+ * the rows k, k+n, k+2n... which are read without scanning the others.
+ *
+ * @see FileServer#reserveDataSet(String, String, String, boolean, boolean, Selection, int, int)
+ * @since 3.2
+ */
+public final class DataSetCursor {
+
+    /**
+     * Order in which the rows are read
+     */
+    public enum Selection {
+        /** In the order of the file */
+        SEQUENTIAL,
+        /** Randomly chosen for each read, so a row may be read several times and EOF is never reached */
+        RANDOM,
+        /**
+         * In a random order, each row being read only once;
+         * when recycled, the rows are read again in another order
+         */
+        UNIQUE
+    }
+
+    private static final String[] EOF = new String[0];
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private static final int PERMUTATION_ROUNDS = 4;
+
+    private final IndexedDataFile dataFile;
+
+    private final boolean hasHeader;
+
+    private final long firstRow;
+
+    private final long stride;
+
+    private final long rowCount;
+
+    private final Selection selection;
+
+    private final long seed;
+
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * @param dataFile the indexed file
+     * @param hasHeader whether the first row is a header
+     * @param selection order in which the rows are read
+     * @param partition index of the partition of the rows to read, from 0
+     * @param partitions number of partitions
+     */
+    DataSetCursor(IndexedDataFile dataFile, boolean hasHeader, Selection selection, int partition, int partitions) {
+        if (partitions < 1 || partition < 0 || partition >= partitions) {
+            throw new IllegalArgumentException("Invalid partition " + partition + " of " + partitions);
+        }
+        long dataRows = Math.max(0, dataFile.getRowCount() - (hasHeader ? 1 : 0));
+        this.dataFile = dataFile;
+        this.hasHeader = hasHeader;
+        this.firstRow = (hasHeader ? 1 : 0) + partition;
+        this.stride = partitions;
+        this.rowCount = partition < dataRows ? (dataRows - partition + partitions - 1) / partitions : 0;
+        this.selection = selection;
+        this.seed = ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * @return the header line, or null if the file has no header
+     */
+    public String getHeaderLine() {
+        return hasHeader ? dataFile.getLine(0) : null;
+    }
+
+    /**
+     * @return the number of rows of the partition, without the header line
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @param recycle whether the file should be re-started on EOF, not used for {@link Selection#RANDOM}
+     * @param delimiter the delimiter of the fields
+     * @return the fields of the next row, will be empty if the file is at EOF
+     * @throws IOException if the quoted fields of the row are invalid
+     */
+    public String[] next(boolean recycle, String delimiter) throws IOException {
+        if (rowCount == 0) {
+            return EOF;
+        }
+        long row;
+        if (selection == Selection.RANDOM) {
+            row = ThreadLocalRandom.current().nextLong(rowCount);
+        } else {
+            long claimed = next.getAndIncrement();
+            if (claimed >= rowCount && !recycle) {
+                return EOF;
+            }
+            row = claimed % rowCount;
+            if (selection == Selection.UNIQUE) {
+                row = permute(row, seed + claimed / rowCount * GOLDEN_GAMMA, rowCount);
+            }
+        }
+        return dataFile.getRow(firstRow + row * stride, delimiter);
+    }
+
+    /**
+     * Pseudo-random permutation of [0, size), which needs neither memory nor synchronization,
+     * so that the rows can be shuffled by claiming their positions with an atomic counter.
+     * <p>
+     * The rounds, which xor the key, multiply by an odd number and xor the high bits into the low bits,
+     * are bijections of [0, 2<sup>bits</sup>), where 2<sup>bits</sup> is the smallest power of 2 not less than size.
+     * They are repeated while the value is not less than size, which happens less than once on average.
+     *
+     * @param value the value to permute, in [0, size)
+     * @param key the key selecting the permutation
+     * @param size size of the permuted range
+     * @return the permuted value
+     */
+    static long permute(long value, long key, long size) {
+        if (size <= 1) {
+            return value;
+        }
+        int bits = 64 - Long.numberOfLeadingZeros(size - 1);
+        long mask = (1L << bits) - 1; // size is positive, so bits is less than 64
+        int shift = Math.max(1, bits / 2);
+        long x = value;
+        do {
+            long roundKey = key;
+            for (int round = 0; round < PERMUTATION_ROUNDS; round++) {
+                roundKey = mix(roundKey + GOLDEN_GAMMA);
+                x = ((x ^ roundKey) * GOLDEN_GAMMA) & mask;
+                x ^= x >>> shift;
+            }
+        } while (x >= size);
+        return x;
+    }
+
+    // Finalizer of SplitMix64, to derive the keys of the rounds
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
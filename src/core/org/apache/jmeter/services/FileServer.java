@@ -33,8 +33,12 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ThreadLocalRandom;
 
 import org.apache.commons.collections.ArrayStack;
@@ -81,11 +85,23 @@ public class FileServer {
     //@GuardedBy("this") NOTE this also guards against possible window in checkForOpenFiles()
     private final Map<String, FileEntry> files = new HashMap<>();
 
+    // Indexed files by path, character set and quoting; also guards their creation
+    private final Map<String, IndexedDataFile> indexedFiles = new HashMap<>();
+
+    // Read without holding any lock
+    private final ConcurrentMap<String, DataSetCursor> cursors = new ConcurrentHashMap<>();
+
     private static final FileServer server = new FileServer();
 
     // volatile needed to ensure safe publication
     private volatile String scriptName;
 
+    //@GuardedBy("this")
+    private int engineIndex = 0;
+
+    //@GuardedBy("this")
+    private int engineCount = 1;
+
     // Cannot be instantiated
     private FileServer() {
         base = new File(DEFAULT_BASE);
@@ -162,6 +178,42 @@ public class FileServer {
         log.info("Set new base='"+base+"'");
     }
 
+    /**
+     * Sets the position of this engine among the engines of a distributed test,
+     * which is used by the data sets partitioned between the engines.
+     *
+     * @param index index of this engine, from 0
+     * @param count number of engines running the test, 1 if the test is not distributed
+     * @throws IllegalArgumentException if index is not in [0, count)
+     * @since 3.2
+     */
+    public synchronized void setEnginePartition(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid engine " + index + " of " + count);
+        }
+        engineIndex = index;
+        engineCount = count;
+        if (count > 1) {
+            log.info("Engine " + index + " of " + count + " for the partitioned data sets");
+        }
+    }
+
+    /**
+     * @return index of this engine among the engines of a distributed test, from 0
+     * @since 3.2
+     */
+    public synchronized int getEngineIndex() {
+        return engineIndex;
+    }
+
+    /**
+     * @return number of engines of a distributed test, 1 if the test is not distributed
+     * @since 3.2
+     */
+    public synchronized int getEngineCount() {
+        return engineCount;
+    }
+
     /**
      * Check if there are entries in use.
      * <p>
@@ -307,6 +359,115 @@ public class FileServer {
         }
     }
 
+    /**
+     * Creates a cursor over the rows of an indexed data file for an alias, unless it is already stored.
+     * The file is indexed once for all the aliases which use it, and the rows can then be read
+     * by all the threads without locking.
+     *
+     * @param filename - relative (to base) or absolute file name (must not be null or empty)
+     * @param charsetName - the character set encoding to use for the file (may be null)
+     * @param alias - the name to be used to access the cursor (must not be null)
+     * @param hasHeader true if the file has a header line describing the contents
+     * @param quoted true if the fields may be quoted
+     * @return the cursor, or null if the file cannot be indexed because of its character set,
+     * in which case it must be read with {@link #readLine(String, boolean, boolean)}
+     * or {@link #getParsedLine(String, boolean, boolean, char)}
+     * @throws IllegalArgumentException if the file cannot be read, or its header line is missing
+     * @since 3.2
+     */
+    public DataSetCursor reserveDataSet(String filename, String charsetName, String alias,
+            boolean hasHeader, boolean quoted) {
+        return reserveDataSet(filename, charsetName, alias, hasHeader, quoted,
+                DataSetCursor.Selection.SEQUENTIAL, 0, 1);
+    }
+
+    /**
+     * Creates a cursor over the rows of an indexed data file for an alias, unless it is already stored,
+     * in which case the selection and partition of the stored cursor are kept.
+     * The file is indexed once for all the aliases which use it, and the rows can then be read
+     * by all the threads without locking.
+     *
+     * @param filename - relative (to base) or absolute file name (must not be null or empty)
+     * @param charsetName - the character set encoding to use for the file (may be null)
+     * @param alias - the name to be used to access the cursor (must not be null)
+     * @param hasHeader true if the file has a header line describing the contents
+     * @param quoted true if the fields may be quoted
+     * @param selection order in which the rows are read
+     * @param partition index of the partition of the rows read with the cursor, from 0
+     * @param partitions number of partitions of the rows: the partition k contains the rows k, k+partitions...
+     * @return the cursor, or null if the file cannot be indexed because of its character set,
+     * in which case it must be read with {@link #readLine(String, boolean, boolean)}
+     * or {@link #getParsedLine(String, boolean, boolean, char)}
+     * @throws IllegalArgumentException if the file cannot be read, or its header line is missing
+     * @since 3.2
+     */
+    public DataSetCursor reserveDataSet(String filename, String charsetName, String alias,
+            boolean hasHeader, boolean quoted, DataSetCursor.Selection selection, int partition, int partitions) {
+        if (filename == null || filename.isEmpty()){
+            throw new IllegalArgumentException("Filename must not be null or empty");
+        }
+        if (alias == null){
+            throw new IllegalArgumentException("Alias must not be null");
+        }
+        DataSetCursor cursor = cursors.get(alias);
+        if (cursor != null) {
+            return cursor;
+        }
+        Charset charset = getCharset(charsetName);
+        if (charset == null || !IndexedDataFile.isSupported(charset)) {
+            return null;
+        }
+        File file;
+        synchronized (this) {
+            file = resolveFileFromPath(filename);
+        }
+        if (!file.canRead() || !file.isFile()) {
+            throw new IllegalArgumentException("File "+ file.getName()+ " must exist and be readable");
+        }
+        synchronized (indexedFiles) {
+            cursor = cursors.get(alias);
+            if (cursor != null) {
+                return cursor;
+            }
+            String key = file.getAbsolutePath() + "|" + charset.name() + "|" + quoted; // $NON-NLS-1$ $NON-NLS-2$
+            IndexedDataFile dataFile = indexedFiles.get(key);
+            if (dataFile == null) {
+                try {
+                    dataFile = new IndexedDataFile(file, charset, quoted);
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Could not index file " + filename, e);
+                }
+                indexedFiles.put(key, dataFile);
+            }
+            if (hasHeader && dataFile.getRowCount() == 0) {
+                throw new IllegalArgumentException("Could not read file header line for file " + filename,
+                        new EOFException("File is empty: " + file));
+            }
+            cursor = new DataSetCursor(dataFile, hasHeader, selection, partition, partitions);
+            cursors.put(alias, cursor);
+        }
+        if (filename.equals(alias)){
+            log.info("Stored data set: "+filename);
+        } else {
+            log.info("Stored data set: "+filename+" Alias: "+alias);
+        }
+        return cursor;
+    }
+
+    /**
+     * @return the character set, the default one if charsetName is blank, or null if it is not supported
+     */
+    private static Charset getCharset(String charsetName) {
+        if (JOrphanUtils.isBlank(charsetName)) {
+            return Charset.defaultCharset();
+        }
+        try {
+            return Charset.isSupported(charsetName) ? Charset.forName(charsetName) : null;
+        } catch (IllegalCharsetNameException e) {
+            return null;
+        }
+    }
+
     /**
      * Get the next line of the named file, recycle by default.
      *
@@ -466,6 +627,11 @@ public class FileServer {
             closeFile(me.getKey(),me.getValue() );
         }
         files.clear();
+        synchronized (indexedFiles) {
+            cursors.clear();
+            // the mappings are released when the files are garbage collected
+            indexedFiles.clear();
+        }
     }
 
     /**
@@ -486,6 +652,9 @@ public class FileServer {
     }
 
     boolean filesOpen() { // package access for test code only
+        if (!cursors.isEmpty()) {
+            return true;
+        }
         for (FileEntry fileEntry : files.values()) {
             if (fileEntry.inputOutputObject != null) {
                 return true;
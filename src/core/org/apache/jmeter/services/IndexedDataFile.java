@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.services;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.apache.jmeter.save.CSVSaveService;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.log.Logger;
+
+/**
+ * Delimited data file whose rows are indexed once, so that any number of threads can read them without locking.
+ * <p>
+ * The file is memory-mapped, and the offsets of its rows are written to a temporary file which is
+ * memory-mapped too, so the heap used does not depend on the size of the file.
+ * The rows are only decoded and split when they are read, which does not need any shared state.
+ * <p>
+ * When the data is quoted, the row boundaries take quoted fields into account, so that a field may contain
+ * line separators. The line separators and the quote must be encoded as single bytes,
+ * see {@link #isSupported(Charset)}.
+ * @since 3.2
+ */
+public final class IndexedDataFile {
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    // Multiple of 8 so that the offsets of the index are never split between two chunks
+    private static final int CHUNK_SIZE = 1 << 30;
+
+    private static final byte QUOTE = '"'; // $NON-NLS-1$
+
+    private static final byte[] ASCII_SEPARATORS = { '\r', '\n', QUOTE };
+
+    private final File file;
+
+    private final Charset charset;
+
+    private final boolean quoted;
+
+    private final MappedBytes data;
+
+    private final MappedBytes index;
+
+    private final long rowCount;
+
+    /**
+     * Maps and indexes the file
+     *
+     * @param file the data file
+     * @param charset character set of the file, must be supported according to {@link #isSupported(Charset)}
+     * @param quoted whether the fields may be quoted
+     * @throws IOException if the file cannot be read or the index cannot be written
+     */
+    public IndexedDataFile(File file, Charset charset, boolean quoted) throws IOException {
+        if (!isSupported(charset)) {
+            throw new IllegalArgumentException("Character set " + charset + " is not supported to index " + file);
+        }
+        this.file = file;
+        this.charset = charset;
+        this.quoted = quoted;
+        this.data = MappedBytes.map(file);
+        File indexFile = File.createTempFile("jmeter-index", ".idx"); // $NON-NLS-1$ $NON-NLS-2$
+        try {
+            long start = System.currentTimeMillis();
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(indexFile), 65536))) {
+                rowCount = writeIndex(out);
+            }
+            index = MappedBytes.map(indexFile);
+            log.info("Indexed " + rowCount + " rows of " + file + " in " + (System.currentTimeMillis() - start) + " ms");
+        } finally {
+            // The mapping remains valid, and the space is released when it is garbage collected
+            if (!indexFile.delete()) {
+                indexFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * @param charset character set
+     * @return true if the line separators and the quote are encoded as in ASCII, as with UTF-8 or ISO-8859-1
+     */
+    public static boolean isSupported(Charset charset) {
+        return Arrays.equals(ASCII_SEPARATORS, new String(ASCII_SEPARATORS, Charset.forName("US-ASCII")) // $NON-NLS-1$
+                .getBytes(charset));
+    }
+
+    /**
+     * Writes the offset of each row, followed by the length of the file
+     * @return the number of rows
+     */
+    private long writeIndex(DataOutputStream out) throws IOException {
+        long size = data.size();
+        if (size == 0) {
+            out.writeLong(0);
+            return 0;
+        }
+        long rows = 1;
+        out.writeLong(0);
+        boolean inQuotes = false;
+        boolean afterCR = false;
+        for (long position = 0; position < size; position++) {
+            byte b = data.get(position);
+            if (afterCR) {
+                afterCR = false;
+                if (b == '\n') { // \r\n
+                    if (position + 1 < size) {
+                        out.writeLong(position + 1);
+                        rows++;
+                    }
+                    continue;
+                }
+                out.writeLong(position);
+                rows++;
+            }
+            if (quoted && b == QUOTE) {
+                inQuotes = !inQuotes;
+            } else if (!inQuotes) {
+                if (b == '\r') {
+                    afterCR = true;
+                } else if (b == '\n' && position + 1 < size) {
+                    out.writeLong(position + 1);
+                    rows++;
+                }
+            }
+        }
+        // a \r which is the last byte does not start another row
+        out.writeLong(size);
+        return rows;
+    }
+
+    /**
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the number of rows, including the header line if there is one
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @param row index of the row, starting from 0
+     * @return the row without its line separator
+     * @throws IndexOutOfBoundsException if row is not less than {@link #getRowCount()}
+     */
+    public String getLine(long row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + file + " which has " + rowCount + " rows");
+        }
+        long start = index.getLong(row * 8);
+        long end = index.getLong((row + 1) * 8);
+        if (end > start && data.get(end - 1) == '\n') {
+            end--;
+        }
+        if (end > start && data.get(end - 1) == '\r') {
+            end--;
+        }
+        return new String(data.get(start, (int) (end - start)), charset);
+    }
+
+    /**
+     * @param row index of the row, starting from 0
+     * @param delimiter the delimiter of the fields; only its first character is used if the data is quoted
+     * @return the fields of the row
+     * @throws IOException if the quoted fields are invalid
+     * @throws IndexOutOfBoundsException if row is not less than {@link #getRowCount()}
+     */
+    public String[] getRow(long row, String delimiter) throws IOException {
+        String line = getLine(row);
+        if (quoted) {
+            return CSVSaveService.csvSplitString(line, delimiter.charAt(0));
+        }
+        return JOrphanUtils.split(line, delimiter, false);
+    }
+
+    /**
+     * Read-only memory-mapped file, mapped in chunks so that it can be larger than 2GB.
+     * The absolute get methods of {@link ByteBuffer} are used, so it can be read by several threads.
+     */
+    private static final class MappedBytes {
+        private final ByteBuffer[] chunks;
+
+        private final long size;
+
+        private MappedBytes(ByteBuffer[] chunks, long size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        static MappedBytes map(File file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long size = channel.size();
+                ByteBuffer[] chunks = new ByteBuffer[(int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+                for (int i = 0; i < chunks.length; i++) {
+                    long position = (long) i * CHUNK_SIZE;
+                    chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(CHUNK_SIZE, size - position));
+                }
+                return new MappedBytes(chunks, size);
+            }
+        }
+
+        long size() {
+            return size;
+        }
+
+        byte get(long position) {
+            return chunks[(int) (position / CHUNK_SIZE)].get((int) (position % CHUNK_SIZE));
+        }
+
+        long getLong(long position) {
+            return chunks[(int) (position / CHUNK_SIZE)].getLong((int) (position % CHUNK_SIZE));
+        }
+
+        byte[] get(long position, int length) {
+            byte[] bytes = new byte[length];
+            int copied = 0;
+            while (copied < length) {
+                long current = position + copied;
+                // duplicate, as the relative bulk get changes the position of the buffer
+                ByteBuffer chunk = chunks[(int) (current / CHUNK_SIZE)].duplicate();
+                chunk.position((int) (current % CHUNK_SIZE));
+                int count = Math.min(length - copied, chunk.remaining());
+                chunk.get(bytes, copied, count);
+                copied += count;
+            }
+            return bytes;
+        }
+    }
+}
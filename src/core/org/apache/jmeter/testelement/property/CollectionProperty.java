@@ -32,6 +32,9 @@ public class CollectionProperty extends MultiProperty {
 
     private transient Collection<JMeterProperty> savedValue;
 
+    /** Number of changes made through this property, so that indexes over it can detect them */
+    private transient int modCount;
+
     public CollectionProperty(String name, Collection<?> value) {
         super(name);
         this.value = normalizeList(value);
@@ -62,6 +65,7 @@ public class CollectionProperty extends MultiProperty {
         while (iter.hasNext()) {
             if (iter.next().getName().equals(prop)) {
                 iter.remove();
+                modCount++;
             }
         }
     }
@@ -69,12 +73,14 @@ public class CollectionProperty extends MultiProperty {
     public void set(int index, String prop) {
         if (value instanceof List<?>) {
             ((List<JMeterProperty>) value).set(index, new StringProperty(prop, prop));
+            modCount++;
         }
     }
 
     public void set(int index, JMeterProperty prop) {
         if (value instanceof List<?>) {
             ((List<JMeterProperty>) value).set(index, prop);
+            modCount++;
         }
     }
 
@@ -88,6 +94,7 @@ public class CollectionProperty extends MultiProperty {
     public void remove(int index) {
         if (value instanceof List<?>) {
             ((List<?>) value).remove(index);
+            modCount++;
         }
     }
 
@@ -130,6 +137,16 @@ public class CollectionProperty extends MultiProperty {
         return value.size();
     }
 
+    /**
+     * Changes made directly to the collection returned by {@link #getObjectValue()} are not counted.
+     *
+     * @return number of changes made through this property since it was created or cloned
+     * @since 3.2
+     */
+    public int getModificationCount() {
+        return modCount;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -137,6 +154,7 @@ public class CollectionProperty extends MultiProperty {
     public CollectionProperty clone() {
         CollectionProperty prop = (CollectionProperty) super.clone();
         prop.value = cloneCollection();
+        prop.modCount = 0;
         return prop;
     }
 
@@ -156,6 +174,7 @@ public class CollectionProperty extends MultiProperty {
 
     public void setCollection(Collection<?> coll) {
         value = normalizeList(coll);
+        modCount++;
     }
 
     /**
@@ -164,6 +183,7 @@ public class CollectionProperty extends MultiProperty {
     @Override
     public void clear() {
         value.clear();
+        modCount++;
     }
 
     /**
@@ -172,6 +192,7 @@ public class CollectionProperty extends MultiProperty {
     @Override
     public void addProperty(JMeterProperty prop) {
         value.add(prop);
+        modCount++;
     }
 
     public void addItem(Object item) {
@@ -199,6 +220,7 @@ public class CollectionProperty extends MultiProperty {
     public void recoverRunningVersion(TestElement owner) {
         if (savedValue != null) {
             value = savedValue;
+            modCount++;
         }
         recoverRunningVersionOfSubElements(owner);
     }
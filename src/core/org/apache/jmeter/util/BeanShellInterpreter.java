@@ -19,8 +19,11 @@
 package org.apache.jmeter.util;
 
 import java.io.File;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.jorphan.util.JMeterError;
@@ -36,6 +39,10 @@ import org.apache.log.Logger;
  *
  * If the beanshell jar is not present at run-time, an error will be logged
  *
+ * Instances created by {@link #createSharedInterpreterView(String, Logger)} do not
+ * have their own Interpreter: they evaluate scripts in their own NameSpace, child of
+ * the global NameSpace of an Interpreter shared by all the views with the same
+ * initialisation file, which is only sourced once.
  */
 
 public class BeanShellInterpreter {
@@ -51,11 +58,48 @@ public class BeanShellInterpreter {
 
     private static final Class<?> bshClass;
 
+    // Used by the shared interpreter views
+    private static final Method bshEvalInNameSpace;
+
+    private static final Method bshSourceInNameSpace;
+
+    private static final Method bshGetNameSpace;
+
+    private static final Method bshUnwrap;
+
+    private static final Constructor<?> nameSpaceConstructor;
+
+    private static final Method nameSpaceGet;
+
+    private static final Method nameSpaceGetVariable;
+
+    private static final Method nameSpaceSetVariable;
+
+    private static final Method nameSpaceSetTypedVariable;
+
+    private static final Method nameSpaceGetThis;
+
+    private static final Method thisGetNameSpace;
+
+    private static final Object primitiveVoid;
+
     private static final String BSH_INTERPRETER = "bsh.Interpreter"; //$NON-NLS-1$
 
+    private static final String BSH_OBJECT = "bsh"; //$NON-NLS-1$
+
+    private static final String BSH_OBJECT_PREFIX = BSH_OBJECT + "."; //$NON-NLS-1$
+
+    /** Shared interpreters, by initialisation file */
+    private static final Map<String, BeanShellInterpreter> sharedInterpreters = new HashMap<>();
+
     static {
         // Temporary copies, so can set the final ones
         Method get = null, eval = null, set = null, source = null;
+        Method evalNs = null, sourceNs = null, getNs = null, unwrap = null;
+        Method nsGet = null, nsGetVariable = null, nsSetVariable = null, nsSetTyped = null, nsGetThis = null;
+        Method thisGetNs = null;
+        Constructor<?> nsConstructor = null;
+        Object voidValue = null;
         Class<?> clazz = null;
         ClassLoader loader = Thread.currentThread().getContextClassLoader();
         try {
@@ -71,7 +115,25 @@ public class BeanShellInterpreter {
                     new Class[] { string, object });
             source = clazz.getMethod("source", //$NON-NLS-1$
                     new Class[] { string });
-        } catch (ClassNotFoundException|SecurityException | NoSuchMethodException e) {
+
+            Class<?> nameSpace = loader.loadClass("bsh.NameSpace"); //$NON-NLS-1$
+            Class<?> thisClass = loader.loadClass("bsh.This"); //$NON-NLS-1$
+            evalNs = clazz.getMethod("eval", string, nameSpace); //$NON-NLS-1$
+            sourceNs = clazz.getMethod("source", string, nameSpace); //$NON-NLS-1$
+            getNs = clazz.getMethod("getNameSpace"); //$NON-NLS-1$
+            nsConstructor = nameSpace.getConstructor(nameSpace, string);
+            nsGet = nameSpace.getMethod("get", string, clazz); //$NON-NLS-1$
+            nsGetVariable = nameSpace.getMethod("getVariable", string, boolean.class); //$NON-NLS-1$
+            nsSetVariable = nameSpace.getMethod("setVariable", string, object, boolean.class); //$NON-NLS-1$
+            nsSetTyped = nameSpace.getMethod("setTypedVariable", //$NON-NLS-1$
+                    string, Class.class, object, boolean.class);
+            nsGetThis = nameSpace.getMethod("getThis", clazz); //$NON-NLS-1$
+            thisGetNs = thisClass.getMethod("getNameSpace"); //$NON-NLS-1$
+            Class<?> primitive = loader.loadClass("bsh.Primitive"); //$NON-NLS-1$
+            unwrap = primitive.getMethod("unwrap", object); //$NON-NLS-1$
+            voidValue = primitive.getField("VOID").get(null); //$NON-NLS-1$
+        } catch (ClassNotFoundException | SecurityException | NoSuchMethodException
+                | NoSuchFieldException | IllegalAccessException e) {
             log.error("Beanshell Interpreter not found", e);
         } finally {
             bshEval = eval;
@@ -79,6 +141,18 @@ public class BeanShellInterpreter {
             bshSet = set;
             bshSource = source;
             bshClass = clazz;
+            bshEvalInNameSpace = evalNs;
+            bshSourceInNameSpace = sourceNs;
+            bshGetNameSpace = getNs;
+            bshUnwrap = unwrap;
+            nameSpaceConstructor = nsConstructor;
+            nameSpaceGet = nsGet;
+            nameSpaceGetVariable = nsGetVariable;
+            nameSpaceSetVariable = nsSetVariable;
+            nameSpaceSetTypedVariable = nsSetTyped;
+            nameSpaceGetThis = nsGetThis;
+            thisGetNameSpace = thisGetNs;
+            primitiveVoid = voidValue;
         }
     }
 
@@ -89,6 +163,12 @@ public class BeanShellInterpreter {
 
     private final Logger logger; // Logger to use during initialization and script run
 
+    private final BeanShellInterpreter sharedInterpreter; // Interpreter of a view, null otherwise
+
+    private Object bshNameSpace = null; // The NameSpace of a view
+
+    private Object bshObjectNameSpace = null; // The NameSpace of the bsh object of a view
+
     public BeanShellInterpreter() throws ClassNotFoundException {
         this(null, null);
     }
@@ -102,9 +182,84 @@ public class BeanShellInterpreter {
     public BeanShellInterpreter(String init, Logger _log)  throws ClassNotFoundException {
         initFile = init;
         logger = _log;
+        sharedInterpreter = null;
         init();
     }
 
+    private BeanShellInterpreter(BeanShellInterpreter shared) throws ClassNotFoundException {
+        initFile = shared.initFile;
+        logger = shared.logger;
+        sharedInterpreter = shared;
+        bshInstance = shared.bshInstance;
+        initNameSpace();
+    }
+
+    /**
+     * Creates a view of the interpreter shared by all the views with the same initialisation file,
+     * creating and initialising that interpreter if needed.
+     * <p>
+     * The view has its own variables, but the variables and methods defined by the initialisation file
+     * are shared and should be treated as read-only.
+     *
+     * @param init initialisation file
+     * @param _log logger to pass to the shared interpreter when it is created
+     * @return the view, which like other instances must not be used by several threads at the same time
+     * @throws ClassNotFoundException when beanshell can not be instantiated
+     */
+    public static BeanShellInterpreter createSharedInterpreterView(String init, Logger _log)
+            throws ClassNotFoundException {
+        String key = init == null ? "" : init;
+        BeanShellInterpreter shared;
+        synchronized (sharedInterpreters) {
+            shared = sharedInterpreters.get(key);
+            if (shared == null) {
+                shared = new BeanShellInterpreter(init, _log);
+                sharedInterpreters.put(key, shared);
+            }
+        }
+        return new BeanShellInterpreter(shared);
+    }
+
+    /**
+     * Forgets the shared interpreters, so that the next views source their initialisation file again.
+     * Existing views keep working with their interpreter.
+     */
+    public static void clearSharedInterpreters() {
+        synchronized (sharedInterpreters) {
+            sharedInterpreters.clear();
+        }
+    }
+
+    private void initNameSpace() throws ClassNotFoundException {
+        if (nameSpaceConstructor == null) {
+            throw new ClassNotFoundException("bsh.NameSpace"); //$NON-NLS-1$
+        }
+        try {
+            Object global = bshGetNameSpace.invoke(bshInstance);
+            bshNameSpace = nameSpaceConstructor.newInstance(global, "JMeter view"); //$NON-NLS-1$
+            // Own bsh object, so that bsh.args is not shared; other bsh fields are read from the shared one
+            Object sharedBsh = nameSpaceGetVariable.invoke(global, BSH_OBJECT, Boolean.TRUE);
+            bshObjectNameSpace = nameSpaceConstructor.newInstance(thisGetNameSpace.invoke(sharedBsh), BSH_OBJECT);
+            setLocal(bshNameSpace, BSH_OBJECT, nameSpaceGetThis.invoke(bshObjectNameSpace, bshInstance));
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            log.error("Can't create BeanShell NameSpace", e);
+            throw new ClassNotFoundException("Can't create BeanShell NameSpace", e);
+        }
+    }
+
+    /*
+     * Sets a variable of the NameSpace without changing a variable of the same name in the parent NameSpaces,
+     * which belong to the shared interpreter
+     */
+    private static void setLocal(Object nameSpace, String name, Object value)
+            throws IllegalAccessException, InvocationTargetException {
+        if (nameSpaceGetVariable.invoke(nameSpace, name, Boolean.FALSE) == primitiveVoid) {
+            nameSpaceSetTypedVariable.invoke(nameSpace, name, null, value, Boolean.FALSE);
+        } else {
+            nameSpaceSetVariable.invoke(nameSpace, name, value, Boolean.FALSE);
+        }
+    }
+
     // Called from ctor, so must be private (or final, but it does not seem useful elsewhere)
     private void init() throws ClassNotFoundException {
         if (bshClass == null) {
@@ -153,14 +308,22 @@ public class BeanShellInterpreter {
      * @throws ClassNotFoundException if interpreter cannot be instantiated
      */
     public void reset() throws ClassNotFoundException {
-       init();
+        if (sharedInterpreter != null) {
+            initNameSpace();
+        } else {
+            init();
+        }
     }
 
     private Object bshInvoke(Method m, Object[] o, boolean shouldLog) throws JMeterException {
+        return bshInvoke(bshInstance, m, o, shouldLog);
+    }
+
+    private Object bshInvoke(Object target, Method m, Object[] o, boolean shouldLog) throws JMeterException {
         Object r = null;
         final String errorString = "Error invoking bsh method: ";
         try {
-            r = m.invoke(bshInstance, o);
+            r = m.invoke(target, o);
         } catch (IllegalArgumentException | IllegalAccessException e) { // Programming error
             final String message = errorString + m.getName();
             log.error(message);
@@ -183,26 +346,66 @@ public class BeanShellInterpreter {
     }
 
     public Object eval(String s) throws JMeterException {
-        return bshInvoke(bshEval, new Object[] { s }, true);
+        return eval(s, true);
     }
 
     public Object evalNoLog(String s) throws JMeterException {
-        return bshInvoke(bshEval, new Object[] { s }, false);
+        return eval(s, false);
+    }
+
+    private Object eval(String s, boolean shouldLog) throws JMeterException {
+        if (bshNameSpace != null) {
+            return bshInvoke(bshEvalInNameSpace, new Object[] { s, bshNameSpace }, shouldLog);
+        }
+        return bshInvoke(bshEval, new Object[] { s }, shouldLog);
     }
 
     public Object set(String s, Object o) throws JMeterException {
+        if (bshNameSpace != null) {
+            return setInNameSpace(s, o);
+        }
         return bshInvoke(bshSet, new Object[] { s, o }, true);
     }
 
     public Object set(String s, boolean b) throws JMeterException {
-        return bshInvoke(bshSet, new Object[] { s, Boolean.valueOf(b) }, true);
+        return set(s, Boolean.valueOf(b));
+    }
+
+    private Object setInNameSpace(String s, Object o) throws JMeterException {
+        try {
+            if (s.startsWith(BSH_OBJECT_PREFIX)) {
+                setLocal(bshObjectNameSpace, s.substring(BSH_OBJECT_PREFIX.length()), o);
+            } else {
+                setLocal(bshNameSpace, s, o);
+            }
+        } catch (IllegalAccessException e) { // Programming error
+            final String message = "Error setting bsh variable: " + s;
+            log.error(message);
+            throw new JMeterError(message, e);
+        } catch (InvocationTargetException e) {
+            String message = "Error setting bsh variable: " + s;
+            Throwable cause = e.getCause();
+            if (cause != null) {
+                message += "\t" + cause.getLocalizedMessage();
+            }
+            log.error(message);
+            throw new JMeterException(message, e);
+        }
+        return null;
     }
 
     public Object source(String s) throws JMeterException {
+        if (bshNameSpace != null) {
+            return bshInvoke(bshSourceInNameSpace, new Object[] { s, bshNameSpace }, true);
+        }
         return bshInvoke(bshSource, new Object[] { s }, true);
     }
 
     public Object get(String s) throws JMeterException {
+        if (bshNameSpace != null) {
+            Object value = bshInvoke(bshNameSpace, nameSpaceGet, new Object[] { s, bshInstance }, true);
+            return bshInvoke(null, bshUnwrap, new Object[] { value }, true);
+        }
         return bshInvoke(bshGet, new Object[] { s }, true);
     }
 
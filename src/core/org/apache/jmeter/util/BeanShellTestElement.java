@@ -38,6 +38,13 @@ public abstract class BeanShellTestElement extends AbstractTestElement
 
     private static final long serialVersionUID = 4;
 
+    /**
+     * Should the elements share one interpreter per initialisation file
+     * and only have their own NameSpace ?
+     */
+    private static final boolean SHARED_INTERPRETER =
+            JMeterUtils.getPropDefault("beanshell.shared_interpreter", false); // $NON-NLS-1$
+
     //++ For TestBean implementations only
     private String parameters; // passed to file or script
 
@@ -104,7 +111,11 @@ public abstract class BeanShellTestElement extends AbstractTestElement
         try {
             String initFileName = JMeterUtils.getProperty(getInitFileProperty());
             hasInitFile = initFileName != null;
-            bshInterpreter = new BeanShellInterpreter(initFileName, log);
+            if (SHARED_INTERPRETER) {
+                bshInterpreter = BeanShellInterpreter.createSharedInterpreterView(initFileName, log);
+            } else {
+                bshInterpreter = new BeanShellInterpreter(initFileName, log);
+            }
         } catch (ClassNotFoundException e) {
             log.error("Cannot find BeanShell: "+e.toString());
         }
@@ -201,6 +212,10 @@ public abstract class BeanShellTestElement extends AbstractTestElement
 
     @Override
     public void testEnded() {
+        if (SHARED_INTERPRETER) {
+            // Next test will source the initialisation files again
+            BeanShellInterpreter.clearSharedInterpreters();
+        }
         if (bshInterpreter == null || !hasInitFile) {
             return;
         }
@@ -213,6 +228,9 @@ public abstract class BeanShellTestElement extends AbstractTestElement
 
     @Override
     public void testEnded(String host) {
+        if (SHARED_INTERPRETER) {
+            BeanShellInterpreter.clearSharedInterpreters();
+        }
         if (bshInterpreter == null || !hasInitFile) {
             return;
         }
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only {@link CharSequence} view of bytes in which each byte is one character:
+ * ISO-8859-1 text, or US-ASCII and UTF-8 text only made of ASCII characters.
+ * <p>
+ * Characters are decoded when they are read, so that the text is not copied
+ * into a char array, except by {@link #toString()}.
+ * The bytes must not be modified while the view is used.
+ * @since 3.2
+ */
+public final class ByteArrayCharSequence implements CharSequence {
+
+    private final byte[] bytes;
+
+    private final int offset;
+
+    private final int length;
+
+    /**
+     * @param bytes the characters, one per byte
+     */
+    public ByteArrayCharSequence(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @param bytes the characters, one per byte
+     * @param offset index of the first byte of the view
+     * @param length number of bytes of the view
+     */
+    public ByteArrayCharSequence(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length
+                    + ", array length: " + bytes.length);
+        }
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Creates a view of bytes if decoding them with encoding maps each byte to one character
+     * @param bytes encoded text
+     * @param encoding name of the charset of bytes
+     * @return the view, null if the bytes must be decoded
+     */
+    public static ByteArrayCharSequence forEncoding(byte[] bytes, String encoding) {
+        Charset charset;
+        try {
+            charset = Charset.forName(encoding);
+        } catch (IllegalArgumentException e) { // Unknown or illegal charset name
+            return null;
+        }
+        if (StandardCharsets.ISO_8859_1.equals(charset)
+                || (StandardCharsets.US_ASCII.equals(charset) || StandardCharsets.UTF_8.equals(charset))
+                    && isAscii(bytes)) {
+            return new ByteArrayCharSequence(bytes);
+        }
+        return null;
+    }
+
+    /**
+     * @param bytes bytes to check
+     * @return true if all the bytes are ASCII characters
+     */
+    public static boolean isAscii(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link String#indexOf(String, int)} for any {@link CharSequence}
+     * @param text text to search
+     * @param searched text to find
+     * @param fromIndex index from which to search
+     * @return index of the first occurrence of searched at or after fromIndex, -1 if there is none
+     */
+    public static int indexOf(CharSequence text, CharSequence searched, int fromIndex) {
+        if (text instanceof String && searched instanceof String) {
+            return ((String) text).indexOf((String) searched, fromIndex);
+        }
+        final int searchedLength = searched.length();
+        final int last = text.length() - searchedLength;
+        int from = Math.max(fromIndex, 0);
+        if (searchedLength == 0) {
+            return from <= text.length() ? from : -1;
+        }
+        final char first = searched.charAt(0);
+        for (int i = from; i <= last; i++) {
+            if (text.charAt(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < searchedLength && text.charAt(i + j) == searched.charAt(j)) {
+                j++;
+            }
+            if (j == searchedLength) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        }
+        return (char) (bytes[offset + index] & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+        }
+        return new ByteArrayCharSequence(bytes, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util;
+
+import java.io.PrintStream;
+import java.util.Properties;
+
+import org.apache.jmeter.assertions.AssertionResult;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.Sampler;
+import org.apache.jmeter.threads.JMeterContext;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.log.Logger;
+
+import groovy.lang.Script;
+
+/**
+ * Base class of the Groovy scripts of JSR223 elements precompiled at test start
+ * (see property <code>jsr223.groovy.precompile</code>).
+ * <p>
+ * The variables passed to the scripts are read from the binding, which is updated before each execution.
+ * Their typed getters allow the scripts using them to be statically compiled.
+ * @since 3.2
+ */
+public abstract class JMeterGroovyScript extends Script {
+
+    private Object variable(String name) {
+        return getBinding().getVariables().get(name);
+    }
+
+    public Logger getLog() {
+        return (Logger) variable("log"); // $NON-NLS-1$
+    }
+
+    public String getLabel() {
+        return (String) variable("Label"); // $NON-NLS-1$
+    }
+
+    public String getFileName() {
+        return (String) variable("FileName"); // $NON-NLS-1$
+    }
+
+    public String getParameters() {
+        return (String) variable("Parameters"); // $NON-NLS-1$
+    }
+
+    public String[] getArgs() {
+        return (String[]) variable("args"); // $NON-NLS-1$
+    }
+
+    public JMeterContext getCtx() {
+        return (JMeterContext) variable("ctx"); // $NON-NLS-1$
+    }
+
+    public JMeterVariables getVars() {
+        return (JMeterVariables) variable("vars"); // $NON-NLS-1$
+    }
+
+    public Properties getProps() {
+        return (Properties) variable("props"); // $NON-NLS-1$
+    }
+
+    public PrintStream getOUT() {
+        return (PrintStream) variable("OUT"); // $NON-NLS-1$
+    }
+
+    public Sampler getSampler() {
+        return (Sampler) variable("sampler"); // $NON-NLS-1$
+    }
+
+    public SampleResult getPrev() {
+        return (SampleResult) variable("prev"); // $NON-NLS-1$
+    }
+
+    /**
+     * @return <code>SampleResult</code> of samplers and assertions, <code>sampleResult</code> of listeners
+     */
+    public SampleResult getSampleResult() {
+        Object result = variable("SampleResult"); // $NON-NLS-1$
+        return (SampleResult) (result != null ? result : variable("sampleResult")); // $NON-NLS-1$
+    }
+
+    public AssertionResult getAssertionResult() {
+        return (AssertionResult) variable("AssertionResult"); // $NON-NLS-1$
+    }
+
+    public SampleEvent getSampleEvent() {
+        return (SampleEvent) variable("sampleEvent"); // $NON-NLS-1$
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.script.ScriptException;
+
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.transform.CompileStatic;
+
+/**
+ * Compiles the Groovy scripts of JSR223 elements into subclasses of {@link JMeterGroovyScript},
+ * statically if the script allows it, dynamically otherwise.
+ * <p>
+ * Only referenced when precompilation is enabled, so that Groovy is not needed otherwise.
+ * @since 3.2
+ */
+final class JSR223GroovyCompiler {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** Compiled classes by script key */
+    private static final ConcurrentMap<String, Class<? extends JMeterGroovyScript>> SCRIPT_CLASSES =
+            new ConcurrentHashMap<>();
+
+    private JSR223GroovyCompiler() {
+        super();
+    }
+
+    /**
+     * @param key key of the script
+     * @return the class compiled for key, null if it has not been compiled
+     */
+    static Class<? extends JMeterGroovyScript> getCompiledClass(String key) {
+        return SCRIPT_CLASSES.get(key);
+    }
+
+    /**
+     * Compiles script unless it has already been compiled for key
+     * @param key key of the script, changing when the script changes
+     * @param script source of the script
+     * @param elementName name of the element, for the messages
+     * @return compiled class
+     * @throws ScriptException if the script does not compile
+     */
+    static Class<? extends JMeterGroovyScript> compile(String key, String script, String elementName)
+            throws ScriptException {
+        Class<? extends JMeterGroovyScript> scriptClass = SCRIPT_CLASSES.get(key);
+        if (scriptClass != null) {
+            return scriptClass;
+        }
+        try {
+            scriptClass = parse(script, true);
+        } catch (CompilationFailedException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Script of " + elementName + " cannot be statically compiled, compiling it dynamically: "
+                        + e.getMessage());
+            }
+            try {
+                scriptClass = parse(script, false);
+            } catch (CompilationFailedException e2) {
+                ScriptException scriptException = new ScriptException(
+                        "Compilation of script of element " + elementName + " failed: " + e2.getMessage());
+                scriptException.initCause(e2);
+                throw scriptException;
+            }
+        }
+        Class<? extends JMeterGroovyScript> previous = SCRIPT_CLASSES.putIfAbsent(key, scriptClass);
+        return previous != null ? previous : scriptClass;
+    }
+
+    private static Class<? extends JMeterGroovyScript> parse(String script, boolean compileStatic) {
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.setScriptBaseClass(JMeterGroovyScript.class.getName());
+        if (compileStatic) {
+            configuration.addCompilationCustomizers(new ASTTransformationCustomizer(CompileStatic.class));
+        }
+        // A loader per script, so that the class can be unloaded when the cache is cleared
+        @SuppressWarnings("resource") // Closing the loader would prevent loading the classes the script needs later
+        GroovyClassLoader loader = new GroovyClassLoader(JMeterGroovyScript.class.getClassLoader(), configuration);
+        Class<?> scriptClass = loader.parseClass(script); // GroovyClassLoader returns a raw Class
+        return scriptClass.asSubclass(JMeterGroovyScript.class);
+    }
+
+    /**
+     * @param scriptClass compiled class
+     * @return new instance of scriptClass
+     * @throws ScriptException if it cannot be instantiated
+     */
+    static JMeterGroovyScript newInstance(Class<? extends JMeterGroovyScript> scriptClass) throws ScriptException {
+        try {
+            return scriptClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new ScriptException(e);
+        }
+    }
+
+    /**
+     * Clears the compiled classes
+     */
+    static void clear() {
+        SCRIPT_CLASSES.clear();
+    }
+}
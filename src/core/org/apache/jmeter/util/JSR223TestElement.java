@@ -23,9 +23,17 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.Collections;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.script.Bindings;
 import javax.script.Compilable;
@@ -35,7 +43,7 @@ import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.collections.map.LRUMap;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jmeter.samplers.SampleResult;
@@ -48,6 +56,8 @@ import org.apache.jorphan.logging.LoggingManager;
 import org.apache.jorphan.util.JOrphanUtils;
 import org.apache.log.Logger;
 
+import groovy.lang.Binding;
+
 public abstract class JSR223TestElement extends ScriptingTestElement
     implements Serializable, TestStateListener
 {
@@ -66,39 +76,144 @@ public abstract class JSR223TestElement extends ScriptingTestElement
     }
     
     private static final long serialVersionUID = 231L;
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /**
+     * If true, Groovy scripts in files or cached script texts are compiled at test start
+     * into subclasses of {@link JMeterGroovyScript}
+     */
+    private static final boolean PRECOMPILE_GROOVY =
+            JMeterUtils.getPropDefault("jsr223.groovy.precompile", false); // $NON-NLS-1$
     
     /** If not empty then script in ScriptText will be compiled and cached */
     private String cacheKey = "";
     
     /** md5 of the script, used as an unique key for the cache */
     private String scriptMd5 = null;
-    
+
+    private static final int COMPILED_SCRIPTS_CACHE_SIZE =
+            JMeterUtils.getPropDefault("jsr223.compiled_scripts_cache_size", 100); // $NON-NLS-1$
+
     /**
-     * Cache of compiled scripts
+     * Cache of compiled scripts.
+     * Reads do not lock, each script is compiled once by the first thread needing it.
+     * When the cache is full, an arbitrary entry is evicted.
      */
-    @SuppressWarnings("unchecked") // LRUMap does not support generics (yet)
-    private static final Map<String, CompiledScript> compiledScriptsCache = 
-            Collections.synchronizedMap(
-                    new LRUMap(JMeterUtils.getPropDefault("jsr223.compiled_scripts_cache_size", 100)));
+    private static final ConcurrentMap<String, CompiledScriptHolder> compiledScriptsCache =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Script engines of the current thread, by language.
+     * Creating an engine through the {@link ScriptEngineManager} is expensive, and its bindings are not shared
+     */
+    private static final ThreadLocal<Map<String, ScriptEngine>> threadScriptEngines =
+            new ThreadLocal<Map<String, ScriptEngine>>() {
+        @Override
+        protected Map<String, ScriptEngine> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    /** Bindings of the last execution, reused by the next ones in the same thread */
+    private transient volatile ThreadBindings threadBindings;
+
+    /** Logger passed to the scripts */
+    private transient Logger scriptLogger;
+
+    /** Last parameters, and their split as args */
+    private transient String lastParameters;
+    private transient String[] lastArgs;
+
+    /** {@link Bindings} created for a thread and an engine */
+    private static final class ThreadBindings {
+        private final Thread thread;
+        private final ScriptEngine scriptEngine;
+        private final Bindings bindings;
+        /** Names bound by the engine when it created bindings */
+        private final Set<String> engineNames;
+        /** Precompiled script using bindings, and its key */
+        private JMeterGroovyScript script;
+        private String scriptKey;
+
+        ThreadBindings(Thread thread, ScriptEngine scriptEngine, Bindings bindings) {
+            this.thread = thread;
+            this.scriptEngine = scriptEngine;
+            this.bindings = bindings;
+            this.engineNames = new HashSet<>(bindings.keySet());
+        }
+
+        /**
+         * Removes the variables bound by the previous execution, so that they do not leak into the next one
+         * @return false if some variables could not be removed, like those declared by var in JavaScript
+         */
+        private boolean removeVariables() {
+            List<String> names = new ArrayList<>();
+            for (String name : bindings.keySet()) {
+                if (!engineNames.contains(name)) {
+                    names.add(name);
+                }
+            }
+            for (String name : names) {
+                bindings.remove(name);
+            }
+            for (String name : names) {
+                if (bindings.containsKey(name)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Compiled script, set once by the thread which compiles it */
+    private static final class CompiledScriptHolder {
+        private volatile CompiledScript compiledScript;
+    }
 
     public JSR223TestElement() {
         super();
     }
 
     /**
-     * @return {@link ScriptEngine} for language defaulting to groovy if language is not set
+     * @return {@link ScriptEngine} for language defaulting to groovy if language is not set.
+     *  The same engine is returned for a language in the same thread.
      * @throws ScriptException when no {@link ScriptEngine} could be found
      */
     protected ScriptEngine getScriptEngine() throws ScriptException {
         String lang = getScriptLanguageWithDefault();
-        ScriptEngine scriptEngine = getInstance().getEngineByName(lang);
+        Map<String, ScriptEngine> scriptEngines = threadScriptEngines.get();
+        ScriptEngine scriptEngine = scriptEngines.get(lang);
         if (scriptEngine == null) {
-            throw new ScriptException("Cannot find engine named: '"+lang+"', ensure you set language field in JSR223 Test Element: "+getName());
+            scriptEngine = getInstance().getEngineByName(lang);
+            if (scriptEngine == null) {
+                throw new ScriptException("Cannot find engine named: '"+lang+"', ensure you set language field in JSR223 Test Element: "+getName());
+            }
+            scriptEngines.put(lang, scriptEngine);
         }
-
         return scriptEngine;
     }
 
+    /**
+     * Get the {@link Bindings} to run the script of this element with scriptEngine.
+     * They are reused by the successive executions of this element in the current thread,
+     * without the variables bound by the previous execution, {@link #populateBindings(Bindings)}
+     * binding the standard objects again. New bindings are created if those variables cannot be removed.
+     * @param scriptEngine {@link ScriptEngine} returned by {@link #getScriptEngine()}
+     * @return {@link Bindings}
+     */
+    protected Bindings getBindings(ScriptEngine scriptEngine) {
+        ThreadBindings current = threadBindings;
+        Thread thread = Thread.currentThread();
+        if (current != null && current.thread == thread && current.scriptEngine == scriptEngine
+                && current.removeVariables()) {
+            return current.bindings;
+        }
+        Bindings bindings = scriptEngine.createBindings();
+        threadBindings = new ThreadBindings(thread, scriptEngine, bindings);
+        return bindings;
+    }
+
     /**
      * @return script language or DEFAULT_SCRIPT_LANGUAGE if none is set
      */
@@ -118,14 +233,19 @@ public abstract class JSR223TestElement extends ScriptingTestElement
         final String label = getName();
         final String fileName = getFilename();
         final String scriptParameters = getParameters();
-        // Use actual class name for log
-        final Logger logger = LoggingManager.getLoggerForShortName(getClass().getName());
-        bindings.put("log", logger); // $NON-NLS-1$ (this name is fixed)
+        if (scriptLogger == null) {
+            // Use actual class name for log
+            scriptLogger = LoggingManager.getLoggerForShortName(getClass().getName());
+        }
+        bindings.put("log", scriptLogger); // $NON-NLS-1$ (this name is fixed)
         bindings.put("Label", label); // $NON-NLS-1$ (this name is fixed)
         bindings.put("FileName", fileName); // $NON-NLS-1$ (this name is fixed)
         bindings.put("Parameters", scriptParameters); // $NON-NLS-1$ (this name is fixed)
-        String [] args=JOrphanUtils.split(scriptParameters, " ");//$NON-NLS-1$
-        bindings.put("args", args); // $NON-NLS-1$ (this name is fixed)
+        if (lastArgs == null || !StringUtils.equals(scriptParameters, lastParameters)) {
+            lastArgs = JOrphanUtils.split(scriptParameters, " ");//$NON-NLS-1$
+            lastParameters = scriptParameters;
+        }
+        bindings.put("args", lastArgs.clone()); // $NON-NLS-1$ (this name is fixed)
         // Add variables for access to context and variables
         JMeterContext jmctx = JMeterContextService.getContext();
         bindings.put("ctx", jmctx); // $NON-NLS-1$ (this name is fixed)
@@ -149,16 +269,20 @@ public abstract class JSR223TestElement extends ScriptingTestElement
      * - If ScriptEngine implements Compilable script will be compiled and cached
      * - If not if will be run
      * @param scriptEngine ScriptEngine
-     * @param bindings {@link Bindings} might be null
+     * @param bindings {@link Bindings} might be null, those of {@link #getBindings(ScriptEngine)} are then used
      * @return Object returned by script
      * @throws IOException when reading the script fails
      * @throws ScriptException when compiling or evaluation of the script fails
      */
     protected Object processFileOrScript(ScriptEngine scriptEngine, Bindings bindings) throws IOException, ScriptException {
         if (bindings == null) {
-            bindings = scriptEngine.createBindings();
+            bindings = getBindings(scriptEngine);
         }
         populateBindings(bindings);
+        String precompiledScriptKey = getPrecompiledScriptKey();
+        if (precompiledScriptKey != null) {
+            return runPrecompiledScript(precompiledScriptKey, bindings);
+        }
         File scriptFile = new File(getFilename()); 
         // Hack: bsh-2.0b5.jar BshScriptEngine implements Compilable but throws "java.lang.Error: unimplemented"
         boolean supportsCompilable = scriptEngine instanceof Compilable 
@@ -172,19 +296,18 @@ public abstract class JSR223TestElement extends ScriptingTestElement
                                 getScriptLanguage()+"#"+ // $NON-NLS-1$
                                 scriptFile.getAbsolutePath()+"#"+  // $NON-NLS-1$
                                         scriptFile.lastModified();
-                        CompiledScript compiledScript = 
-                                compiledScriptsCache.get(cacheKey);
+                        CompiledScriptHolder holder = getCompiledScriptHolder(cacheKey);
+                        CompiledScript compiledScript = holder.compiledScript;
                         if (compiledScript==null) {
-                            synchronized (compiledScriptsCache) {
-                                compiledScript = 
-                                        compiledScriptsCache.get(cacheKey);
+                            synchronized (holder) {
+                                compiledScript = holder.compiledScript;
                                 if (compiledScript==null) {
                                     // TODO Charset ?
                                     fileReader = new BufferedReader(new FileReader(scriptFile), 
                                             (int)scriptFile.length()); 
                                     compiledScript = 
                                             ((Compilable) scriptEngine).compile(fileReader);
-                                    compiledScriptsCache.put(cacheKey, compiledScript);
+                                    holder.compiledScript = compiledScript;
                                 }
                             }
                         }
@@ -204,13 +327,14 @@ public abstract class JSR223TestElement extends ScriptingTestElement
         } else if (!StringUtils.isEmpty(getScript())) {
             if (supportsCompilable && !StringUtils.isEmpty(cacheKey)) {
                 computeScriptMD5();
-                CompiledScript compiledScript = compiledScriptsCache.get(this.scriptMd5);
+                CompiledScriptHolder holder = getCompiledScriptHolder(this.scriptMd5);
+                CompiledScript compiledScript = holder.compiledScript;
                 if (compiledScript == null) {
-                    synchronized (compiledScriptsCache) {
-                        compiledScript = compiledScriptsCache.get(this.scriptMd5);
+                    synchronized (holder) {
+                        compiledScript = holder.compiledScript;
                         if (compiledScript == null) {
                             compiledScript = ((Compilable) scriptEngine).compile(getScript());
-                            compiledScriptsCache.put(this.scriptMd5, compiledScript);
+                            holder.compiledScript = compiledScript;
                         }
                     }
                 }
@@ -224,6 +348,96 @@ public abstract class JSR223TestElement extends ScriptingTestElement
         }
     }
 
+    /**
+     * @return key of the precompiled Groovy script, null if the script is not precompiled
+     */
+    private String getPrecompiledScriptKey() {
+        if (!PRECOMPILE_GROOVY || !"groovy".equalsIgnoreCase(getScriptLanguageWithDefault())) { // $NON-NLS-1$
+            return null;
+        }
+        if (!StringUtils.isEmpty(getFilename())) {
+            File scriptFile = new File(getFilename());
+            return "groovy#" + scriptFile.getAbsolutePath() + "#" + scriptFile.lastModified(); // $NON-NLS-1$ $NON-NLS-2$
+        }
+        if (!StringUtils.isEmpty(getScript()) && !StringUtils.isEmpty(cacheKey)) {
+            computeScriptMD5();
+            return scriptMd5;
+        }
+        // Script text may change at each execution
+        return null;
+    }
+
+    /**
+     * @param key key of the precompiled script
+     * @return the class compiled for the script of this element
+     * @throws IOException when reading the script file fails
+     * @throws ScriptException when compiling the script fails
+     */
+    private Class<? extends JMeterGroovyScript> getPrecompiledScriptClass(String key)
+            throws IOException, ScriptException {
+        Class<? extends JMeterGroovyScript> scriptClass = JSR223GroovyCompiler.getCompiledClass(key);
+        if (scriptClass != null) {
+            return scriptClass;
+        }
+        String script;
+        if (!StringUtils.isEmpty(getFilename())) {
+            File scriptFile = new File(getFilename());
+            if (!scriptFile.exists() || !scriptFile.canRead()) {
+                throw new ScriptException("Script file '"+scriptFile.getAbsolutePath()+"' does not exist or is unreadable for element:"+getName());
+            }
+            // TODO Charset ?
+            script = FileUtils.readFileToString(scriptFile, Charset.defaultCharset());
+        } else {
+            script = getScript();
+        }
+        return JSR223GroovyCompiler.compile(key, script, getName());
+    }
+
+    /**
+     * Runs the precompiled script, reusing its instance for the bindings of the current thread
+     */
+    private Object runPrecompiledScript(String key, Bindings bindings) throws IOException, ScriptException {
+        ThreadBindings current = threadBindings;
+        boolean threadBindingsUsed = current != null && current.bindings == bindings;
+        JMeterGroovyScript script;
+        if (threadBindingsUsed && key.equals(current.scriptKey)) {
+            script = current.script;
+        } else {
+            script = JSR223GroovyCompiler.newInstance(getPrecompiledScriptClass(key));
+            script.setBinding(new Binding(bindings));
+            if (threadBindingsUsed) {
+                current.script = script;
+                current.scriptKey = key;
+            }
+        }
+        try {
+            return script.run();
+        } catch (RuntimeException e) {
+            throw new ScriptException(e);
+        }
+    }
+
+    /**
+     * @param key key of the script in the cache
+     * @return the holder of the compiled script, added to the cache if missing
+     */
+    private static CompiledScriptHolder getCompiledScriptHolder(String key) {
+        CompiledScriptHolder holder = compiledScriptsCache.get(key);
+        if (holder != null) {
+            return holder;
+        }
+        if (compiledScriptsCache.size() >= COMPILED_SCRIPTS_CACHE_SIZE) {
+            Iterator<String> keys = compiledScriptsCache.keySet().iterator();
+            if (keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+        holder = new CompiledScriptHolder();
+        CompiledScriptHolder previous = compiledScriptsCache.putIfAbsent(key, holder);
+        return previous != null ? previous : holder;
+    }
+
     /**
      * compute MD5 if it is null
      */
@@ -253,15 +467,23 @@ public abstract class JSR223TestElement extends ScriptingTestElement
      */
     @Override
     public void testStarted() {
-        // NOOP
+        testStarted("");
     }
 
     /**
+     * Compiles the script if it is a precompiled Groovy one, so that errors are reported before threads start
      * @see org.apache.jmeter.testelement.TestStateListener#testStarted(java.lang.String)
      */
     @Override
     public void testStarted(String host) {
-        // NOOP   
+        String precompiledScriptKey = getPrecompiledScriptKey();
+        if (precompiledScriptKey != null) {
+            try {
+                getPrecompiledScriptClass(precompiledScriptKey);
+            } catch (IOException | ScriptException e) {
+                log.error("Problem compiling JSR223 script " + getName() + ", message:" + e.getMessage(), e);
+            }
+        }
     }
 
     /**
@@ -278,6 +500,9 @@ public abstract class JSR223TestElement extends ScriptingTestElement
     @Override
     public void testEnded(String host) {
         compiledScriptsCache.clear();
+        if (PRECOMPILE_GROOVY) {
+            JSR223GroovyCompiler.clear();
+        }
         this.scriptMd5 = null;
     }
     
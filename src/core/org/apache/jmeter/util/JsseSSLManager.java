@@ -33,6 +33,7 @@ import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509ExtendedKeyManager;
@@ -69,6 +70,14 @@ public class JsseSSLManager extends SSLManager {
     private static final boolean SHARED_SESSION_CONTEXT =
         JMeterUtils.getPropDefault("https.sessioncontext.shared",false); // $NON-NLS-1$
 
+    // Max number of TLS sessions cached by a context for resumption, negative means JVM default (0 is unlimited)
+    private static final int SESSION_CACHE_SIZE =
+        JMeterUtils.getPropDefault("https.sessioncontext.size", -1); // $NON-NLS-1$
+
+    // Time in seconds during which a cached TLS session can be resumed, negative means JVM default (0 is unlimited)
+    private static final int SESSION_CACHE_TIMEOUT =
+        JMeterUtils.getPropDefault("https.sessioncontext.timeout", -1); // $NON-NLS-1$
+
     /**
      * Characters per second, used to slow down sockets
      */
@@ -263,6 +272,15 @@ public class JsseSSLManager extends SSLManager {
             }
         }
         context.init(newManagers, trustmanagers, this.rand);
+        SSLSessionContext sessionContext = context.getClientSessionContext();
+        if (sessionContext != null) {
+            if (SESSION_CACHE_SIZE >= 0) {
+                sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+            }
+            if (SESSION_CACHE_TIMEOUT >= 0) {
+                sessionContext.setSessionTimeout(SESSION_CACHE_TIMEOUT);
+            }
+        }
         if (log.isDebugEnabled()){
             String[] dCiphers = context.getSocketFactory().getDefaultCipherSuites();
             String[] sCiphers = context.getSocketFactory().getSupportedCipherSuites();
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.jmeter.threads.JMeterContext;
+import org.apache.jmeter.threads.JMeterContextService;
+
+/**
+ * Parsed representations (JSON tree, DOM, Jsoup document...) of the responses
+ * of the current sample, so that the post-processors and assertions applied to
+ * a sample parse its response once per kind of representation.
+ * <p>
+ * Representations are keyed by the identity of the parsed object, usually
+ * the String returned by {@link org.apache.jmeter.samplers.SampleResult#getResponseDataAsString()}
+ * which is itself computed once per sample, or the content of a variable.
+ * A new response or variable value is thus a new key and cannot match a stale entry.
+ * <p>
+ * Entries are held by the sampler context of the current thread, which is cleared
+ * when the sample ends (see {@link JMeterContext#cleanAfterSample()}).
+ * Outside of a running thread (e.g. in View Results Tree renderers) nothing is cached.
+ * Cached representations are shared, callers must not modify them.
+ * @since 3.2
+ */
+public final class ParsedResponseCache {
+
+    private static final String CONTEXT_KEY = ParsedResponseCache.class.getName();
+
+    private ParsedResponseCache() {
+        super();
+    }
+
+    /**
+     * @param response object which was parsed
+     * @param kind kind of representation, including the options used to parse it
+     * @return the cached representation or null if there is none
+     */
+    public static Object get(Object response, String kind) {
+        Map<Object, Map<String, Object>> cache = getCache(false);
+        if (cache == null || response == null) {
+            return null;
+        }
+        Map<String, Object> representations = cache.get(response);
+        return representations == null ? null : representations.get(kind);
+    }
+
+    /**
+     * Cache a representation until the end of the current sample
+     * @param response object which was parsed
+     * @param kind kind of representation, including the options used to parse it
+     * @param parsed representation of response
+     */
+    public static void put(Object response, String kind, Object parsed) {
+        Map<Object, Map<String, Object>> cache = getCache(true);
+        if (cache == null || response == null || parsed == null) {
+            return;
+        }
+        Map<String, Object> representations = cache.get(response);
+        if (representations == null) {
+            representations = new HashMap<>(4);
+            cache.put(response, representations);
+        }
+        representations.put(kind, parsed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Map<String, Object>> getCache(boolean create) {
+        JMeterContext context = JMeterContextService.getContext();
+        if (!context.isSamplingStarted()) {
+            // Nobody would clear the cache
+            return null;
+        }
+        Map<String, Object> samplerContext = context.getSamplerContext();
+        Map<Object, Map<String, Object>> cache = (Map<Object, Map<String, Object>>) samplerContext.get(CONTEXT_KEY);
+        if (cache == null && create) {
+            cache = new IdentityHashMap<>();
+            samplerContext.put(CONTEXT_KEY, cache);
+        }
+        return cache;
+    }
+}
@@ -82,6 +82,14 @@ public class PropertiesBasedPrefixResolver extends PrefixResolverDefault {
         super(xpathExpressionContext);
     }
 
+    /**
+     * @param prefix Prefix
+     * @return namespace configured for prefix in xpath.namespace.config, null if none
+     */
+    static String getConfiguredNamespace(String prefix) {
+        return NAMESPACE_MAP.get(prefix);
+    }
+
     /**
      * Searches prefix in NAMESPACE_MAP, if it fails to find it defaults to parent implementation
      * @param prefix Prefix
@@ -83,6 +83,9 @@ public abstract class SSLManager {
 
     private String clientCertAliasVarName;
 
+    /** true while a Keystore Configuration selects the client certificate of each thread */
+    private static volatile boolean keystoreConfigured;
+
     /**
      * Resets the SSLManager so that we can create a new one with a new keystore
      */
@@ -285,6 +288,7 @@ public abstract class SSLManager {
         this.keystoreAliasStartIndex = startIndex;
         this.keystoreAliasEndIndex = endIndex;
         this.clientCertAliasVarName = clientCertAliasVarName;
+        keystoreConfigured = true;
         if(preload) {
             keyStore = getKeyStore();
         }
@@ -295,5 +299,14 @@ public abstract class SSLManager {
      */
     public void destroyKeystore() {
         keyStore=null;
+        keystoreConfigured = false;
+    }
+
+    /**
+     * @return true if a Keystore Configuration is in use, in which case
+     *  the client certificate depends on the thread
+     */
+    public static boolean isKeystoreConfigured() {
+        return keystoreConfigured;
     }
 }
@@ -0,0 +1,937 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Evaluates simple XPath expressions while parsing a document with SAX, without building its DOM.
+ * <p>
+ * Supported expressions are absolute location paths made of child (<code>/</code>) and
+ * descendant (<code>//</code>) steps selecting elements by name or with <code>*</code>,
+ * filtered by attribute (<code>[@id]</code>, <code>[@id='1']</code>), position (<code>[2]</code>)
+ * and text (<code>[text()='value']</code>) predicates, and optionally ending with
+ * an attribute (<code>@id</code>) or <code>text()</code> step.
+ * A text predicate must be the last predicate of the last element step, which may only
+ * be followed by a child step. A step has at most one position predicate.
+ * Prefixed names are only supported by namespace aware evaluations and resolved like
+ * {@link PropertiesBasedPrefixResolver} does.
+ * <p>
+ * Matches are returned in document order with the values that
+ * {@link XPathUtil#putValuesForXPathInList(org.w3c.dom.Document, String, List, boolean)}
+ * returns without fragments, and parsing stops once the requested number of matches has been found,
+ * in which case the rest of the document is not checked.
+ * Documents which cannot be parsed are rejected with {@link NotStreamableException},
+ * so that the DOM based evaluation reports the error.
+ * @since 3.2
+ */
+final class XPathStreamingPath {
+
+    /**
+     * Thrown when a document cannot be evaluated in streaming mode,
+     * the DOM based evaluation must be used instead
+     */
+    static final class NotStreamableException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        NotStreamableException(String message) {
+            super(message);
+        }
+    }
+
+    /** Thrown by the handler to stop parsing once enough matches have been found */
+    private static final class StopParsingException extends SAXException {
+        private static final long serialVersionUID = 1L;
+
+        StopParsingException() {
+            super("Enough matches found"); // $NON-NLS-1$
+        }
+    }
+
+    private static final int ELEMENT = 0;
+    private static final int ATTRIBUTE = 1;
+    private static final int TEXT = 2;
+    private static final int POSITION = 3;
+
+    /** States are a bit set of step positions */
+    private static final int MAX_STEPS = 63;
+
+    private static final String XML_NAMESPACE = "http://www.w3.org/XML/1998/namespace"; // $NON-NLS-1$
+
+    private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler"; // $NON-NLS-1$
+
+    private static final EntityResolver NO_DTD_RESOLVER = new EntityResolver() {
+        @Override
+        public InputSource resolveEntity(String publicId, String systemId) {
+            return new InputSource(new ByteArrayInputStream(new byte[]{}));
+        }
+    };
+
+    /** Readers of current thread, namespace aware one first */
+    private static final ThreadLocal<XMLReader[]> READERS = new ThreadLocal<XMLReader[]>() {
+        @Override
+        protected XMLReader[] initialValue() {
+            return new XMLReader[2];
+        }
+    };
+
+    private static final Comparator<Match> DOCUMENT_ORDER = new Comparator<Match>() {
+        @Override
+        public int compare(Match m1, Match m2) {
+            return m1.sequence < m2.sequence ? -1 : (m1.sequence == m2.sequence ? 0 : 1);
+        }
+    };
+
+    /** Predicate of an element step */
+    private static final class Predicate {
+        final int type;
+        final String prefix;
+        final String localName;
+        /** expected value, null to test the existence of an attribute */
+        final String value;
+        final int position;
+
+        Predicate(int type, String prefix, String localName, String value, int position) {
+            this.type = type;
+            this.prefix = prefix;
+            this.localName = localName;
+            this.value = value;
+            this.position = position;
+        }
+    }
+
+    private static final class Step {
+        final int kind;
+        final boolean descendant;
+        final String prefix;
+        /** null for <code>*</code> */
+        final String localName;
+        final List<Predicate> predicates = new ArrayList<>(1);
+
+        Step(int kind, boolean descendant, String prefix, String localName) {
+            this.kind = kind;
+            this.descendant = descendant;
+            this.prefix = prefix;
+            this.localName = localName;
+        }
+
+        Predicate getTextPredicate() {
+            if (predicates.isEmpty()) {
+                return null;
+            }
+            Predicate last = predicates.get(predicates.size() - 1);
+            return last.type == TEXT ? last : null;
+        }
+    }
+
+    private static final class Match {
+        final int sequence;
+        String value;
+
+        Match(int sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    /** Element being parsed, or the document */
+    private static final class Frame {
+        long states;
+        /** number of children matching the steps having a position predicate */
+        int[] positions;
+        int children;
+        /** match of the element, waiting for the value of its first child */
+        Match valueMatch;
+        /** text() children are matches */
+        boolean collectText;
+        /** matches of the element depend on its text predicate */
+        boolean conditional;
+        String expectedText;
+        boolean accepted;
+        final List<Match> conditionalMatches = new ArrayList<>(2);
+
+        void reset(long newStates) {
+            states = newStates;
+            if (positions != null) {
+                Arrays.fill(positions, 0);
+            }
+            children = 0;
+            valueMatch = null;
+            collectText = false;
+            conditional = false;
+            expectedText = null;
+            accepted = false;
+            conditionalMatches.clear();
+        }
+    }
+
+    private final String expression;
+
+    private final boolean namespace;
+
+    private final Step[] steps;
+
+    /** Prefixes used by the expression */
+    private final Set<String> prefixes;
+
+    private XPathStreamingPath(String expression, boolean namespace, List<Step> steps, Set<String> prefixes) {
+        this.expression = expression;
+        this.namespace = namespace;
+        this.steps = steps.toArray(new Step[steps.size()]);
+        this.prefixes = prefixes;
+    }
+
+    /**
+     * @param expression XPath expression
+     * @param namespace true if documents will be parsed with namespace awareness
+     * @return compiled expression or null if it cannot be evaluated in streaming mode
+     */
+    static XPathStreamingPath compile(String expression, boolean namespace) {
+        String path = expression.trim();
+        List<Step> steps = new ArrayList<>();
+        Set<String> prefixes = new HashSet<>();
+        int[] pos = new int[1];
+        while (pos[0] < path.length()) {
+            boolean descendant;
+            if (path.startsWith("//", pos[0])) { // $NON-NLS-1$
+                descendant = true;
+                pos[0] += 2;
+            } else if (path.charAt(pos[0]) == '/') {
+                descendant = false;
+                pos[0]++;
+            } else {
+                return null;
+            }
+            if (!steps.isEmpty() && steps.get(steps.size() - 1).kind != ELEMENT || steps.size() == MAX_STEPS) {
+                return null;
+            }
+            Step step = parseStep(path, pos, descendant);
+            if (step == null || (!namespace && hasPrefix(step))) {
+                return null;
+            }
+            steps.add(step);
+            addPrefixes(step, prefixes);
+        }
+        if (steps.isEmpty()) {
+            // Root node
+            return null;
+        }
+        // Conditional matches must be decided within the element having the text predicate
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            if (step.getTextPredicate() != null) {
+                boolean lastElementStep = i == steps.size() - 1
+                        || (i == steps.size() - 2 && steps.get(i + 1).kind != ELEMENT);
+                if (!lastElementStep || (i < steps.size() - 1 && steps.get(i + 1).descendant)) {
+                    return null;
+                }
+            }
+        }
+        return new XPathStreamingPath(path, namespace, steps, prefixes);
+    }
+
+    private static boolean hasPrefix(Step step) {
+        if (step.prefix != null) {
+            return true;
+        }
+        for (Predicate predicate : step.predicates) {
+            if (predicate.prefix != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addPrefixes(Step step, Set<String> prefixes) {
+        if (step.prefix != null) {
+            prefixes.add(step.prefix);
+        }
+        for (Predicate predicate : step.predicates) {
+            if (predicate.prefix != null) {
+                prefixes.add(predicate.prefix);
+            }
+        }
+    }
+
+    private static Step parseStep(String path, int[] pos, boolean descendant) {
+        if (pos[0] >= path.length()) {
+            return null;
+        }
+        char c = path.charAt(pos[0]);
+        if (c == '@') {
+            pos[0]++;
+            String[] name = parseQName(path, pos);
+            return name != null && isEnd(path, pos[0]) ? new Step(ATTRIBUTE, descendant, name[0], name[1]) : null;
+        }
+        if (path.startsWith("text()", pos[0])) { // $NON-NLS-1$
+            pos[0] += 6;
+            return isEnd(path, pos[0]) ? new Step(TEXT, descendant, null, null) : null;
+        }
+        Step step;
+        if (c == '*') {
+            pos[0]++;
+            step = new Step(ELEMENT, descendant, null, null);
+        } else {
+            String[] name = parseQName(path, pos);
+            if (name == null) {
+                return null;
+            }
+            step = new Step(ELEMENT, descendant, name[0], name[1]);
+        }
+        boolean hasPosition = false;
+        while (pos[0] < path.length() && path.charAt(pos[0]) == '[') {
+            if (step.getTextPredicate() != null) {
+                // Text predicate must be the last one
+                return null;
+            }
+            pos[0]++;
+            Predicate predicate = parsePredicate(path, pos);
+            if (predicate == null || pos[0] >= path.length() || path.charAt(pos[0]) != ']'
+                    || (predicate.type == POSITION && hasPosition)) {
+                return null;
+            }
+            pos[0]++;
+            hasPosition |= predicate.type == POSITION;
+            step.predicates.add(predicate);
+        }
+        return isEnd(path, pos[0]) || path.charAt(pos[0]) == '/' ? step : null;
+    }
+
+    private static boolean isEnd(String path, int pos) {
+        return pos >= path.length();
+    }
+
+    private static Predicate parsePredicate(String path, int[] pos) {
+        skipSpaces(path, pos);
+        int start = pos[0];
+        while (pos[0] < path.length() && Character.isDigit(path.charAt(pos[0]))) {
+            pos[0]++;
+        }
+        if (pos[0] > start) {
+            int position;
+            try {
+                position = Integer.parseInt(path.substring(start, pos[0]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            skipSpaces(path, pos);
+            return position > 0 ? new Predicate(POSITION, null, null, null, position) : null;
+        }
+        int type;
+        String[] name = null;
+        if (path.startsWith("text()", pos[0])) { // $NON-NLS-1$
+            type = TEXT;
+            pos[0] += 6;
+        } else if (pos[0] < path.length() && path.charAt(pos[0]) == '@') {
+            type = ATTRIBUTE;
+            pos[0]++;
+            name = parseQName(path, pos);
+            if (name == null) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        skipSpaces(path, pos);
+        String value = null;
+        if (pos[0] < path.length() && path.charAt(pos[0]) == '=') {
+            pos[0]++;
+            skipSpaces(path, pos);
+            value = parseLiteral(path, pos);
+            if (value == null) {
+                return null;
+            }
+            skipSpaces(path, pos);
+        } else if (type == TEXT) {
+            return null;
+        }
+        return new Predicate(type, name == null ? null : name[0], name == null ? null : name[1], value, 0);
+    }
+
+    private static String parseLiteral(String path, int[] pos) {
+        if (pos[0] >= path.length()) {
+            return null;
+        }
+        char quote = path.charAt(pos[0]);
+        if (quote != '\'' && quote != '"') {
+            return null;
+        }
+        int end = path.indexOf(quote, pos[0] + 1);
+        if (end < 0) {
+            return null;
+        }
+        String literal = path.substring(pos[0] + 1, end);
+        pos[0] = end + 1;
+        return literal;
+    }
+
+    private static void skipSpaces(String path, int[] pos) {
+        while (pos[0] < path.length() && Character.isWhitespace(path.charAt(pos[0]))) {
+            pos[0]++;
+        }
+    }
+
+    /**
+     * @return prefix (null if none) and local name, or null if there is no QName at pos or if it is
+     *  followed by something else than a step or predicate (function, axis...)
+     */
+    private static String[] parseQName(String path, int[] pos) {
+        String first = parseNCName(path, pos);
+        if (first == null) {
+            return null;
+        }
+        String[] name = new String[] {null, first};
+        if (pos[0] < path.length() && path.charAt(pos[0]) == ':') {
+            pos[0]++;
+            String local = parseNCName(path, pos);
+            if (local == null) {
+                return null;
+            }
+            name[0] = first;
+            name[1] = local;
+        }
+        if (pos[0] < path.length()) {
+            char c = path.charAt(pos[0]);
+            if (c != '/' && c != '[' && c != ']' && c != '=' && !Character.isWhitespace(c)) {
+                return null;
+            }
+        }
+        return name;
+    }
+
+    private static String parseNCName(String path, int[] pos) {
+        int start = pos[0];
+        if (start >= path.length()) {
+            return null;
+        }
+        char c = path.charAt(start);
+        if (!Character.isLetter(c) && c != '_') {
+            return null;
+        }
+        int end = start + 1;
+        while (end < path.length()) {
+            c = path.charAt(end);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') {
+                break;
+            }
+            end++;
+        }
+        pos[0] = end;
+        return path.substring(start, end);
+    }
+
+    /**
+     * Parse the document and return the values of the matches of the expression
+     * @param stream document
+     * @param whitespace true to ignore element content whitespace
+     * @param downloadDTDs true to resolve external entities
+     * @param maxMatches number of matches after which parsing stops, 0 for all
+     * @return values of the matches in document order, values may be null
+     * @throws IOException when reading the stream fails
+     * @throws NotStreamableException when the document cannot be parsed or a prefix cannot be resolved
+     */
+    List<String> read(InputStream stream, boolean whitespace, boolean downloadDTDs, int maxMatches)
+            throws IOException, NotStreamableException {
+        Evaluation evaluation = new Evaluation(whitespace, maxMatches);
+        try {
+            XMLReader reader = getReader();
+            reader.setContentHandler(evaluation);
+            reader.setErrorHandler(evaluation);
+            reader.setEntityResolver(downloadDTDs ? null : NO_DTD_RESOLVER);
+            reader.setProperty(LEXICAL_HANDLER, evaluation);
+            reader.parse(new InputSource(stream));
+        } catch (StopParsingException e) { // NOSONAR Expected
+            // Enough matches
+        } catch (SAXException | ParserConfigurationException e) {
+            throw new NotStreamableException(e.getMessage());
+        }
+        return evaluation.getValues();
+    }
+
+    private XMLReader getReader() throws SAXException, ParserConfigurationException {
+        XMLReader[] readers = READERS.get();
+        int index = namespace ? 0 : 1;
+        if (readers[index] == null) {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(namespace);
+            factory.setValidating(false);
+            readers[index] = factory.newSAXParser().getXMLReader();
+        }
+        return readers[index];
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * State of the evaluation of a document
+     */
+    private final class Evaluation extends DefaultHandler implements LexicalHandler {
+
+        private final boolean ignoreWhitespace;
+
+        private final int maxMatches;
+
+        private final List<Match> matches = new ArrayList<>();
+
+        /** Open elements, document first, frames are reused */
+        private final List<Frame> frames = new ArrayList<>();
+
+        private int depth;
+
+        /** Namespaces declared by the root element */
+        private final Map<String, String> rootNamespaces = new HashMap<>(4);
+
+        /** Namespaces of the prefixes of the expression, null until root element is reached */
+        private Map<String, String> namespaces;
+
+        private int sequence;
+
+        /** Number of matches waiting for their value or their text predicate */
+        private int unresolved;
+
+        private boolean inDTD;
+
+        private boolean inCDATA;
+
+        /** A Text or CDATA node is being read */
+        private boolean nodeOpen;
+
+        private final StringBuilder nodeText = new StringBuilder();
+
+        /** Matches whose value is the value of the node being read */
+        private Match nodeTarget1;
+        private Match nodeTarget2;
+
+        /** A text node (adjacent Text and CDATA nodes) is being read */
+        private boolean textOpen;
+
+        private final StringBuilder text = new StringBuilder();
+
+        Evaluation(boolean ignoreWhitespace, int maxMatches) {
+            this.ignoreWhitespace = ignoreWhitespace;
+            this.maxMatches = maxMatches;
+        }
+
+        List<String> getValues() {
+            Collections.sort(matches, DOCUMENT_ORDER);
+            List<String> values = new ArrayList<>(matches.size());
+            for (Match match : matches) {
+                values.add(match.value);
+            }
+            return values;
+        }
+
+        private Frame push(long states) {
+            Frame frame;
+            if (depth < frames.size()) {
+                frame = frames.get(depth);
+            } else {
+                frame = new Frame();
+                frames.add(frame);
+            }
+            depth++;
+            frame.reset(states);
+            return frame;
+        }
+
+        private Frame top() {
+            return frames.get(depth - 1);
+        }
+
+        @Override
+        public void startDocument() {
+            push(1L);
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) {
+            if (namespaces == null) {
+                rootNamespaces.put(prefix, uri);
+            }
+        }
+
+        private void resolveNamespaces() throws SAXException {
+            namespaces = new HashMap<>(prefixes.size());
+            for (String prefix : prefixes) {
+                String uri = PropertiesBasedPrefixResolver.getConfiguredNamespace(prefix);
+                if (uri == null) {
+                    uri = rootNamespaces.get(prefix);
+                }
+                if (uri == null && "xml".equals(prefix)) { // $NON-NLS-1$
+                    uri = XML_NAMESPACE;
+                }
+                if (uri == null) {
+                    throw new SAXException("Prefix must resolve to a namespace: " + prefix);
+                }
+                namespaces.put(prefix, uri);
+            }
+        }
+
+        private String getNamespace(String prefix) {
+            return prefix == null ? "" : namespaces.get(prefix); // $NON-NLS-1$
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+                throws SAXException {
+            closeText();
+            if (namespaces == null) {
+                resolveNamespaces();
+            }
+            Frame parent = top();
+            startNode(parent, false, null);
+            if (!namespace) {
+                checkUnprefixed(qName, attributes);
+            }
+            String name = namespace ? localName : qName;
+            int elementSequence = ++sequence;
+            long inherited = 0;
+            long entered = 0;
+            boolean elementMatch = false;
+            boolean conditional = false;
+            for (long states = parent.states; states != 0; states &= states - 1) {
+                int i = Long.numberOfTrailingZeros(states);
+                Step step = steps[i];
+                if (step.descendant) {
+                    inherited |= 1L << i;
+                }
+                if (step.kind != ELEMENT || !matchesName(step.prefix, step.localName, uri, name)) {
+                    continue;
+                }
+                int result = testPredicates(step, i, parent, attributes);
+                if (result == POSITION) {
+                    continue;
+                }
+                conditional |= result == TEXT;
+                if (i == steps.length - 1) {
+                    elementMatch = true;
+                } else {
+                    entered |= 1L << (i + 1);
+                }
+            }
+            Frame frame = push(inherited | entered);
+            if (conditional) {
+                frame.conditional = true;
+                frame.expectedText = steps[steps.length - (elementMatch ? 1 : 2)].getTextPredicate().value;
+                unresolved++;
+            }
+            if (elementMatch) {
+                Match match = new Match(elementSequence);
+                frame.valueMatch = match;
+                unresolved++;
+                addMatch(frame, match);
+            }
+            int last = steps.length - 1;
+            if ((frame.states & (1L << last)) != 0) {
+                if (steps[last].kind == ATTRIBUTE) {
+                    String value = getAttribute(attributes, steps[last].prefix, steps[last].localName);
+                    if (value != null) {
+                        Match match = new Match(++sequence);
+                        match.value = value;
+                        addMatch(frame, match);
+                    }
+                } else if (steps[last].kind == TEXT) {
+                    frame.collectText = true;
+                }
+            }
+            checkStop();
+        }
+
+        /**
+         * @return ELEMENT if element matches, TEXT if it depends on its text, POSITION if it does not match
+         */
+        private int testPredicates(Step step, int index, Frame parent, Attributes attributes) {
+            for (Predicate predicate : step.predicates) {
+                switch (predicate.type) {
+                    case ATTRIBUTE:
+                        String value = getAttribute(attributes, predicate.prefix, predicate.localName);
+                        if (value == null || (predicate.value != null && !predicate.value.equals(value))) {
+                            return POSITION;
+                        }
+                        break;
+                    case POSITION:
+                        if (parent.positions == null) {
+                            parent.positions = new int[steps.length];
+                        }
+                        if (++parent.positions[index] != predicate.position) {
+                            return POSITION;
+                        }
+                        break;
+                    default:
+                        return TEXT;
+                }
+            }
+            return ELEMENT;
+        }
+
+        private boolean matchesName(String prefix, String localName, String uri, String name) {
+            if (localName == null) {
+                return true;
+            }
+            return localName.equals(name) && (!namespace || getNamespace(prefix).equals(uri));
+        }
+
+        private String getAttribute(Attributes attributes, String prefix, String localName) {
+            if (namespace) {
+                return attributes.getValue(getNamespace(prefix), localName);
+            }
+            for (int i = 0; i < attributes.getLength(); i++) {
+                String qName = attributes.getQName(i);
+                if (!qName.equals("xmlns") && !qName.startsWith("xmlns:") // $NON-NLS-1$ // $NON-NLS-2$
+                        && localName.equals(qName)) {
+                    return attributes.getValue(i);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Xalan does not match prefixed names of documents parsed without namespace awareness consistently
+         * (depending on the axis), let the DOM based evaluation handle them
+         */
+        private void checkUnprefixed(String qName, Attributes attributes) throws SAXException {
+            if (qName.indexOf(':') >= 0) {
+                throw new SAXException("Prefixed element without namespace awareness: " + qName);
+            }
+            for (int i = 0; i < attributes.getLength(); i++) {
+                String name = attributes.getQName(i);
+                if (name.indexOf(':') >= 0 && !name.startsWith("xmlns:")) { // $NON-NLS-1$
+                    throw new SAXException("Prefixed attribute without namespace awareness: " + name);
+                }
+            }
+        }
+
+        private void addMatch(Frame frame, Match match) {
+            if (frame.conditional) {
+                frame.conditionalMatches.add(match);
+            } else {
+                matches.add(match);
+            }
+        }
+
+        private void resolve(Match match, String value) {
+            match.value = value;
+            unresolved--;
+        }
+
+        /**
+         * A child node of frame starts
+         * @param readValue true if its value is the text which follows (Text or CDATA)
+         * @param value value of the node otherwise
+         */
+        private void startNode(Frame frame, boolean readValue, String value) {
+            if (frame.children++ == 0 && frame.valueMatch != null) {
+                if (readValue) {
+                    nodeTarget1 = frame.valueMatch;
+                } else {
+                    resolve(frame.valueMatch, value);
+                }
+                frame.valueMatch = null;
+            }
+        }
+
+        private void openNode() {
+            Frame frame = top();
+            nodeOpen = true;
+            startNode(frame, true, null);
+            if (!textOpen) {
+                textOpen = true;
+                if (frame.collectText) {
+                    // Value of a text node is the value of its first DOM node
+                    Match match = new Match(++sequence);
+                    unresolved++;
+                    addMatch(frame, match);
+                    nodeTarget2 = match;
+                }
+            }
+        }
+
+        private void closeNode() {
+            if (!nodeOpen) {
+                return;
+            }
+            nodeOpen = false;
+            if (nodeTarget1 != null || nodeTarget2 != null) {
+                String value = nodeText.toString();
+                if (nodeTarget1 != null) {
+                    resolve(nodeTarget1, value);
+                    nodeTarget1 = null;
+                }
+                if (nodeTarget2 != null) {
+                    resolve(nodeTarget2, value);
+                    nodeTarget2 = null;
+                }
+            }
+            nodeText.setLength(0);
+        }
+
+        private void closeText() {
+            closeNode();
+            if (!textOpen) {
+                return;
+            }
+            textOpen = false;
+            Frame frame = top();
+            if (frame.expectedText != null && !frame.accepted) {
+                frame.accepted = frame.expectedText.contentEquals(text);
+            }
+            text.setLength(0);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (length == 0 && !inCDATA) {
+                return;
+            }
+            if (!nodeOpen) {
+                openNode();
+            }
+            if (nodeTarget1 != null || nodeTarget2 != null) {
+                nodeText.append(ch, start, length);
+            }
+            Frame frame = top();
+            if (frame.expectedText != null && !frame.accepted) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            if (!ignoreWhitespace) {
+                characters(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            closeText();
+            Frame frame = top();
+            depth--;
+            if (frame.valueMatch != null) {
+                // No child
+                resolve(frame.valueMatch, null);
+                frame.valueMatch = null;
+            }
+            if (frame.conditional) {
+                unresolved--;
+                if (frame.accepted) {
+                    matches.addAll(frame.conditionalMatches);
+                }
+            }
+            checkStop();
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            closeText();
+            startNode(top(), false, data);
+            checkStop();
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length) throws SAXException {
+            if (inDTD) {
+                return;
+            }
+            closeText();
+            startNode(top(), false, new String(ch, start, length));
+            checkStop();
+        }
+
+        @Override
+        public void startCDATA() {
+            closeNode();
+            inCDATA = true;
+            openNode();
+        }
+
+        @Override
+        public void endCDATA() throws SAXException {
+            closeNode();
+            inCDATA = false;
+            checkStop();
+        }
+
+        @Override
+        public void startDTD(String name, String publicId, String systemId) {
+            inDTD = true;
+        }
+
+        @Override
+        public void endDTD() {
+            inDTD = false;
+        }
+
+        @Override
+        public void startEntity(String name) {
+            // NOOP, entities are expanded
+        }
+
+        @Override
+        public void endEntity(String name) {
+            // NOOP, entities are expanded
+        }
+
+        private void checkStop() throws StopParsingException {
+            if (maxMatches > 0 && unresolved == 0 && matches.size() >= maxMatches) {
+                throw new StopParsingException();
+            }
+        }
+
+        @Override
+        public void warning(SAXParseException e) throws SAXException {
+            throw e;
+        }
+
+        @Override
+        public void error(SAXParseException e) throws SAXException {
+            throw e;
+        }
+
+        @Override
+        public void fatalError(SAXParseException e) throws SAXException {
+            throw e;
+        }
+    }
+}
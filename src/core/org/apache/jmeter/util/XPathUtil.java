@@ -26,7 +26,9 @@ import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -40,14 +42,18 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
 
+import org.apache.commons.collections.map.LRUMap;
 import org.apache.jmeter.assertions.AssertionResult;
 import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JOrphanUtils;
 import org.apache.log.Logger;
 import org.apache.xml.utils.PrefixResolver;
-import org.apache.xpath.XPathAPI;
+import org.apache.xpath.XPath;
+import org.apache.xpath.XPathContext;
 import org.apache.xpath.objects.XObject;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.w3c.tidy.Tidy;
@@ -63,6 +69,27 @@ import org.xml.sax.SAXParseException;
 public class XPathUtil {
     private static final Logger log = LoggingManager.getLoggerForClass();
 
+    /**
+     * Compiled XPath expressions, keyed by expression and by the namespaces
+     * declared by the document element, which are used to resolve its prefixes
+     */
+    @SuppressWarnings("unchecked") // LRUMap does not support generics (yet)
+    private static final Map<String, XPath> COMPILED_XPATHS =
+            Collections.synchronizedMap(
+                    new LRUMap(JMeterUtils.getPropDefault("xpath.compiled_expressions_cache_size", 100))); // $NON-NLS-1$
+
+    /**
+     * Size (in bytes or characters) from which responses are evaluated while being parsed
+     * when the expression allows it, 0 disables streaming
+     */
+    private static final long STREAMING_MIN_SIZE = JMeterUtils.getPropDefault("xpath.streaming.min_size", 0L); // $NON-NLS-1$
+
+    /** Streaming version of the expressions, null if they cannot be streamed */
+    @SuppressWarnings("unchecked") // LRUMap does not support generics (yet)
+    private static final Map<String, XPathStreamingPath> STREAMING_PATHS =
+            Collections.synchronizedMap(
+                    new LRUMap(JMeterUtils.getPropDefault("xpath.compiled_expressions_cache_size", 100))); // $NON-NLS-1$
+
     private XPathUtil() {
         super();
     }
@@ -180,6 +207,113 @@ public class XPathUtil {
         return doc;
     }
 
+    /**
+     * Same as {@link #makeDocument(InputStream, boolean, boolean, boolean, boolean, boolean, boolean, boolean, boolean, boolean)}
+     * except that the document is parsed once per sample for a given response and set of options,
+     * see {@link ParsedResponseCache}. The returned document must not be modified.
+     *
+     * @param response - Document as a String (converted to UTF-8) or a byte array, also used as cache key
+     * @param validate - Validate Document (not Tidy)
+     * @param whitespace - Element Whitespace (not Tidy)
+     * @param namespace - Is Namespace aware. (not Tidy)
+     * @param tolerant - Is tolerant - i.e. use the Tidy parser
+     * @param quiet - set Tidy quiet
+     * @param showWarnings - set Tidy warnings
+     * @param report_errors - throw TidyException if Tidy detects an error
+     * @param downloadDTDs - if true, try to download external DTDs
+     * @return document
+     * @throws ParserConfigurationException when no {@link DocumentBuilder} can be constructed for the wanted configuration
+     * @throws SAXException if parsing fails
+     * @throws IOException if an I/O error occurs while parsing
+     * @throws TidyException if a ParseError is detected and <code>report_errors</code> is <code>true</code>
+     * @since 3.2
+     */
+    public static Document getDocument(Object response, boolean validate, boolean whitespace, boolean namespace,
+            boolean tolerant, boolean quiet, boolean showWarnings, boolean report_errors, boolean downloadDTDs)
+            throws ParserConfigurationException, SAXException, IOException, TidyException {
+        String kind = getDocumentKind(validate, whitespace, namespace, tolerant, quiet, showWarnings,
+                report_errors, downloadDTDs);
+        Document doc = (Document) ParsedResponseCache.get(response, kind);
+        if (doc == null) {
+            // String data is converted to UTF-8 as expected by the parsers
+            byte[] data = response instanceof byte[] ? (byte[]) response
+                    : response.toString().getBytes(StandardCharsets.UTF_8);
+            doc = makeDocument(new ByteArrayInputStream(data), validate, whitespace, namespace,
+                    tolerant, quiet, showWarnings, report_errors, JOrphanUtils.isXML(data), downloadDTDs);
+            ParsedResponseCache.put(response, kind, doc);
+        }
+        return doc;
+    }
+
+    /**
+     * @return kind of document in {@link ParsedResponseCache}, made of the options used by the parser
+     */
+    private static String getDocumentKind(boolean validate, boolean whitespace, boolean namespace,
+            boolean tolerant, boolean quiet, boolean showWarnings, boolean report_errors, boolean downloadDTDs) {
+        if (tolerant) {
+            return new StringBuilder("tidy:") // $NON-NLS-1$
+                .append(quiet).append(',').append(showWarnings).append(',').append(report_errors)
+                .toString();
+        }
+        return new StringBuilder("dom:") // $NON-NLS-1$
+            .append(validate).append(',').append(whitespace).append(',').append(namespace).append(',')
+            .append(downloadDTDs)
+            .toString();
+    }
+
+    /**
+     * Evaluate xPathQuery while parsing response, without building its DOM, when the response
+     * is large enough (see <code>xpath.streaming.min_size</code> property), the options
+     * and the expression allow it (see {@link XPathStreamingPath}) and the response has not
+     * already been parsed with {@link #getDocument(Object, boolean, boolean, boolean, boolean, boolean, boolean, boolean, boolean)}.
+     *
+     * @param response - Document as a String (converted to UTF-8) or a byte array
+     * @param xPathQuery - XPath expression
+     * @param validate - Validate Document, prevents streaming
+     * @param whitespace - Element Whitespace
+     * @param namespace - Is Namespace aware
+     * @param tolerant - Is tolerant, prevents streaming
+     * @param downloadDTDs - if true, try to download external DTDs
+     * @param maxMatches - number of matches after which parsing stops, 0 for all
+     * @return values of the matches as returned by {@link #putValuesForXPathInList(Document, String, List, boolean)}
+     *  without fragments, or null if the response must be evaluated on its Document
+     * @since 3.2
+     */
+    public static List<String> streamValuesForXPath(Object response, String xPathQuery,
+            boolean validate, boolean whitespace, boolean namespace, boolean tolerant, boolean downloadDTDs,
+            int maxMatches) {
+        if (STREAMING_MIN_SIZE <= 0 || validate || tolerant || response == null) {
+            return null;
+        }
+        int size = response instanceof byte[] ? ((byte[]) response).length : response.toString().length();
+        if (size < STREAMING_MIN_SIZE) {
+            return null;
+        }
+        // Querying a document parsed by another element is cheaper
+        if (ParsedResponseCache.get(response, getDocumentKind(false, whitespace, namespace, false,
+                false, false, false, downloadDTDs)) != null) {
+            return null;
+        }
+        String key = namespace + xPathQuery;
+        if (!STREAMING_PATHS.containsKey(key)) {
+            STREAMING_PATHS.put(key, XPathStreamingPath.compile(xPathQuery, namespace));
+        }
+        XPathStreamingPath streamingPath = STREAMING_PATHS.get(key);
+        if (streamingPath == null) {
+            return null;
+        }
+        byte[] data = response instanceof byte[] ? (byte[]) response
+                : response.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            return streamingPath.read(new ByteArrayInputStream(data), whitespace, downloadDTDs, maxMatches);
+        } catch (IOException | XPathStreamingPath.NotStreamableException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Cannot stream XPath " + xPathQuery + ", using Document: " + e.getMessage());
+            }
+            return null;
+        }
+    }
+
     /**
      * Create a document using Tidy
      *
@@ -293,7 +427,7 @@ public class XPathUtil {
      * @throws TransformerException when the internally used xpath engine fails
      */
     public static NodeList selectNodeList(Document document, String xPathExpression) throws TransformerException {
-        XObject xObject = XPathAPI.eval(document, xPathExpression, getPrefixResolver(document));
+        XObject xObject = evaluate(document, xPathExpression);
         return xObject.nodelist();
     }
 
@@ -309,7 +443,7 @@ public class XPathUtil {
             String xPathQuery,
             List<String> matchStrings, boolean fragment) throws TransformerException {
         String val = null;
-        XObject xObject = XPathAPI.eval(document, xPathQuery, getPrefixResolver(document));
+        XObject xObject = evaluate(document, xPathQuery);
         final int objectType = xObject.getType();
         if (objectType == XObject.CLASS_NODESET) {
             NodeList matches = xObject.nodelist();
@@ -354,6 +488,38 @@ public class XPathUtil {
         return propertiesBasedPrefixResolver;
     }
 
+    /**
+     * Evaluate expression on document, compiling it once for the namespaces declared by the document element
+     * @param document XML Document
+     * @param xPathExpression XPath expression
+     * @return result of evaluation
+     * @throws TransformerException if expression is invalid or fails to evaluate
+     */
+    private static XObject evaluate(Document document, String xPathExpression) throws TransformerException {
+        PrefixResolver prefixResolver = getPrefixResolver(document);
+        StringBuilder key = new StringBuilder(xPathExpression);
+        Element documentElement = document.getDocumentElement();
+        if (documentElement != null) {
+            NamedNodeMap attributes = documentElement.getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Node attribute = attributes.item(i);
+                String name = attribute.getNodeName();
+                if (name.startsWith("xmlns")) { // $NON-NLS-1$
+                    key.append('\n').append(name).append('=').append(attribute.getNodeValue());
+                }
+            }
+        }
+        String cacheKey = key.toString();
+        XPath xpath = COMPILED_XPATHS.get(cacheKey);
+        if (xpath == null) {
+            xpath = new XPath(xPathExpression, null, prefixResolver, XPath.SELECT, null);
+            COMPILED_XPATHS.put(cacheKey, xpath);
+        }
+        XPathContext xpathSupport = new XPathContext(false);
+        int contextNode = xpathSupport.getDTMHandleFromNode(document);
+        return xpath.execute(xpathSupport, contextNode, prefixResolver);
+    }
+
     /**
      * Validate xpathString is a valid XPath expression
      * @param document XML Document
@@ -361,7 +527,7 @@ public class XPathUtil {
      * @throws TransformerException if expression fails to evaluate
      */
     public static void validateXPath(Document document, String xpathString) throws TransformerException {
-        if (XPathAPI.eval(document, xpathString, getPrefixResolver(document)) == null) {
+        if (evaluate(document, xpathString) == null) {
             // We really should never get here
             // because eval will throw an exception
             // if xpath is invalid, but whatever, better
@@ -382,7 +548,7 @@ public class XPathUtil {
             String xPathExpression,
             boolean isNegated) {
         try {
-            XObject xObject = XPathAPI.eval(doc, xPathExpression, getPrefixResolver(doc));
+            XObject xObject = evaluate(doc, xPathExpression);
             switch (xObject.getType()) {
                 case XObject.CLASS_NODESET:
                     NodeList nodeList = xObject.nodelist();
@@ -390,8 +556,7 @@ public class XPathUtil {
                         if (log.isDebugEnabled()) {
                             log.debug(new StringBuilder("nodeList null no match  ").append(xPathExpression).toString());
                         }
-                        result.setFailure(!isNegated);
-                        result.setFailureMessage("No Nodes Matched " + xPathExpression);
+                        computeAssertionResult(result, 0, xPathExpression, isNegated);
                         return;
                     }
                     if (log.isDebugEnabled()) {
@@ -402,10 +567,7 @@ public class XPathUtil {
                             }
                         }
                     }
-                    result.setFailure(isNegated);
-                    if (isNegated) {
-                        result.setFailureMessage("Specified XPath was found... Turn off negate if this is not desired");
-                    }
+                    computeAssertionResult(result, nodeList.getLength(), xPathExpression, isNegated);
                     return;
                 case XObject.CLASS_BOOLEAN:
                     if (!xObject.bool()){
@@ -429,6 +591,29 @@ public class XPathUtil {
         }
     }
     
+    /**
+     * Fills result for an expression returning a node set
+     * @param result {@link AssertionResult}
+     * @param matchCount number of nodes matched by xPathExpression
+     * @param xPathExpression XPath expression
+     * @param isNegated flag whether a non-match should be considered a success
+     * @since 3.2
+     */
+    public static void computeAssertionResult(AssertionResult result,
+            int matchCount,
+            String xPathExpression,
+            boolean isNegated) {
+        if (matchCount == 0) {
+            result.setFailure(!isNegated);
+            result.setFailureMessage("No Nodes Matched " + xPathExpression);
+            return;
+        }
+        result.setFailure(isNegated);
+        if (isNegated) {
+            result.setFailureMessage("Specified XPath was found... Turn off negate if this is not desired");
+        }
+    }
+
     /**
      * Formats XML
      * @param xml string to format
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.oro.text.MalformedCachePatternException;
+import org.apache.oro.text.regex.MatchResult;
+
+/**
+ * java.util.regex engine.
+ * @since 3.2
+ */
+final class JavaRegexEngine extends RegexEngine {
+
+    JavaRegexEngine() {
+        super(JAVA);
+    }
+
+    @Override
+    protected RegexPattern compile(String expression) throws MalformedCachePatternException {
+        try {
+            return new JavaPattern(Pattern.compile(expression));
+        } catch (PatternSyntaxException e) {
+            throw new MalformedCachePatternException(e.getMessage());
+        }
+    }
+
+    private static final class JavaPattern implements RegexPattern {
+        private final Pattern pattern;
+
+        JavaPattern(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public String getPattern() {
+            return pattern.pattern();
+        }
+
+        @Override
+        public boolean contains(CharSequence input) {
+            return pattern.matcher(input).find();
+        }
+
+        @Override
+        public boolean matches(CharSequence input) {
+            return pattern.matcher(input).matches();
+        }
+
+        @Override
+        public List<MatchResult> findAll(CharSequence input, int maxMatches) {
+            List<MatchResult> matches = new ArrayList<>();
+            Matcher matcher = pattern.matcher(input);
+            while ((maxMatches <= 0 || matches.size() < maxMatches) && matcher.find()) {
+                int[] offsets = new int[2 * (matcher.groupCount() + 1)];
+                for (int group = 0; group <= matcher.groupCount(); group++) {
+                    offsets[2 * group] = matcher.start(group);
+                    offsets[2 * group + 1] = matcher.end(group);
+                }
+                matches.add(new OffsetsMatchResult(input, offsets));
+            }
+            return matches;
+        }
+    }
+}
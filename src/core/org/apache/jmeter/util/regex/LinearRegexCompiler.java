@@ -0,0 +1,814 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.oro.text.MalformedCachePatternException;
+
+/**
+ * Compiles a regular expression into the program run by {@link LinearRegexEngine}.
+ * <p>
+ * The Perl5 / java.util.regex syntax is supported, except back references, look-around,
+ * atomic groups, possessive quantifiers, named groups, Unicode properties, nested classes
+ * and repetitions of a sub-expression which can match the empty string,
+ * for which {@link UnsupportedRegexException} is thrown.
+ * Like in Perl, {@code .} matches anything but {@code \n} and {@code $} matches at the end or before a final
+ * {@code \n}. Flags {@code i}, {@code s} and {@code m} are supported.
+ * @since 3.2
+ */
+final class LinearRegexCompiler {
+
+    // Instructions of the program
+
+    /** Matches the character args1 */
+    static final int CHAR = 0;
+    /** Matches a character whose case folding is args1 */
+    static final int CHAR_FOLD = 1;
+    /** Matches any character but \n */
+    static final int ANY = 2;
+    /** Matches any character */
+    static final int ANY_ALL = 3;
+    /** Matches a character of class args1 */
+    static final int CLASS = 4;
+    /** Continues at args1, then with a lower priority at args2 */
+    static final int SPLIT = 5;
+    /** Continues at args1 */
+    static final int JMP = 6;
+    /** Saves the position in slot args1 */
+    static final int SAVE = 7;
+    /** Continues if assertion args1 is true at the position */
+    static final int ASSERT = 8;
+    /** Match found */
+    static final int MATCH = 9;
+
+    // Assertions
+
+    static final int TEXT_START = 0;
+    static final int TEXT_END = 1;
+    static final int TEXT_END_OR_FINAL_NEWLINE = 2;
+    static final int LINE_START = 3;
+    static final int LINE_END = 4;
+    static final int WORD_BOUNDARY = 5;
+    static final int NOT_WORD_BOUNDARY = 6;
+
+    /** Limit on the program size, reached by large counted repetitions */
+    private static final int MAX_INSTRUCTIONS = 50000;
+
+    private static final int FLAG_CASE_INSENSITIVE = 1;
+    private static final int FLAG_DOTALL = 2;
+    private static final int FLAG_MULTILINE = 4;
+
+    /** Thrown for expressions using features which cannot be run in linear time */
+    static final class UnsupportedRegexException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedRegexException(String message) {
+            super(message);
+        }
+    }
+
+    /** Compiled program */
+    static final class Program {
+        final int[] ops;
+        final int[] args1;
+        final int[] args2;
+        final CharClass[] classes;
+        /** Number of groups, including group 0 */
+        final int groups;
+        /** Character every match starts with, -1 if unknown */
+        final int firstChar;
+        /** true if matches can only start at the beginning of the text */
+        final boolean anchored;
+
+        Program(int[] ops, int[] args1, int[] args2, CharClass[] classes, int groups) {
+            this.ops = ops;
+            this.args1 = args1;
+            this.args2 = args2;
+            this.classes = classes;
+            this.groups = groups;
+            // ops[0] saves the start of group 0
+            this.firstChar = ops[1] == CHAR ? args1[1] : -1;
+            this.anchored = ops[1] == ASSERT && args1[1] == TEXT_START;
+        }
+    }
+
+    /** Set of characters */
+    static final class CharClass {
+        private int[] ranges = new int[4];
+        private int rangeCount;
+        private final List<CharClass> members = new ArrayList<>(0);
+        private boolean negated;
+        private boolean caseInsensitive;
+
+        static CharClass predefined(char name) {
+            CharClass charClass = new CharClass();
+            switch (Character.toLowerCase(name)) {
+                case 'd':
+                    charClass.addRange('0', '9');
+                    break;
+                case 'w':
+                    charClass.addRange('a', 'z');
+                    charClass.addRange('A', 'Z');
+                    charClass.addRange('0', '9');
+                    charClass.addRange('_', '_');
+                    break;
+                default: // s
+                    charClass.addRange(' ', ' ');
+                    charClass.addRange('\t', '\r');
+                    break;
+            }
+            charClass.negated = Character.isUpperCase(name);
+            return charClass;
+        }
+
+        void addRange(int low, int high) {
+            if (rangeCount * 2 == ranges.length) {
+                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+            }
+            ranges[rangeCount * 2] = low;
+            ranges[rangeCount * 2 + 1] = high;
+            rangeCount++;
+        }
+
+        boolean matches(char c) {
+            boolean found = contains(c)
+                    || caseInsensitive && (contains(Character.toLowerCase(c)) || contains(Character.toUpperCase(c)));
+            return found != negated;
+        }
+
+        private boolean contains(char c) {
+            for (int i = 0; i < rangeCount; i++) {
+                if (c >= ranges[i * 2] && c <= ranges[i * 2 + 1]) {
+                    return true;
+                }
+            }
+            for (CharClass member : members) {
+                if (member.matches(c)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Node of the syntax tree */
+    private static final class Node {
+        static final int EMPTY = 0;
+        static final int CHAR = 1;
+        static final int ANY = 2;
+        static final int CLASS = 3;
+        static final int CONCAT = 4;
+        static final int ALTERNATION = 5;
+        static final int REPEAT = 6;
+        static final int GROUP = 7;
+        static final int ASSERT = 8;
+
+        final int type;
+        char ch;
+        boolean caseInsensitive;
+        boolean dotAll;
+        CharClass charClass;
+        int assertion;
+        List<Node> children;
+        Node child;
+        int min;
+        int max;
+        boolean greedy;
+        int group;
+        /** true for the characters of a \Q...\E sequence */
+        boolean quoted;
+
+        Node(int type) {
+            this.type = type;
+        }
+    }
+
+    private final String regex;
+    private int pos;
+    private int flags;
+    private int groupCount;
+
+    private int[] ops = new int[16];
+    private int[] args1 = new int[16];
+    private int[] args2 = new int[16];
+    private int size;
+    private final List<CharClass> classes = new ArrayList<>();
+
+    private LinearRegexCompiler(String regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * @param regex regular expression
+     * @return program running regex
+     * @throws UnsupportedRegexException if regex uses a feature which is not supported
+     * @throws MalformedCachePatternException if regex is not valid
+     */
+    static Program compile(String regex) throws UnsupportedRegexException {
+        LinearRegexCompiler compiler = new LinearRegexCompiler(regex);
+        Node root = compiler.parseAlternation();
+        if (compiler.more()) {
+            throw compiler.malformed("Unmatched closing ')'");
+        }
+        compiler.emit(SAVE, 0, 0);
+        compiler.emitNode(root);
+        compiler.emit(SAVE, 1, 0);
+        compiler.emit(MATCH, 0, 0);
+        return new Program(Arrays.copyOf(compiler.ops, compiler.size), Arrays.copyOf(compiler.args1, compiler.size),
+                Arrays.copyOf(compiler.args2, compiler.size),
+                compiler.classes.toArray(new CharClass[compiler.classes.size()]), compiler.groupCount + 1);
+    }
+
+    /**
+     * @param c character
+     * @return the case folding of c
+     */
+    static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private boolean more() {
+        return pos < regex.length();
+    }
+
+    private char peek() {
+        return regex.charAt(pos);
+    }
+
+    private MalformedCachePatternException malformed(String message) {
+        return new MalformedCachePatternException(message + " near index " + pos + " in " + regex);
+    }
+
+    private Node parseAlternation() throws UnsupportedRegexException {
+        List<Node> branches = new ArrayList<>();
+        branches.add(parseConcatenation());
+        while (more() && peek() == '|') {
+            pos++;
+            branches.add(parseConcatenation());
+        }
+        if (branches.size() == 1) {
+            return branches.get(0);
+        }
+        Node node = new Node(Node.ALTERNATION);
+        node.children = branches;
+        return node;
+    }
+
+    private Node parseConcatenation() throws UnsupportedRegexException {
+        List<Node> items = new ArrayList<>();
+        while (more() && peek() != '|' && peek() != ')') {
+            Node atom = parseAtom();
+            if (atom == null) {
+                // Flags only group
+                continue;
+            }
+            if (atom.quoted) {
+                // Quantifiers apply to the last quoted character
+                items.addAll(atom.children.subList(0, atom.children.size() - 1));
+                atom = atom.children.get(atom.children.size() - 1);
+            }
+            items.add(parseQuantifiers(atom));
+        }
+        if (items.size() == 1) {
+            return items.get(0);
+        }
+        Node node = new Node(items.isEmpty() ? Node.EMPTY : Node.CONCAT);
+        node.children = items;
+        return node;
+    }
+
+    private Node parseQuantifiers(Node atom) throws UnsupportedRegexException {
+        Node node = atom;
+        while (more()) {
+            int min;
+            int max;
+            char c = peek();
+            if (c == '*') {
+                min = 0;
+                max = -1;
+                pos++;
+            } else if (c == '+') {
+                min = 1;
+                max = -1;
+                pos++;
+            } else if (c == '?') {
+                min = 0;
+                max = 1;
+                pos++;
+            } else if (c == '{') {
+                int[] bounds = parseBounds();
+                if (bounds == null) {
+                    // Not a quantifier, '{' is a literal
+                    break;
+                }
+                min = bounds[0];
+                max = bounds[1];
+            } else {
+                break;
+            }
+            boolean greedy = true;
+            if (more() && peek() == '?') {
+                pos++;
+                greedy = false;
+            } else if (more() && peek() == '+') {
+                throw new UnsupportedRegexException("possessive quantifier");
+            }
+            if (max >= 0 && max < min) {
+                throw malformed("Illegal repetition range");
+            }
+            if ((max < 0 || max > 1) && isNullable(node)) {
+                // Backtracking engines stop such a loop after an empty iteration, which depends
+                // on the path followed and cannot be decided per instruction
+                throw new UnsupportedRegexException("repetition of an expression matching the empty string");
+            }
+            Node repeat = new Node(Node.REPEAT);
+            repeat.child = node;
+            repeat.min = min;
+            repeat.max = max;
+            repeat.greedy = greedy;
+            node = repeat;
+        }
+        return node;
+    }
+
+    /**
+     * @return true if node can match the empty string
+     */
+    private static boolean isNullable(Node node) {
+        switch (node.type) {
+            case Node.EMPTY:
+            case Node.ASSERT:
+                return true;
+            case Node.CONCAT:
+                for (Node child : node.children) {
+                    if (!isNullable(child)) {
+                        return false;
+                    }
+                }
+                return true;
+            case Node.ALTERNATION:
+                for (Node child : node.children) {
+                    if (isNullable(child)) {
+                        return true;
+                    }
+                }
+                return false;
+            case Node.REPEAT:
+                return node.min == 0 || isNullable(node.child);
+            case Node.GROUP:
+                return isNullable(node.child);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return min and max (-1 if unbounded) of the {n,m} quantifier at current position,
+     *  null if there is none
+     */
+    private int[] parseBounds() {
+        int end = regex.indexOf('}', pos);
+        if (end < 0) {
+            return null;
+        }
+        String bounds = regex.substring(pos + 1, end);
+        int comma = bounds.indexOf(',');
+        String low = comma < 0 ? bounds : bounds.substring(0, comma);
+        String high = comma < 0 ? bounds : bounds.substring(comma + 1);
+        if (!isNumber(low) || !(isNumber(high) || high.isEmpty())) {
+            return null;
+        }
+        try {
+            int[] result = {Integer.parseInt(low), high.isEmpty() ? -1 : Integer.parseInt(high)};
+            pos = end + 1;
+            return result;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isNumber(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Node parseAtom() throws UnsupportedRegexException {
+        char c = regex.charAt(pos++);
+        switch (c) {
+            case '(':
+                return parseGroup();
+            case '[':
+                return classNode(parseClass());
+            case '.':
+                Node any = new Node(Node.ANY);
+                any.dotAll = (flags & FLAG_DOTALL) != 0;
+                return any;
+            case '^':
+                return assertionNode((flags & FLAG_MULTILINE) != 0 ? LINE_START : TEXT_START);
+            case '$':
+                return assertionNode((flags & FLAG_MULTILINE) != 0 ? LINE_END : TEXT_END_OR_FINAL_NEWLINE);
+            case '\\':
+                return parseEscape();
+            case '*':
+            case '+':
+            case '?':
+                pos--;
+                throw malformed("Dangling meta character '" + c + "'");
+            default:
+                return charNode(c);
+        }
+    }
+
+    private Node parseGroup() throws UnsupportedRegexException {
+        int savedFlags = flags;
+        int group = -1;
+        if (more() && peek() == '?') {
+            pos++;
+            if (!more()) {
+                throw malformed("Unknown group type");
+            }
+            char type = peek();
+            if (type == ':') {
+                pos++;
+            } else if ("=!<>P'#".indexOf(type) >= 0) {
+                throw new UnsupportedRegexException("look-around, atomic and named groups");
+            } else {
+                int newFlags = parseFlags();
+                if (!more()) {
+                    throw malformed("Unclosed group");
+                }
+                char end = regex.charAt(pos++);
+                if (end == ')') {
+                    // Applies until the end of the enclosing group
+                    flags = newFlags;
+                    return null;
+                } else if (end != ':') {
+                    throw malformed("Unknown inline modifier");
+                }
+                flags = newFlags;
+            }
+        } else {
+            group = ++groupCount;
+        }
+        Node body = parseAlternation();
+        if (!more()) {
+            throw malformed("Unclosed group");
+        }
+        pos++;
+        flags = savedFlags;
+        if (group < 0) {
+            return body;
+        }
+        Node node = new Node(Node.GROUP);
+        node.group = group;
+        node.child = body;
+        return node;
+    }
+
+    private int parseFlags() throws UnsupportedRegexException {
+        int newFlags = flags;
+        boolean set = true;
+        while (more() && peek() != ')' && peek() != ':') {
+            char c = regex.charAt(pos++);
+            int flag;
+            switch (c) {
+                case '-':
+                    set = false;
+                    continue;
+                case 'i':
+                    flag = FLAG_CASE_INSENSITIVE;
+                    break;
+                case 's':
+                    flag = FLAG_DOTALL;
+                    break;
+                case 'm':
+                    flag = FLAG_MULTILINE;
+                    break;
+                default:
+                    throw new UnsupportedRegexException("inline modifier " + c);
+            }
+            newFlags = set ? newFlags | flag : newFlags & ~flag;
+        }
+        return newFlags;
+    }
+
+    private Node parseEscape() throws UnsupportedRegexException {
+        if (!more()) {
+            throw malformed("Trailing backslash");
+        }
+        char c = peek();
+        switch (c) {
+            case 'b':
+                pos++;
+                return assertionNode(WORD_BOUNDARY);
+            case 'B':
+                pos++;
+                return assertionNode(NOT_WORD_BOUNDARY);
+            case 'A':
+                pos++;
+                return assertionNode(TEXT_START);
+            case 'z':
+                pos++;
+                return assertionNode(TEXT_END);
+            case 'Z':
+                pos++;
+                return assertionNode(TEXT_END_OR_FINAL_NEWLINE);
+            case 'Q':
+                pos++;
+                int end = regex.indexOf("\\E", pos);
+                String literal = end < 0 ? regex.substring(pos) : regex.substring(pos, end);
+                pos = end < 0 ? regex.length() : end + 2;
+                if (literal.isEmpty()) {
+                    return new Node(Node.EMPTY);
+                }
+                Node node = new Node(Node.CONCAT);
+                node.quoted = true;
+                node.children = new ArrayList<>(literal.length());
+                for (int i = 0; i < literal.length(); i++) {
+                    node.children.add(charNode(literal.charAt(i)));
+                }
+                return node;
+            default:
+                if (c >= '1' && c <= '9') {
+                    throw new UnsupportedRegexException("back reference");
+                }
+                Object item = parseEscapedItem();
+                if (item instanceof CharClass) {
+                    return classNode((CharClass) item);
+                }
+                return charNode((char) ((Integer) item).intValue());
+        }
+    }
+
+    /**
+     * Parses the escape sequence following a backslash.
+     * @return the {@link Integer} character or the {@link CharClass} it represents
+     */
+    private Object parseEscapedItem() throws UnsupportedRegexException {
+        char c = regex.charAt(pos++);
+        switch (c) {
+            case 'd': case 'D': case 'w': case 'W': case 's': case 'S':
+                return CharClass.predefined(c);
+            case 't':
+                return Integer.valueOf('\t');
+            case 'n':
+                return Integer.valueOf('\n');
+            case 'r':
+                return Integer.valueOf('\r');
+            case 'f':
+                return Integer.valueOf('\f');
+            case 'a':
+                return Integer.valueOf('\u0007');
+            case 'e':
+                return Integer.valueOf('\u001B');
+            case 'x':
+                if (more() && peek() == '{') {
+                    int end = regex.indexOf('}', pos);
+                    if (end < 0) {
+                        throw malformed("Unclosed hexadecimal escape sequence");
+                    }
+                    int value = parseNumber(pos + 1, end, 16);
+                    pos = end + 1;
+                    if (value > Character.MAX_VALUE) {
+                        throw new UnsupportedRegexException("supplementary character");
+                    }
+                    return Integer.valueOf(value);
+                }
+                return Integer.valueOf(parseFixedNumber(2, 16));
+            case 'u':
+                return Integer.valueOf(parseFixedNumber(4, 16));
+            case '0':
+                int end = pos;
+                while (end < regex.length() && end < pos + 3 && regex.charAt(end) >= '0' && regex.charAt(end) <= '7') {
+                    end++;
+                }
+                int value = parseNumber(pos, end, 8);
+                if (value > 0377) {
+                    // Only 2 digits belong to the escape
+                    end--;
+                    value = parseNumber(pos, end, 8);
+                }
+                pos = end;
+                return Integer.valueOf(value);
+            case 'c':
+                if (!more()) {
+                    throw malformed("Illegal control escape sequence");
+                }
+                return Integer.valueOf(regex.charAt(pos++) ^ 64);
+            default:
+                if (Character.isLetterOrDigit(c)) {
+                    throw new UnsupportedRegexException("escape sequence \\" + c);
+                }
+                return Integer.valueOf(c);
+        }
+    }
+
+    private int parseFixedNumber(int digits, int radix) {
+        if (pos + digits > regex.length()) {
+            throw malformed("Illegal escape sequence");
+        }
+        int value = parseNumber(pos, pos + digits, radix);
+        pos += digits;
+        return value;
+    }
+
+    private int parseNumber(int start, int end, int radix) {
+        try {
+            return start == end ? 0 : Integer.parseInt(regex.substring(start, end), radix);
+        } catch (NumberFormatException e) {
+            throw malformed("Illegal escape sequence");
+        }
+    }
+
+    private CharClass parseClass() throws UnsupportedRegexException {
+        CharClass charClass = new CharClass();
+        if (more() && peek() == '^') {
+            charClass.negated = true;
+            pos++;
+        }
+        boolean first = true;
+        while (true) {
+            if (!more()) {
+                throw malformed("Unclosed character class");
+            }
+            char c = regex.charAt(pos++);
+            if (c == ']' && !first) {
+                break;
+            }
+            first = false;
+            if (c == '[' || c == '&' && more() && peek() == '&') {
+                throw new UnsupportedRegexException("nested character classes");
+            }
+            Object low = c == '\\' ? parseClassEscape() : Integer.valueOf(c);
+            if (low instanceof CharClass) {
+                charClass.members.add((CharClass) low);
+                continue;
+            }
+            if (pos + 1 < regex.length() && peek() == '-' && regex.charAt(pos + 1) != ']') {
+                pos++;
+                char h = regex.charAt(pos++);
+                if (h == '[') {
+                    throw new UnsupportedRegexException("nested character classes");
+                }
+                Object high = h == '\\' ? parseClassEscape() : Integer.valueOf(h);
+                if (high instanceof CharClass || (Integer) high < (Integer) low) {
+                    throw malformed("Illegal character range");
+                }
+                charClass.addRange((Integer) low, (Integer) high);
+            } else {
+                charClass.addRange((Integer) low, (Integer) low);
+            }
+        }
+        charClass.caseInsensitive = (flags & FLAG_CASE_INSENSITIVE) != 0;
+        return charClass;
+    }
+
+    private Object parseClassEscape() throws UnsupportedRegexException {
+        if (!more()) {
+            throw malformed("Unclosed character class");
+        }
+        return parseEscapedItem();
+    }
+
+    private Node charNode(char c) {
+        Node node = new Node(Node.CHAR);
+        node.caseInsensitive = (flags & FLAG_CASE_INSENSITIVE) != 0
+                && Character.toLowerCase(c) != Character.toUpperCase(c);
+        node.ch = node.caseInsensitive ? fold(c) : c;
+        return node;
+    }
+
+    private static Node classNode(CharClass charClass) {
+        Node node = new Node(Node.CLASS);
+        node.charClass = charClass;
+        return node;
+    }
+
+    private static Node assertionNode(int assertion) {
+        Node node = new Node(Node.ASSERT);
+        node.assertion = assertion;
+        return node;
+    }
+
+    private int emit(int op, int arg1, int arg2) throws UnsupportedRegexException {
+        if (size == MAX_INSTRUCTIONS) {
+            throw new UnsupportedRegexException("expression too large");
+        }
+        if (size == ops.length) {
+            ops = Arrays.copyOf(ops, size * 2);
+            args1 = Arrays.copyOf(args1, size * 2);
+            args2 = Arrays.copyOf(args2, size * 2);
+        }
+        ops[size] = op;
+        args1[size] = arg1;
+        args2[size] = arg2;
+        return size++;
+    }
+
+    private void emitNode(Node node) throws UnsupportedRegexException {
+        switch (node.type) {
+            case Node.EMPTY:
+                break;
+            case Node.CHAR:
+                emit(node.caseInsensitive ? CHAR_FOLD : CHAR, node.ch, 0);
+                break;
+            case Node.ANY:
+                emit(node.dotAll ? ANY_ALL : ANY, 0, 0);
+                break;
+            case Node.CLASS:
+                classes.add(node.charClass);
+                emit(CLASS, classes.size() - 1, 0);
+                break;
+            case Node.ASSERT:
+                emit(ASSERT, node.assertion, 0);
+                break;
+            case Node.CONCAT:
+                for (Node child : node.children) {
+                    emitNode(child);
+                }
+                break;
+            case Node.GROUP:
+                emit(SAVE, 2 * node.group, 0);
+                emitNode(node.child);
+                emit(SAVE, 2 * node.group + 1, 0);
+                break;
+            case Node.ALTERNATION:
+                emitAlternation(node);
+                break;
+            case Node.REPEAT:
+                emitRepeat(node);
+                break;
+            default:
+                throw new IllegalStateException("Unknown node type " + node.type);
+        }
+    }
+
+    private void emitAlternation(Node node) throws UnsupportedRegexException {
+        int[] jumps = new int[node.children.size() - 1];
+        for (int i = 0; i < jumps.length; i++) {
+            int split = emit(SPLIT, size + 1, 0);
+            emitNode(node.children.get(i));
+            jumps[i] = emit(JMP, 0, 0);
+            args2[split] = size;
+        }
+        emitNode(node.children.get(jumps.length));
+        for (int jump : jumps) {
+            args1[jump] = size;
+        }
+    }
+
+    private void emitRepeat(Node node) throws UnsupportedRegexException {
+        for (int i = 0; i < node.min; i++) {
+            emitNode(node.child);
+        }
+        if (node.max < 0) {
+            int split = emit(SPLIT, 0, 0);
+            emitNode(node.child);
+            emit(JMP, split, 0);
+            setSplit(split, node.greedy);
+        } else {
+            int[] splits = new int[node.max - node.min];
+            for (int i = 0; i < splits.length; i++) {
+                splits[i] = emit(SPLIT, 0, 0);
+                emitNode(node.child);
+            }
+            for (int split : splits) {
+                setSplit(split, node.greedy);
+            }
+        }
+    }
+
+    /**
+     * Sets the targets of split, which either continues after it or goes to the end of the program
+     */
+    private void setSplit(int split, boolean greedy) {
+        args1[split] = greedy ? split + 1 : size;
+        args2[split] = greedy ? size : split + 1;
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jmeter.util.regex.LinearRegexCompiler.Program;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+import org.apache.oro.text.MalformedCachePatternException;
+import org.apache.oro.text.regex.MatchResult;
+
+/**
+ * Engine running the expressions with a Pike VM: all the ways the expression can match are followed in
+ * parallel, in priority order, so that the text is read only once. Matching time is proportional to the
+ * size of the text multiplied by the size of the expression.
+ * <p>
+ * The matches are the ones of the Perl5 engine of Jakarta ORO, including the empty matches found
+ * by {@link RegexPattern#findAll(CharSequence, int)}: like in Perl, a match cannot be empty at the position
+ * where the previous one ended. So are the groups, except the groups nested in a repeated group,
+ * for which ORO may report the capture of an earlier iteration, or an impossible one. Expressions which cannot be run this way (see {@link LinearRegexCompiler}),
+ * like those repeating without bound a sub-expression which can match the empty string,
+ * are run by a fallback engine.
+ * @since 3.2
+ */
+final class LinearRegexEngine extends RegexEngine {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private final RegexEngine fallback;
+
+    /**
+     * @param fallback engine used for the expressions which are not supported
+     */
+    LinearRegexEngine(RegexEngine fallback) {
+        super(LINEAR);
+        this.fallback = fallback;
+    }
+
+    @Override
+    protected RegexPattern compile(String expression) throws MalformedCachePatternException {
+        try {
+            return new LinearPattern(expression, LinearRegexCompiler.compile(expression));
+        } catch (LinearRegexCompiler.UnsupportedRegexException e) {
+            log.warn("Regular expression " + expression + " uses a feature not supported by the " + LINEAR
+                    + " engine (" + e.getMessage() + "), it is run by the " + fallback.getName() + " engine");
+            return fallback.getPattern(expression);
+        }
+    }
+
+    /** Threads of the VM, ordered by priority, with at most one thread per instruction */
+    private static final class Threads {
+        final int[] pcs;
+        final int[][] captures;
+        /** Index in pcs of each instruction */
+        final int[] indexes;
+        int size;
+
+        Threads(int instructions) {
+            pcs = new int[instructions];
+            captures = new int[instructions][];
+            indexes = new int[instructions];
+        }
+
+        boolean contains(int pc) {
+            int index = indexes[pc];
+            return index < size && pcs[index] == pc;
+        }
+
+        void add(int pc, int[] threadCaptures) {
+            indexes[pc] = size;
+            pcs[size] = pc;
+            captures[size] = threadCaptures;
+            size++;
+        }
+    }
+
+    private static final class LinearPattern implements RegexPattern {
+        private final String expression;
+        private final Program program;
+
+        LinearPattern(String expression, Program program) {
+            this.expression = expression;
+            this.program = program;
+        }
+
+        @Override
+        public String getPattern() {
+            return expression;
+        }
+
+        @Override
+        public boolean contains(CharSequence input) {
+            return run(input, 0, false, -1) != null;
+        }
+
+        @Override
+        public boolean matches(CharSequence input) {
+            // Like ORO, the input matches if the first match starting at 0 ends at its end
+            int[] offsets = run(input, 0, true, -1);
+            return offsets != null && offsets[1] == input.length();
+        }
+
+        @Override
+        public List<MatchResult> findAll(CharSequence input, int maxMatches) {
+            List<MatchResult> matches = new ArrayList<>();
+            int from = 0;
+            while ((maxMatches <= 0 || matches.size() < maxMatches) && from <= input.length()) {
+                // The next match starts where this one ends, but cannot be empty there
+                int[] offsets = run(input, from, false, from == 0 && matches.isEmpty() ? -1 : from);
+                if (offsets == null) {
+                    break;
+                }
+                matches.add(new OffsetsMatchResult(input, offsets));
+                from = offsets[1];
+            }
+            return matches;
+        }
+
+        /**
+         * @param input text
+         * @param from position where the search starts
+         * @param anchored true if the match must start at from
+         * @param noEmptyAt position where an empty match is rejected, -1 if there is none
+         * @return the offsets of the groups of the first match, null if there is none
+         */
+        private int[] run(CharSequence input, int from, boolean anchored, int noEmptyAt) {
+            final int instructions = program.ops.length;
+            final int length = input.length();
+            Threads current = new Threads(instructions);
+            Threads next = new Threads(instructions);
+            int[] stackPcs = new int[2 * instructions + 1];
+            int[][] stackCaptures = new int[2 * instructions + 1][];
+            int[] matched = null;
+            for (int pos = from; pos <= length; pos++) {
+                if (matched == null && (pos == from || !anchored && !program.anchored)) {
+                    if (current.size == 0 && program.firstChar >= 0) {
+                        // No match can start before the next occurrence of the first character
+                        pos = indexOf(input, program.firstChar, pos);
+                        if (pos < 0 || anchored && pos != from) {
+                            break;
+                        }
+                    }
+                    int[] captures = new int[2 * program.groups];
+                    Arrays.fill(captures, -1);
+                    addThread(current, 0, captures, input, pos, stackPcs, stackCaptures);
+                }
+                if (current.size == 0) {
+                    break;
+                }
+                char c = pos < length ? input.charAt(pos) : 0;
+                for (int i = 0; i < current.size; i++) {
+                    int pc = current.pcs[i];
+                    boolean step;
+                    switch (program.ops[pc]) {
+                        case LinearRegexCompiler.MATCH:
+                            step = false;
+                            if (pos != noEmptyAt || current.captures[i][0] != pos) {
+                                matched = current.captures[i];
+                                // Threads of lower priority are cut
+                                i = current.size;
+                            }
+                            break;
+                        case LinearRegexCompiler.CHAR:
+                            step = pos < length && c == program.args1[pc];
+                            break;
+                        case LinearRegexCompiler.CHAR_FOLD:
+                            step = pos < length && LinearRegexCompiler.fold(c) == program.args1[pc];
+                            break;
+                        case LinearRegexCompiler.ANY:
+                            step = pos < length && c != '\n';
+                            break;
+                        case LinearRegexCompiler.ANY_ALL:
+                            step = pos < length;
+                            break;
+                        case LinearRegexCompiler.CLASS:
+                            step = pos < length && program.classes[program.args1[pc]].matches(c);
+                            break;
+                        default:
+                            // Instructions not reading a character were followed by addThread
+                            step = false;
+                            break;
+                    }
+                    if (step) {
+                        addThread(next, pc + 1, current.captures[i], input, pos + 1, stackPcs, stackCaptures);
+                    }
+                }
+                Threads swap = current;
+                current = next;
+                next = swap;
+                next.size = 0;
+            }
+            return matched;
+        }
+
+        /**
+         * Adds to threads the thread starting at startPc, following the instructions which do not read
+         * a character
+         */
+        private void addThread(Threads threads, int startPc, int[] startCaptures, CharSequence input, int pos,
+                int[] stackPcs, int[][] stackCaptures) {
+            int top = 0;
+            stackPcs[top] = startPc;
+            stackCaptures[top++] = startCaptures;
+            while (top > 0) {
+                top--;
+                int pc = stackPcs[top];
+                int[] captures = stackCaptures[top];
+                stackCaptures[top] = null;
+                if (threads.contains(pc)) {
+                    continue;
+                }
+                threads.add(pc, captures);
+                switch (program.ops[pc]) {
+                    case LinearRegexCompiler.JMP:
+                        stackPcs[top] = program.args1[pc];
+                        stackCaptures[top++] = captures;
+                        break;
+                    case LinearRegexCompiler.SPLIT:
+                        // args1 is on top, so it is followed first
+                        stackPcs[top] = program.args2[pc];
+                        stackCaptures[top++] = captures;
+                        stackPcs[top] = program.args1[pc];
+                        stackCaptures[top++] = captures;
+                        break;
+                    case LinearRegexCompiler.SAVE:
+                        int[] saved = captures.clone();
+                        saved[program.args1[pc]] = pos;
+                        stackPcs[top] = pc + 1;
+                        stackCaptures[top++] = saved;
+                        break;
+                    case LinearRegexCompiler.ASSERT:
+                        if (isTrue(program.args1[pc], input, pos)) {
+                            stackPcs[top] = pc + 1;
+                            stackCaptures[top++] = captures;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        private static boolean isTrue(int assertion, CharSequence input, int pos) {
+            int length = input.length();
+            switch (assertion) {
+                case LinearRegexCompiler.TEXT_START:
+                    return pos == 0;
+                case LinearRegexCompiler.TEXT_END:
+                    return pos == length;
+                case LinearRegexCompiler.TEXT_END_OR_FINAL_NEWLINE:
+                    return pos == length || pos == length - 1 && input.charAt(pos) == '\n';
+                case LinearRegexCompiler.LINE_START:
+                    return pos == 0 || input.charAt(pos - 1) == '\n';
+                case LinearRegexCompiler.LINE_END:
+                    return pos == length || input.charAt(pos) == '\n';
+                case LinearRegexCompiler.WORD_BOUNDARY:
+                    return isWordChar(input, pos - 1) != isWordChar(input, pos);
+                case LinearRegexCompiler.NOT_WORD_BOUNDARY:
+                    return isWordChar(input, pos - 1) == isWordChar(input, pos);
+                default:
+                    throw new IllegalStateException("Unknown assertion " + assertion);
+            }
+        }
+
+        private static boolean isWordChar(CharSequence input, int pos) {
+            if (pos < 0 || pos >= input.length()) {
+                return false;
+            }
+            char c = input.charAt(pos);
+            return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+        }
+
+        private static int indexOf(CharSequence input, int c, int from) {
+            if (input instanceof String) {
+                return ((String) input).indexOf(c, from);
+            }
+            for (int i = from; i < input.length(); i++) {
+                if (input.charAt(i) == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util.regex;
+
+import org.apache.oro.text.regex.MatchResult;
+
+/**
+ * {@link MatchResult} built from the begin and end offsets of each group in the input,
+ * with the same behaviour as the ORO one for groups which did not match.
+ * @since 3.2
+ */
+final class OffsetsMatchResult implements MatchResult {
+
+    private final CharSequence input;
+
+    /** begin and end offsets of each group, -1 if the group did not match */
+    private final int[] offsets;
+
+    OffsetsMatchResult(CharSequence input, int[] offsets) {
+        this.input = input;
+        this.offsets = offsets;
+    }
+
+    @Override
+    public int length() {
+        return offsets[1] - offsets[0];
+    }
+
+    @Override
+    public int groups() {
+        return offsets.length / 2;
+    }
+
+    @Override
+    public String group(int group) {
+        if (!matched(group)) {
+            return null;
+        }
+        return input.subSequence(offsets[2 * group], offsets[2 * group + 1]).toString();
+    }
+
+    @Override
+    public int begin(int group) {
+        return matched(group) ? offsets[2 * group] - offsets[0] : -1;
+    }
+
+    @Override
+    public int end(int group) {
+        return matched(group) ? offsets[2 * group + 1] - offsets[0] : -1;
+    }
+
+    @Override
+    public int beginOffset(int group) {
+        return matched(group) ? offsets[2 * group] : -1;
+    }
+
+    @Override
+    public int endOffset(int group) {
+        return matched(group) ? offsets[2 * group + 1] : -1;
+    }
+
+    private boolean matched(int group) {
+        return group >= 0 && group < groups() && offsets[2 * group] >= 0 && offsets[2 * group + 1] >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return group(0);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.oro.text.MalformedCachePatternException;
+import org.apache.oro.text.regex.MatchResult;
+import org.apache.oro.text.regex.Pattern;
+import org.apache.oro.text.regex.PatternMatcherInput;
+import org.apache.oro.text.regex.Perl5Compiler;
+import org.apache.oro.text.regex.Perl5Matcher;
+
+/**
+ * Jakarta ORO Perl5 engine, using the {@link Perl5Matcher} of the current thread.
+ * ORO only reads Strings, so other {@link CharSequence} inputs are copied.
+ * @since 3.2
+ */
+final class OroRegexEngine extends RegexEngine {
+
+    OroRegexEngine() {
+        super(ORO);
+    }
+
+    @Override
+    public boolean readsCharSequence() {
+        return false;
+    }
+
+    @Override
+    protected RegexPattern compile(String expression) throws MalformedCachePatternException {
+        return new OroPattern(JMeterUtils.getPatternCache().getPattern(expression, Perl5Compiler.READ_ONLY_MASK));
+    }
+
+    private static final class OroPattern implements RegexPattern {
+        private final Pattern pattern;
+
+        OroPattern(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public String getPattern() {
+            return pattern.getPattern();
+        }
+
+        @Override
+        public boolean contains(CharSequence input) {
+            Perl5Matcher matcher = JMeterUtils.getMatcher();
+            try {
+                return matcher.contains(input.toString(), pattern);
+            } finally {
+                JMeterUtils.clearMatcherMemory(matcher, pattern);
+            }
+        }
+
+        @Override
+        public boolean matches(CharSequence input) {
+            Perl5Matcher matcher = JMeterUtils.getMatcher();
+            try {
+                return matcher.matches(input.toString(), pattern);
+            } finally {
+                JMeterUtils.clearMatcherMemory(matcher, pattern);
+            }
+        }
+
+        @Override
+        public List<MatchResult> findAll(CharSequence input, int maxMatches) {
+            Perl5Matcher matcher = JMeterUtils.getMatcher();
+            List<MatchResult> matches = new ArrayList<>();
+            try {
+                PatternMatcherInput matcherInput = new PatternMatcherInput(input.toString());
+                while ((maxMatches <= 0 || matches.size() < maxMatches) && matcher.contains(matcherInput, pattern)) {
+                    matches.add(matcher.getMatch());
+                }
+            } finally {
+                JMeterUtils.clearMatcherMemory(matcher, pattern);
+            }
+            return matches;
+        }
+    }
+}
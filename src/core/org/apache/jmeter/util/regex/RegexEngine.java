@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util.regex;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.commons.collections.map.LRUMap;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+import org.apache.oro.text.MalformedCachePatternException;
+
+/**
+ * Regular expression engine used by the elements working with regular expressions.
+ * <p>
+ * Available engines:
+ * <ul>
+ * <li>{@value #ORO}: Jakarta ORO Perl5 engine, the historical one</li>
+ * <li>{@value #JAVA}: java.util.regex engine</li>
+ * <li>{@value #LINEAR}: automaton based engine whose matching time is linear in the size of the input,
+ * whatever the expression, giving the same matches as {@value #ORO}. It does not support back references,
+ * look-around, possessive quantifiers nor repetitions of expressions matching the empty string,
+ * expressions using them are run by the {@value #ORO} engine</li>
+ * </ul>
+ * The default engine is set by the property {@value #ENGINE_PROPERTY}.
+ * Each engine has its own cache of compiled patterns.
+ * @since 3.2
+ */
+public abstract class RegexEngine {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** Property setting the default engine */
+    public static final String ENGINE_PROPERTY = "regex.engine"; // $NON-NLS-1$
+
+    public static final String ORO = "oro"; // $NON-NLS-1$
+
+    public static final String JAVA = "java"; // $NON-NLS-1$
+
+    public static final String LINEAR = "linear"; // $NON-NLS-1$
+
+    private static final String[] ENGINE_NAMES = {ORO, JAVA, LINEAR};
+
+    // Note: cannot use a static variable here, because that would be processed before the JMeter properties
+    // have been defined (Bug 52783)
+    private static class LazyEnginesHolder {
+        public static final RegexEngine ORO_ENGINE = new OroRegexEngine();
+        public static final RegexEngine JAVA_ENGINE = new JavaRegexEngine();
+        public static final RegexEngine LINEAR_ENGINE = new LinearRegexEngine(ORO_ENGINE);
+        public static final RegexEngine DEFAULT_ENGINE = findEngine(
+                JMeterUtils.getPropDefault(ENGINE_PROPERTY, ORO), ORO_ENGINE);
+    }
+
+    private final String name;
+
+    private final Map<String, RegexPattern> patternCache;
+
+    @SuppressWarnings("unchecked") // LRUMap does not support generics (yet)
+    protected RegexEngine(String name) {
+        this.name = name;
+        this.patternCache = Collections.synchronizedMap(
+                new LRUMap(JMeterUtils.getPropDefault("oro.patterncache.size", 1000))); // $NON-NLS-1$
+    }
+
+    /**
+     * @return the names of the available engines
+     */
+    public static String[] getEngineNames() {
+        return ENGINE_NAMES.clone();
+    }
+
+    /**
+     * @return the engine set by property {@value #ENGINE_PROPERTY}
+     */
+    public static RegexEngine getDefault() {
+        return LazyEnginesHolder.DEFAULT_ENGINE;
+    }
+
+    /**
+     * @param engineName name of the engine, the default one is returned if empty or unknown
+     * @return the engine
+     */
+    public static RegexEngine getEngine(String engineName) {
+        if (engineName == null || engineName.trim().isEmpty()) {
+            return getDefault();
+        }
+        return findEngine(engineName, getDefault());
+    }
+
+    private static RegexEngine findEngine(String engineName, RegexEngine defaultEngine) {
+        String trimmed = engineName.trim();
+        if (ORO.equalsIgnoreCase(trimmed)) {
+            return LazyEnginesHolder.ORO_ENGINE;
+        } else if (JAVA.equalsIgnoreCase(trimmed)) {
+            return LazyEnginesHolder.JAVA_ENGINE;
+        } else if (LINEAR.equalsIgnoreCase(trimmed)) {
+            return LazyEnginesHolder.LINEAR_ENGINE;
+        }
+        log.warn("Unknown regular expression engine '" + engineName + "', using " + defaultEngine.getName());
+        return defaultEngine;
+    }
+
+    /**
+     * @return name of this engine
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return true if the patterns of this engine read {@link CharSequence} inputs directly,
+     * false if they convert them to Strings, in which case callers holding a String should pass it
+     */
+    public boolean readsCharSequence() {
+        return true;
+    }
+
+    /**
+     * Get a compiled expression from the pattern cache of this engine.
+     *
+     * @param expression regular expression
+     * @return compiled pattern
+     * @throws MalformedCachePatternException (Runtime)
+     * This should be caught for expressions that may vary (e.g. user input)
+     */
+    public RegexPattern getPattern(String expression) throws MalformedCachePatternException {
+        RegexPattern pattern = patternCache.get(expression);
+        if (pattern == null) {
+            pattern = compile(expression);
+            patternCache.put(expression, pattern);
+        }
+        return pattern;
+    }
+
+    /**
+     * @param expression regular expression
+     * @return compiled pattern
+     * @throws MalformedCachePatternException if expression is not valid
+     */
+    protected abstract RegexPattern compile(String expression) throws MalformedCachePatternException;
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
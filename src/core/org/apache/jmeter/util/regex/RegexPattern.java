@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util.regex;
+
+import java.util.List;
+
+import org.apache.oro.text.regex.MatchResult;
+
+/**
+ * Regular expression compiled by a {@link RegexEngine}.
+ * <p>
+ * Instances are thread safe.
+ * Inputs can be any {@link CharSequence}, for instance the view returned by
+ * {@link org.apache.jmeter.samplers.SampleResult#getResponseDataAsCharSequence()}.
+ * @since 3.2
+ */
+public interface RegexPattern {
+
+    /**
+     * @return the regular expression
+     */
+    String getPattern();
+
+    /**
+     * @param input text to search
+     * @return true if the pattern matches a part of input
+     */
+    boolean contains(CharSequence input);
+
+    /**
+     * @param input text to match
+     * @return true if the pattern matches the whole input
+     */
+    boolean matches(CharSequence input);
+
+    /**
+     * Finds the successive matches of the pattern in input.
+     * After an empty match, the next search starts one character further.
+     *
+     * @param input text to search
+     * @param maxMatches maximum number of matches to return, 0 or less for all
+     * @return the matches, in order
+     */
+    List<MatchResult> findAll(CharSequence input, int maxMatches);
+}
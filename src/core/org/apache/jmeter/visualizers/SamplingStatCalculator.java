@@ -20,6 +20,8 @@ package org.apache.jmeter.visualizers;
 
 import java.util.Map;
 
+import org.apache.jmeter.samplers.AggregatedSampleResult;
+import org.apache.jmeter.samplers.ResponseTimeHistogram;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jorphan.math.StatCalculatorLong;
 
@@ -181,7 +183,18 @@ public class SamplingStatCalculator {
         double throughput;
         boolean rbool;
         synchronized (calculator) {
-            calculator.addValue(res.getTime(), res.getSampleCount());
+            if (res instanceof AggregatedSampleResult) {
+                // times of the samples are approximated by the buckets of the histogram
+                ResponseTimeHistogram histogram = ((AggregatedSampleResult) res).getHistogram();
+                for (int i = 0; i < histogram.getBucketCount(); i++) {
+                    long bucketCount = histogram.getCount(i);
+                    if (bucketCount > 0) {
+                        calculator.addEachValue(Long.valueOf(ResponseTimeHistogram.getBucketValue(i)), bucketCount);
+                    }
+                }
+            } else {
+                calculator.addValue(res.getTime(), res.getSampleCount());
+            }
             calculator.addBytes(res.getBytesAsLong());
             calculator.addSentBytes(res.getSentBytes());
             setStartTime(res);
@@ -30,6 +30,8 @@ import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.samplers.Sampler;
 import org.apache.jmeter.threads.JMeterVariables;
 import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jmeter.util.regex.RegexEngine;
+import org.apache.jmeter.util.regex.RegexPattern;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 import org.apache.oro.text.MalformedCachePatternException;
@@ -91,11 +93,10 @@ public class RegexFunction extends AbstractFunction {
         String between = ""; //$NON-NLS-1$ 
         String name = ""; //$NON-NLS-1$
         String inputVariable = ""; //$NON-NLS-1$
-        Pattern searchPattern;
+        RegexPattern searchPattern;
         Object[] tmplt;
         try {
-            searchPattern = JMeterUtils.getPatternCache().getPattern(((CompoundVariable) values[0]).execute(),
-                    Perl5Compiler.READ_ONLY_MASK);
+            searchPattern = RegexEngine.getDefault().getPattern(((CompoundVariable) values[0]).execute());
             tmplt = generateTemplate(((CompoundVariable) values[1]).execute());
 
             if (values.length > 2) {
@@ -139,12 +140,14 @@ public class RegexFunction extends AbstractFunction {
             vars.put(name, defaultValue);
         }
 
-        String textToMatch=null;
+        CharSequence textToMatch=null;
 
         if (inputVariable.length() > 0){
             textToMatch=vars.get(inputVariable);
         } else if (previousResult != null){
-            textToMatch = previousResult.getResponseDataAsString();
+            textToMatch = RegexEngine.getDefault().readsCharSequence()
+                    ? previousResult.getResponseDataAsCharSequence()
+                    : previousResult.getResponseDataAsString();
         }
 
         if (textToMatch == null || textToMatch.length() == 0) {
@@ -153,12 +156,7 @@ public class RegexFunction extends AbstractFunction {
 
         List<MatchResult> collectAllMatches = new ArrayList<>();
         try {
-            PatternMatcher matcher = JMeterUtils.getMatcher();
-            PatternMatcherInput input = new PatternMatcherInput(textToMatch);
-            while (matcher.contains(input, searchPattern)) {
-                MatchResult match = matcher.getMatch();
-                collectAllMatches.add(match);
-            }
+            collectAllMatches.addAll(searchPattern.findAll(textToMatch, 0));
         } finally {
             if (name.length() > 0){
                 vars.put(name + "_matchNr", Integer.toString(collectAllMatches.size())); //$NON-NLS-1$
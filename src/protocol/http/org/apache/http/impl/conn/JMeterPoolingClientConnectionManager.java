@@ -158,6 +158,13 @@ public class JMeterPoolingClientConnectionManager implements ClientConnectionMan
     protected ClientConnectionOperator createConnectionOperator(final SchemeRegistry schreg) {
             return new DefaultClientConnectionOperator(schreg, this.dnsResolver);
     }
+
+    /**
+     * @return the DNS resolver of the connections, available to {@link #createConnectionOperator(SchemeRegistry)}
+     */
+    protected DnsResolver getDnsResolver() {
+        return this.dnsResolver;
+    }
     @Override
     public SchemeRegistry getSchemeRegistry() {
         return this.schemeRegistry;
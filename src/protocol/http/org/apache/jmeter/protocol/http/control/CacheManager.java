@@ -23,11 +23,9 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Date;
 import java.util.Map;
 
-import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.URIException;
 import org.apache.commons.lang3.StringUtils;
@@ -66,6 +64,8 @@ public class CacheManager extends ConfigTestElement implements TestStateListener
     public static final String CLEAR = "clearEachIteration"; // $NON-NLS-1$
     public static final String USE_EXPIRES = "useExpires"; // $NON-NLS-1$
     public static final String MAX_SIZE = "maxSize";  // $NON-NLS-1$
+    public static final String SHARED = "sharedCache";  // $NON-NLS-1$
+    public static final String MAX_SIZE_PER_HOST = "maxSizePerHost";  // $NON-NLS-1$
     //-
 
     private transient InheritableThreadLocal<Map<String, CacheEntry>> threadCache;
@@ -74,6 +74,8 @@ public class CacheManager extends ConfigTestElement implements TestStateListener
 
     private static final int DEFAULT_MAX_SIZE = 5000;
 
+    private static final int DEFAULT_MAX_SIZE_PER_HOST = 5000;
+
     private static final long ONE_YEAR_MS = 365*24*60*60*1000L;
     
     /** used to share the cache between 2 cache managers
@@ -81,6 +83,13 @@ public class CacheManager extends ConfigTestElement implements TestStateListener
      * @since 3.0 */
     private transient Map<String, CacheEntry> localCache;
 
+    /**
+     * Cache shared by all the clones of this element when {@link #getShared()} is true,
+     * created in {@link #testStarted()} and propagated by {@link #clone()}
+     * @since 3.2
+     */
+    private transient CacheStore sharedCache;
+
     public CacheManager() {
         setProperty(new BooleanProperty(CLEAR, false));
         setProperty(new BooleanProperty(USE_EXPIRES, false));
@@ -95,30 +104,64 @@ public class CacheManager extends ConfigTestElement implements TestStateListener
 
     /*
      * Holder for storing cache details.
+     * Dates are kept as longs, Last-Modified is only kept as a String
+     * when it cannot be rebuilt identically from the parsed date.
      * Perhaps add original response later?
      */
     // package-protected to allow access by unit-test cases
     static class CacheEntry{
-        private final String lastModified;
+        private static final long NO_DATE = Long.MIN_VALUE;
+        private final long lastModified;
+        private final String lastModifiedRaw;
         private final String etag;
-        private final Date expires;
+        private final long expires;
+        /** CLOCK reference bit, see {@link CacheStore}, races on it are harmless */
+        boolean referenced;
         public CacheEntry(String lastModified, Date expires, String etag){
-           this.lastModified = lastModified;
            this.etag = etag;
-           this.expires = expires;
+           this.expires = expires != null ? expires.getTime() : NO_DATE;
+           long parsed = parseHttpDate(lastModified);
+           if (parsed != NO_DATE && lastModified.equals(DateUtils.formatDate(new Date(parsed)))) {
+               this.lastModified = parsed;
+               this.lastModifiedRaw = null;
+           } else {
+               this.lastModified = NO_DATE;
+               this.lastModifiedRaw = lastModified;
+           }
        }
         public String getLastModified() {
-            return lastModified;
+            if (lastModified == NO_DATE) {
+                return lastModifiedRaw;
+            }
+            return DateUtils.formatDate(new Date(lastModified));
         }
         public String getEtag() {
             return etag;
         }
         @Override
         public String toString(){
-            return lastModified+" "+etag;
+            return getLastModified()+" "+etag;
         }
         public Date getExpires() {
-            return expires;
+            return expires != NO_DATE ? new Date(expires) : null;
+        }
+        /**
+         * @param now current time in milliseconds
+         * @return true if entry has an expiry date which is after now
+         */
+        boolean isFresh(long now) {
+            return expires != NO_DATE && expires > now;
+        }
+        private static long parseHttpDate(String value) {
+            if (value == null) {
+                return NO_DATE;
+            }
+            try {
+                Date date = DateUtils.parseDate(value);
+                return date != null ? date.getTime() : NO_DATE;
+            } catch (IllegalArgumentException e) {
+                return NO_DATE;
+            }
         }
     }
 
@@ -410,18 +453,13 @@ public class CacheManager extends ConfigTestElement implements TestStateListener
             log.debug("inCache "+url.toString()+" "+entry);
         }
         if (entry != null){
-            final Date expiresDate = entry.getExpires();
-            if (expiresDate != null) {
-                if (expiresDate.after(new Date())) {
-                    if (log.isDebugEnabled()){
-                        log.debug("Expires= " + expiresDate + " (Valid)");
-                    }
-                    return true;
-                } else {
-                    if (log.isDebugEnabled()){
-                        log.debug("Expires= " + expiresDate + " (Expired)");
-                    }
+            if (entry.isFresh(System.currentTimeMillis())) {
+                if (log.isDebugEnabled()){
+                    log.debug("Expires= " + entry.getExpires() + " (Valid)");
                 }
+                return true;
+            } else if (log.isDebugEnabled()){
+                log.debug("Expires= " + entry.getExpires() + " (Expired)");
             }
         }
         return false;
@@ -431,6 +469,38 @@ public class CacheManager extends ConfigTestElement implements TestStateListener
         return localCache != null?localCache:threadCache.get();
     }
 
+    /**
+     * @return true if the cache is shared by all threads in the scope of the element (proxy or CDN like cache)
+     * @since 3.2
+     */
+    public boolean getShared() {
+        return getPropertyAsBoolean(SHARED);
+    }
+
+    /**
+     * @param shared true if the cache must be shared by all threads
+     * @since 3.2
+     */
+    public void setShared(boolean shared) {
+        setProperty(SHARED, shared, false);
+    }
+
+    /**
+     * @return int max number of entries per host when cache is shared
+     * @since 3.2
+     */
+    public int getMaxSizePerHost() {
+        return getPropertyAsInt(MAX_SIZE_PER_HOST, DEFAULT_MAX_SIZE_PER_HOST);
+    }
+
+    /**
+     * @param size int max number of entries per host when cache is shared
+     * @since 3.2
+     */
+    public void setMaxSizePerHost(int size) {
+        setProperty(MAX_SIZE_PER_HOST, size, DEFAULT_MAX_SIZE_PER_HOST);
+    }
+
     public boolean getClearEachIteration() {
         return getPropertyAsBoolean(CLEAR);
     }
@@ -473,14 +543,25 @@ public class CacheManager extends ConfigTestElement implements TestStateListener
         threadCache = new InheritableThreadLocal<Map<String, CacheEntry>>(){
             @Override
             protected Map<String, CacheEntry> initialValue(){
+                if (sharedCache != null) {
+                    return sharedCache;
+                }
                 // Bug 51942 - this map may be used from multiple threads
-                @SuppressWarnings("unchecked") // LRUMap is not generic currently
-                Map<String, CacheEntry> map = new LRUMap(getMaxSize());
-                return Collections.<String, CacheEntry>synchronizedMap(map);
+                return new CacheStore(getMaxSize(), false);
             }
         };
     }
 
+    /**
+     * The shared cache (if any) is common to all the clones of this element
+     */
+    @Override
+    public Object clone() {
+        CacheManager clone = (CacheManager) super.clone();
+        clone.sharedCache = sharedCache;
+        return clone;
+    }
+
     /**
      * create a cache manager that share the underlying cache of the current one
      * it allows to use the same cache in different threads which does not inherit from each other
@@ -493,23 +574,31 @@ public class CacheManager extends ConfigTestElement implements TestStateListener
 
     @Override
     public void testStarted() {
+        testStarted(null);
     }
 
     @Override
     public void testEnded() {
+        testEnded(null);
     }
 
     @Override
     public void testStarted(String host) {
+        if (getShared()) {
+            sharedCache = new CacheStore(getMaxSizePerHost(), true);
+            clearCache();
+        }
     }
 
     @Override
     public void testEnded(String host) {
+        sharedCache = null;
     }
 
     @Override
     public void testIterationStart(LoopIterationEvent event) {
-        if (getClearEachIteration()) {
+        // A shared cache outlives the users, so it is never cleared by one of them
+        if (getClearEachIteration() && sharedCache == null) {
             clearCache();
         }
         useExpires = getUseExpires(); // cache the value
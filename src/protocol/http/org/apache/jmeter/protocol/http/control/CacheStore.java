@@ -0,0 +1,329 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.control;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.jmeter.protocol.http.control.CacheManager.CacheEntry;
+
+/**
+ * Bounded and thread-safe store of {@link CacheEntry} keyed by URL.
+ * <p>
+ * Lookups are lock-free: a {@link ConcurrentHashMap#get(Object)} followed by
+ * setting the reference bit of the entry. Only the insertion of a new URL takes
+ * the lock of the stripe the URL belongs to, eviction uses the CLOCK (second
+ * chance) approximation of LRU so that lookups never have to reorder anything.
+ * <p>
+ * In shared mode (proxy or CDN cache) the entries are partitioned by host,
+ * each host having its own budget, and each partition is lock-striped.
+ * <p>
+ * The class implements {@link Map} for convenience, iteration is only a
+ * snapshot and is not meant to be used on the hot path.
+ * @since 3.2
+ */
+class CacheStore extends AbstractMap<String, CacheEntry> {
+
+    /** Number of lock stripes used for each host when the store is shared */
+    private static final int SHARED_STRIPES = 16;
+
+    /** Minimal number of entries per stripe before striping is worth it */
+    private static final int MIN_STRIPE_SIZE = 64;
+
+    private final boolean shared;
+
+    private final int budget;
+
+    /** Only used when not shared */
+    private final Partition partition;
+
+    /** Only used when shared, host to partition */
+    private final ConcurrentMap<String, Partition> partitionsByHost;
+
+    /**
+     * @param budget
+     *            max number of entries for the whole store, or per host if
+     *            <code>shared</code> is true
+     * @param shared
+     *            true if the store is shared by several threads and
+     *            partitioned by host
+     */
+    CacheStore(int budget, boolean shared) {
+        this.budget = Math.max(budget, 0);
+        this.shared = shared;
+        if (shared) {
+            this.partition = null;
+            this.partitionsByHost = new ConcurrentHashMap<>();
+        } else {
+            this.partition = new Partition(this.budget, 1);
+            this.partitionsByHost = null;
+        }
+    }
+
+    /**
+     * @return true if store is partitioned by host and shared between threads
+     */
+    boolean isShared() {
+        return shared;
+    }
+
+    @Override
+    public CacheEntry get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        String url = (String) key;
+        Partition p = shared ? partitionsByHost.get(hostOf(url)) : partition;
+        return p == null ? null : p.get(url);
+    }
+
+    @Override
+    public CacheEntry put(String url, CacheEntry entry) {
+        return partitionFor(url).put(url, entry);
+    }
+
+    @Override
+    public CacheEntry remove(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        String url = (String) key;
+        Partition p = shared ? partitionsByHost.get(hostOf(url)) : partition;
+        return p == null ? null : p.remove(url);
+    }
+
+    @Override
+    public void clear() {
+        if (shared) {
+            partitionsByHost.clear();
+        } else {
+            partition.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        if (!shared) {
+            return partition.size();
+        }
+        int size = 0;
+        for (Partition p : partitionsByHost.values()) {
+            size += p.size();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return snapshot of the entries, changes to it are not reflected in the store
+     */
+    @Override
+    public Set<Map.Entry<String, CacheEntry>> entrySet() {
+        Set<Map.Entry<String, CacheEntry>> entries = new HashSet<>();
+        if (shared) {
+            for (Partition p : partitionsByHost.values()) {
+                p.copyTo(entries);
+            }
+        } else {
+            partition.copyTo(entries);
+        }
+        return entries;
+    }
+
+    private Partition partitionFor(String url) {
+        if (!shared) {
+            return partition;
+        }
+        String host = hostOf(url);
+        Partition p = partitionsByHost.get(host);
+        if (p == null) {
+            int stripes = budget >= SHARED_STRIPES * MIN_STRIPE_SIZE ? SHARED_STRIPES : 1;
+            Partition newPartition = new Partition(budget, stripes);
+            p = partitionsByHost.putIfAbsent(host, newPartition);
+            if (p == null) {
+                p = newPartition;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * @param url URL as String
+     * @return authority part of url (host and port)
+     */
+    static String hostOf(String url) {
+        int start = url.indexOf("://"); // $NON-NLS-1$
+        start = start < 0 ? 0 : start + 3;
+        int end = url.indexOf('/', start);
+        return end < 0 ? url.substring(start) : url.substring(start, end);
+    }
+
+    /**
+     * Entries of one host (shared mode) or of the whole store, split in lock stripes
+     */
+    private static final class Partition {
+        private final Stripe[] stripes;
+
+        Partition(int budget, int stripeCount) {
+            stripes = new Stripe[stripeCount];
+            int stripeBudget = budget / stripeCount;
+            for (int i = 0; i < stripeCount; i++) {
+                // Give the remainder to the first stripes
+                stripes[i] = new Stripe(stripeBudget + (i < budget % stripeCount ? 1 : 0));
+            }
+        }
+
+        private Stripe stripeFor(String url) {
+            if (stripes.length == 1) {
+                return stripes[0];
+            }
+            int h = url.hashCode();
+            h ^= h >>> 16;
+            return stripes[(h & 0x7fffffff) % stripes.length];
+        }
+
+        CacheEntry get(String url) {
+            return stripeFor(url).get(url);
+        }
+
+        CacheEntry put(String url, CacheEntry entry) {
+            return stripeFor(url).put(url, entry);
+        }
+
+        CacheEntry remove(String url) {
+            return stripeFor(url).remove(url);
+        }
+
+        void clear() {
+            for (Stripe stripe : stripes) {
+                stripe.clear();
+            }
+        }
+
+        int size() {
+            int size = 0;
+            for (Stripe stripe : stripes) {
+                size += stripe.map.size();
+            }
+            return size;
+        }
+
+        void copyTo(Set<Map.Entry<String, CacheEntry>> entries) {
+            for (Stripe stripe : stripes) {
+                for (Map.Entry<String, CacheEntry> e : stripe.map.entrySet()) {
+                    entries.add(new SimpleImmutableEntry<>(e.getKey(), e.getValue()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Bounded map with CLOCK eviction.
+     * <p>
+     * The clock queue contains every key of the map (and possibly keys that
+     * were removed concurrently, they are skipped when reached by the hand).
+     * It is only modified under the stripe lock, while the map is read without locking.
+     */
+    private static final class Stripe {
+        private final int capacity;
+        private final ConcurrentHashMap<String, CacheEntry> map;
+        private final ArrayDeque<String> clock;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+            // Do not size the map from the capacity, most per-thread caches stay small
+            this.map = new ConcurrentHashMap<>(16, 0.75f, 1);
+            this.clock = new ArrayDeque<>();
+        }
+
+        CacheEntry get(String url) {
+            CacheEntry entry = map.get(url);
+            if (entry != null) {
+                entry.referenced = true;
+            }
+            return entry;
+        }
+
+        CacheEntry put(String url, CacheEntry entry) {
+            if (capacity == 0) {
+                return null;
+            }
+            CacheEntry previous = map.put(url, entry);
+            if (previous == null) {
+                // New key, it must enter the clock
+                synchronized (clock) {
+                    clock.addLast(url);
+                    evictIfNeeded();
+                }
+            } else {
+                // Updating an entry counts as a use
+                entry.referenced = true;
+            }
+            return previous;
+        }
+
+        CacheEntry remove(String url) {
+            CacheEntry previous = map.remove(url);
+            if (previous != null) {
+                synchronized (clock) {
+                    clock.remove(url);
+                }
+            }
+            return previous;
+        }
+
+        void clear() {
+            synchronized (clock) {
+                map.clear();
+                clock.clear();
+            }
+        }
+
+        // Called with clock lock held
+        private void evictIfNeeded() {
+            while (map.size() > capacity) {
+                String candidate = clock.pollFirst();
+                if (candidate == null) {
+                    return;
+                }
+                CacheEntry entry = map.get(candidate);
+                if (entry == null) {
+                    continue; // already gone
+                }
+                if (entry.referenced) {
+                    // second chance
+                    entry.referenced = false;
+                    clock.addLast(candidate);
+                } else if (!map.remove(candidate, entry)) {
+                    // replaced concurrently, keep it under the clock
+                    clock.addLast(candidate);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.control;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.jmeter.protocol.http.sampler.HTTPSamplerBase;
+import org.apache.jmeter.testelement.property.CollectionProperty;
+import org.apache.jmeter.testelement.property.FunctionProperty;
+import org.apache.jmeter.testelement.property.JMeterProperty;
+import org.apache.jmeter.testelement.property.PropertyIterator;
+
+/**
+ * Domain and path index over the cookies of a {@link CookieManager}.
+ * <p>
+ * The {@link CollectionProperty} of the CookieManager remains the reference
+ * (it is what is saved, displayed and reset at each iteration), this class
+ * only indexes it so that:
+ * <ul>
+ * <li>the cookie matching a new one (same name, domain and path) is found in O(1)</li>
+ * <li>only the cookies whose domain matches the host of the request and whose path
+ * is a prefix of the request path are given to the {@link CookieHandler}</li>
+ * <li>the Cookie header computed for an URL is reused until the jar changes
+ * or one of its cookies expires</li>
+ * </ul>
+ * Candidate selection is a superset of what the cookie specifications match,
+ * the {@link CookieHandler} still takes the final decision. Cookies whose
+ * properties contain functions or variables are always candidates and
+ * disable the header cache.
+ * <p>
+ * Not thread-safe, CookieManager is cloned per thread.
+ * @since 3.2
+ */
+final class CookieJar {
+
+    /** Max number of Cookie headers remembered per thread */
+    private static final int MAX_CACHED_HEADERS = 100;
+
+    private static final char SEP = '\t';
+
+    /** Keeps the order of the CookieManager property, some policies do not sort cookies */
+    private static final Comparator<Entry> INSERTION_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            return e1.order < e2.order ? -1 : (e1.order == e2.order ? 0 : 1);
+        }
+    };
+
+    /** Cookie with its pre-computed lookup information */
+    private static final class Entry {
+        final Cookie cookie;
+        final String key;
+        final String domain;
+        final String path;
+        final long expiresMillis;
+        final boolean dynamic;
+        final long order;
+
+        Entry(Cookie cookie, boolean dynamic, long order) {
+            this.cookie = cookie;
+            this.dynamic = dynamic;
+            this.order = order;
+            this.key = keyOf(cookie);
+            this.domain = normalizeDomain(cookie.getDomain());
+            this.path = normalizePath(cookie.getPath());
+            this.expiresMillis = cookie.getExpiresMillis();
+        }
+
+        boolean isExpired(long now) {
+            return expiresMillis > 0 && expiresMillis <= now;
+        }
+    }
+
+    /** Cached Cookie header (null value means no cookie) */
+    private static final class CachedHeader {
+        final String value;
+        final long validUntil;
+
+        CachedHeader(String value, long validUntil) {
+            this.value = value;
+            this.validUntil = validUntil;
+        }
+    }
+
+    private final CollectionProperty cookies;
+
+    /** Collection held by the property and its modification count the last time the jar was in sync with it */
+    private Object expectedCollection;
+
+    private int expectedModCount;
+
+    private final boolean domainIndexed;
+
+    private final boolean allowVariableCookies;
+
+    private final Map<String, Entry> byKey = new HashMap<>();
+
+    private final Map<String, List<Entry>> byDomain = new HashMap<>();
+
+    /** Cookies that cannot be indexed by domain (dynamic or without domain) */
+    private final List<Entry> alwaysCandidates = new ArrayList<>();
+
+    /** Insertion counter */
+    private long insertions;
+
+    /** true if initial cookies contained several cookies with the same name, domain and path */
+    private boolean duplicates;
+
+    private final Map<String, CachedHeader> headers = new LinkedHashMap<String, CachedHeader>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedHeader> eldest) {
+            return size() > MAX_CACHED_HEADERS;
+        }
+    };
+
+    /**
+     * @param cookies
+     *            {@link CollectionProperty} of {@link Cookie} to index
+     * @param domainIndexed
+     *            false if the cookie policy does not require dot-boundary
+     *            domain matching, in which case all cookies are candidates
+     * @param allowVariableCookies
+     *            true if cookie properties may be evaluated at run time
+     */
+    CookieJar(CollectionProperty cookies, boolean domainIndexed, boolean allowVariableCookies) {
+        this.cookies = cookies;
+        this.domainIndexed = domainIndexed;
+        this.allowVariableCookies = allowVariableCookies;
+        for (JMeterProperty jMeterProperty : cookies) {
+            Cookie cookie = (Cookie) jMeterProperty.getObjectValue();
+            if (cookie != null) {
+                index(cookie);
+            }
+        }
+        synced();
+    }
+
+    private void synced() {
+        expectedCollection = cookies.getObjectValue();
+        expectedModCount = cookies.getModificationCount();
+    }
+
+    /**
+     * @param property the current cookies property of the CookieManager
+     * @return true if this jar indexes property and property was not modified behind its back
+     */
+    boolean isBackedBy(CollectionProperty property) {
+        return property == cookies && property.getObjectValue() == expectedCollection
+                && property.getModificationCount() == expectedModCount;
+    }
+
+    /**
+     * Add cookie to the property and index it, replacing any matching cookie
+     * @param cookie {@link Cookie} to add
+     */
+    void add(Cookie cookie) {
+        remove(cookie);
+        cookies.addItem(cookie);
+        index(cookie);
+        synced();
+        headers.clear();
+    }
+
+    /**
+     * Remove the cookies having the same name, domain and path as cookie
+     * @param cookie {@link Cookie} to match
+     * @return the removed cookie or null if none matched
+     */
+    Cookie remove(Cookie cookie) {
+        String key = keyOf(cookie);
+        Entry entry = byKey.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        unindex(entry);
+        if (duplicates) {
+            removeAllMatching(key);
+        } else {
+            removeFromProperty(entry.cookie);
+        }
+        synced();
+        headers.clear();
+        return entry.cookie;
+    }
+
+    /**
+     * Compute Cookie header for url, reusing last computed one if jar did not change
+     * @param handler {@link CookieHandler} that formats the header
+     * @param url URL of the request
+     * @return header value or null if no cookie applies
+     */
+    String getCookieHeaderForURL(CookieHandler handler, URL url) {
+        long now = System.currentTimeMillis();
+        String protocol = url.getProtocol();
+        String path = url.getPath();
+        String cacheKey = new StringBuilder(protocol).append(SEP)
+                .append(url.getHost()).append(SEP)
+                .append(HTTPSamplerBase.getDefaultPort(protocol, url.getPort())).append(SEP)
+                .append(path).toString();
+        CachedHeader cached = headers.get(cacheKey);
+        if (cached != null && now < cached.validUntil) {
+            return cached.value;
+        }
+        List<Entry> candidates = findCandidates(url.getHost(), path, now);
+        long validUntil = Long.MAX_VALUE;
+        boolean cacheable = true;
+        List<Cookie> matching = new ArrayList<>(candidates.size());
+        for (Entry entry : candidates) {
+            matching.add(entry.cookie);
+            if (entry.dynamic) {
+                cacheable = false;
+            } else if (entry.expiresMillis > 0) {
+                validUntil = Math.min(validUntil, entry.expiresMillis);
+            }
+        }
+        String header = matching.isEmpty() ? null
+                : handler.getCookieHeaderForURL(new CollectionProperty(cookies.getName(), matching), url, allowVariableCookies);
+        if (cacheable) {
+            headers.put(cacheKey, new CachedHeader(header, validUntil));
+        }
+        return header;
+    }
+
+    private List<Entry> findCandidates(String host, String path, long now) {
+        List<Entry> candidates = new ArrayList<>();
+        if (!domainIndexed) {
+            for (Entry entry : byKey.values()) {
+                addIfCandidate(candidates, entry, path, now);
+            }
+            Collections.sort(candidates, INSERTION_ORDER);
+            return candidates;
+        }
+        for (Entry entry : alwaysCandidates) {
+            candidates.add(entry);
+        }
+        // Walk up the labels of host: a.b.c, b.c, c
+        String domain = host.toLowerCase(Locale.ROOT);
+        while (true) {
+            List<Entry> entries = byDomain.get(domain);
+            if (entries != null) {
+                for (Entry entry : entries) {
+                    addIfCandidate(candidates, entry, path, now);
+                }
+            }
+            int dot = domain.indexOf('.');
+            if (dot < 0) {
+                break;
+            }
+            domain = domain.substring(dot + 1);
+        }
+        if (candidates.size() > 1) {
+            Collections.sort(candidates, INSERTION_ORDER);
+        }
+        return candidates;
+    }
+
+    private static void addIfCandidate(List<Entry> candidates, Entry entry, String path, long now) {
+        if (entry.dynamic) {
+            candidates.add(entry);
+        } else if (!entry.isExpired(now) && (entry.path.isEmpty() || path.startsWith(entry.path))) {
+            candidates.add(entry);
+        }
+    }
+
+    private void index(Cookie cookie) {
+        Entry entry = new Entry(cookie, isDynamic(cookie), insertions++);
+        if (byKey.put(entry.key, entry) != null) {
+            duplicates = true;
+        }
+        if (entry.dynamic || entry.domain.isEmpty()) {
+            alwaysCandidates.add(entry);
+        } else {
+            List<Entry> entries = byDomain.get(entry.domain);
+            if (entries == null) {
+                entries = new ArrayList<>(2);
+                byDomain.put(entry.domain, entries);
+            }
+            entries.add(entry);
+        }
+    }
+
+    private void unindex(Entry entry) {
+        if (entry.dynamic || entry.domain.isEmpty()) {
+            removeEntry(alwaysCandidates, entry.key);
+        } else {
+            List<Entry> entries = byDomain.get(entry.domain);
+            if (entries != null) {
+                removeEntry(entries, entry.key);
+                if (entries.isEmpty()) {
+                    byDomain.remove(entry.domain);
+                }
+            }
+        }
+    }
+
+    private static void removeEntry(List<Entry> entries, String key) {
+        Iterator<Entry> iter = entries.iterator();
+        while (iter.hasNext()) {
+            if (iter.next().key.equals(key)) {
+                iter.remove();
+            }
+        }
+    }
+
+    private void removeFromProperty(Cookie cookie) {
+        PropertyIterator iter = cookies.iterator();
+        while (iter.hasNext()) {
+            if (iter.next().getObjectValue() == cookie) {
+                iter.remove();
+                return;
+            }
+        }
+    }
+
+    // Slow path, only used if the initial cookies contained duplicates
+    private void removeAllMatching(String key) {
+        PropertyIterator iter = cookies.iterator();
+        while (iter.hasNext()) {
+            Cookie cookie = (Cookie) iter.next().getObjectValue();
+            if (cookie != null && keyOf(cookie).equals(key)) {
+                iter.remove();
+            }
+        }
+    }
+
+    private boolean isDynamic(Cookie cookie) {
+        if (!allowVariableCookies) {
+            return false;
+        }
+        PropertyIterator iter = cookie.propertyIterator();
+        while (iter.hasNext()) {
+            if (iter.next() instanceof FunctionProperty) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String keyOf(Cookie cookie) {
+        return new StringBuilder(cookie.getName()).append(SEP)
+                .append(cookie.getDomain()).append(SEP)
+                .append(cookie.getPath()).toString();
+    }
+
+    private static String normalizeDomain(String domain) {
+        if (domain == null) {
+            return "";
+        }
+        String normalized = domain.trim().toLowerCase(Locale.ROOT);
+        return normalized.startsWith(".") ? normalized.substring(1) : normalized; // $NON-NLS-1$
+    }
+
+    private static String normalizePath(String path) {
+        if (path == null || path.length() <= 1) {
+            return "";
+        }
+        // Both RFC and Netscape path matching ignore a trailing slash
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path; // $NON-NLS-1$
+    }
+}
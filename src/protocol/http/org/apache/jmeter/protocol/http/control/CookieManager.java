@@ -38,7 +38,6 @@ import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jmeter.testelement.property.BooleanProperty;
 import org.apache.jmeter.testelement.property.CollectionProperty;
 import org.apache.jmeter.testelement.property.JMeterProperty;
-import org.apache.jmeter.testelement.property.PropertyIterator;
 import org.apache.jmeter.threads.JMeterContext;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.logging.LoggingManager;
@@ -102,6 +101,9 @@ public class CookieManager extends ConfigTestElement implements TestStateListene
 
     private transient CollectionProperty initialCookies;
 
+    /** Index of the cookies property, rebuilt lazily when the property is replaced */
+    private transient CookieJar cookieJar;
+
     /**
      * Defines the policy that is assumed when the JMX file does not contain an entry for it
      * MUST NOT BE CHANGED otherwise JMX files will not be correctly interpreted
@@ -304,9 +306,9 @@ public class CookieManager extends ConfigTestElement implements TestStateListene
     public void add(Cookie c) {
         String cv = c.getValue();
         String cn = c.getName();
-        removeMatchingCookies(c); // Can't have two matching cookies
 
         if (DELETE_NULL_COOKIES && (null == cv || cv.length()==0)) {
+            removeMatchingCookies(c); // Can't have two matching cookies
             if (log.isDebugEnabled()) {
                 log.debug("Dropping cookie with null value " + c.toString());
             }
@@ -314,7 +316,7 @@ public class CookieManager extends ConfigTestElement implements TestStateListene
             if (log.isDebugEnabled()) {
                 log.debug("Add cookie to store " + c.toString());
             }
-            getCookies().addItem(c);
+            getCookieJar().add(c); // removes matching cookie
             if (SAVE_COOKIES)  {
                 JMeterContext context = getThreadContext();
                 if (context.isSamplingStarted()) {
@@ -367,52 +369,40 @@ public class CookieManager extends ConfigTestElement implements TestStateListene
      * @return the value string for the cookie header (goes after "Cookie: ").
      */
     public String getCookieHeaderForURL(URL url) {
-        return cookieHandler.getCookieHeaderForURL(getCookies(), url, ALLOW_VARIABLE_COOKIES);
+        return getCookieJar().getCookieHeaderForURL(cookieHandler, url);
     }
 
 
     public void addCookieFromHeader(String cookieHeader, URL url){
         cookieHandler.addCookieFromHeader(this, CHECK_COOKIES, cookieHeader, url);
     }
-    /**
-     * Check if cookies match, i.e. name, path and domain are equal.
-     * <br/>
-     * TODO - should we compare secure too?
-     * @param a
-     * @param b
-     * @return true if cookies match
-     */
-    private boolean match(Cookie a, Cookie b){
-        return
-        a.getName().equals(b.getName())
-        &&
-        a.getPath().equals(b.getPath())
-        &&
-        a.getDomain().equals(b.getDomain());
-    }
 
     void removeMatchingCookies(Cookie newCookie){
-        // Scan for any matching cookies
-        PropertyIterator iter = getCookies().iterator();
-        while (iter.hasNext()) {
-            Cookie cookie = (Cookie) iter.next().getObjectValue();
-            if (cookie == null) {// TODO is this possible?
-                continue;
-            }
-            if (match(cookie,newCookie)) {
-                if (log.isDebugEnabled()) {
-                    log.debug("New Cookie = " + newCookie.toString()
-                              + " removing matching Cookie " + cookie.toString());
-                }
-                iter.remove();
-            }
+        Cookie removed = getCookieJar().remove(newCookie);
+        if (removed != null && log.isDebugEnabled()) {
+            log.debug("New Cookie = " + newCookie.toString()
+                      + " removing matching Cookie " + removed.toString());
+        }
+    }
+
+    /**
+     * @return {@link CookieJar} indexing the current cookies property
+     */
+    private CookieJar getCookieJar() {
+        CollectionProperty cookies = getCookies();
+        if (cookieJar == null || !cookieJar.isBackedBy(cookies)) {
+            // Netscape draft matches domains without dot boundary, so cannot use the domain index
+            cookieJar = new CookieJar(cookies,
+                    !CookieSpecs.NETSCAPE.equalsIgnoreCase(getPolicy()), ALLOW_VARIABLE_COOKIES);
         }
+        return cookieJar;
     }
 
     /** {@inheritDoc} */
     @Override
     public void testStarted() {
         initialCookies = getCookies();
+        cookieJar = null; // policy may have changed
         try {
             cookieHandler = (CookieHandler) ClassTools.construct(getImplementation(), getPolicy());
         } catch (JMeterException e) {
@@ -24,16 +24,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.http.conn.DnsResolver;
 import org.apache.http.impl.conn.SystemDefaultDnsResolver;
 import org.apache.jmeter.config.ConfigTestElement;
 import org.apache.jmeter.engine.event.LoopIterationEvent;
 import org.apache.jmeter.testelement.TestIterationListener;
+import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jmeter.testelement.property.BooleanProperty;
 import org.apache.jmeter.testelement.property.CollectionProperty;
 import org.apache.jmeter.testelement.property.JMeterProperty;
 import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 import org.xbill.DNS.ARecord;
@@ -42,6 +45,7 @@ import org.xbill.DNS.ExtendedResolver;
 import org.xbill.DNS.Lookup;
 import org.xbill.DNS.Record;
 import org.xbill.DNS.Resolver;
+import org.xbill.DNS.SimpleResolver;
 import org.xbill.DNS.TextParseException;
 import org.xbill.DNS.Type;
 
@@ -52,11 +56,16 @@ import org.xbill.DNS.Type;
  * custom resolver can be used. Custom resolver uses dnsjava library, and gives
  * ability to bypass both OS and JVM cache. It allows to use paradigm
  * "1 virtual user - 1 DNS cache" in performance tests.
+ * <p>
+ * When the cache is shared, all threads use a single {@link SharedDnsCache}
+ * which keeps records for their TTL, resolves each host once however many
+ * threads ask for it, and refreshes records in the background before they expire.
  *
  * @since 2.12
  */
 
-public class DNSCacheManager extends ConfigTestElement implements TestIterationListener, Serializable, DnsResolver {
+public class DNSCacheManager extends ConfigTestElement implements TestIterationListener, TestStateListener,
+        Serializable, DnsResolver {
     private static final long serialVersionUID = 2120L;
 
     private static final Logger log = LoggingManager.getLoggerForClass();
@@ -67,20 +76,51 @@ public class DNSCacheManager extends ConfigTestElement implements TestIterationL
 
     private transient Resolver resolver = null;
 
+    /** Cache common to all threads, set on the test element by testStarted and propagated to clones */
+    private transient SharedDnsCache sharedCache = null;
+
+    /** Used for round-robin selection when cache is not shared */
+    private transient AtomicInteger cursor = new AtomicInteger();
+
+    /** Number of threads performing the DNS requests of the shared cache */
+    private static final int SHARED_CACHE_RESOLVER_THREADS =
+            JMeterUtils.getPropDefault("dns.shared_cache.resolver_threads", 4); // $NON-NLS-1$
+
+    /** TTL in seconds of the addresses returned by the system resolver, which does not give it */
+    private static final int SHARED_CACHE_SYSTEM_TTL =
+            JMeterUtils.getPropDefault("dns.shared_cache.system_ttl", 60); // $NON-NLS-1$
+
     //++ JMX tag values
     public static final String CLEAR_CACHE_EACH_ITER = "DNSCacheManager.clearEachIteration"; // $NON-NLS-1$
 
     public static final String SERVERS = "DNSCacheManager.servers"; // $NON-NLS-1$
 
     public static final String IS_CUSTOM_RESOLVER = "DNSCacheManager.isCustomResolver"; // $NON-NLS-1$
+
+    public static final String SHARED_CACHE = "DNSCacheManager.sharedCache"; // $NON-NLS-1$
+
+    public static final String ADDRESS_SELECTION = "DNSCacheManager.addressSelection"; // $NON-NLS-1$
     //-- JMX tag values
 
+    /** Addresses are returned in the order given by the resolver */
+    public static final String SELECTION_DEFAULT = "default"; // $NON-NLS-1$
+
+    /** First address changes at each resolution */
+    public static final String SELECTION_ROUND_ROBIN = "round_robin"; // $NON-NLS-1$
+
+    /** Each thread always gets the same first address */
+    public static final String SELECTION_STICKY = "sticky"; // $NON-NLS-1$
+
     public static final boolean DEFAULT_CLEAR_CACHE_EACH_ITER = false;
 
     public static final String DEFAULT_SERVERS = ""; // $NON-NLS-1$
 
     public static final boolean DEFAULT_IS_CUSTOM_RESOLVER = false;
 
+    public static final boolean DEFAULT_SHARED_CACHE = false;
+
+    public static final String DEFAULT_ADDRESS_SELECTION = SELECTION_DEFAULT;
+
     private final transient Cache lookupCache;
 
     private transient int timeoutMs;
@@ -103,24 +143,65 @@ public class DNSCacheManager extends ConfigTestElement implements TestIterationL
         DNSCacheManager clone = (DNSCacheManager) super.clone();
         clone.systemDefaultDnsResolver = new SystemDefaultDnsResolver();
         clone.cache = new LinkedHashMap<>();
-        CollectionProperty dnsServers = getServers();
+        clone.cursor = new AtomicInteger();
+        clone.sharedCache = sharedCache;
+        if (sharedCache == null) {
+            clone.resolver = createResolver(getServers());
+        }
+        return clone;
+    }
+
+    /**
+     * @param dnsServers names or IP of DNS servers, optionally followed by <code>:port</code>
+     * @return resolver using dnsServers, or null if one of them is invalid
+     */
+    private static Resolver createResolver(CollectionProperty dnsServers) {
         try {
-            String[] serverNames = new String[dnsServers.size()];
+            Resolver[] resolvers = new Resolver[dnsServers.size()];
             int index = 0;
             for (JMeterProperty jMeterProperty : dnsServers) {
-                serverNames[index] = jMeterProperty.getStringValue();
+                resolvers[index] = createSimpleResolver(jMeterProperty.getStringValue().trim());
                 index++;
             }
-            clone.resolver = new ExtendedResolver(serverNames);
+            ExtendedResolver extendedResolver = new ExtendedResolver(resolvers);
             log.debug("Using DNS Resolvers: "
-                    + Arrays.asList(((ExtendedResolver) clone.resolver)
-                            .getResolvers()));
+                    + Arrays.asList(extendedResolver.getResolvers()));
             // resolvers will be chosen via round-robin
-            ((ExtendedResolver) clone.resolver).setLoadBalance(true);
-        } catch (UnknownHostException uhe) {
-            log.warn("Failed to create Extended resolver: " + uhe.getMessage());
+            extendedResolver.setLoadBalance(true);
+            return extendedResolver;
+        } catch (UnknownHostException | NumberFormatException e) {
+            log.warn("Failed to create Extended resolver: " + e.getMessage());
+            return null;
         }
-        return clone;
+    }
+
+    /**
+     * @param server host, IP, <code>host:port</code> or <code>[IPv6]:port</code>
+     * @return resolver sending requests to server
+     * @throws UnknownHostException if server cannot be resolved
+     */
+    private static SimpleResolver createSimpleResolver(String server) throws UnknownHostException {
+        String host = server;
+        int port = -1;
+        int colon = server.lastIndexOf(':');
+        if (server.startsWith("[")) { // $NON-NLS-1$
+            int end = server.indexOf(']');
+            if (end > 0) {
+                host = server.substring(1, end);
+                if (colon > end) {
+                    port = Integer.parseInt(server.substring(colon + 1));
+                }
+            }
+        } else if (colon > 0 && colon == server.indexOf(':')) {
+            // a single colon separates the port, several ones are an IPv6 address
+            host = server.substring(0, colon);
+            port = Integer.parseInt(server.substring(colon + 1));
+        }
+        SimpleResolver simpleResolver = new SimpleResolver(host);
+        if (port > 0) {
+            simpleResolver.setPort(port);
+        }
+        return simpleResolver;
     }
 
     /**
@@ -129,6 +210,14 @@ public class DNSCacheManager extends ConfigTestElement implements TestIterationL
      */
     @Override
     public InetAddress[] resolve(String host) throws UnknownHostException {
+        if (sharedCache != null) {
+            SharedDnsCache.Entry entry = sharedCache.getEntry(host);
+            return select(SharedDnsCache.getResolution(entry).addresses, entry.cursor);
+        }
+        return select(resolveInThreadCache(host), cursor);
+    }
+
+    private InetAddress[] resolveInThreadCache(String host) throws UnknownHostException {
         if (cache.containsKey(host)) {
             if (log.isDebugEnabled()) {
                 log.debug("Cache hit thr#" + JMeterContextService.getContext().getThreadNum() + ": " + host + "=>"
@@ -146,12 +235,50 @@ public class DNSCacheManager extends ConfigTestElement implements TestIterationL
         }
     }
 
+    /**
+     * Reorder addresses according to address selection
+     * @param addresses resolved addresses, not modified
+     * @param counter round-robin counter
+     * @return addresses starting with the selected one
+     */
+    private InetAddress[] select(InetAddress[] addresses, AtomicInteger counter) {
+        if (addresses == null || addresses.length < 2) {
+            return addresses;
+        }
+        int first;
+        switch (getAddressSelection()) {
+            case SELECTION_ROUND_ROBIN:
+                first = (counter.getAndIncrement() & Integer.MAX_VALUE) % addresses.length;
+                break;
+            case SELECTION_STICKY:
+                first = (JMeterContextService.getContext().getThreadNum() & Integer.MAX_VALUE) % addresses.length;
+                break;
+            default:
+                return addresses;
+        }
+        InetAddress[] selected = new InetAddress[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            selected[i] = addresses[(first + i) % addresses.length];
+        }
+        return selected;
+    }
+
     /**
      * Sends DNS request via system or custom DNS resolver
      */
     private InetAddress[] requestLookup(String host) throws UnknownHostException {
+        return requestLookupWithTtl(host).addresses;
+    }
+
+    /**
+     * Sends DNS request via system or custom DNS resolver
+     * @return addresses with the TTL of the records, or the one of
+     * <code>dns.shared_cache.system_ttl</code> property for the system resolver
+     */
+    private SharedDnsCache.Resolution requestLookupWithTtl(String host) throws UnknownHostException {
         InetAddress[] addresses = null;
-        if (isCustomResolver() && ((ExtendedResolver) resolver).getResolvers().length > 0) {
+        long ttlSeconds = SHARED_CACHE_SYSTEM_TTL;
+        if (isCustomResolver() && resolver != null && ((ExtendedResolver) resolver).getResolvers().length > 0) {
             try {
                 Lookup lookup = new Lookup(host, Type.A);
                 lookup.setCache(lookupCache);
@@ -164,8 +291,10 @@ public class DNSCacheManager extends ConfigTestElement implements TestIterationL
                     throw new UnknownHostException("Failed to resolve host name: " + host);
                 }
                 addresses = new InetAddress[records.length];
+                ttlSeconds = Long.MAX_VALUE;
                 for (int i = 0; i < records.length; i++) {
                     addresses[i] = ((ARecord) records[i]).getAddress();
+                    ttlSeconds = Math.min(ttlSeconds, records[i].getTTL());
                 }
             } catch (TextParseException tpe) {
                 log.debug("Failed to create Lookup object: " + tpe);
@@ -177,7 +306,7 @@ public class DNSCacheManager extends ConfigTestElement implements TestIterationL
                         + ", resolved with system resolver into " + Arrays.toString(addresses));
             }
         }
-        return addresses;
+        return new SharedDnsCache.Resolution(addresses, ttlSeconds * 1000L);
     }
 
     /**
@@ -185,11 +314,60 @@ public class DNSCacheManager extends ConfigTestElement implements TestIterationL
      */
     @Override
     public void testIterationStart(LoopIterationEvent event) {
-        if (isClearEachIteration()) {
+        // The shared cache follows the TTL of the records
+        if (isClearEachIteration() && sharedCache == null) {
             this.cache.clear();
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testStarted() {
+        testStarted(""); // $NON-NLS-1$
+    }
+
+    /**
+     * {@inheritDoc} Creates the shared cache if appropriate check-box was selected
+     */
+    @Override
+    public void testStarted(String host) {
+        if (isSharedCache()) {
+            systemDefaultDnsResolver = new SystemDefaultDnsResolver();
+            resolver = createResolver(getServers());
+            sharedCache = new SharedDnsCache(new SharedDnsCache.Lookup() {
+                @Override
+                public SharedDnsCache.Resolution lookup(String hostToResolve) throws UnknownHostException {
+                    SharedDnsCache.Resolution resolution = requestLookupWithTtl(hostToResolve);
+                    if (resolution.addresses == null) {
+                        throw new UnknownHostException("Failed to resolve host name: " + hostToResolve);
+                    }
+                    return resolution;
+                }
+            }, SHARED_CACHE_RESOLVER_THREADS, timeoutMs);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void testEnded() {
+        testEnded(""); // $NON-NLS-1$
+    }
+
+    /**
+     * {@inheritDoc} Stops the resolver threads of the shared cache
+     */
+    @Override
+    public void testEnded(String host) {
+        if (sharedCache != null) {
+            sharedCache.shutdown();
+            sharedCache = null;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -242,6 +420,34 @@ public class DNSCacheManager extends ConfigTestElement implements TestIterationL
         this.setProperty(IS_CUSTOM_RESOLVER, isCustomResolver);
     }
 
+    /**
+     * @return true if all threads share the same TTL-aware cache
+     */
+    public boolean isSharedCache() {
+        return getPropertyAsBoolean(SHARED_CACHE, DEFAULT_SHARED_CACHE);
+    }
+
+    /**
+     * @param shared true if all threads must share the same TTL-aware cache
+     */
+    public void setSharedCache(boolean shared) {
+        setProperty(SHARED_CACHE, shared, DEFAULT_SHARED_CACHE);
+    }
+
+    /**
+     * @return one of {@link #SELECTION_DEFAULT}, {@link #SELECTION_ROUND_ROBIN} or {@link #SELECTION_STICKY}
+     */
+    public String getAddressSelection() {
+        return getPropertyAsString(ADDRESS_SELECTION, DEFAULT_ADDRESS_SELECTION);
+    }
+
+    /**
+     * @param selection one of {@link #SELECTION_DEFAULT}, {@link #SELECTION_ROUND_ROBIN} or {@link #SELECTION_STICKY}
+     */
+    public void setAddressSelection(String selection) {
+        setProperty(ADDRESS_SELECTION, selection, DEFAULT_ADDRESS_SELECTION);
+    }
+
     /**
      * Sets DNS resolution timeout.
      *
@@ -0,0 +1,360 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.control;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * DNS cache shared by all the threads using a {@link DNSCacheManager}.
+ * <ul>
+ * <li>Records are kept for the TTL returned by the resolver</li>
+ * <li>Concurrent lookups of the same host are coalesced into one request</li>
+ * <li>Requests are run by a small pool of resolver threads, and a record
+ * which is used after {@link #REFRESH_RATIO} of its TTL is refreshed
+ * in the background while the current one is still served</li>
+ * </ul>
+ * @since 3.2
+ */
+final class SharedDnsCache {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** Part of the TTL after which a used record is refreshed in the background */
+    static final double REFRESH_RATIO = 0.8;
+
+    /**
+     * Performs the actual DNS request
+     */
+    interface Lookup {
+        /**
+         * @param host name to resolve
+         * @return addresses and TTL of the records
+         * @throws UnknownHostException if host cannot be resolved
+         */
+        Resolution lookup(String host) throws UnknownHostException;
+    }
+
+    /**
+     * Source of the time of the records
+     */
+    interface Clock {
+        /**
+         * @return current time in milliseconds
+         */
+        long currentTimeMillis();
+    }
+
+    static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * Result of a DNS request
+     */
+    static final class Resolution {
+        final InetAddress[] addresses;
+        final long ttlMillis;
+        /** Time of the resolution given by the clock of the cache */
+        final long resolvedAt;
+        final long refreshAt;
+        final long expiresAt;
+
+        /**
+         * @param addresses resolved addresses
+         * @param ttlMillis time to live of the records in milliseconds
+         */
+        Resolution(InetAddress[] addresses, long ttlMillis) {
+            this(addresses, ttlMillis, 0);
+        }
+
+        private Resolution(InetAddress[] addresses, long ttlMillis, long resolvedAt) {
+            this.addresses = addresses;
+            this.ttlMillis = ttlMillis;
+            this.resolvedAt = resolvedAt;
+            this.refreshAt = resolvedAt + (long) (ttlMillis * REFRESH_RATIO);
+            this.expiresAt = resolvedAt + ttlMillis;
+        }
+
+        /**
+         * @param time time of the resolution
+         * @return same resolution made at time
+         */
+        Resolution resolvedAt(long time) {
+            return new Resolution(addresses, ttlMillis, time);
+        }
+    }
+
+    /**
+     * Current (possibly pending) resolution of a host
+     */
+    static final class Entry {
+        final Future<Resolution> resolution;
+        final AtomicBoolean refreshing = new AtomicBoolean(false);
+        /** Used for round-robin address selection */
+        final AtomicInteger cursor = new AtomicInteger();
+
+        Entry(Future<Resolution> resolution) {
+            this.resolution = resolution;
+        }
+    }
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor executor;
+
+    private final Lookup lookup;
+
+    private final Clock clock;
+
+    /** Max time to wait for a resolution, 0 means no limit */
+    private final long timeoutMs;
+
+    /**
+     * @param lookup performs DNS requests
+     * @param resolverThreads number of threads performing DNS requests
+     * @param timeoutMs max time a caller waits for a resolution, 0 means no limit
+     */
+    SharedDnsCache(Lookup lookup, int resolverThreads, long timeoutMs) {
+        this(lookup, resolverThreads, timeoutMs, SYSTEM_CLOCK);
+    }
+
+    /**
+     * @param lookup performs DNS requests
+     * @param resolverThreads number of threads performing DNS requests
+     * @param timeoutMs max time a caller waits for a resolution, 0 means no limit
+     * @param clock gives the time at which the records are resolved, refreshed and expire
+     */
+    SharedDnsCache(Lookup lookup, int resolverThreads, long timeoutMs, Clock clock) {
+        this.lookup = lookup;
+        this.clock = clock;
+        this.timeoutMs = timeoutMs;
+        int threads = Math.max(resolverThreads, 1);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        Thread t = new Thread(r);
+                        t.setName("DNSResolver-" + t.getName()); //$NON-NLS-1$
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param host name to resolve
+     * @return current entry of host, holding a resolution which is valid or in progress
+     * @throws UnknownHostException if host cannot be resolved
+     */
+    Entry getEntry(String host) throws UnknownHostException {
+        Entry entry = entries.get(host);
+        if (entry != null && entry.resolution.isDone()) {
+            Resolution resolution = await(host, entry);
+            long now = clock.currentTimeMillis();
+            if (now < resolution.expiresAt) {
+                if (now >= resolution.refreshAt && entry.refreshing.compareAndSet(false, true)) {
+                    refreshInBackground(host, entry);
+                }
+                return entry;
+            }
+            // Expired and not refreshed in time, resolve again unless someone else did
+            FutureTask<Resolution> task = newTask(host);
+            Entry newEntry = new Entry(task);
+            if (entries.replace(host, entry, newEntry)) {
+                start(task);
+                entry = newEntry;
+            } else {
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            entry = currentEntry(host);
+        }
+        // A resolution this thread waited for is used even if its TTL is zero
+        await(host, entry);
+        return entry;
+    }
+
+    /**
+     * @param host name to resolve
+     * @return entry of host, the lookup is started if there is none
+     */
+    private Entry currentEntry(String host) {
+        Entry entry = entries.get(host);
+        if (entry == null) {
+            // Only the thread which installs the entry starts the lookup
+            FutureTask<Resolution> task = newTask(host);
+            Entry newEntry = new Entry(task);
+            entry = entries.putIfAbsent(host, newEntry);
+            if (entry == null) {
+                start(task);
+                entry = newEntry;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * @param entry {@link Entry} returned by {@link #getEntry(String)}
+     * @return completed resolution of entry
+     */
+    static Resolution getResolution(Entry entry) {
+        try {
+            return entry.resolution.get();
+        } catch (InterruptedException | ExecutionException e) {
+            // Cannot happen, getEntry only returns completed entries
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Drop all records
+     */
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Stop resolver threads
+     */
+    void shutdown() {
+        executor.shutdownNow();
+        entries.clear();
+    }
+
+    private FutureTask<Resolution> newTask(final String host) {
+        return new FutureTask<>(new Callable<Resolution>() {
+            @Override
+            public Resolution call() throws Exception {
+                return resolve(host);
+            }
+        });
+    }
+
+    /**
+     * @param host name to resolve
+     * @return resolution of host, made at the current time of the clock
+     * @throws UnknownHostException if host cannot be resolved
+     */
+    private Resolution resolve(String host) throws UnknownHostException {
+        return lookup.lookup(host).resolvedAt(clock.currentTimeMillis());
+    }
+
+    /**
+     * Runs the lookup on a resolver thread, or on the calling thread once the cache is shut down
+     * so that threads still sampling at the end of the test do not wait forever
+     */
+    private void start(FutureTask<Resolution> task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    private void refreshInBackground(final String host, final Entry current) {
+        if (log.isDebugEnabled()) {
+            log.debug("Refreshing DNS record of " + host + " before expiry");
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    boolean replaced = false;
+                    try {
+                        Resolution resolution = resolve(host);
+                        Entry refreshed = new Entry(completed(resolution));
+                        refreshed.cursor.set(current.cursor.get());
+                        replaced = entries.replace(host, current, refreshed);
+                    } catch (UnknownHostException e) {
+                        // Keep serving current record until it expires, and retry on next use
+                        log.warn("Failed to refresh DNS record of " + host + ": " + e.getMessage());
+                    } catch (RuntimeException e) {
+                        log.warn("Failed to refresh DNS record of " + host, e);
+                    } finally {
+                        if (!replaced) {
+                            current.refreshing.set(false);
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shut down, the record is served until it expires
+            current.refreshing.set(false);
+        }
+    }
+
+    private Resolution await(String host, Entry entry) throws UnknownHostException {
+        try {
+            if (timeoutMs > 0) {
+                return entry.resolution.get(timeoutMs, TimeUnit.MILLISECONDS);
+            }
+            return entry.resolution.get();
+        } catch (ExecutionException e) {
+            // Do not cache failures
+            entries.remove(host, entry);
+            Throwable cause = e.getCause();
+            if (cause instanceof UnknownHostException) {
+                throw (UnknownHostException) cause;
+            }
+            UnknownHostException uhe = new UnknownHostException("Failed to resolve host name: " + host);
+            uhe.initCause(cause);
+            throw uhe;
+        } catch (TimeoutException e) {
+            throw new UnknownHostException("Timeout resolving host name: " + host + " after " + timeoutMs + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnknownHostException("Interrupted while resolving host name: " + host);
+        }
+    }
+
+    private static Future<Resolution> completed(Resolution resolution) {
+        FutureTask<Resolution> future = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+                // NOOP
+            }
+        }, resolution);
+        future.run();
+        return future;
+    }
+}
@@ -45,6 +45,10 @@ public class CacheManagerGui extends AbstractConfigGui {
 
     private JTextField maxCacheSize;
 
+    private JCheckBox sharedCache;
+
+    private JTextField maxCacheSizePerHost;
+
     /**
      * Create a new LoginConfigGui as a standalone component.
      */
@@ -73,6 +77,8 @@ public class CacheManagerGui extends AbstractConfigGui {
         clearEachIteration.setSelected(cacheManager.getClearEachIteration());
         useExpires.setSelected(cacheManager.getUseExpires());
         maxCacheSize.setText(Integer.toString(cacheManager.getMaxSize()));
+        sharedCache.setSelected(cacheManager.getShared());
+        maxCacheSizePerHost.setText(Integer.toString(cacheManager.getMaxSizePerHost()));
     }
 
     /* Implements JMeterGUIComponent.createTestElement() */
@@ -95,6 +101,12 @@ public class CacheManagerGui extends AbstractConfigGui {
         } catch (NumberFormatException e) {
             // NOOP
         }
+        cacheManager.setShared(sharedCache.isSelected());
+        try {
+            cacheManager.setMaxSizePerHost(Integer.parseInt(maxCacheSizePerHost.getText()));
+        } catch (NumberFormatException e) {
+            // NOOP
+        }
     }
 
     /**
@@ -106,6 +118,8 @@ public class CacheManagerGui extends AbstractConfigGui {
         clearEachIteration.setSelected(false);
         useExpires.setSelected(false);
         maxCacheSize.setText(""); //$NON-NLS-1$
+        sharedCache.setSelected(false);
+        maxCacheSizePerHost.setText(""); //$NON-NLS-1$
     }
 
     /**
@@ -133,6 +147,18 @@ public class CacheManagerGui extends AbstractConfigGui {
         maxCacheSizePanel.add(label, BorderLayout.WEST);
         maxCacheSizePanel.add(maxCacheSize, BorderLayout.CENTER);
         northPanel.add(maxCacheSizePanel);
+
+        sharedCache = new JCheckBox(JMeterUtils.getResString("cache_manager_shared"), false); // $NON-NLS-1$
+        northPanel.add(sharedCache);
+
+        JLabel perHostLabel = new JLabel(JMeterUtils.getResString("cache_manager_size_per_host")); //$NON-NLS-1$
+        maxCacheSizePerHost = new JTextField(20);
+        maxCacheSizePerHost.setName(CacheManager.MAX_SIZE_PER_HOST);
+        perHostLabel.setLabelFor(maxCacheSizePerHost);
+        JPanel maxCacheSizePerHostPanel = new JPanel(new BorderLayout(5, 0));
+        maxCacheSizePerHostPanel.add(perHostLabel, BorderLayout.WEST);
+        maxCacheSizePerHostPanel.add(maxCacheSizePerHost, BorderLayout.CENTER);
+        northPanel.add(maxCacheSizePerHostPanel);
         add(northPanel, BorderLayout.NORTH);
     }
 
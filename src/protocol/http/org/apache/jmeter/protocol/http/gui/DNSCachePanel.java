@@ -22,11 +22,14 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.Arrays;
 
 import javax.swing.BorderFactory;
 import javax.swing.ButtonGroup;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JRadioButton;
 import javax.swing.JScrollPane;
@@ -93,6 +96,16 @@ public class DNSCachePanel extends AbstractConfigGui implements ActionListener {
 
     private JCheckBox clearEachIteration;
 
+    private JCheckBox sharedCache;
+
+    private static final String[] ADDRESS_SELECTIONS = {
+        DNSCacheManager.SELECTION_DEFAULT,
+        DNSCacheManager.SELECTION_ROUND_ROBIN,
+        DNSCacheManager.SELECTION_STICKY
+    };
+
+    private JComboBox<String> addressSelection;
+
     /**
      * Default constructor.
      */
@@ -122,6 +135,8 @@ public class DNSCachePanel extends AbstractConfigGui implements ActionListener {
                 dnsCacheManager.addServer(server);
             }
             dnsCacheManager.setClearEachIteration(clearEachIteration.isSelected());
+            dnsCacheManager.setSharedCache(sharedCache.isSelected());
+            dnsCacheManager.setAddressSelection(ADDRESS_SELECTIONS[addressSelection.getSelectedIndex()]);
             if (providerDNSradioGroup.isSelected(custResButton.getModel())) {
                 dnsCacheManager.setCustomResolver(true);
             } else {
@@ -137,6 +152,8 @@ public class DNSCachePanel extends AbstractConfigGui implements ActionListener {
     public void clearGui() {
         super.clearGui();
         clearEachIteration.setSelected(DNSCacheManager.DEFAULT_CLEAR_CACHE_EACH_ITER);
+        sharedCache.setSelected(DNSCacheManager.DEFAULT_SHARED_CACHE);
+        addressSelection.setSelectedIndex(0);
         providerDNSradioGroup.setSelected(sysResButton.getModel(), true);
         dnsServersTableModel.clearData();
         deleteButton.setEnabled(false);
@@ -164,6 +181,9 @@ public class DNSCachePanel extends AbstractConfigGui implements ActionListener {
         DNSCacheManager dnsCacheManager = (DNSCacheManager) el;
         populateTable(dnsCacheManager);
         clearEachIteration.setSelected(dnsCacheManager.isClearEachIteration());
+        sharedCache.setSelected(dnsCacheManager.isSharedCache());
+        addressSelection.setSelectedIndex(Math.max(0,
+                Arrays.asList(ADDRESS_SELECTIONS).indexOf(dnsCacheManager.getAddressSelection())));
         if (dnsCacheManager.isCustomResolver()) {
             providerDNSradioGroup.setSelected(custResButton.getModel(), true);
             deleteButton.setEnabled(dnsServersTable.getColumnCount() > 0);
@@ -186,6 +206,9 @@ public class DNSCachePanel extends AbstractConfigGui implements ActionListener {
         optionsPane.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(), OPTIONS)); // $NON-NLS-1$
         optionsPane.setLayout(new VerticalLayout(5, VerticalLayout.BOTH));
         optionsPane.add(clearEachIteration, BorderLayout.WEST);
+        sharedCache = new JCheckBox(JMeterUtils.getResString("dns_cache_manager_shared"), false); //$NON-NLS-1$
+        optionsPane.add(sharedCache);
+        optionsPane.add(createAddressSelectionPanel());
         optionsPane.add(createChooseResPanel(), BorderLayout.SOUTH);
         northPanel.add(optionsPane);
         add(northPanel, BorderLayout.NORTH);
@@ -212,6 +235,20 @@ public class DNSCachePanel extends AbstractConfigGui implements ActionListener {
         return panel;
     }
 
+    private JPanel createAddressSelectionPanel() {
+        String[] labels = new String[ADDRESS_SELECTIONS.length];
+        for (int i = 0; i < ADDRESS_SELECTIONS.length; i++) {
+            labels[i] = JMeterUtils.getResString("dns_address_selection_" + ADDRESS_SELECTIONS[i]); //$NON-NLS-1$
+        }
+        addressSelection = new JComboBox<>(labels);
+        JLabel label = new JLabel(JMeterUtils.getResString("dns_address_selection")); //$NON-NLS-1$
+        label.setLabelFor(addressSelection);
+        JPanel panel = new JPanel(new BorderLayout(5, 0));
+        panel.add(label, BorderLayout.WEST);
+        panel.add(addressSelection, BorderLayout.CENTER);
+        return panel;
+    }
+
     private JPanel createChooseResPanel() {
         JPanel chooseResPanel = new JPanel(new BorderLayout(0, 5));
         sysResButton = new JRadioButton();
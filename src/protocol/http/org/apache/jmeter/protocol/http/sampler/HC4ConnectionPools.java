@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.jmeter.threads.AbstractThreadGroup;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Connection pools of {@link HTTPHC4Impl}.
+ * <p>
+ * Depending on <code>httpclient4.pool.scope</code> property, a pool is used by:
+ * <ul>
+ * <li><code>thread</code>: a single thread (default, each virtual user has its own connections)</li>
+ * <li><code>thread_group</code>: all the threads of a thread group</li>
+ * <li><code>global</code>: all the threads of the test</li>
+ * </ul>
+ * Shared pools are reference counted by the HttpClient instances using them
+ * and shut down when the last one is released. As their connections are
+ * reused by several threads, they are only built from components which do not
+ * depend on the thread: a thread whose connections depend on its own DNS
+ * resolver or SSL context uses a pool of its own. Whatever the scope, pools can
+ * be bounded and have their idle connections evicted by a background thread.
+ * @since 3.2
+ */
+final class HC4ConnectionPools {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /**
+     * Users of a connection pool
+     */
+    enum Scope {
+        THREAD, THREAD_GROUP, GLOBAL;
+
+        static Scope fromProperty(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid value '" + value + "' for httpclient4.pool.scope, using thread");
+                return THREAD;
+            }
+        }
+    }
+
+    static final Scope SCOPE = Scope.fromProperty(
+            JMeterUtils.getPropDefault("httpclient4.pool.scope", "thread")); // $NON-NLS-1$ // $NON-NLS-2$
+
+    /** Max number of connections of a pool, 0 means HttpClient default */
+    private static final int MAX_TOTAL = JMeterUtils.getPropDefault("httpclient4.pool.max_total", 0); // $NON-NLS-1$
+
+    /** Max number of connections per route of a pool, 0 means HttpClient default */
+    private static final int MAX_PER_ROUTE = JMeterUtils.getPropDefault("httpclient4.pool.max_per_route", 0); // $NON-NLS-1$
+
+    /** Max time in milliseconds to wait for a connection of a pool, 0 means no limit */
+    static final long LEASE_TIMEOUT = JMeterUtils.getPropDefault("httpclient4.pool.lease_timeout", 0L); // $NON-NLS-1$
+
+    /** Connections idle for longer than this (in milliseconds) are closed, 0 disables eviction */
+    private static final long IDLE_EVICTION = JMeterUtils.getPropDefault("httpclient4.pool.idle_eviction", 0L); // $NON-NLS-1$
+
+    private static final Object GLOBAL_KEY = new Object();
+
+    /** Shared pool per scope key (thread group or {@link #GLOBAL_KEY}) */
+    private static final Map<Object, SharedPool> SHARED_POOLS = new IdentityHashMap<>();
+
+    /** Pools checked by the idle evictor */
+    private static final Set<ClientConnectionManager> EVICTABLE_POOLS =
+            Collections.newSetFromMap(new ConcurrentHashMap<ClientConnectionManager, Boolean>());
+
+    private static ScheduledExecutorService evictor;
+
+    /** Sharing refused at least once, only logged the first time */
+    private static final AtomicBoolean SHARING_REFUSED = new AtomicBoolean();
+
+    /**
+     * Creates a connection pool
+     */
+    interface Factory {
+        /**
+         * @return new connection pool
+         */
+        MeasuringConnectionManager create();
+    }
+
+    private static final class SharedPool {
+        final MeasuringConnectionManager manager;
+        int users;
+
+        SharedPool(MeasuringConnectionManager manager) {
+            this.manager = manager;
+        }
+    }
+
+    private HC4ConnectionPools() {
+        super();
+    }
+
+    /**
+     * @param threadState per-thread state used to open the connections of current thread,
+     *  null if there is none
+     * @return key of the pool used by current thread, null if it is not shared
+     */
+    static Object currentScopeKey(String threadState) {
+        return getScopeKey(SCOPE, JMeterContextService.getContext().getThreadGroup(), threadState);
+    }
+
+    /**
+     * @param scope users of the pools
+     * @param threadGroup thread group of the thread, null while recording
+     * @param threadState per-thread state used to open the connections of the thread,
+     *  null if there is none
+     * @return key of the pool used by the thread, null if it is not shared
+     */
+    static Object getScopeKey(Scope scope, AbstractThreadGroup threadGroup, String threadState) {
+        if (scope == Scope.THREAD) {
+            return null;
+        }
+        if (threadState != null) {
+            if (SHARING_REFUSED.compareAndSet(false, true)) {
+                log.warn("Connections depend on " + threadState
+                        + ", using a connection pool per thread instead of httpclient4.pool.scope=" // $NON-NLS-1$
+                        + scope.name().toLowerCase(Locale.ROOT));
+            }
+            return null;
+        }
+        return scope == Scope.GLOBAL ? GLOBAL_KEY : threadGroup;
+    }
+
+    /**
+     * @param scopeKey key returned by {@link #currentScopeKey(String)}
+     * @return token identifying the users of the pool, so that pooled connections are
+     *  reusable by all the threads of the scope, null if pool is not shared
+     */
+    static String getUserToken(Object scopeKey) {
+        if (scopeKey == null) {
+            return null;
+        }
+        if (scopeKey instanceof AbstractThreadGroup) {
+            return "pool:" + ((AbstractThreadGroup) scopeKey).getName() // $NON-NLS-1$
+                    + "@" + System.identityHashCode(scopeKey); // $NON-NLS-1$
+        }
+        return "pool:global"; // $NON-NLS-1$
+    }
+
+    /**
+     * Get the pool for scopeKey, each call must be balanced by a call to {@link #release(ClientConnectionManager)}
+     * @param scopeKey key returned by {@link #currentScopeKey(String)}, null for a pool private to the caller
+     * @param factory creates the pool if it does not exist yet
+     * @return connection pool
+     */
+    static MeasuringConnectionManager acquire(Object scopeKey, Factory factory) {
+        if (scopeKey == null) {
+            MeasuringConnectionManager manager = configure(factory.create());
+            register(manager);
+            return manager;
+        }
+        synchronized (SHARED_POOLS) {
+            SharedPool pool = SHARED_POOLS.get(scopeKey);
+            if (pool == null) {
+                pool = new SharedPool(configure(factory.create()));
+                SHARED_POOLS.put(scopeKey, pool);
+                register(pool.manager);
+                log.info("Created shared connection pool " + getUserToken(scopeKey)
+                        + ", maxTotal:" + pool.manager.getMaxTotal()
+                        + ", maxPerRoute:" + pool.manager.getDefaultMaxPerRoute());
+            }
+            pool.users++;
+            return pool.manager;
+        }
+    }
+
+    /**
+     * Release manager, shared pools are shut down when their last user releases them
+     * @param manager pool returned by {@link #acquire(Object, Factory)}
+     * @return true if manager is a shared pool, in which case the caller must not shut it down
+     */
+    static boolean release(ClientConnectionManager manager) {
+        synchronized (SHARED_POOLS) {
+            for (Map.Entry<Object, SharedPool> entry : SHARED_POOLS.entrySet()) {
+                SharedPool pool = entry.getValue();
+                if (pool.manager == manager) {
+                    if (--pool.users == 0) {
+                        SHARED_POOLS.remove(entry.getKey());
+                        EVICTABLE_POOLS.remove(manager);
+                        manager.shutdown();
+                        log.info("Shut down shared connection pool " + getUserToken(entry.getKey()));
+                    }
+                    return true;
+                }
+            }
+        }
+        EVICTABLE_POOLS.remove(manager);
+        return false;
+    }
+
+    /**
+     * @param manager pool
+     * @return true if manager is used by several threads
+     */
+    static boolean isShared(ClientConnectionManager manager) {
+        synchronized (SHARED_POOLS) {
+            for (SharedPool pool : SHARED_POOLS.values()) {
+                if (pool.manager == manager) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static MeasuringConnectionManager configure(MeasuringConnectionManager manager) {
+        if (MAX_TOTAL > 0) {
+            manager.setMaxTotal(MAX_TOTAL);
+        }
+        if (MAX_PER_ROUTE > 0) {
+            manager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+        }
+        return manager;
+    }
+
+    private static void register(ClientConnectionManager manager) {
+        if (IDLE_EVICTION <= 0) {
+            return;
+        }
+        EVICTABLE_POOLS.add(manager);
+        synchronized (EVICTABLE_POOLS) {
+            if (evictor == null) {
+                evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "HC4IdleConnectionEvictor"); // $NON-NLS-1$
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+                long period = Math.max(IDLE_EVICTION / 2, 100L);
+                evictor.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        evictIdleConnections();
+                    }
+                }, period, period, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static void evictIdleConnections() {
+        for (ClientConnectionManager manager : EVICTABLE_POOLS) {
+            try {
+                manager.closeExpiredConnections();
+                manager.closeIdleConnections(IDLE_EVICTION, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // Pool may have been shut down concurrently
+                log.debug("Failed to evict idle connections", e);
+            }
+        }
+    }
+}
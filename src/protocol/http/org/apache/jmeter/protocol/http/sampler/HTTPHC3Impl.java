@@ -80,7 +80,6 @@ import org.apache.jmeter.services.FileServer;
 import org.apache.jmeter.testelement.property.CollectionProperty;
 import org.apache.jmeter.testelement.property.JMeterProperty;
 import org.apache.jmeter.util.JMeterUtils;
-import org.apache.jmeter.util.JsseSSLManager;
 import org.apache.jmeter.util.SSLManager;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.jorphan.util.JOrphanUtils;
@@ -467,8 +466,7 @@ public class HTTPHC3Impl extends HTTPHCAbstractImpl {
         if (httpClient != null && resetSSLContext && isHTTPS) {
             httpClient.getHttpConnectionManager().closeIdleConnections(-1000);
             httpClient = null;
-            JsseSSLManager sslMgr = (JsseSSLManager) SSLManager.getInstance();
-            sslMgr.resetContext();
+            resetThreadSSLContext();
             resetSSLContext = false;
         }
 
@@ -1103,7 +1101,7 @@ public class HTTPHC3Impl extends HTTPHCAbstractImpl {
     @Override
     protected void notifyFirstSampleAfterLoopRestart() {
         log.debug("notifyFirstSampleAfterLoopRestart");
-        resetSSLContext = !USE_CACHED_SSL_CONTEXT;
+        resetSSLContext = isSSLContextResetIteration();
     }
 
     /**
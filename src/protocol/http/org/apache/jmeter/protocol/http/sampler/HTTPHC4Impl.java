@@ -77,6 +77,7 @@ import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.params.ClientPNames;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.protocol.ResponseContentEncoding;
+import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.conn.DnsResolver;
 import org.apache.http.conn.params.ConnRoutePNames;
@@ -129,7 +130,6 @@ import org.apache.jmeter.testelement.property.PropertyIterator;
 import org.apache.jmeter.threads.JMeterContextService;
 import org.apache.jmeter.threads.JMeterVariables;
 import org.apache.jmeter.util.JMeterUtils;
-import org.apache.jmeter.util.JsseSSLManager;
 import org.apache.jmeter.util.SSLManager;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
@@ -191,8 +191,14 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
         @Override
         public void process(HttpRequest request, HttpContext context)
                 throws HttpException, IOException {
-            HttpConnectionMetrics metrics = ((HttpConnection) context.getAttribute(HttpCoreContext.HTTP_CONNECTION)).getMetrics();
+            HttpConnection connection = (HttpConnection) context.getAttribute(HttpCoreContext.HTTP_CONNECTION);
+            HttpConnectionMetrics metrics = connection.getMetrics();
             metrics.reset();
+            SampleResult sample = (SampleResult) context.getAttribute(SAMPLER_RESULT_TOKEN);
+            if (sample != null) {
+                sample.setConnectionWaitTime(sample.getConnectionWaitTime()
+                        + MeasuringConnectionManager.takeConnectionWaitTime(connection));
+            }
         }
     };
 
@@ -544,6 +550,13 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
      * @param localContext {@link HttpContext}
      */
     private void setupClientContextBeforeSample(HttpContext localContext) {
+        // Connections of a shared pool must be reusable by all the threads of its scope
+        String poolToken = HC4ConnectionPools.getUserToken(
+                HC4ConnectionPools.currentScopeKey(getThreadConnectionState()));
+        if (poolToken != null) {
+            localContext.setAttribute(HttpClientContext.USER_TOKEN, poolToken);
+            return;
+        }
         Object userToken = null;
         // During recording JMeterContextService.getContext().getVariables() is null
         JMeterVariables jMeterVariables = JMeterContextService.getContext().getVariables();
@@ -794,10 +807,14 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
         if (httpClient != null && resetSSLContext && HTTPConstants.PROTOCOL_HTTPS.equalsIgnoreCase(url.getProtocol())) {
             ((AbstractHttpClient) httpClient).clearRequestInterceptors(); 
             ((AbstractHttpClient) httpClient).clearResponseInterceptors(); 
-            httpClient.getConnectionManager().closeIdleConnections(1L, TimeUnit.MICROSECONDS);
+            ClientConnectionManager previousManager = httpClient.getConnectionManager();
+            // Connections of a shared pool belong to other threads too
+            if (!HC4ConnectionPools.isShared(previousManager)) {
+                previousManager.closeIdleConnections(1L, TimeUnit.MICROSECONDS);
+            }
+            HC4ConnectionPools.release(previousManager);
             httpClient = null;
-            JsseSSLManager sslMgr = (JsseSSLManager) SSLManager.getInstance();
-            sslMgr.resetContext();
+            resetThreadSSLContext();
             resetSSLContext = false;
         }
 
@@ -805,20 +822,31 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
 
             HttpParams clientParams = new DefaultedHttpParams(new BasicHttpParams(), DEFAULT_HTTP_PARAMS);
 
-            DnsResolver resolver = this.testElement.getDNSResolver();
-            if (resolver == null) {
-                resolver = SystemDefaultDnsResolver.INSTANCE;
+            Object scopeKey = HC4ConnectionPools.currentScopeKey(getThreadConnectionState());
+            DnsResolver dnsResolver = this.testElement.getDNSResolver();
+            // A shared pool must not capture the resolver of the thread which creates it
+            final DnsResolver resolver = dnsResolver != null && scopeKey == null
+                    ? dnsResolver : SystemDefaultDnsResolver.INSTANCE;
+            MeasuringConnectionManager connManager = HC4ConnectionPools.acquire(
+                    scopeKey,
+                    new HC4ConnectionPools.Factory() {
+                        @Override
+                        public MeasuringConnectionManager create() {
+                            return new MeasuringConnectionManager(
+                                    createSchemeRegistry(), 
+                                    resolver, 
+                                    TIME_TO_LIVE,
+                                    VALIDITY_AFTER_INACTIVITY_TIMEOUT);
+                        }
+                    });
+            if (HC4ConnectionPools.LEASE_TIMEOUT > 0) {
+                clientParams.setLongParameter(ClientPNames.CONN_MANAGER_TIMEOUT, HC4ConnectionPools.LEASE_TIMEOUT);
             }
-            MeasuringConnectionManager connManager = new MeasuringConnectionManager(
-                    createSchemeRegistry(), 
-                    resolver, 
-                    TIME_TO_LIVE,
-                    VALIDITY_AFTER_INACTIVITY_TIMEOUT);
             
             // Modern browsers use more connections per host than the current httpclient default (2)
             // when using parallel download the httpclient and connection manager are shared by the downloads threads
             // to be realistic JMeter must set an higher value to DefaultMaxPerRoute
-            if(concurrentDwn) {
+            if(concurrentDwn && !HC4ConnectionPools.isShared(connManager)) {
                 try {
                     int maxConcurrentDownloads = Integer.parseInt(this.testElement.getConcurrentPool());
                     connManager.setDefaultMaxPerRoute(Math.max(maxConcurrentDownloads, connManager.getDefaultMaxPerRoute()));                
@@ -888,6 +916,23 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
         return httpClient;
     }
 
+    /**
+     * @return description of the per-thread state used to open connections,
+     *  which prevents sharing them with other threads, null if there is none
+     */
+    private String getThreadConnectionState() {
+        if (this.testElement.getDNSResolver() != null) {
+            return "DNS Cache Manager"; // $NON-NLS-1$
+        }
+        if (SSLManager.isKeystoreConfigured()) {
+            return "Keystore Configuration"; // $NON-NLS-1$
+        }
+        if (!USE_CACHED_SSL_CONTEXT) {
+            return "https.use.cached.ssl.context=false"; // $NON-NLS-1$
+        }
+        return null;
+    }
+
     /**
      * Setup LazySchemeSocketFactory
      * @see "https://bz.apache.org/bugzilla/show_bug.cgi?id=58099"
@@ -1523,7 +1568,7 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
     @Override
     protected void notifyFirstSampleAfterLoopRestart() {
         log.debug("notifyFirstSampleAfterLoopRestart");
-        resetSSLContext = !USE_CACHED_SSL_CONTEXT;
+        resetSSLContext = isSSLContextResetIteration();
     }
 
     @Override
@@ -1542,8 +1587,11 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
             for ( HttpClient cl : mapHttpClientPerHttpClientKey.values() ) {
                 ((AbstractHttpClient) cl).clearRequestInterceptors(); 
                 ((AbstractHttpClient) cl).clearResponseInterceptors();
-                ((AbstractHttpClient) cl).close();
-                cl.getConnectionManager().shutdown();
+                // Closing the client would shut down its pool, shared ones are shut down by their last user
+                if (!HC4ConnectionPools.release(cl.getConnectionManager())) {
+                    ((AbstractHttpClient) cl).close();
+                    cl.getConnectionManager().shutdown();
+                }
             }
             mapHttpClientPerHttpClientKey.clear();
         }
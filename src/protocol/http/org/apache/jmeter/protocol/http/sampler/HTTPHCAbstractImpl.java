@@ -28,7 +28,11 @@ import java.util.StringTokenizer;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jmeter.JMeter;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
 import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jmeter.util.JsseSSLManager;
+import org.apache.jmeter.util.SSLManager;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.jorphan.util.JOrphanUtils;
 import org.apache.log.Logger;
@@ -82,6 +86,13 @@ public abstract class HTTPHCAbstractImpl extends HTTPAbstractImpl {
     protected static final boolean USE_CACHED_SSL_CONTEXT = 
             JMeterUtils.getPropDefault("https.use.cached.ssl.context", true);//$NON-NLS-1$
 
+    // Number of iterations a thread keeps its SSL context (and the TLS sessions it caches) when it is not cached for the whole test
+    protected static final int SSL_CONTEXT_REUSE_ITERATIONS =
+            JMeterUtils.getPropDefault("https.use.cached.ssl.context.iterations", 1);//$NON-NLS-1$
+
+    /** Iteration in which the current thread last reset its SSL context */
+    private static final ThreadLocal<Integer> SSL_CONTEXT_RESET_ITERATION = new ThreadLocal<>();
+
     static {
         if(!StringUtils.isEmpty(JMeterUtils.getProperty("httpclient.timeout"))) { //$NON-NLS-1$
             log.warn("You're using property 'httpclient.timeout' that will soon be deprecated for HttpClient3.1, you should either set "
@@ -165,4 +176,60 @@ public abstract class HTTPHCAbstractImpl extends HTTPAbstractImpl {
     protected static boolean isNullOrEmptyTrimmed(String value) {
         return JOrphanUtils.isBlank(value);
     }
+
+    /**
+     * Called by the first sample of an iteration
+     * @return {@code true} if the SSL context of the current thread must be reset in this iteration,
+     *  that is if it is not cached for the whole test and has been used for
+     *  <code>https.use.cached.ssl.context.iterations</code> iterations
+     */
+    protected static boolean isSSLContextResetIteration() {
+        JMeterVariables vars = JMeterContextService.getContext().getVariables();
+        return isSSLContextResetIteration(USE_CACHED_SSL_CONTEXT, SSL_CONTEXT_REUSE_ITERATIONS,
+                vars == null ? 1 : vars.getIteration());
+    }
+
+    /**
+     * @param useCachedContext is the SSL context cached for the whole test
+     * @param reuseIterations number of iterations during which the SSL context is kept
+     * @param iteration current iteration, from 1
+     * @return {@code true} if the SSL context must be reset in the iteration,
+     *  that is in iterations 1, reuseIterations + 1, 2 * reuseIterations + 1...
+     */
+    static boolean isSSLContextResetIteration(boolean useCachedContext, int reuseIterations, int iteration) {
+        if (useCachedContext) {
+            return false;
+        }
+        if (reuseIterations <= 1) {
+            return true;
+        }
+        return (iteration - 1) % reuseIterations == 0;
+    }
+
+    /**
+     * Reset the SSL context of the current thread, unless it has already been reset in the current
+     * iteration by another sampler, so that the TLS sessions negotiated since are kept
+     */
+    protected static void resetThreadSSLContext() {
+        JMeterVariables vars = JMeterContextService.getContext().getVariables();
+        if (vars != null && !markSSLContextReset(vars.getIteration())) {
+            return;
+        }
+        JsseSSLManager sslMgr = (JsseSSLManager) SSLManager.getInstance();
+        sslMgr.resetContext();
+    }
+
+    /**
+     * Record that the current thread resets its SSL context in the iteration
+     * @param iteration current iteration
+     * @return {@code false} if the SSL context of the current thread was already reset in the iteration
+     */
+    static boolean markSSLContextReset(int iteration) {
+        Integer current = Integer.valueOf(iteration);
+        if (current.equals(SSL_CONTEXT_RESET_ITERATION.get())) {
+            return false;
+        }
+        SSL_CONTEXT_RESET_ITERATION.set(current);
+        return true;
+    }
 }
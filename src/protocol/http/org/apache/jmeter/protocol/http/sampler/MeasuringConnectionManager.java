@@ -25,6 +25,7 @@ import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLSession;
 
+import org.apache.http.HttpConnection;
 import org.apache.http.HttpConnectionMetrics;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpException;
@@ -42,6 +43,7 @@ import org.apache.http.impl.conn.JMeterPoolingClientConnectionManager;
 import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.HttpContext;
+import org.apache.jmeter.protocol.http.util.HC4TrustAllSSLSocketFactory;
 import org.apache.jmeter.samplers.SampleResult;
 
 /**
@@ -72,10 +74,27 @@ public class MeasuringConnectionManager extends JMeterPoolingClientConnectionMan
     @Override
     protected ClientConnectionOperator createConnectionOperator(
             SchemeRegistry schreg) {
-        return new JMeterClientConnectionOperator(schreg);
+        return new JMeterClientConnectionOperator(schreg, getDnsResolver());
     }
 
 
+    /**
+     * Return the time spent waiting for connection to be leased from the pool,
+     * only the first call for a lease returns it so that reuse of the connection
+     * for redirects does not count it twice
+     * @param connection {@link HttpConnection} returned by this manager
+     * @return time in milliseconds or 0 if already returned or unknown
+     */
+    public static long takeConnectionWaitTime(HttpConnection connection) {
+        if (connection instanceof MeasuredConnection) {
+            MeasuredConnection measured = (MeasuredConnection) connection;
+            long waitTime = measured.waitTime;
+            measured.waitTime = 0;
+            return waitTime;
+        }
+        return 0;
+    }
+
     /**
      * An adapter class to pass {@link SampleResult} into {@link MeasuredConnection}
      */
@@ -87,8 +106,9 @@ public class MeasuringConnectionManager extends JMeterPoolingClientConnectionMan
 
         @Override
         public ManagedClientConnection getConnection(long timeout, TimeUnit tunit) throws InterruptedException, ConnectionPoolTimeoutException {
+            long start = System.nanoTime();
             ManagedClientConnection res = handler.getConnection(timeout, tunit);
-            return new MeasuredConnection(res);
+            return new MeasuredConnection(res, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
         }
 
         @Override
@@ -100,16 +120,22 @@ public class MeasuringConnectionManager extends JMeterPoolingClientConnectionMan
     /**
      * An adapter for {@link ManagedClientConnection}
      * that calls SampleResult.connectEnd after calling ManagedClientConnection.open
+     * and reports the time spent in TLS handshakes
      */
     private static class MeasuredConnection implements ManagedClientConnection {
         private final ManagedClientConnection handler;
 
-        public MeasuredConnection(ManagedClientConnection res) {
+        /** Time waited for the lease of this connection, only accessed by the thread which leased it */
+        private long waitTime;
+
+        public MeasuredConnection(ManagedClientConnection res, long waitTime) {
             handler = res;
+            this.waitTime = waitTime;
         }
 
         @Override
         public void open(HttpRoute route, HttpContext context, HttpParams params) throws IOException {
+            HC4TrustAllSSLSocketFactory.takeHandshakeTime(); // discard any handshake not made for this sample
             try {
                 handler.open(route, context, params);
             } finally {
@@ -117,10 +143,21 @@ public class MeasuringConnectionManager extends JMeterPoolingClientConnectionMan
                         (SampleResult)context.getAttribute(HTTPHC4Impl.SAMPLER_RESULT_TOKEN);
                 if (sample != null) {
                     sample.connectEnd();
+                    addHandshakeTime(sample);
                 }
             }
         }
 
+        /**
+         * Add time spent in TLS handshakes while opening or layering this connection to sample
+         */
+        private static void addHandshakeTime(SampleResult sample) {
+            long handshakeTime = HC4TrustAllSSLSocketFactory.takeHandshakeTime();
+            if (handshakeTime > 0) {
+                sample.setHandshakeTime(sample.getHandshakeTime() + handshakeTime);
+            }
+        }
+
         // ================= all following methods just wraps handler's =================
         @Override
         public boolean isSecure() {
@@ -149,7 +186,16 @@ public class MeasuringConnectionManager extends JMeterPoolingClientConnectionMan
 
         @Override
         public void layerProtocol(HttpContext context, HttpParams params) throws IOException {
-            handler.layerProtocol(context, params);
+            HC4TrustAllSSLSocketFactory.takeHandshakeTime();
+            try {
+                handler.layerProtocol(context, params);
+            } finally {
+                SampleResult sample =
+                        (SampleResult)context.getAttribute(HTTPHC4Impl.SAMPLER_RESULT_TOKEN);
+                if (sample != null) {
+                    addHandshakeTime(sample);
+                }
+            }
         }
 
         @Override
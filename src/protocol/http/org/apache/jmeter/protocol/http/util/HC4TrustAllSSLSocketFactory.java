@@ -19,21 +19,31 @@
 package org.apache.jmeter.protocol.http.util;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 import java.security.GeneralSecurityException;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLSocket;
 
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.conn.ssl.TrustStrategy;
 import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
 import org.apache.jmeter.util.HttpSSLProtocolSocketFactory;
 import org.apache.jmeter.util.JsseSSLManager;
+import org.apache.jorphan.util.JOrphanUtils;
 
 /**
  * Apache HttpClient protocol factory to generate SSL sockets
+ * <p>
+ * TLS handshakes are started explicitly so that their duration can be reported,
+ * see {@link #takeHandshakeTime()}
  */
 
 public class HC4TrustAllSSLSocketFactory extends SSLSocketFactory {
@@ -44,6 +54,15 @@ public class HC4TrustAllSSLSocketFactory extends SSLSocketFactory {
             return true;
         }
     };
+
+    /** Time spent in handshakes by current thread since last call to {@link #takeHandshakeTime()} */
+    private static final ThreadLocal<long[]> HANDSHAKE_TIME = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
     private javax.net.ssl.SSLSocketFactory factory;
 
     /**
@@ -94,7 +113,69 @@ public class HC4TrustAllSSLSocketFactory extends SSLSocketFactory {
                 port,
                 autoClose
                 );
+        handshake(sslSocket);
         ALLOW_ALL_HOSTNAME_VERIFIER.verify(host, sslSocket);
         return sslSocket;
     }
+
+    /**
+     * Same as {@link SSLSocketFactory#connectSocket(int, Socket, HttpHost, InetSocketAddress, InetSocketAddress, HttpContext)}
+     * except that the handshake is measured
+     * @see org.apache.http.conn.ssl.SSLSocketFactory#connectSocket(int, java.net.Socket, org.apache.http.HttpHost, java.net.InetSocketAddress, java.net.InetSocketAddress, org.apache.http.protocol.HttpContext)
+     */
+    @Override
+    public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host,
+            InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+            HttpContext context) throws IOException {
+        if (host == null || remoteAddress == null) {
+            throw new IllegalArgumentException("HTTP host and remote address may not be null");
+        }
+        Socket sock = socket != null ? socket : createSocket(context);
+        if (localAddress != null) {
+            sock.bind(localAddress);
+        }
+        try {
+            sock.connect(remoteAddress, connectTimeout);
+        } catch (SocketTimeoutException e) {
+            JOrphanUtils.closeQuietly(sock);
+            throw new ConnectTimeoutException("Connect to " + remoteAddress + " timed out");
+        } catch (IOException e) {
+            JOrphanUtils.closeQuietly(sock);
+            throw e;
+        }
+        if (!(sock instanceof SSLSocket)) {
+            return createLayeredSocket(sock, host.getHostName(), remoteAddress.getPort(), true);
+        }
+        SSLSocket sslSocket = (SSLSocket) sock;
+        try {
+            handshake(sslSocket);
+            ALLOW_ALL_HOSTNAME_VERIFIER.verify(host.getHostName(), sslSocket);
+        } catch (IOException e) {
+            JOrphanUtils.closeQuietly(sslSocket);
+            throw e;
+        }
+        return sslSocket;
+    }
+
+    /**
+     * Return the time spent in TLS handshakes by the current thread since the last call, and reset it.
+     * The abbreviated handshakes of resumed TLS sessions are included, the time is 0 only
+     * if the thread did not open a TLS connection since the last call
+     * @return time in milliseconds
+     */
+    public static long takeHandshakeTime() {
+        long[] time = HANDSHAKE_TIME.get();
+        long result = TimeUnit.NANOSECONDS.toMillis(time[0]);
+        time[0] = 0;
+        return result;
+    }
+
+    private static void handshake(SSLSocket sslSocket) throws IOException {
+        long start = System.nanoTime();
+        try {
+            sslSocket.startHandshake();
+        } finally {
+            HANDSHAKE_TIME.get()[0] += System.nanoTime() - start;
+        }
+    }
 }
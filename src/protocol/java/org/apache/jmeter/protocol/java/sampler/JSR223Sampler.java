@@ -64,7 +64,7 @@ public class JSR223Sampler extends JSR223TestElement implements Cloneable, Sampl
         result.sampleStart();
         try {
             ScriptEngine scriptEngine = getScriptEngine();
-            Bindings bindings = scriptEngine.createBindings();
+            Bindings bindings = getBindings(scriptEngine);
             bindings.put("SampleResult",result);
             Object ret = processFileOrScript(scriptEngine, bindings);
             if (ret != null && (result.getResponseData() == null || result.getResponseData()==SampleResult.EMPTY_BA)){
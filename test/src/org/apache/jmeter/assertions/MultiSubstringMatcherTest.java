@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.assertions;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MultiSubstringMatcherTest {
+
+    @Test
+    public void testOverlappingPatterns() {
+        MultiSubstringMatcher matcher = new MultiSubstringMatcher(
+                Arrays.asList("he", "she", "his", "hers", "", "she", "x"));
+        assertArrayEquals(new boolean[] {true, true, false, true, true, true, false}, matcher.find("ushers"));
+        assertArrayEquals(new boolean[] {false, false, false, false, true, false, false}, matcher.find(""));
+    }
+
+    @Test
+    public void testSameResultsAsContains() {
+        Random random = new Random(42);
+        for (int n = 0; n < 200; n++) {
+            String text = randomString(random, 50);
+            List<String> patterns = Arrays.asList(randomString(random, 3), randomString(random, 2),
+                    randomString(random, 4), text.substring(10, 13), randomString(random, 1));
+            boolean[] found = new MultiSubstringMatcher(patterns).find(text);
+            for (int i = 0; i < patterns.size(); i++) {
+                assertEquals(text + " " + patterns.get(i), text.contains(patterns.get(i)), found[i]);
+            }
+        }
+    }
+
+    private static String randomString(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(3));
+        }
+        return new String(chars);
+    }
+}
@@ -194,6 +194,53 @@ public class ResponseAssertionTest {
 
     }
 
+    @Test
+    public void testResponseAssertionManyPatterns() throws Exception{
+        sample.setResponseData("<html><body>Welcome user42, you have 3 messages</body></html>", null);
+        assertion.unsetNotType();
+        assertion.setToContainsType();
+        assertion.setTestFieldResponseData();
+        assertion.addTestString("Welcome");
+        assertion.addTestString("user\\d+");
+        assertion.addTestString("3 messages");
+        assertion.addTestString("</html>");
+        result = assertion.getResult(sample);
+        assertPassed();
+
+        // First failing test string is reported
+        assertion.addTestString("Goodbye");
+        assertion.addTestString("logout");
+        result = assertion.getResult(sample);
+        assertFailed();
+        assertTrue(result.getFailureMessage(), result.getFailureMessage().endsWith("/Goodbye/"));
+
+        assertion.setToNotType();
+        assertion.clearTestStrings();
+        assertion.addTestString("error");
+        assertion.addTestString("exception");
+        assertion.addTestString("messages");
+        assertion.addTestString("Welcome");
+        result = assertion.getResult(sample);
+        assertFailed();
+        assertTrue(result.getFailureMessage(), result.getFailureMessage().endsWith("/messages/"));
+
+        assertion.unsetNotType();
+        assertion.setToSubstringType();
+        assertion.clearTestStrings();
+        assertion.addTestString("user4");
+        assertion.addTestString("ser42,");
+        assertion.addTestString("<body>W");
+        result = assertion.getResult(sample);
+        assertPassed();
+
+        assertion.setToMatchType();
+        assertion.clearTestStrings();
+        assertion.addTestString("<html>.*</html>");
+        assertion.addTestString("<html><body>Welcome user42, you have 3 messages</body></html>");
+        result = assertion.getResult(sample);
+        assertPassed();
+    }
+
 //TODO - need a lot more tests
     
     private void assertPassed() throws Exception{
@@ -26,8 +26,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.jmeter.junit.JMeterTestCase;
 import org.apache.jmeter.services.FileServer;
 import org.apache.jmeter.threads.JMeterContext;
@@ -247,4 +250,28 @@ public class TestCVSDataSet extends JMeterTestCase {
         csv1.iterationStart(null);
         assertEquals("a4",threadVars.get("a"));
     }
+
+    @Test
+    public void testPartitionByEngine() throws Exception {
+        File file = File.createTempFile("engines", ".csv");
+        FileUtils.writeStringToFile(file, "a\n0\n1\n2\n3\n4\n", StandardCharsets.UTF_8);
+        FileServer.getFileServer().setEnginePartition(1, 2);
+        try {
+            CSVDataSet csv = new CSVDataSet();
+            csv.setFilename(file.getAbsolutePath());
+            csv.setDelimiter(",");
+            csv.setRecycle(false);
+            csv.setPartitionByEngine(true);
+            csv.iterationStart(null);
+            assertEquals("1",threadVars.get("a"));
+            csv.iterationStart(null);
+            assertEquals("3",threadVars.get("a"));
+            csv.iterationStart(null);
+            assertEquals("<EOF>",threadVars.get("a"));
+        } finally {
+            FileServer.getFileServer().setEnginePartition(0, 1);
+            FileServer.getFileServer().closeFiles();
+            FileUtils.deleteQuietly(file);
+        }
+    }
 }
@@ -18,6 +18,8 @@
 
 package org.apache.jmeter.engine;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
@@ -27,7 +29,9 @@ import java.io.PrintStream;
 import java.net.MalformedURLException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -84,6 +88,33 @@ public class DistributedRunnerTest {
         obj.exit(hosts);
     }
 
+    @Test
+    public void testStartMoreEnginesThanDistributionThreads() throws Exception {
+        createJmeterEnv();
+        JMeterUtils.setProperty(DistributedRunner.RETRIES_NUMBER, "1");
+        JMeterUtils.setProperty(DistributedRunner.CONTINUE_ON_FAIL, "false");
+        JMeterUtils.setProperty(DistributedRunner.DISTRIBUTION_THREADS, "2");
+        JMeterUtils.setProperty(DistributedRunner.START_DELAY, "0");
+        try {
+            DistributedRunnerEmul obj = new DistributedRunnerEmul();
+            List<Long> startTimes = Collections.synchronizedList(new ArrayList<Long>());
+            List<String> hosts = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                obj.engines.add(new SlowStartEngine(startTimes, 500));
+                hosts.add("test" + i);
+            }
+            obj.init(hosts, new HashTree());
+            obj.start();
+            assertEquals(6, startTimes.size());
+            // Started in batches of 2 engines, the last batch would be 1 second late
+            long spread = Collections.max(startTimes).longValue() - Collections.min(startTimes).longValue();
+            assertTrue("Engines started " + spread + " ms apart", spread < 500);
+        } finally {
+            JMeterUtils.getJMeterProperties().remove(DistributedRunner.DISTRIBUTION_THREADS);
+            JMeterUtils.getJMeterProperties().remove(DistributedRunner.START_DELAY);
+        }
+    }
+
     private void initRunner(DistributedRunnerEmul runner, List<String> hosts) {
         PrintStream origSystemOut = System.out;
         ByteArrayOutputStream catchingOut = new ByteArrayOutputStream();
@@ -136,6 +167,30 @@ public class DistributedRunnerTest {
         }
     }
 
+    /**
+     * Engine whose start call takes some time, like a remote call
+     */
+    private static class SlowStartEngine extends EmulatorEngine {
+        private final List<Long> startTimes;
+        private final long startDuration;
+
+        public SlowStartEngine(List<Long> startTimes, long startDuration) {
+            this.startTimes = startTimes;
+            this.startDuration = startDuration;
+        }
+
+        @Override
+        public void runTest() throws JMeterEngineException {
+            startTimes.add(Long.valueOf(System.currentTimeMillis()));
+            try {
+                Thread.sleep(startDuration);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JMeterEngineException("Interrupted", e);
+            }
+        }
+    }
+
     private static class EmulatorEngine implements JMeterEngine {
         private static final Logger log = LoggingManager.getLoggerForClass();
         private String host;
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.services.FileServer;
+import org.apache.jmeter.testelement.TestPlan;
+import org.apache.jorphan.collections.HashTree;
+import org.apache.jorphan.collections.ListedHashTree;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestRemoteJMeterEngineImpl extends JMeterTestCase {
+
+    private RemoteJMeterEngineImpl engine;
+
+    private File baseDir;
+
+    @Before
+    public void setUp() throws IOException {
+        engine = new RemoteJMeterEngineImpl(0, 0);
+        baseDir = File.createTempFile("server", "");
+        assertTrue(baseDir.delete());
+        assertTrue(baseDir.mkdir());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        engine.rstopTest(true);
+        UnicastRemoteObject.unexportObject(engine, true);
+        FileServer.getFileServer().resetBase();
+        FileUtils.deleteDirectory(baseDir);
+    }
+
+    private static byte[] createTestPlan() throws IOException {
+        HashTree tree = new ListedHashTree();
+        tree.add(new TestPlan("plan"));
+        return RemoteTestPlan.encode(tree);
+    }
+
+    /**
+     * Runs the call on a new thread, as RMI does when the connection of the client was closed
+     */
+    private static <T> T callOnNewThread(Callable<T> call) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(call).get();
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private String configure() throws Exception {
+        final byte[] testPlan = createTestPlan();
+        return callOnNewThread(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return engine.rconfigure(testPlan, "client", baseDir, "test.jmx", 0, 1);
+            }
+        });
+    }
+
+    @Test
+    public void testConfigureAndRunOnDifferentThreads() throws Exception {
+        final String owner = configure();
+        assertNotNull(owner);
+        callOnNewThread(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                engine.rsetProperties(owner, new Properties());
+                return null;
+            }
+        });
+        List<String> missing = callOnNewThread(new Callable<List<String>>() {
+            @Override
+            public List<String> call() throws Exception {
+                return engine.rgetMissingFiles(owner, Collections.<String, String>emptyMap());
+            }
+        });
+        assertEquals(0, missing.size());
+        callOnNewThread(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                engine.rrunTest(owner, 0);
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testOtherClientRejected() throws Exception {
+        configure();
+        for (final String owner : new String[] { null, "other" }) {
+            try {
+                callOnNewThread(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        engine.rrunTest(owner, 0);
+                        return null;
+                    }
+                });
+                fail("Run of owner " + owner + " should have been rejected");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+        try {
+            engine.rrunTest();
+            fail("Run without owner should have been rejected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDelayedStartReturnsAtOnce() throws Exception {
+        final String owner = configure();
+        long start = System.currentTimeMillis();
+        callOnNewThread(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                engine.rrunTest(owner, 60000);
+                return null;
+            }
+        });
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("Start call took " + elapsed + " ms", elapsed < 30000);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jmeter.config.Argument;
+import org.apache.jmeter.config.Arguments;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.TestPlan;
+import org.apache.jorphan.collections.HashTree;
+import org.apache.jorphan.collections.ListedHashTree;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestRemoteTestPlan extends JMeterTestCase {
+
+    private File clientDir;
+
+    private File serverDir;
+
+    @Before
+    public void setUp() throws IOException {
+        clientDir = createTempDir("client");
+        serverDir = createTempDir("server");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(clientDir);
+        FileUtils.deleteDirectory(serverDir);
+    }
+
+    private static File createTempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        return dir;
+    }
+
+    private static HashTree createTree(String... values) {
+        TestPlan plan = new TestPlan("plan");
+        Arguments arguments = new Arguments();
+        for (String value : values) {
+            arguments.addArgument(new Argument("name", value));
+        }
+        plan.setUserDefinedVariables(arguments);
+        HashTree tree = new ListedHashTree();
+        tree.add(plan);
+        return tree;
+    }
+
+    @Test
+    public void testEncodeDecode() throws Exception {
+        byte[] testPlan = RemoteTestPlan.encode(createTree("value"));
+        HashTree tree = RemoteTestPlan.decode(testPlan);
+        TestElement plan = (TestElement) tree.getArray()[0];
+        assertEquals("plan", plan.getName());
+        testPlan[7]++; // version
+        try {
+            RemoteTestPlan.decode(testPlan);
+            fail("Version should have been checked");
+        } catch (StreamCorruptedException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDataFiles() throws Exception {
+        FileUtils.writeStringToFile(new File(clientDir, "users.csv"), "user1,pass1\n", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(clientDir, "data/items.csv"), "item1\n", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(clientDir.getParentFile(), clientDir.getName() + ".csv"),
+                "outside\n", StandardCharsets.UTF_8);
+        try {
+            DataFileBundle bundle = DataFileBundle.create(createTree("users.csv", "data/items.csv", "missing.csv",
+                    "${file}", "../" + clientDir.getName() + ".csv", "users.csv"), clientDir);
+            assertEquals(2, bundle.getHashes().size());
+            assertTrue(bundle.getHashes().containsKey("users.csv"));
+            assertTrue(bundle.getHashes().containsKey("data/items.csv"));
+
+            List<String> missing = DataFileBundle.getMissingFiles(serverDir, bundle.getHashes());
+            Collections.sort(missing);
+            assertEquals(Arrays.asList("data/items.csv", "users.csv"), missing);
+            DataFileBundle.writeFiles(serverDir, bundle.getCompressedContents(missing));
+            assertEquals("item1\n", FileUtils.readFileToString(new File(serverDir, "data/items.csv"), StandardCharsets.UTF_8));
+            assertEquals(0, DataFileBundle.getMissingFiles(serverDir, bundle.getHashes()).size());
+
+            // Only the modified file is sent again
+            FileUtils.writeStringToFile(new File(serverDir, "users.csv"), "old\n", StandardCharsets.UTF_8);
+            assertEquals(Arrays.asList("users.csv"), DataFileBundle.getMissingFiles(serverDir, bundle.getHashes()));
+        } finally {
+            FileUtils.deleteQuietly(new File(clientDir.getParentFile(), clientDir.getName() + ".csv"));
+        }
+    }
+
+    @Test
+    public void testFileOutsideBaseDirectory() throws Exception {
+        Map<String, String> hashes = Collections.singletonMap("../outside.csv", "hash");
+        try {
+            DataFileBundle.getMissingFiles(serverDir, hashes);
+            fail("File outside of the base directory should have been rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
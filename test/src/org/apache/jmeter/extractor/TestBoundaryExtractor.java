@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.extractor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.threads.JMeterContext;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBoundaryExtractor {
+
+    private BoundaryExtractor extractor;
+
+    private SampleResult result;
+
+    private JMeterVariables vars;
+
+    private JMeterContext jmctx;
+
+    @Before
+    public void setUp() {
+        jmctx = JMeterContextService.getContext();
+        extractor = new BoundaryExtractor();
+        extractor.setThreadContext(jmctx);
+        extractor.setRefName("value");
+        extractor.setLeftBoundary("<value field=\"");
+        extractor.setRightBoundary("\">");
+        result = new SampleResult();
+        result.setResponseData("<row><value field=\"RetCode\">LIS_OK</value>"
+                + "<value field=\"alias\"></value><value field=\"pinposition1\">1</value></row>", null);
+        result.setResponseHeaders("Header1: Value1\nHeader2: Value2\n");
+        vars = new JMeterVariables();
+        jmctx.setVariables(vars);
+        jmctx.setPreviousResult(result);
+    }
+
+    @Test
+    public void testMatchNumber() {
+        extractor.setMatchNumber(2);
+        extractor.process();
+        assertEquals("alias", vars.get("value"));
+        extractor.setMatchNumber(4);
+        extractor.setDefaultValue("default");
+        extractor.process();
+        assertEquals("default", vars.get("value"));
+    }
+
+    @Test
+    public void testRandomMatch() {
+        extractor.setMatchNumber(0);
+        extractor.process();
+        assertTrue(vars.get("value"), "RetCode alias pinposition1".contains(vars.get("value")));
+    }
+
+    @Test
+    public void testAllMatches() {
+        vars.put("value_4", "stale");
+        vars.put("value_matchNr", "4");
+        extractor.setMatchNumber(-1);
+        extractor.process();
+        assertEquals("3", vars.get("value_matchNr"));
+        assertEquals("RetCode", vars.get("value_1"));
+        assertEquals("alias", vars.get("value_2"));
+        assertEquals("pinposition1", vars.get("value_3"));
+        assertNull(vars.get("value_4"));
+    }
+
+    @Test
+    public void testEmptyBoundaries() {
+        extractor.setMatchNumber(1);
+        extractor.setLeftBoundary("");
+        extractor.setRightBoundary("<value");
+        extractor.process();
+        assertEquals("<row>", vars.get("value"));
+        extractor.setLeftBoundary("</value>");
+        extractor.setRightBoundary("");
+        extractor.setMatchNumber(-1);
+        extractor.process();
+        assertEquals("1", vars.get("value_matchNr"));
+        assertEquals("<value field=\"alias\"></value><value field=\"pinposition1\">1</value></row>",
+                vars.get("value_1"));
+    }
+
+    @Test
+    public void testHeadersAndVariable() {
+        extractor.setUseField(RegexExtractor.USE_HDRS);
+        extractor.setLeftBoundary("Header2: ");
+        extractor.setRightBoundary("\n");
+        extractor.setMatchNumber(1);
+        extractor.process();
+        assertEquals("Value2", vars.get("value"));
+        vars.put("content", "[a][bc]");
+        extractor.setScopeVariable("content");
+        extractor.setLeftBoundary("[");
+        extractor.setRightBoundary("]");
+        extractor.setMatchNumber(2);
+        extractor.process();
+        assertEquals("bc", vars.get("value"));
+    }
+
+    @Test
+    public void testEncodings() {
+        extractor.setMatchNumber(1);
+        extractor.setLeftBoundary("caf\u00e9=");
+        extractor.setRightBoundary(";");
+        for (String encoding : new String[] { "UTF-8", "ISO-8859-1", "windows-1252", "UTF-16" }) {
+            result.setResponseData("x;caf\u00e9=cr\u00e8me;", encoding);
+            extractor.process();
+            assertEquals(encoding, "cr\u00e8me", vars.get("value"));
+        }
+        // Multi-byte encoding, searched as text
+        extractor.setLeftBoundary("\u65e5=");
+        result.setResponseData("\u672c=x;\u65e5=\u672c;", "Shift_JIS");
+        extractor.process();
+        assertEquals("\u672c", vars.get("value"));
+    }
+
+    @Test
+    public void testSameValuesAsRegexExtractorOnLargeBody() {
+        StringBuilder body = new StringBuilder(1024 * 1024 + 100);
+        int rows = 0;
+        while (body.length() < 1024 * 1024) {
+            body.append("<tr><td class=\"id\">row-").append(rows++).append("</td><td>café ")
+                .append(rows % 7).append("</td></tr>\n");
+        }
+        result.setResponseData(body.toString(), "UTF-8");
+
+        RegexExtractor regexExtractor = new RegexExtractor();
+        regexExtractor.setThreadContext(jmctx);
+        regexExtractor.setRefName("regex");
+        regexExtractor.setRegex("<td class=\"id\">(.*?)</td>");
+        regexExtractor.setTemplate("$1$");
+        regexExtractor.setMatchNumber(-1);
+        regexExtractor.process();
+
+        extractor.setLeftBoundary("<td class=\"id\">");
+        extractor.setRightBoundary("</td>");
+        extractor.setMatchNumber(-1);
+        extractor.process();
+
+        assertEquals(Integer.toString(rows), vars.get("value_matchNr"));
+        assertEquals(vars.get("regex_matchNr"), vars.get("value_matchNr"));
+        for (int i = 1; i <= rows; i++) {
+            assertEquals(vars.get("regex_" + i), vars.get("value_" + i));
+        }
+    }
+}
@@ -32,6 +32,7 @@ import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.threads.JMeterContext;
 import org.apache.jmeter.threads.JMeterContextService;
 import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jmeter.util.regex.RegexEngine;
 import org.hamcrest.CoreMatchers;
 import org.junit.Before;
 import org.junit.Test;
@@ -130,6 +131,20 @@ public class TestRegexExtractor {
             assertEquals("value", vars.get("regVal"));
         }
 
+        @Test
+        public void testVariableExtractionWithEachEngine() throws Exception {
+            for (String engine : RegexEngine.getEngineNames()) {
+                vars.remove("regVal");
+                extractor.setRegexEngine(engine);
+                extractor.setRegex("<value field=\"(pinposition\\d+)\">(\\d+)</value>");
+                extractor.setTemplate("$2$_$1$");
+                extractor.setMatchNumber(3);
+                extractor.process();
+                assertEquals(engine, "6_pinposition3", vars.get("regVal"));
+                assertEquals(engine, "2", vars.get("regVal_g"));
+            }
+        }
+
         @Test
         public void testVariableExtraction() throws Exception {
             extractor.setRegex("<value field=\"(pinposition\\d+)\">(\\d+)</value>");
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.extractor.json.jsonpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.junit.Test;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
+public class TestJSONStreamingPath {
+
+    private static final String JSON = "{\"a\":{\"b\":[{\"c\":1,\"d\":\"x\"},{\"c\":\"two\"},{\"e\":3},"
+            + "{\"c\":{\"name\":\"inner\",\"f\":[1,2]}}]},\"name\":\"outer\",\"g\":[true,null,1.5]}";
+
+    private static final JsonProvider PROVIDER = Configuration.defaultConfiguration().jsonProvider();
+
+    private static List<Object> stream(String expression, String json, int maxMatches) throws Exception {
+        JSONStreamingPath path = JSONStreamingPath.compile(expression);
+        assertNotNull(expression, path);
+        return path.read(new StringReader(json), PROVIDER, maxMatches);
+    }
+
+    private static List<Object> extract(String expression, String json, int maxMatches) throws Exception {
+        SampleResult result = new SampleResult();
+        result.setResponseData(json.getBytes(StandardCharsets.UTF_8));
+        result.setDataEncoding("UTF-8");
+        return new JSONManager().extractWithJsonPath(result, expression, maxMatches);
+    }
+
+    @Test
+    public void testUnsupportedExpressions() {
+        assertNull(JSONStreamingPath.compile("$.a[?(@.c > 1)]"));
+        assertNull(JSONStreamingPath.compile("$.a[0:2]"));
+        assertNull(JSONStreamingPath.compile("$.a[0,1]"));
+        assertNull(JSONStreamingPath.compile("a.b"));
+        assertNull(JSONStreamingPath.compile("$.a.length()"));
+        assertNull(JSONStreamingPath.compile("$..name"));
+        assertNull(JSONStreamingPath.compile("$.a..f[*]"));
+    }
+
+    @Test
+    public void testSameResultsAsTree() throws Exception {
+        for (String expression : Arrays.asList("$.a.b[*].c", "$.a.b[1].c", "$['a']['b'][0]",
+                "$.g", "$.g[*]", "$.a.b[3].c.f[1]", "$.missing", "$.a.b[10]", "$.*")) {
+            assertEquals(expression, new JSONManager().extractWithJsonPath(JSON, expression),
+                    extract(expression, JSON, 0));
+        }
+    }
+
+    /**
+     * JSONPostProcessor uses the streaming entry point for responses of at least
+     * jsonpostprocessor.streaming.min_size bytes, the tree for smaller ones
+     */
+    @Test
+    public void testDeepScanSameOrderOnBothSidesOfThreshold() throws Exception {
+        for (String expression : Arrays.asList("$..name", "$..f[*]", "$..c")) {
+            List<Object> tree = new JSONManager().extractWithJsonPath(JSON, expression);
+            assertEquals(expression, tree, extract(expression, JSON, 0));
+            // First match is the same, whatever the match number requested
+            assertEquals(expression, tree.get(0), extract(expression, JSON, 1).get(0));
+        }
+        // The tree returns the property of an object before the matches of its other members
+        assertEquals(Arrays.<Object>asList("outer", "inner"), extract("$..name", JSON, 0));
+    }
+
+    @Test
+    public void testStopsAtMaxMatches() throws Exception {
+        // Document is truncated after the second match
+        String json = "{\"a\":[{\"c\":1},{\"c\":2},{\"c\":";
+        assertEquals(Arrays.<Object>asList(1, 2), stream("$.a[*].c", json, 2));
+        try {
+            stream("$.a[*].c", json, 0);
+            fail("Expected NotStreamableException");
+        } catch (JSONStreamingPath.NotStreamableException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFallbackToTree() throws Exception {
+        // Not strict JSON
+        assertEquals(Arrays.<Object>asList("v"), extract("$.a", "{'a':'v'}", 0));
+        // Duplicate key, last one wins
+        assertEquals(Arrays.<Object>asList("2"), extract("$.a", "{\"a\":1,\"a\":2}", 0));
+        // Filter
+        assertEquals(Arrays.<Object>asList("two"), extract("$.a.b[?(@.c == 'two')].c", JSON, 0));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.control;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.util.Date;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.protocol.http.control.CacheManager.CacheEntry;
+import org.apache.jmeter.protocol.http.sampler.HTTPSampleResult;
+import org.apache.jmeter.protocol.http.util.HTTPConstants;
+import org.junit.Test;
+
+public class TestCacheStore extends JMeterTestCase {
+
+    private static CacheEntry entry(String etag) {
+        return new CacheEntry(null, null, etag);
+    }
+
+    @Test
+    public void testEvictsUnreferencedEntriesFirst() {
+        CacheStore store = new CacheStore(3, false);
+        store.put("http://a/1", entry("1"));
+        store.put("http://a/2", entry("2"));
+        store.put("http://a/3", entry("3"));
+        // Give 1 a second chance
+        assertNotNull(store.get("http://a/1"));
+        store.put("http://a/4", entry("4"));
+        assertEquals(3, store.size());
+        assertNotNull(store.get("http://a/1"));
+        assertNull(store.get("http://a/2"));
+        assertNotNull(store.get("http://a/4"));
+    }
+
+    @Test
+    public void testZeroBudgetDisablesCache() {
+        CacheStore store = new CacheStore(0, false);
+        store.put("http://a/1", entry("1"));
+        assertTrue(store.isEmpty());
+    }
+
+    @Test
+    public void testSharedBudgetIsPerHost() {
+        CacheStore store = new CacheStore(2, true);
+        for (int i = 0; i < 10; i++) {
+            store.put("http://a:8080/" + i, entry("a" + i));
+            store.put("https://b/" + i, entry("b" + i));
+        }
+        assertEquals(4, store.size());
+        CacheEntry last = entry("last");
+        store.put("http://c/x", last);
+        assertSame(last, store.get("http://c/x"));
+        assertNull(store.get("http://d/x"));
+        store.clear();
+        assertTrue(store.isEmpty());
+    }
+
+    @Test
+    public void testHostOf() {
+        assertEquals("host:8080", CacheStore.hostOf("http://host:8080/path/x?y=/z"));
+        assertEquals("host", CacheStore.hostOf("https://host"));
+    }
+
+    @Test
+    public void testLastModifiedIsKeptVerbatim() {
+        String rfc1123 = "Sun, 06 Nov 1994 08:49:37 GMT";
+        assertEquals(rfc1123, new CacheEntry(rfc1123, null, null).getLastModified());
+        String rfc850 = "Sunday, 06-Nov-94 08:49:37 GMT";
+        assertEquals(rfc850, new CacheEntry(rfc850, null, null).getLastModified());
+        String invalid = "not a date";
+        assertEquals(invalid, new CacheEntry(invalid, null, null).getLastModified());
+        assertNull(new CacheEntry(null, null, null).getLastModified());
+    }
+
+    @Test
+    public void testSharedCacheIsCommonToClones() throws Exception {
+        CacheManager original = new CacheManager();
+        original.setShared(true);
+        original.setUseExpires(true);
+        original.setClearEachIteration(true);
+        original.setMaxSizePerHost(10);
+        original.testStarted();
+        CacheManager clone1 = (CacheManager) original.clone();
+        CacheManager clone2 = (CacheManager) original.clone();
+        clone1.testIterationStart(null);
+        clone2.testIterationStart(null);
+
+        URL url = new URL("http://localhost/shared");
+        HttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+        response.setHeader(HTTPConstants.EXPIRES, DateUtils.formatDate(new Date(System.currentTimeMillis() + 60000L)));
+        HTTPSampleResult result = new HTTPSampleResult();
+        result.setResponseCode("200");
+        result.setHTTPMethod("GET");
+        result.setURL(url);
+        clone1.saveDetails(response, result);
+
+        // Clearing each iteration must not apply to the shared cache
+        clone1.testIterationStart(null);
+        assertTrue(clone2.inCache(url));
+        original.testEnded();
+    }
+}
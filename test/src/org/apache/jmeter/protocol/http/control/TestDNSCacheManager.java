@@ -18,15 +18,116 @@
 
 package org.apache.jmeter.protocol.http.control;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.jmeter.junit.JMeterTestCase;
+import org.junit.After;
 import org.junit.Test;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Section;
 
 public class TestDNSCacheManager extends JMeterTestCase {
 
+    private static final String HOST = "www.example.com";
+
+    private StubDnsServer stub;
+
+    /**
+     * Minimal UDP DNS server answering every A query with the same addresses
+     */
+    private static final class StubDnsServer extends Thread {
+        private final DatagramSocket socket;
+        private final AtomicInteger queries = new AtomicInteger();
+        private final long ttl;
+        private final long delayMs;
+        private final InetAddress[] addresses;
+
+        StubDnsServer(long ttl, long delayMs, String... addresses) throws SocketException, UnknownHostException {
+            this.socket = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+            this.ttl = ttl;
+            this.delayMs = delayMs;
+            this.addresses = new InetAddress[addresses.length];
+            for (int i = 0; i < addresses.length; i++) {
+                this.addresses[i] = InetAddress.getByName(addresses[i]);
+            }
+            setDaemon(true);
+            start();
+        }
+
+        String getAddress() {
+            return "127.0.0.1:" + socket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[512];
+            while (!socket.isClosed()) {
+                try {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    socket.receive(packet);
+                    queries.incrementAndGet();
+                    Message query = new Message(packet.getData());
+                    Message response = new Message(query.getHeader().getID());
+                    response.getHeader().setFlag(Flags.QR);
+                    response.addRecord(query.getQuestion(), Section.QUESTION);
+                    for (InetAddress address : addresses) {
+                        response.addRecord(new ARecord(query.getQuestion().getName(), DClass.IN, ttl, address),
+                                Section.ANSWER);
+                    }
+                    if (delayMs > 0) {
+                        Thread.sleep(delayMs);
+                    }
+                    byte[] answer = response.toWire();
+                    socket.send(new DatagramPacket(answer, answer.length, packet.getSocketAddress()));
+                } catch (IOException | InterruptedException e) {
+                    // closed
+                }
+            }
+        }
+
+        void close() {
+            socket.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (stub != null) {
+            stub.close();
+        }
+    }
+
+    private DNSCacheManager createSharedManager(String selection) {
+        DNSCacheManager original = new DNSCacheManager();
+        original.setCustomResolver(true);
+        original.addServer(stub.getAddress());
+        original.setSharedCache(true);
+        original.setAddressSelection(selection);
+        original.setTimeoutMs(5000);
+        original.testStarted();
+        return original;
+    }
+
     @Test
     public void testCloneWithCustomResolverAndInvalidNameserver() throws UnknownHostException {
         DNSCacheManager original = new DNSCacheManager();
@@ -42,4 +143,226 @@ public class TestDNSCacheManager extends JMeterTestCase {
         }
     }
 
+    @Test
+    public void testSharedCacheCoalescesConcurrentLookups() throws Exception {
+        stub = new StubDnsServer(60, 200, "10.0.0.1");
+        DNSCacheManager original = createSharedManager(DNSCacheManager.SELECTION_DEFAULT);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicReference<Exception> failure = new AtomicReference<>();
+            Thread[] threads = new Thread[10];
+            for (int i = 0; i < threads.length; i++) {
+                final DNSCacheManager clone = (DNSCacheManager) original.clone();
+                threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            assertEquals("10.0.0.1", clone.resolve(HOST)[0].getHostAddress());
+                        } catch (Exception | AssertionError e) {
+                            failure.set(new Exception(e));
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            assertEquals(1, stub.queries.get());
+            // Iteration must not clear the shared cache
+            DNSCacheManager clone = (DNSCacheManager) original.clone();
+            clone.setClearEachIteration(true);
+            clone.testIterationStart(null);
+            clone.resolve(HOST);
+            assertEquals(1, stub.queries.get());
+        } finally {
+            original.testEnded();
+        }
+    }
+
+    @Test
+    public void testSharedCacheFollowsTtl() throws Exception {
+        stub = new StubDnsServer(0, 0, "10.0.0.1");
+        DNSCacheManager original = createSharedManager(DNSCacheManager.SELECTION_DEFAULT);
+        try {
+            DNSCacheManager clone = (DNSCacheManager) original.clone();
+            clone.resolve(HOST);
+            clone.resolve(HOST);
+            assertEquals(2, stub.queries.get());
+        } finally {
+            original.testEnded();
+        }
+    }
+
+    @Test
+    public void testSharedCacheRoundRobin() throws Exception {
+        stub = new StubDnsServer(60, 0, "10.0.0.1", "10.0.0.2");
+        DNSCacheManager original = createSharedManager(DNSCacheManager.SELECTION_ROUND_ROBIN);
+        try {
+            DNSCacheManager clone = (DNSCacheManager) original.clone();
+            InetAddress[] first = clone.resolve(HOST);
+            InetAddress[] second = clone.resolve(HOST);
+            assertEquals(2, first.length);
+            assertNotEquals(first[0], second[0]);
+            assertArrayEquals(first, clone.resolve(HOST));
+            assertEquals(1, stub.queries.get());
+        } finally {
+            original.testEnded();
+        }
+    }
+
+    @Test
+    public void testStickySelection() throws Exception {
+        stub = new StubDnsServer(60, 0, "10.0.0.1", "10.0.0.2");
+        DNSCacheManager original = createSharedManager(DNSCacheManager.SELECTION_STICKY);
+        try {
+            DNSCacheManager clone = (DNSCacheManager) original.clone();
+            InetAddress[] first = clone.resolve(HOST);
+            assertArrayEquals(first, clone.resolve(HOST));
+        } finally {
+            original.testEnded();
+        }
+    }
+
+    /**
+     * Clock of a {@link SharedDnsCache} which only moves when the test sets it
+     */
+    private static final class ManualClock implements SharedDnsCache.Clock {
+        private final AtomicLong time = new AtomicLong();
+
+        @Override
+        public long currentTimeMillis() {
+            return time.get();
+        }
+    }
+
+    /**
+     * Lookup of records of 200 ms which fails on the given calls
+     */
+    private static final class CountingLookup implements SharedDnsCache.Lookup {
+        private final AtomicInteger lookups = new AtomicInteger();
+        private final InetAddress address;
+        private final int[] failures;
+
+        CountingLookup(InetAddress address, int... failures) {
+            this.address = address;
+            this.failures = failures;
+        }
+
+        @Override
+        public SharedDnsCache.Resolution lookup(String host) {
+            int lookup = lookups.incrementAndGet();
+            for (int failure : failures) {
+                if (lookup == failure) {
+                    throw new IllegalStateException("Unexpected resolver failure");
+                }
+            }
+            return new SharedDnsCache.Resolution(new InetAddress[] { address }, 200);
+        }
+    }
+
+    /**
+     * Waits for the end of the background refresh of entry, which does not replace it
+     */
+    private static void awaitFailedRefresh(SharedDnsCache.Entry entry) throws InterruptedException {
+        for (int i = 0; i < 500 && entry.refreshing.get(); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Waits until the background refresh replaces entry
+     * @return the new entry
+     */
+    private static SharedDnsCache.Entry awaitRefreshedEntry(SharedDnsCache cache, SharedDnsCache.Entry entry)
+            throws Exception {
+        SharedDnsCache.Entry current = cache.getEntry(HOST);
+        for (int i = 0; i < 500 && current == entry; i++) {
+            Thread.sleep(10);
+            current = cache.getEntry(HOST);
+        }
+        return current;
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        ManualClock clock = new ManualClock();
+        CountingLookup lookup = new CountingLookup(InetAddress.getByName("10.0.0.1"));
+        SharedDnsCache cache = new SharedDnsCache(lookup, 1, 5000, clock);
+        try {
+            SharedDnsCache.Entry entry = cache.getEntry(HOST);
+            clock.time.set(159);
+            // Before the refresh time, the record is served without lookup
+            assertSame(entry, cache.getEntry(HOST));
+            assertFalse(entry.refreshing.get());
+            assertEquals(1, lookup.lookups.get());
+            clock.time.set(200);
+            // Expired, the caller waits for a new lookup
+            SharedDnsCache.Entry expired = entry;
+            entry = cache.getEntry(HOST);
+            assertNotSame(expired, entry);
+            assertEquals(2, lookup.lookups.get());
+            assertEquals(200, SharedDnsCache.getResolution(entry).resolvedAt);
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    public void testRefreshBeforeExpiry() throws Exception {
+        ManualClock clock = new ManualClock();
+        CountingLookup lookup = new CountingLookup(InetAddress.getByName("10.0.0.1"));
+        SharedDnsCache cache = new SharedDnsCache(lookup, 1, 5000, clock);
+        try {
+            SharedDnsCache.Entry entry = cache.getEntry(HOST);
+            clock.time.set(160);
+            // The record is refreshed in the background, the current one is still served
+            assertSame(entry, cache.getEntry(HOST));
+            SharedDnsCache.Entry refreshed = awaitRefreshedEntry(cache, entry);
+            assertNotSame(entry, refreshed);
+            assertEquals(2, lookup.lookups.get());
+            assertEquals(360, SharedDnsCache.getResolution(refreshed).expiresAt);
+            // The refreshed record is served after the expiry of the first one
+            clock.time.set(300);
+            assertSame(refreshed, cache.getEntry(HOST));
+            assertEquals(2, lookup.lookups.get());
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    public void testRefreshFailureAndShutdown() throws Exception {
+        final InetAddress address = InetAddress.getByName("10.0.0.1");
+        ManualClock clock = new ManualClock();
+        CountingLookup lookup = new CountingLookup(address, 2);
+        SharedDnsCache cache = new SharedDnsCache(lookup, 1, 5000, clock);
+        SharedDnsCache.Entry entry = cache.getEntry(HOST);
+        clock.time.set(170);
+        // Refresh fails in the background, the current record is still served
+        assertSame(entry, cache.getEntry(HOST));
+        awaitFailedRefresh(entry);
+        assertEquals(2, lookup.lookups.get());
+        assertFalse("A failed refresh must be retried", entry.refreshing.get());
+        // Retried on next use
+        clock.time.set(180);
+        assertSame(entry, cache.getEntry(HOST));
+        assertNotSame(entry, awaitRefreshedEntry(cache, entry));
+        assertEquals(3, lookup.lookups.get());
+        cache.shutdown();
+        // Lookups after shutdown must neither throw nor wait for resolver threads
+        entry = cache.getEntry(HOST);
+        assertEquals(address, SharedDnsCache.getResolution(entry).addresses[0]);
+        assertEquals(4, lookup.lookups.get());
+        clock.time.set(350);
+        assertSame(entry, cache.getEntry(HOST));
+        assertFalse(entry.refreshing.get());
+        assertEquals(4, lookup.lookups.get());
+    }
+
 }
@@ -34,6 +34,7 @@ import org.apache.jmeter.junit.JMeterTestCase;
 import org.apache.jmeter.protocol.http.sampler.HTTPNullSampler;
 import org.apache.jmeter.protocol.http.sampler.HTTPSamplerBase;
 import org.apache.jmeter.protocol.http.util.HTTPConstants;
+import org.apache.jmeter.testelement.property.TestElementProperty;
 import org.apache.jmeter.threads.JMeterContext;
 import org.apache.jmeter.threads.JMeterContextService;
 import org.junit.Assert;
@@ -601,4 +602,40 @@ public class TestHC4CookieManager extends JMeterTestCase {
             assertTrue(man.get(num).getSecure());
             assertEquals(0,man.get(num).getExpires()); // Show that maxlong now saved as 0
         }
+
+        // Header must be recomputed when the jar changes
+        @Test
+        public void testCookieHeaderFollowsJarChanges() throws Exception {
+            URL url = new URL("http://www.example.com/app/page");
+            man.addCookieFromHeader("a=1; Domain=example.com; Path=/", url);
+            assertEquals("a=1", man.getCookieHeaderForURL(url));
+            man.addCookieFromHeader("b=2; Path=/app", url);
+            assertEquals("b=2; a=1", man.getCookieHeaderForURL(url));
+            man.addCookieFromHeader("a=3; Domain=example.com; Path=/", url);
+            assertEquals(2, man.getCookieCount());
+            assertEquals("b=2; a=3", man.getCookieHeaderForURL(url));
+            assertEquals("a=3", man.getCookieHeaderForURL(new URL("http://other.example.com/")));
+            assertNull(man.getCookieHeaderForURL(new URL("http://www.example.org/app/page")));
+            // Cookies changed without going through the CookieManager API
+            man.getCookies().addItem(new Cookie("c", "4", "www.example.com", "/", false, 0));
+            assertEquals("b=2; a=3; c=4", man.getCookieHeaderForURL(url));
+            // Same number of cookies, but one of them replaced
+            man.getCookies().set(2, new TestElementProperty("d", new Cookie("d", "5", "www.example.com", "/", false, 0)));
+            assertEquals(3, man.getCookieCount());
+            assertEquals("b=2; a=3; d=5", man.getCookieHeaderForURL(url));
+        }
+
+        // Header must follow clear each iteration
+        @Test
+        public void testCookieHeaderAfterIterationReset() throws Exception {
+            man.setClearEachIteration(true);
+            man.testStarted();
+            CookieManager threadManager = (CookieManager) man.clone();
+            URL url = new URL("http://www.example.com/");
+            threadManager.addCookieFromHeader("a=1", url);
+            assertEquals("a=1", threadManager.getCookieHeaderForURL(url));
+            threadManager.testIterationStart(null);
+            assertEquals(0, threadManager.getCookieCount());
+            assertNull(threadManager.getCookieHeaderForURL(url));
+        }
 }
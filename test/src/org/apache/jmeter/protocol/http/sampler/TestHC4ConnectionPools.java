@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.threads.ThreadGroup;
+import org.junit.Test;
+
+public class TestHC4ConnectionPools extends JMeterTestCase {
+
+    private static final class CountingFactory implements HC4ConnectionPools.Factory {
+        final AtomicInteger created = new AtomicInteger();
+
+        @Override
+        public MeasuringConnectionManager create() {
+            created.incrementAndGet();
+            return new MeasuringConnectionManager(new SchemeRegistry(), SystemDefaultDnsResolver.INSTANCE, 2000, 2000);
+        }
+    }
+
+    @Test
+    public void testSharedPoolIsReferenceCounted() {
+        ThreadGroup threadGroup = new ThreadGroup();
+        threadGroup.setName("tg");
+        CountingFactory factory = new CountingFactory();
+        MeasuringConnectionManager first = HC4ConnectionPools.acquire(threadGroup, factory);
+        MeasuringConnectionManager second = HC4ConnectionPools.acquire(threadGroup, factory);
+        assertSame(first, second);
+        assertEquals(1, factory.created.get());
+        assertTrue(HC4ConnectionPools.isShared(first));
+
+        assertTrue(HC4ConnectionPools.release(first));
+        assertTrue(HC4ConnectionPools.isShared(first));
+        assertTrue(HC4ConnectionPools.release(second));
+        assertFalse(HC4ConnectionPools.isShared(first));
+
+        // Last user gone, a new pool is created
+        MeasuringConnectionManager third = HC4ConnectionPools.acquire(threadGroup, factory);
+        assertNotSame(first, third);
+        assertEquals(2, factory.created.get());
+        HC4ConnectionPools.release(third);
+    }
+
+    @Test
+    public void testThreadPoolIsNotShared() {
+        CountingFactory factory = new CountingFactory();
+        MeasuringConnectionManager first = HC4ConnectionPools.acquire(null, factory);
+        MeasuringConnectionManager second = HC4ConnectionPools.acquire(null, factory);
+        assertNotSame(first, second);
+        assertFalse(HC4ConnectionPools.isShared(first));
+        assertFalse(HC4ConnectionPools.release(first));
+        assertFalse(HC4ConnectionPools.release(second));
+        first.shutdown();
+        second.shutdown();
+    }
+
+    /**
+     * Resolves every host name to the loopback address, counting the lookups
+     */
+    private static final class LoopbackResolver implements DnsResolver {
+        final AtomicInteger lookups = new AtomicInteger();
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            lookups.incrementAndGet();
+            return new InetAddress[] { InetAddress.getByName("127.0.0.1") };
+        }
+    }
+
+    @Test
+    public void testScopeKey() {
+        ThreadGroup threadGroup = new ThreadGroup();
+        assertNull(HC4ConnectionPools.getScopeKey(HC4ConnectionPools.Scope.THREAD, threadGroup, null));
+        assertSame(threadGroup, HC4ConnectionPools.getScopeKey(HC4ConnectionPools.Scope.THREAD_GROUP, threadGroup, null));
+        assertNotNull(HC4ConnectionPools.getScopeKey(HC4ConnectionPools.Scope.GLOBAL, threadGroup, null));
+        // Per-thread state prevents sharing
+        assertNull(HC4ConnectionPools.getScopeKey(HC4ConnectionPools.Scope.THREAD_GROUP, threadGroup, "DNS Cache Manager"));
+        assertNull(HC4ConnectionPools.getScopeKey(HC4ConnectionPools.Scope.GLOBAL, threadGroup, "Keystore Configuration"));
+    }
+
+    @Test
+    public void testThreadsWithOwnResolvers() throws Exception {
+        final ThreadGroup threadGroup = new ThreadGroup();
+        final ServerSocket server = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+        final LoopbackResolver[] resolvers = { new LoopbackResolver(), new LoopbackResolver() };
+        final MeasuringConnectionManager[] managers = new MeasuringConnectionManager[resolvers.length];
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[resolvers.length];
+        try {
+            for (int i = 0; i < threads.length; i++) {
+                final int index = i;
+                threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            Object scopeKey = HC4ConnectionPools.getScopeKey(HC4ConnectionPools.Scope.GLOBAL,
+                                    threadGroup, "DNS Cache Manager");
+                            managers[index] = HC4ConnectionPools.acquire(scopeKey, new HC4ConnectionPools.Factory() {
+                                @Override
+                                public MeasuringConnectionManager create() {
+                                    SchemeRegistry registry = new SchemeRegistry();
+                                    registry.register(new Scheme("http", 80, PlainSocketFactory.getSocketFactory()));
+                                    return new MeasuringConnectionManager(registry, resolvers[index], 2000, 2000);
+                                }
+                            });
+                            HttpRoute route = new HttpRoute(new HttpHost("thread" + index + ".invalid", server.getLocalPort()));
+                            ManagedClientConnection connection = managers[index].requestConnection(route, null)
+                                    .getConnection(5000, TimeUnit.MILLISECONDS);
+                            connection.open(route, new BasicHttpContext(), new BasicHttpParams());
+                            connection.shutdown();
+                        } catch (Exception e) {
+                            failure.set(e);
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            assertNotSame(managers[0], managers[1]);
+            // Each thread resolved its host with its own resolver
+            assertEquals(1, resolvers[0].lookups.get());
+            assertEquals(1, resolvers[1].lookups.get());
+        } finally {
+            server.close();
+            for (MeasuringConnectionManager manager : managers) {
+                if (manager != null && !HC4ConnectionPools.release(manager)) {
+                    manager.shutdown();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUserToken() {
+        assertNull(HC4ConnectionPools.getUserToken(null));
+        ThreadGroup threadGroup = new ThreadGroup();
+        threadGroup.setName("tg");
+        assertTrue(HC4ConnectionPools.getUserToken(threadGroup).startsWith("pool:tg@"));
+        assertEquals(HC4ConnectionPools.getUserToken(threadGroup), HC4ConnectionPools.getUserToken(threadGroup));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class TestHTTPHCAbstractImpl {
+
+    @Test
+    public void testCachedContextNeverReset() {
+        for (int iteration = 1; iteration <= 5; iteration++) {
+            assertFalse(HTTPHCAbstractImpl.isSSLContextResetIteration(true, 1, iteration));
+            assertFalse(HTTPHCAbstractImpl.isSSLContextResetIteration(true, 3, iteration));
+        }
+    }
+
+    @Test
+    public void testContextResetEachIteration() {
+        for (int iteration = 1; iteration <= 5; iteration++) {
+            assertTrue(HTTPHCAbstractImpl.isSSLContextResetIteration(false, 1, iteration));
+            assertTrue(HTTPHCAbstractImpl.isSSLContextResetIteration(false, 0, iteration));
+        }
+    }
+
+    @Test
+    public void testContextKeptForIterations() {
+        boolean[] expected = { true, false, false, true, false, false, true };
+        for (int iteration = 1; iteration <= expected.length; iteration++) {
+            assertEquals("Iteration " + iteration, Boolean.valueOf(expected[iteration - 1]),
+                    Boolean.valueOf(HTTPHCAbstractImpl.isSSLContextResetIteration(false, 3, iteration)));
+        }
+    }
+
+    @Test
+    public void testContextResetOncePerIteration() throws Exception {
+        assertTrue(HTTPHCAbstractImpl.markSSLContextReset(1));
+        assertFalse(HTTPHCAbstractImpl.markSSLContextReset(1));
+        assertTrue(HTTPHCAbstractImpl.markSSLContextReset(2));
+        assertFalse(HTTPHCAbstractImpl.markSSLContextReset(2));
+        // Each thread resets its own context
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertTrue(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return Boolean.valueOf(HTTPHCAbstractImpl.markSSLContextReset(2));
+                }
+            }).get().booleanValue());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
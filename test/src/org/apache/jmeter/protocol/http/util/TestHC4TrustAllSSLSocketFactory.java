@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jorphan.exec.KeyToolUtils;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestHC4TrustAllSSLSocketFactory {
+
+    // Time the server waits before each handshake, so that the client handshakes last at least half of it
+    private static final long SERVER_DELAY = 200;
+
+    private static final String PASSWORD = "password";
+
+    private File keystoreDir;
+
+    private SSLServerSocket serverSocket;
+
+    private HC4TrustAllSSLSocketFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(KeyToolUtils.haveKeytool());
+        keystoreDir = File.createTempFile("keystore", "");
+        assertTrue(keystoreDir.delete());
+        assertTrue(keystoreDir.mkdir());
+        File keystore = new File(keystoreDir, "server.jks");
+        KeyToolUtils.genkeypair(keystore, "server", PASSWORD, 1, "cn=localhost", null);
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream in = new FileInputStream(keystore)) {
+            keyStore.load(in, PASSWORD.toCharArray());
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, PASSWORD.toCharArray());
+        SSLContext serverContext = SSLContext.getInstance("TLSv1.2");
+        serverContext.init(keyManagers.getKeyManagers(), null, null);
+        serverSocket = (SSLServerSocket) serverContext.getServerSocketFactory()
+                .createServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread server = new Thread("TLS server") {
+            @Override
+            public void run() {
+                serve();
+            }
+        };
+        server.setDaemon(true);
+        server.start();
+
+        // Same session cache for all the connections, like the SSL context of a JMeter thread
+        SSLContext clientContext = SSLContext.getInstance("TLSv1.2");
+        clientContext.init(null, new TrustManager[] { new TrustAllManager() }, null);
+        factory = new HC4TrustAllSSLSocketFactory(clientContext.getSocketFactory());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        JOrphanUtils.closeQuietly(serverSocket);
+        if (keystoreDir != null) {
+            FileUtils.deleteDirectory(keystoreDir);
+        }
+    }
+
+    private void serve() {
+        while (!serverSocket.isClosed()) {
+            try (SSLSocket socket = (SSLSocket) serverSocket.accept()) {
+                Thread.sleep(SERVER_DELAY);
+                socket.startHandshake();
+                InputStream in = socket.getInputStream();
+                while (in.read() != -1) {
+                    // wait for the client to close the connection
+                }
+            } catch (IOException e) {
+                // connection closed
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private SSLSocket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        return (SSLSocket) factory.createLayeredSocket(socket, "localhost", serverSocket.getLocalPort(), true);
+    }
+
+    @Test
+    public void testHandshakeTime() throws Exception {
+        HC4TrustAllSSLSocketFactory.takeHandshakeTime();
+        byte[] sessionId;
+        try (SSLSocket socket = connect()) {
+            sessionId = socket.getSession().getId();
+        }
+        long fullHandshake = HC4TrustAllSSLSocketFactory.takeHandshakeTime();
+        assertTrue("Full handshake took " + fullHandshake + " ms", fullHandshake >= SERVER_DELAY / 2);
+        assertEquals(0, HC4TrustAllSSLSocketFactory.takeHandshakeTime());
+
+        // The handshake of a resumed session is measured too
+        try (SSLSocket socket = connect()) {
+            assertArrayEquals(sessionId, socket.getSession().getId());
+        }
+        long resumedHandshake = HC4TrustAllSSLSocketFactory.takeHandshakeTime();
+        assertTrue("Resumed handshake took " + resumedHandshake + " ms", resumedHandshake >= SERVER_DELAY / 2);
+        assertEquals(0, HC4TrustAllSSLSocketFactory.takeHandshakeTime());
+    }
+
+    private static class TrustAllManager implements X509TrustManager {
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            // trusted
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            // trusted
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.Test;
+
+public class TestAggregateSampleSender extends JMeterTestCase {
+
+    private static class CollectingListener implements RemoteSampleListener, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        // As an RMI stub would, the copy of the listener sent to the server calls the listener of the client
+        private static CollectingListener clientListener;
+
+        private final transient List<SampleEvent> events = Collections.synchronizedList(new ArrayList<SampleEvent>());
+
+        private transient String endedHost;
+
+        CollectingListener() {
+            clientListener = this;
+        }
+
+        private Object readResolve() {
+            return clientListener;
+        }
+
+        @Override
+        public void testStarted() {
+        }
+
+        @Override
+        public void testStarted(String host) {
+        }
+
+        @Override
+        public void testEnded() {
+        }
+
+        @Override
+        public void testEnded(String host) {
+            endedHost = host;
+        }
+
+        @Override
+        public void processBatch(List<SampleEvent> samples) {
+            events.addAll(samples);
+        }
+
+        @Override
+        public void sampleOccurred(SampleEvent e) {
+            events.add(e);
+        }
+
+        @Override
+        public void sampleStarted(SampleEvent e) {
+        }
+
+        @Override
+        public void sampleStopped(SampleEvent e) {
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T copy(T object) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(object);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (T) ois.readObject();
+        }
+    }
+
+    private static SampleResult createResult(String label, long time, String code) {
+        SampleResult result = SampleResult.createTestSample(1000L, 1000L + time);
+        result.setSampleLabel(label);
+        result.setResponseCode(code);
+        result.setSuccessful("200".equals(code));
+        return result;
+    }
+
+    @Test
+    public void testHistogram() throws Exception {
+        ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+        for (long i = 1; i <= 10000; i++) {
+            histogram.add(i);
+        }
+        assertEquals(10000, histogram.getTotalCount());
+        assertEquals(1L, histogram.getValueAtPercentile(0));
+        assertEquals(100L, histogram.getValueAtPercentile(1));
+        assertEquals(5000, histogram.getValueAtPercentile(50), 5000 * 0.02);
+        assertEquals(9900, histogram.getValueAtPercentile(99), 9900 * 0.02);
+        assertEquals(10000, histogram.getValueAtPercentile(100), 10000 * 0.02);
+
+        ResponseTimeHistogram other = new ResponseTimeHistogram();
+        other.add(1000000L, 10000);
+        histogram.add(copy(other));
+        assertEquals(20000, histogram.getTotalCount());
+        assertEquals(1000000, histogram.getValueAtPercentile(75), 1000000 * 0.02);
+
+        ResponseTimeHistogram copied = copy(histogram);
+        assertEquals(histogram.getTotalCount(), copied.getTotalCount());
+        assertEquals(histogram.getValueAtPercentile(40), copied.getValueAtPercentile(40));
+        assertEquals(histogram.getValueAtPercentile(90), copied.getValueAtPercentile(90));
+    }
+
+    @Test
+    public void testBucketValues() throws Exception {
+        for (long value : new long[] { 0L, 1L, 127L, 128L, 129L, 1000L, 65535L, 1L << 40 }) {
+            ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+            histogram.add(value);
+            long bucketValue = histogram.getValueAtPercentile(50);
+            assertTrue(value + " counted as " + bucketValue, Math.abs(bucketValue - value) <= value / 64);
+        }
+    }
+
+    @Test
+    public void testAggregatedSampleResult() throws Exception {
+        AggregatedSampleResult result = new AggregatedSampleResult(createResult("label", 10L, "200"));
+        result.add(createResult("label", 10L, "200"));
+        result.add(createResult("label", 30L, "500"));
+        result.add(createResult("label", 20L, "404"));
+        result.add(createResult("label", 40L, "500"));
+        result.setErrorsAsResponseMessage();
+        assertEquals(4, result.getSampleCount());
+        assertEquals(3, result.getErrorCount());
+        assertFalse(result.isSuccessful());
+        assertEquals(100L, result.getTime());
+        assertEquals(10L, result.getMinTime());
+        assertEquals(40L, result.getMaxTime());
+        assertEquals(4, result.getHistogram().getTotalCount());
+        assertEquals(3, result.getErrorHistogram().getTotalCount());
+        assertEquals("404=1, 500=2", result.getResponseMessage());
+        assertEquals("500", result.getResponseCode());
+
+        AggregatedSampleResult copied = copy(result);
+        assertEquals(result.getErrorsByCode(), copied.getErrorsByCode());
+        assertEquals(40L, copied.getHistogram().getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testErrorsOfMultiSamples() throws Exception {
+        // 5 samples of 20 ms, 2 of which failed
+        StatisticalSampleResult multi = new StatisticalSampleResult(createResult("label", 20L, "500"));
+        for (int i = 0; i < 5; i++) {
+            multi.add(createResult("label", 20L, i < 2 ? "500" : "200"));
+        }
+        multi.setResponseCode("500");
+        assertEquals(2, multi.getErrorCount());
+        AggregatedSampleResult result = new AggregatedSampleResult(multi);
+        result.add(multi);
+        result.add(createResult("label", 10L, "404"));
+        result.setErrorsAsResponseMessage();
+        assertEquals(6, result.getSampleCount());
+        assertEquals(3, result.getErrorCount());
+        assertEquals(6, result.getHistogram().getTotalCount());
+        assertEquals(3, result.getErrorHistogram().getTotalCount());
+        assertEquals("404=1, 500=2", result.getResponseMessage());
+    }
+
+    @Test
+    public void testSender() throws Exception {
+        JMeterUtils.setProperty("sample_sender_aggregate_interval", "3600000");
+        try {
+            CollectingListener listener = new CollectingListener();
+            // The server gets a copy of the sender
+            AggregateSampleSender serverSender = copy(new AggregateSampleSender(listener));
+            for (int i = 0; i < 1000; i++) {
+                serverSender.sampleOccurred(new SampleEvent(
+                        createResult("label " + (i % 3), i, i % 100 == 0 ? "500" : "200"), "Thread Group"));
+            }
+            serverSender.testEnded("host1");
+            assertEquals("host1", listener.endedHost);
+            // The interval is not over, all the samples are sent at the end of the test
+            assertEquals(3, listener.events.size());
+            Map<String, AggregatedSampleResult> results = new HashMap<>();
+            for (SampleEvent event : listener.events) {
+                assertEquals("Thread Group", event.getThreadGroup());
+                results.put(event.getResult().getSampleLabel(), (AggregatedSampleResult) event.getResult());
+            }
+            AggregatedSampleResult result = results.get("label 0");
+            assertEquals(334, result.getSampleCount());
+            assertEquals(4, result.getErrorCount());
+            assertEquals(0L, result.getMinTime());
+            assertEquals(999L, result.getMaxTime());
+            assertEquals("500=4", result.getResponseMessage());
+            assertEquals(333, results.get("label 1").getSampleCount());
+            assertEquals(3, results.get("label 1").getErrorCount());
+            assertEquals(500, results.get("label 1").getHistogram().getValueAtPercentile(50), 500 * 0.02);
+        } finally {
+            JMeterUtils.getJMeterProperties().remove("sample_sender_aggregate_interval");
+        }
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jmeter.assertions.AssertionResult;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.Test;
+
+public class TestBinarySampleSender extends JMeterTestCase {
+
+    public static class CustomResult extends SampleResult {
+        private static final long serialVersionUID = 1L;
+
+        private String extra;
+
+        private long count;
+
+        public CustomResult() {
+            super();
+        }
+    }
+
+    public static class OpaqueResult extends SampleResult {
+        private static final long serialVersionUID = 1L;
+
+        private List<String> names = new ArrayList<>();
+
+        public OpaqueResult() {
+            super();
+        }
+    }
+
+    private static class Decoded implements BinarySampleCodec.RecordListener {
+        private final List<SampleEvent> events = new ArrayList<>();
+
+        private final List<Integer> listenerIds = new ArrayList<>();
+
+        private String endedHost;
+
+        @Override
+        public void sampleOccurred(int listenerId, SampleEvent event) {
+            listenerIds.add(Integer.valueOf(listenerId));
+            events.add(event);
+        }
+
+        @Override
+        public void testEnded(int listenerId, String host) {
+            endedHost = host;
+        }
+    }
+
+    private static class CollectingListener implements RemoteSampleListener, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<SampleEvent> events = Collections.synchronizedList(new ArrayList<SampleEvent>());
+
+        private final transient CountDownLatch ended = new CountDownLatch(1);
+
+        private transient volatile int eventsAtEnd;
+
+        private transient volatile boolean slow;
+
+        @Override
+        public void testStarted() {
+        }
+
+        @Override
+        public void testStarted(String host) {
+        }
+
+        @Override
+        public void testEnded() {
+        }
+
+        @Override
+        public void testEnded(String host) {
+            eventsAtEnd = events.size();
+            ended.countDown();
+        }
+
+        @Override
+        public void processBatch(List<SampleEvent> samples) {
+            events.addAll(samples);
+        }
+
+        @Override
+        public void sampleOccurred(SampleEvent e) {
+            if (slow) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            events.add(e);
+        }
+
+        @Override
+        public void sampleStarted(SampleEvent e) {
+        }
+
+        @Override
+        public void sampleStopped(SampleEvent e) {
+        }
+    }
+
+    private static SampleResult createResult(String label) throws Exception {
+        SampleResult result = new SampleResult(1000L, 42L);
+        result.setSampleLabel(label);
+        result.setThreadName("Thread Group 1-1");
+        result.setResponseCode("200");
+        result.setResponseMessage("OK");
+        result.setSuccessful(true);
+        result.setDataType(SampleResult.TEXT);
+        result.setDataEncoding("UTF-8");
+        result.setContentType("text/plain");
+        result.setResponseHeaders("Content-Type: text/plain\n");
+        result.setResponseData("r\u00e9ponse", "UTF-8");
+        result.setLatency(10L);
+        result.setConnectTime(5L);
+        result.setSentBytes(123L);
+        result.setAllThreads(7);
+        result.setGroupThreads(3);
+        result.setURL(new URL("http://jmeter.apache.org/" + label));
+        return result;
+    }
+
+    private static List<SampleEvent> roundTrip(BinarySampleCodec.Encoder encoder, BinarySampleCodec.Decoder decoder,
+            SampleEvent... events) throws Exception {
+        encoder.reset();
+        for (SampleEvent event : events) {
+            encoder.writeSample(3, event);
+        }
+        Decoded decoded = new Decoded();
+        decoder.decode(encoder.getBuffer(), encoder.size(), decoded);
+        assertEquals(events.length, decoded.events.size());
+        for (Integer listenerId : decoded.listenerIds) {
+            assertEquals(3, listenerId.intValue());
+        }
+        return decoded.events;
+    }
+
+    private static void assertSameResult(SampleResult expected, SampleResult actual) {
+        assertSame(expected.getClass(), actual.getClass());
+        assertEquals(expected.getSampleLabel(), actual.getSampleLabel());
+        assertEquals(expected.getThreadName(), actual.getThreadName());
+        assertEquals(expected.getTimeStamp(), actual.getTimeStamp());
+        assertEquals(expected.getStartTime(), actual.getStartTime());
+        assertEquals(expected.getEndTime(), actual.getEndTime());
+        assertEquals(expected.getTime(), actual.getTime());
+        assertEquals(expected.getLatency(), actual.getLatency());
+        assertEquals(expected.getConnectTime(), actual.getConnectTime());
+        assertEquals(expected.getResponseCode(), actual.getResponseCode());
+        assertEquals(expected.getResponseMessage(), actual.getResponseMessage());
+        assertEquals(expected.isSuccessful(), actual.isSuccessful());
+        assertEquals(expected.getDataType(), actual.getDataType());
+        assertEquals(expected.getDataEncodingNoDefault(), actual.getDataEncodingNoDefault());
+        assertEquals(expected.getContentType(), actual.getContentType());
+        assertEquals(expected.getResponseHeaders(), actual.getResponseHeaders());
+        assertArrayEquals(expected.getResponseData(), actual.getResponseData());
+        assertEquals(expected.getBytesAsLong(), actual.getBytesAsLong());
+        assertEquals(expected.getSentBytes(), actual.getSentBytes());
+        assertEquals(expected.getAllThreads(), actual.getAllThreads());
+        assertEquals(expected.getGroupThreads(), actual.getGroupThreads());
+        assertEquals(expected.getUrlAsString(), actual.getUrlAsString());
+        assertEquals(expected.getSubResults().length, actual.getSubResults().length);
+        for (int i = 0; i < expected.getSubResults().length; i++) {
+            assertSameResult(expected.getSubResults()[i], actual.getSubResults()[i]);
+            assertSame(actual, actual.getSubResults()[i].getParent());
+        }
+    }
+
+    @Test
+    public void testCodec() throws Exception {
+        SampleResult result = createResult("parent");
+        result.addSubResult(createResult("child"));
+        AssertionResult assertionResult = new AssertionResult("Response Assertion");
+        assertionResult.setFailure(true);
+        assertionResult.setFailureMessage("Test failed");
+        result.addAssertionResult(assertionResult);
+        SampleEvent event = new SampleEvent(result, "Thread Group", "host1", new String[] { "a", null }, true);
+
+        SampleEvent decoded = roundTrip(new BinarySampleCodec.Encoder(), new BinarySampleCodec.Decoder(), event).get(0);
+        assertEquals("Thread Group", decoded.getThreadGroup());
+        assertEquals("host1", decoded.getHostname());
+        assertTrue(decoded.isTransactionSampleEvent());
+        assertArrayEquals(new String[] { "a", null }, decoded.getVarValues());
+        assertSameResult(result, decoded.getResult());
+        AssertionResult[] assertionResults = decoded.getResult().getAssertionResults();
+        assertEquals(1, assertionResults.length);
+        assertEquals("Response Assertion", assertionResults[0].getName());
+        assertTrue(assertionResults[0].isFailure());
+        assertFalse(assertionResults[0].isError());
+        assertEquals("Test failed", assertionResults[0].getFailureMessage());
+        assertEquals(0, decoded.getResult().getSubResults()[0].getAssertionResults().length);
+    }
+
+    @Test
+    public void testDictionary() throws Exception {
+        BinarySampleCodec.Encoder encoder = new BinarySampleCodec.Encoder();
+        BinarySampleCodec.Decoder decoder = new BinarySampleCodec.Decoder();
+        SampleResult result = createResult("label");
+        SampleEvent event = new SampleEvent(result, "Thread Group", "host1", new String[0], false);
+        roundTrip(encoder, decoder, event);
+        int firstSize = encoder.size();
+        // The schema and the strings are not sent again
+        SampleEvent decoded = roundTrip(encoder, decoder, event).get(0);
+        assertTrue("Second frame: " + encoder.size() + ", first frame: " + firstSize, encoder.size() < firstSize / 2);
+        assertSameResult(result, decoded.getResult());
+    }
+
+    @Test
+    public void testSubclass() throws Exception {
+        CustomResult result = new CustomResult();
+        result.setSampleLabel("custom");
+        result.extra = "extra";
+        result.count = -5L;
+        OpaqueResult opaque = new OpaqueResult();
+        opaque.setSampleLabel("opaque");
+        opaque.names.add("name");
+        List<SampleEvent> decoded = roundTrip(new BinarySampleCodec.Encoder(), new BinarySampleCodec.Decoder(),
+                new SampleEvent(result, "Thread Group"), new SampleEvent(opaque, "Thread Group"));
+        CustomResult decodedResult = (CustomResult) decoded.get(0).getResult();
+        assertEquals("custom", decodedResult.getSampleLabel());
+        assertEquals("extra", decodedResult.extra);
+        assertEquals(-5L, decodedResult.count);
+        assertNull(decodedResult.getURL());
+        // Sent serialized
+        OpaqueResult decodedOpaque = (OpaqueResult) decoded.get(1).getResult();
+        assertEquals("opaque", decodedOpaque.getSampleLabel());
+        assertEquals(Arrays.asList("name"), decodedOpaque.names);
+    }
+
+    @Test
+    public void testTestEnded() throws Exception {
+        BinarySampleCodec.Encoder encoder = new BinarySampleCodec.Encoder();
+        encoder.writeTestEnded(5, "host1");
+        Decoded decoded = new Decoded();
+        new BinarySampleCodec.Decoder().decode(encoder.getBuffer(), encoder.size(), decoded);
+        assertEquals("host1", decoded.endedHost);
+    }
+
+    private static void sendSamples(int count) throws Exception {
+        CollectingListener listener = new CollectingListener();
+        BinarySampleSender clientSender = new BinarySampleSender(listener);
+        // The server gets a copy of the sender, which connects to the client
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(clientSender);
+        }
+        BinarySampleSender serverSender;
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            serverSender = (BinarySampleSender) ois.readObject();
+        }
+        for (int i = 0; i < count; i++) {
+            SampleResult result = createResult("label " + (i % 10));
+            result.setResponseData(("response " + i).getBytes(StandardCharsets.UTF_8));
+            serverSender.sampleOccurred(new SampleEvent(result, "Thread Group"));
+        }
+        serverSender.testEnded("host1");
+        assertTrue("Test did not end", listener.ended.await(30, TimeUnit.SECONDS));
+        assertEquals(count, listener.events.size());
+        for (int i = 0; i < count; i++) {
+            SampleResult result = listener.events.get(i).getResult();
+            assertEquals("label " + (i % 10), result.getSampleLabel());
+            assertEquals("response " + i, result.getResponseDataAsString());
+        }
+    }
+
+    @Test
+    public void testConnection() throws Exception {
+        JMeterUtils.setProperty("binary.sample_sender.host", "127.0.0.1");
+        JMeterUtils.setProperty("binary.sample_sender.queue.size", "10");
+        try {
+            sendSamples(1000);
+            JMeterUtils.setProperty("binary.sample_sender.compression", "deflate");
+            sendSamples(1000);
+        } finally {
+            JMeterUtils.getJMeterProperties().remove("binary.sample_sender.compression");
+            JMeterUtils.getJMeterProperties().remove("binary.sample_sender.queue.size");
+        }
+    }
+
+    @Test
+    public void testConnectionFailure() throws Exception {
+        JMeterUtils.setProperty("binary.sample_sender.host", "127.0.0.1");
+        CollectingListener listener = new CollectingListener();
+        listener.slow = true;
+        BinarySampleSender sender = new BinarySampleSender(listener);
+        // The receiver closes the connection without granting any credit
+        BinarySampleConnection connection;
+        try (ServerSocket receiver = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"))) {
+            connection = BinarySampleConnection.open("127.0.0.1", receiver.getLocalPort(), 10, false);
+            try (Socket socket = receiver.accept()) {
+                socket.getInputStream().read(new byte[6]);
+            }
+        }
+        int count = 100;
+        for (int i = 0; i < count; i++) {
+            assertTrue(connection.sampleOccurred(sender, new SampleEvent(createResult("label"), "Thread Group")));
+        }
+        assertTrue(connection.testEnded(sender, "host1"));
+        assertTrue("Test did not end", listener.ended.await(30, TimeUnit.SECONDS));
+        // the samples sent with RMI are not overtaken by the end of the test
+        assertEquals(count, listener.eventsAtEnd);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.samplers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.After;
+import org.junit.Test;
+
+public class TestDiskStoreSampleSender extends JMeterTestCase {
+
+    private static final int THREADS = 4;
+
+    private static final int SAMPLES_PER_THREAD = 2500;
+
+    private static class CollectingListener implements RemoteSampleListener, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        // As an RMI stub would, the copy of the listener sent to the server calls the listener of the client
+        private static CollectingListener clientListener;
+
+        private final transient List<SampleEvent> events = Collections.synchronizedList(new ArrayList<SampleEvent>());
+
+        private final transient AtomicInteger failures;
+
+        private transient volatile String endedHost;
+
+        CollectingListener(int failures) {
+            this.failures = new AtomicInteger(failures);
+            clientListener = this;
+        }
+
+        private Object readResolve() {
+            return clientListener;
+        }
+
+        @Override
+        public void testStarted() {
+        }
+
+        @Override
+        public void testStarted(String host) {
+        }
+
+        @Override
+        public void testEnded() {
+        }
+
+        @Override
+        public void testEnded(String host) {
+            endedHost = host;
+        }
+
+        @Override
+        public void processBatch(List<SampleEvent> samples) throws RemoteException {
+            if (failures.getAndDecrement() > 0) {
+                throw new RemoteException("Client not available");
+            }
+            events.addAll(samples);
+        }
+
+        @Override
+        public void sampleOccurred(SampleEvent e) {
+            events.add(e);
+        }
+
+        @Override
+        public void sampleStarted(SampleEvent e) {
+        }
+
+        @Override
+        public void sampleStopped(SampleEvent e) {
+        }
+    }
+
+    @After
+    public void tearDown() {
+        JMeterUtils.getJMeterProperties().remove("diskstore.sample_sender.buffer.size");
+        JMeterUtils.getJMeterProperties().remove("diskstore.sample_sender.send.interval");
+    }
+
+    private static DiskStoreSampleSender createServerSender(CollectingListener listener) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(new DiskStoreSampleSender(listener));
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (DiskStoreSampleSender) ois.readObject();
+        }
+    }
+
+    private static void sendSamples(final DiskStoreSampleSender sender) throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final String threadName = "Thread Group 1-" + t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < SAMPLES_PER_THREAD; i++) {
+                        SampleResult result = SampleResult.createTestSample(i);
+                        result.setSampleLabel("sample " + i);
+                        result.setThreadName(threadName);
+                        result.setResponseData("response " + i, "UTF-8");
+                        sender.sampleOccurred(new SampleEvent(result, "Thread Group"));
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private static void assertAllReceivedOnce(CollectingListener listener) {
+        assertEquals("host1", listener.endedHost);
+        assertEquals(THREADS * SAMPLES_PER_THREAD, listener.events.size());
+        Set<String> received = new HashSet<>();
+        for (SampleEvent event : listener.events) {
+            SampleResult result = event.getResult();
+            assertEquals("response " + result.getTime(), result.getResponseDataAsString());
+            assertTrue(received.add(result.getThreadName() + " " + result.getSampleLabel()));
+        }
+    }
+
+    @Test
+    public void testSentAtEnd() throws Exception {
+        JMeterUtils.setProperty("diskstore.sample_sender.send.interval", "0");
+        CollectingListener listener = new CollectingListener(0);
+        DiskStoreSampleSender sender = createServerSender(listener);
+        sendSamples(sender);
+        Thread.sleep(100);
+        assertEquals(0, listener.events.size());
+        sender.testEnded("host1");
+        assertAllReceivedOnce(listener);
+    }
+
+    @Test
+    public void testSentDuringTest() throws Exception {
+        JMeterUtils.setProperty("diskstore.sample_sender.buffer.size", "1000");
+        JMeterUtils.setProperty("diskstore.sample_sender.send.interval", "20");
+        CollectingListener listener = new CollectingListener(0);
+        DiskStoreSampleSender sender = createServerSender(listener);
+        sendSamples(sender);
+        long end = System.currentTimeMillis() + 10000;
+        while (listener.events.size() < THREADS * SAMPLES_PER_THREAD && System.currentTimeMillis() < end) {
+            Thread.sleep(20);
+        }
+        // The buffers are written when they are full or old
+        assertEquals(THREADS * SAMPLES_PER_THREAD, listener.events.size());
+        sender.testEnded("host1");
+        assertAllReceivedOnce(listener);
+    }
+
+    @Test
+    public void testSentAgainAfterFailure() throws Exception {
+        JMeterUtils.setProperty("diskstore.sample_sender.buffer.size", "1000");
+        JMeterUtils.setProperty("diskstore.sample_sender.send.interval", "20");
+        CollectingListener listener = new CollectingListener(3);
+        DiskStoreSampleSender sender = createServerSender(listener);
+        sendSamples(sender);
+        sender.testEnded("host1");
+        assertAllReceivedOnce(listener);
+    }
+}
@@ -21,12 +21,14 @@ package org.apache.jmeter.samplers;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.StringWriter;
 
 import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.util.ByteArrayCharSequence;
 import org.apache.jmeter.util.Calculator;
 import org.apache.log.LogTarget;
 import org.apache.log.format.Formatter;
@@ -343,5 +345,31 @@ public class TestSampleResult {
             assertEquals("aBCd",res.getDataEncodingNoDefault());
             assertEquals("text",res.getDataType());         
         }
+
+        @Test
+        public void testResponseDataAsCharSequence() throws Exception {
+            SampleResult res = new SampleResult();
+            res.setResponseData("<p>caf\u00e9</p>", "ISO-8859-1");
+            CharSequence text = res.getResponseDataAsCharSequence();
+            assertTrue(text instanceof ByteArrayCharSequence);
+            assertEquals("<p>caf\u00e9</p>", text.toString());
+            assertEquals('\u00e9', text.charAt(6));
+            assertEquals("caf\u00e9", text.subSequence(3, 7).toString());
+            assertEquals(3, ByteArrayCharSequence.indexOf(text, "caf", 0));
+            assertEquals(-1, ByteArrayCharSequence.indexOf(text, "cafe", 0));
+
+            res.setResponseData("<p>cafe</p>", "UTF-8");
+            assertTrue(res.getResponseDataAsCharSequence() instanceof ByteArrayCharSequence);
+            assertEquals("<p>cafe</p>", res.getResponseDataAsCharSequence().toString());
+
+            // Multi-byte characters are decoded
+            res.setResponseData("<p>caf\u00e9</p>", "UTF-8");
+            assertEquals("<p>caf\u00e9</p>", res.getResponseDataAsCharSequence());
+
+            // Already decoded
+            res.setResponseData("<p>cafe</p>", "ISO-8859-1");
+            String asString = res.getResponseDataAsString();
+            assertSame(asString, res.getResponseDataAsCharSequence());
+        }
 }
 
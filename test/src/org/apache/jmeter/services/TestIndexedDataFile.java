@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestIndexedDataFile extends JMeterTestCase {
+
+    private static final FileServer FS = FileServer.getFileServer();
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("data", ".csv");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FS.closeFiles();
+        FileUtils.deleteQuietly(file);
+    }
+
+    private void write(String content) throws IOException {
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRows() throws Exception {
+        write("a1,b1\r\n\na3,\u00e73\ra4,b4");
+        IndexedDataFile dataFile = new IndexedDataFile(file, StandardCharsets.UTF_8, false);
+        assertEquals(4, dataFile.getRowCount());
+        assertArrayEquals(new String[] { "a1", "b1" }, dataFile.getRow(0, ","));
+        assertEquals("", dataFile.getLine(1));
+        assertArrayEquals(new String[] { "a3", "\u00e73" }, dataFile.getRow(2, ","));
+        assertArrayEquals(new String[] { "a4", "b4" }, dataFile.getRow(3, ","));
+    }
+
+    @Test
+    public void testQuotedRows() throws Exception {
+        write("a,b\n\"a\n1\",\"b\"\"1\"\r\n\"a2\",b2\n");
+        IndexedDataFile dataFile = new IndexedDataFile(file, StandardCharsets.UTF_8, true);
+        assertEquals(3, dataFile.getRowCount());
+        assertArrayEquals(new String[] { "a\n1", "b\"1" }, dataFile.getRow(1, ","));
+        assertArrayEquals(new String[] { "a2", "b2" }, dataFile.getRow(2, ","));
+        // without quoting, the line separator in the quoted field starts a row
+        assertEquals(4, new IndexedDataFile(file, StandardCharsets.UTF_8, false).getRowCount());
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        write("");
+        assertEquals(0, new IndexedDataFile(file, StandardCharsets.UTF_8, false).getRowCount());
+        DataSetCursor cursor = FS.reserveDataSet(file.getPath(), "UTF-8", "alias", false, false);
+        assertEquals(0, cursor.next(true, ",").length);
+        try {
+            FS.reserveDataSet(file.getPath(), "UTF-8", "header", true, false);
+            fail("Expected IllegalArgumentException for missing header");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testCharsets() throws Exception {
+        assertTrue(IndexedDataFile.isSupported(StandardCharsets.UTF_8));
+        assertTrue(IndexedDataFile.isSupported(StandardCharsets.ISO_8859_1));
+        assertFalse(IndexedDataFile.isSupported(StandardCharsets.UTF_16));
+        write("a\n");
+        assertNull(FS.reserveDataSet(file.getPath(), "UTF-16", "alias", false, false));
+    }
+
+    @Test
+    public void testCursor() throws Exception {
+        write("name\nv1\nv2\n");
+        DataSetCursor cursor = FS.reserveDataSet(file.getPath(), null, "alias", true, false);
+        assertSame(cursor, FS.reserveDataSet(file.getPath(), null, "alias", true, false));
+        assertTrue(FS.filesOpen());
+        assertEquals("name", cursor.getHeaderLine());
+        assertEquals(2, cursor.getRowCount());
+        assertEquals("v1", cursor.next(true, ",")[0]);
+        assertEquals("v2", cursor.next(true, ",")[0]);
+        assertEquals("v1", cursor.next(true, ",")[0]);
+        // each alias has its own position
+        DataSetCursor other = FS.reserveDataSet(file.getPath(), null, "other", true, false);
+        assertEquals("v1", other.next(false, ",")[0]);
+        assertEquals("v2", other.next(false, ",")[0]);
+        assertEquals(0, other.next(false, ",").length);
+        FS.closeFiles();
+        assertFalse(FS.filesOpen());
+    }
+
+    private void writeRows(int rows) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            content.append(i).append(",value").append(i).append('\n');
+        }
+        write(content.toString());
+    }
+
+    private static List<String> readConcurrently(final DataSetCursor cursor) throws InterruptedException {
+        final List<String> read = Collections.synchronizedList(new ArrayList<String>());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        String[] row;
+                        while ((row = cursor.next(false, ",")).length > 0) {
+                            assertEquals("value" + row[0], row[1]);
+                            read.add(row[0]);
+                        }
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return read;
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final int rows = 10000;
+        writeRows(rows);
+        List<String> read = readConcurrently(FS.reserveDataSet(file.getPath(), null, "alias", false, false));
+        // each row is read once
+        assertEquals(rows, read.size());
+        assertEquals(rows, new HashSet<>(read).size());
+    }
+
+    @Test
+    public void testPermutation() {
+        for (long size = 1; size <= 130; size++) {
+            long key = size * 31;
+            Set<Long> values = new HashSet<>();
+            for (long i = 0; i < size; i++) {
+                long value = DataSetCursor.permute(i, key, size);
+                assertTrue(value >= 0 && value < size);
+                values.add(Long.valueOf(value));
+            }
+            assertEquals(size, values.size());
+        }
+    }
+
+    @Test
+    public void testUniqueRows() throws Exception {
+        final int rows = 10000;
+        writeRows(rows);
+        DataSetCursor cursor = FS.reserveDataSet(file.getPath(), null, "alias", false, false,
+                DataSetCursor.Selection.UNIQUE, 0, 1);
+        List<String> read = readConcurrently(cursor);
+        assertEquals(rows, read.size());
+        assertEquals(rows, new HashSet<>(read).size());
+        // the rows can be read again when recycled
+        assertEquals(2, cursor.next(true, ",").length);
+    }
+
+    @Test
+    public void testRandomRows() throws Exception {
+        writeRows(10);
+        DataSetCursor cursor = FS.reserveDataSet(file.getPath(), null, "alias", false, false,
+                DataSetCursor.Selection.RANDOM, 0, 1);
+        for (int i = 0; i < 100; i++) {
+            String[] row = cursor.next(false, ",");
+            assertEquals("value" + row[0], row[1]);
+        }
+    }
+
+    @Test
+    public void testPartitions() throws Exception {
+        write("header\n0\n1\n2\n3\n4\n5\n6\n7\n8\n9\n");
+        List<String> read = new ArrayList<>();
+        for (int partition = 0; partition < 3; partition++) {
+            DataSetCursor cursor = FS.reserveDataSet(file.getPath(), null, "alias" + partition, true, false,
+                    DataSetCursor.Selection.SEQUENTIAL, partition, 3);
+            assertEquals(partition == 0 ? 4 : 3, cursor.getRowCount());
+            String[] row;
+            while ((row = cursor.next(false, ",")).length > 0) {
+                assertEquals(partition, Integer.parseInt(row[0]) % 3);
+                read.add(row[0]);
+            }
+        }
+        assertEquals(10, new HashSet<>(read).size());
+        // more partitions than rows
+        assertEquals(0, FS.reserveDataSet(file.getPath(), null, "alias10", true, false,
+                DataSetCursor.Selection.SEQUENTIAL, 10, 11).next(true, ",").length);
+    }
+}
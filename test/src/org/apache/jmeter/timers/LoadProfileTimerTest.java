@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.timers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.util.JMeterStopThreadException;
+import org.junit.Test;
+
+public class LoadProfileTimerTest extends JMeterTestCase {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testProfile() throws Exception {
+        // 10/s during 2 s, ramp from 10/s to 30/s in 2 s, nothing during 1 s, then 5/s
+        LoadProfile profile = new LoadProfile(new double[] { 2, 2, 1, 0 },
+                new double[] { 10, 10, 0, 5 }, new double[] { 10, 30, 0, 5 });
+        assertEquals(5.0, profile.getDuration(), 0);
+        assertEquals(10.0, profile.getRate(SECOND), 1e-9);
+        assertEquals(20.0, profile.getRate(3 * SECOND), 1e-9);
+        assertEquals(0.0, profile.getRate(SECOND * 9 / 2), 1e-9);
+        assertEquals(5.0, profile.getRate(10 * SECOND), 1e-9);
+
+        assertEquals(0, profile.getTime(0));
+        assertEquals(SECOND, profile.getTime(10));
+        assertEquals(2 * SECOND, profile.getTime(20));
+        // 10.t + 5.t^2 = 15 during the ramp
+        assertEquals(2 * SECOND + SECOND, profile.getTime(35));
+        // no arrivals during the pause, then one every 200 ms
+        assertEquals(5 * SECOND, profile.getTime(60), 1);
+        assertEquals(5 * SECOND + SECOND / 5, profile.getTime(61), 1);
+
+        assertEquals(0, profile.getArrivals(0));
+        assertEquals(35, profile.getArrivals(3 * SECOND));
+        assertEquals(60, profile.getArrivals(SECOND * 9 / 2));
+        for (long arrival = 0; arrival < 100; arrival++) {
+            long time = profile.getTime(arrival);
+            assertTrue(profile.getArrivals(time - 1) <= arrival);
+            assertTrue(profile.getArrivals(time + 1) > arrival);
+        }
+    }
+
+    @Test
+    public void testEndOfProfile() throws Exception {
+        LoadProfile profile = new LoadProfile(new double[] { 1 }, new double[] { 10 }, new double[] { 0 });
+        assertEquals(0, profile.getTime(0));
+        assertTrue(profile.getTime(4) > 0);
+        assertEquals(-1, profile.getTime(5));
+        assertEquals(5, profile.getArrivals(10 * SECOND));
+    }
+
+    @Test
+    public void testInvalidProfile() throws Exception {
+        try {
+            new LoadProfile(new double[0], new double[0], new double[0]);
+            fail("Expected IllegalArgumentException for empty profile");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new LoadProfile(new double[] { 1 }, new double[] { -1 }, new double[] { 1 });
+            fail("Expected IllegalArgumentException for negative rate");
+        } catch (IllegalArgumentException expected) {
+        }
+        LoadProfileTimer timer = createTimer("invalid", "1,x,1");
+        try {
+            timer.delay();
+            fail("Expected JMeterStopThreadException for invalid number");
+        } catch (JMeterStopThreadException expected) {
+        }
+    }
+
+    private static LoadProfileTimer createTimer(String name, String... segments) {
+        LoadProfileTimer timer = new LoadProfileTimer();
+        timer.setName(name);
+        Collection<LoadProfileSegment> rows = new ArrayList<>();
+        for (String segment : segments) {
+            String[] values = segment.split(",");
+            LoadProfileSegment row = new LoadProfileSegment();
+            row.setDuration(values[0]);
+            row.setStartRate(values[1]);
+            row.setEndRate(values[2]);
+            rows.add(row);
+        }
+        timer.setSegments(rows);
+        timer.testStarted();
+        return timer;
+    }
+
+    @Test
+    public void testTargetRateWithoutLocale() throws Exception {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            LoadProfileTimer timer = createTimer("locale", "1,1000,1000");
+            assertEquals(0, timer.delay());
+            assertEquals("1000.0", JMeterUtils.getProperty("locale.target_rate"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void testSharedProfile() throws Exception {
+        // 200 samples then a ramp giving 400 samples, then the threads are stopped
+        final LoadProfileTimer timer = createTimer("shared", "0.2,1000,1000", "0.2,1000,3000", "1,0,0");
+        final AtomicInteger samples = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            assertEquals(0, timer.delay());
+                            samples.incrementAndGet();
+                        }
+                    } catch (JMeterStopThreadException e) {
+                        // end of the profile
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(600, samples.get());
+        assertEquals("Expected elapsed time of approx 400 ms", 400, elapsed, 50);
+        // the target is 0 after the ramp
+        Thread.sleep(50);
+        assertEquals(0.0, LoadProfileTimer.getTargetRate("shared"), 1e-9);
+        assertTrue(Double.isNaN(LoadProfileTimer.getTargetRate("unknown")));
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.timers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.Test;
+
+public class PreciseThroughputTimerTest extends JMeterTestCase {
+
+    private static final long INTERVAL = TimeUnit.MICROSECONDS.toNanos(100);
+
+    @Test
+    public void testConcurrentClaims() throws Exception {
+        final PacingClock clock = new PacingClock();
+        final List<Long> slots = Collections.synchronizedList(new ArrayList<Long>());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        slots.add(Long.valueOf(clock.claim(INTERVAL)));
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // the slots follow each other without gaps nor duplicates
+        Collections.sort(slots);
+        for (int i = 0; i < slots.size(); i++) {
+            assertEquals(clock.getStartTime() + i * INTERVAL, slots.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void testLateClaim() throws Exception {
+        PacingClock clock = new PacingClock();
+        long start = clock.getStartTime();
+        assertEquals(start, clock.claim(INTERVAL));
+        assertEquals(start + INTERVAL, clock.claim(INTERVAL));
+        // the schedule restarts instead of catching up
+        long late = start + PacingClock.MAX_LAG_NANOS * 2;
+        while (System.nanoTime() - late < 0) {
+            Thread.sleep(100);
+        }
+        long slot = clock.claim(INTERVAL);
+        assertTrue(slot - late >= 0);
+        assertEquals(slot + INTERVAL, clock.claim(INTERVAL));
+    }
+
+    @Test
+    public void testAwait() throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20);
+        assertTrue(PacingClock.await(deadline));
+        long lateness = System.nanoTime() - deadline;
+        assertTrue("Late by " + lateness + " ns", lateness >= 0 && lateness < TimeUnit.MILLISECONDS.toNanos(5));
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        PacingClock clock = new PacingClock();
+        long start = clock.getStartTime();
+        long second = TimeUnit.SECONDS.toNanos(1);
+        for (int i = 0; i < 99; i++) {
+            assertNull(clock.released(start + i, second));
+        }
+        PacingClock.Report report = clock.released(start + second, second);
+        assertNotNull(report);
+        assertEquals(100.0, report.getRate(), 0.001);
+        assertNull(clock.released(start + second + 1, second));
+        assertNull(clock.released(start + second * 3, 0));
+    }
+
+    @Test
+    public void testPublishedRatesWithoutLocale() throws Exception {
+        PacingClock clock = new PacingClock();
+        long start = clock.getStartTime();
+        long second = TimeUnit.SECONDS.toNanos(1);
+        for (int i = 0; i < 99; i++) {
+            clock.released(start + i, second);
+        }
+        PacingClock.Report report = clock.released(start + second, second);
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            PreciseThroughputTimer timer = new PreciseThroughputTimer();
+            timer.setName("locale");
+            timer.publish(report, 1000.5);
+            assertEquals("100.0", JMeterUtils.getProperty("locale.achieved_rate"));
+            assertEquals("1000.5", JMeterUtils.getProperty("locale.target_rate"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void testSharedThroughput() throws Exception {
+        final PreciseThroughputTimer timer = new PreciseThroughputTimer();
+        timer.setName("shared");
+        timer.setScope(PreciseThroughputTimer.Scope.AllThreads.ordinal());
+        timer.setThroughput(1000.0);
+        timer.testStarted();
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100; i++) {
+                        assertEquals(0, timer.delay());
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // 400 samples at 1000 per second, the first one without delay
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals("Expected elapsed time of approx 399 ms", 399, elapsed, 50);
+    }
+
+    @Test
+    public void testThreadThroughput() throws Exception {
+        PreciseThroughputTimer timer = new PreciseThroughputTimer();
+        assertEquals(0, timer.getScope()); // Assume this thread only
+        timer.setThroughput(200.0);
+        long start = System.nanoTime();
+        for (int i = 0; i < 50; i++) {
+            assertEquals(0, timer.delay());
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals("Expected elapsed time of approx 245 ms", 245, elapsed, 30);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.timers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class RendezvousTest {
+
+    private static final class SkewRecorder implements Rendezvous.Listener {
+        private final AtomicInteger releases = new AtomicInteger();
+
+        private final AtomicLong releaseSkew = new AtomicLong();
+
+        @Override
+        public void released(long arrivalSkewNanos, long releaseSkewNanos) {
+            assertTrue(arrivalSkewNanos >= 0);
+            releaseSkew.set(releaseSkewNanos);
+            releases.incrementAndGet();
+        }
+    }
+
+    /**
+     * Runs the threads through the rendezvous the given number of times
+     * @return the release times of the first round
+     */
+    private static List<Long> run(final Rendezvous rendezvous, int threads, final int rounds) throws Exception {
+        final List<Long> releases = Collections.synchronizedList(new ArrayList<Long>());
+        final AtomicInteger failures = new AtomicInteger();
+        List<Thread> started = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < rounds; i++) {
+                            if (!rendezvous.await(TimeUnit.SECONDS.toNanos(10))) {
+                                failures.incrementAndGet();
+                            }
+                            if (i == 0) {
+                                releases.add(Long.valueOf(System.nanoTime()));
+                            }
+                        }
+                    } catch (TimeoutException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            started.add(thread);
+        }
+        for (Thread thread : started) {
+            thread.join();
+        }
+        assertEquals(0, failures.get());
+        Collections.sort(releases);
+        return releases;
+    }
+
+    @Test
+    public void testRounds() throws Exception {
+        SkewRecorder recorder = new SkewRecorder();
+        // the last batch is not full
+        Rendezvous rendezvous = new Rendezvous(50, 8, 0, recorder);
+        assertEquals(50, rendezvous.getParties());
+        run(rendezvous, 50, 20);
+        assertEquals(20, recorder.releases.get());
+    }
+
+    @Test
+    public void testReleaseSpread() throws Exception {
+        SkewRecorder recorder = new SkewRecorder();
+        long spread = TimeUnit.MILLISECONDS.toNanos(200);
+        List<Long> releases = run(new Rendezvous(400, 10, spread, recorder), 400, 1);
+        assertEquals(400, releases.size());
+        long elapsed = releases.get(releases.size() - 1).longValue() - releases.get(0).longValue();
+        assertTrue("Released within " + elapsed + " ns", elapsed > spread * 9 / 10 && elapsed < spread * 2);
+        assertEquals(1, recorder.releases.get());
+        // each batch is late compared to its own release time, not to the release of the first batch
+        assertTrue("Release skew " + recorder.releaseSkew.get() + " ns", recorder.releaseSkew.get() < spread / 2);
+        // a quarter of the batches is released in each quarter of the spread
+        int firstQuarter = 0;
+        for (Long release : releases) {
+            if (release.longValue() - releases.get(0).longValue() < spread / 4) {
+                firstQuarter++;
+            }
+        }
+        assertEquals(100, firstQuarter, 20);
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        final Rendezvous rendezvous = new Rendezvous(3, 2, 0, null);
+        final AtomicInteger released = new AtomicInteger(-1);
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    released.set(rendezvous.await(0) ? 1 : 0);
+                } catch (TimeoutException e) {
+                    released.set(2);
+                }
+            }
+        });
+        other.start();
+        try {
+            rendezvous.await(TimeUnit.MILLISECONDS.toNanos(100));
+            fail("Expected TimeoutException");
+        } catch (TimeoutException expected) {
+        }
+        other.join(5000);
+        // the other thread was released as the rendezvous is broken
+        assertEquals(0, released.get());
+        // the next generation works
+        run(rendezvous, 3, 2);
+    }
+
+    @Test
+    public void testInterrupt() throws Exception {
+        Rendezvous rendezvous = new Rendezvous(2, 32, 0, null);
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(rendezvous.await(0));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.timers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.Test;
+
+public class SyncTimerTest extends JMeterTestCase {
+
+    @Test
+    public void testSkewsWithoutLocale() throws Exception {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            SyncTimer timer = new SyncTimer();
+            timer.setName("locale");
+            timer.setGroupSize(1);
+            timer.testStarted();
+            assertEquals(0, timer.delay());
+            String arrivalSkew = JMeterUtils.getProperty("locale.arrival_skew");
+            String releaseSkew = JMeterUtils.getProperty("locale.release_skew");
+            assertTrue(arrivalSkew, arrivalSkew.matches("\\d+\\.\\d{3}"));
+            assertTrue(releaseSkew, releaseSkew.matches("\\d+\\.\\d{3}"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BeanShellInterpreterTest extends JMeterTestCase {
+
+    private File initFile;
+
+    @Before
+    public void setUp() throws Exception {
+        initFile = File.createTempFile("BeanShellInterpreterTest", ".bshrc");
+        try (Writer writer = new FileWriter(initFile)) {
+            writer.write("sourced = new java.util.concurrent.atomic.AtomicInteger();\n"
+                    + "sourced.incrementAndGet();\n"
+                    + "String greet(String name) { return \"Hello \" + name; }\n");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        BeanShellInterpreter.clearSharedInterpreters();
+        initFile.delete();
+    }
+
+    @Test
+    public void testViewsShareInitFile() throws Exception {
+        BeanShellInterpreter first = BeanShellInterpreter.createSharedInterpreterView(initFile.getPath(), null);
+        BeanShellInterpreter second = BeanShellInterpreter.createSharedInterpreterView(initFile.getPath(), null);
+        assertEquals(1, first.eval("sourced.get()"));
+        assertEquals(1, second.eval("sourced.get()"));
+        assertEquals("Hello first", first.eval("greet(\"first\")"));
+        assertEquals("Hello second", second.eval("greet(\"second\")"));
+    }
+
+    @Test
+    public void testViewsHaveOwnVariables() throws Exception {
+        BeanShellInterpreter first = BeanShellInterpreter.createSharedInterpreterView(initFile.getPath(), null);
+        BeanShellInterpreter second = BeanShellInterpreter.createSharedInterpreterView(initFile.getPath(), null);
+        first.set("Label", "first");
+        second.set("Label", "second");
+        first.set("bsh.args", new String[] { "a" });
+        second.set("bsh.args", new String[] { "b", "c" });
+        first.eval("x = 1");
+        assertEquals("first", first.get("Label"));
+        assertEquals("second", second.eval("Label"));
+        assertEquals("a", first.eval("bsh.args[0]"));
+        assertEquals(2, second.eval("bsh.args.length"));
+        assertEquals(1, first.get("x"));
+        assertNull(second.get("x"));
+        first.set("IsSuccess", false);
+        assertEquals(Boolean.FALSE, first.get("IsSuccess"));
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        BeanShellInterpreter view = BeanShellInterpreter.createSharedInterpreterView(initFile.getPath(), null);
+        view.eval("x = 1");
+        view.reset();
+        assertNull(view.get("x"));
+        assertEquals(1, view.eval("sourced.get()"));
+    }
+}
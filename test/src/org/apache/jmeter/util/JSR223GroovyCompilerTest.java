@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.script.ScriptException;
+
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.junit.After;
+import org.junit.Test;
+
+import groovy.lang.Binding;
+
+public class JSR223GroovyCompilerTest {
+
+    @After
+    public void tearDown() {
+        JSR223GroovyCompiler.clear();
+    }
+
+    private static Object run(String key, String script, Map<String, Object> variables) throws ScriptException {
+        JMeterGroovyScript instance = JSR223GroovyCompiler.newInstance(
+                JSR223GroovyCompiler.compile(key, script, "test"));
+        instance.setBinding(new Binding(variables));
+        return instance.run();
+    }
+
+    @Test
+    public void testTypedVariables() throws Exception {
+        Map<String, Object> variables = new HashMap<>();
+        JMeterVariables vars = new JMeterVariables();
+        SampleResult result = new SampleResult();
+        variables.put("vars", vars);
+        variables.put("SampleResult", result);
+        variables.put("Label", "label");
+        assertEquals("label-1", run("typed",
+                "vars.put('a', '1'); SampleResult.setResponseCode('200'); Label + '-' + vars.get('a')", variables));
+        assertEquals("1", vars.get("a"));
+        assertEquals("200", result.getResponseCode());
+    }
+
+    @Test
+    public void testDynamicScript() throws Exception {
+        Map<String, Object> variables = new HashMap<>();
+        assertEquals(1, run("dynamic", "count = binding.hasVariable('count') ? count + 1 : 1", variables));
+        assertEquals(1, variables.get("count"));
+    }
+
+    @Test
+    public void testCompiledOnce() throws Exception {
+        Class<? extends JMeterGroovyScript> scriptClass = JSR223GroovyCompiler.compile("once", "1", "test");
+        assertSame(scriptClass, JSR223GroovyCompiler.compile("once", "2", "test"));
+        assertSame(scriptClass, JSR223GroovyCompiler.getCompiledClass("once"));
+    }
+
+    @Test
+    public void testCompilationError() throws Exception {
+        try {
+            JSR223GroovyCompiler.compile("error", "vars.put('a'", "test");
+            fail("Expected ScriptException");
+        } catch (ScriptException e) {
+            // expected
+        }
+    }
+}
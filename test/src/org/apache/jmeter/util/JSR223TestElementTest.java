@@ -18,8 +18,17 @@
 
 package org.apache.jmeter.util;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.script.ScriptEngine;
+
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
 import org.hamcrest.CoreMatchers;
 import org.junit.Test;
 
@@ -43,4 +52,51 @@ public class JSR223TestElementTest {
                 CoreMatchers.is("Groovy"));
     }
 
+    @Test
+    public void testScriptEngineReusedInThread() throws Exception {
+        element.setScriptLanguage("groovy");
+        final ScriptEngine scriptEngine = element.getScriptEngine();
+        assertSame(scriptEngine, element.getScriptEngine());
+        final AtomicReference<ScriptEngine> otherThreadEngine = new AtomicReference<>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    otherThreadEngine.set(element.getScriptEngine());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertNotSame(scriptEngine, otherThreadEngine.get());
+        assertSame(element.getBindings(scriptEngine), element.getBindings(scriptEngine));
+    }
+
+    @Test
+    public void testBindingsReusedWithoutScriptVariables() throws Exception {
+        element.setScriptLanguage("groovy");
+        element.setCacheKey("true");
+        element.setScript("count = binding.hasVariable('count') ? count + 1 : 1; count + vars.get('name')");
+        JMeterVariables vars = new JMeterVariables();
+        vars.put("name", "a");
+        JMeterContextService.getContext().setVariables(vars);
+        assertEquals("1a", element.processFileOrScript(element.getScriptEngine(), null));
+        vars = new JMeterVariables();
+        vars.put("name", "b");
+        JMeterContextService.getContext().setVariables(vars);
+        // the variable set by the previous execution is not kept
+        assertEquals("1b", element.processFileOrScript(element.getScriptEngine(), null));
+    }
+
+    @Test
+    public void testJavaScriptVariablesNotKept() throws Exception {
+        element.setScriptLanguage("JavaScript");
+        element.setCacheKey("true");
+        element.setScript("var count = typeof count === 'undefined' ? 1 : count + 1; count");
+        assertEquals(1, ((Number) element.processFileOrScript(element.getScriptEngine(), null)).intValue());
+        assertEquals(1, ((Number) element.processFileOrScript(element.getScriptEngine(), null)).intValue());
+    }
+
 }
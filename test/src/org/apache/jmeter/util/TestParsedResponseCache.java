@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.threads.JMeterContext;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class TestParsedResponseCache extends JMeterTestCase {
+
+    private static final String XML = "<root><a>1</a></root>";
+
+    private JMeterContext context;
+
+    @Before
+    public void setUp() {
+        context = JMeterContextService.getContext();
+        context.setSamplingStarted(true);
+    }
+
+    @After
+    public void tearDown() {
+        context.cleanAfterSample();
+        context.setSamplingStarted(false);
+    }
+
+    @Test
+    public void testDocumentIsParsedOncePerSample() throws Exception {
+        String response = new String(XML);
+        Document doc = XPathUtil.getDocument(response, false, false, false, false, true, false, false, false);
+        assertEquals("root", doc.getDocumentElement().getNodeName());
+        assertSame(doc, XPathUtil.getDocument(response, false, false, false, false, true, false, false, false));
+        // Other options or other response need another document
+        assertNotSame(doc, XPathUtil.getDocument(response, false, false, true, false, true, false, false, false));
+        assertNotSame(doc, XPathUtil.getDocument(new String(XML), false, false, false, false, true, false, false, false));
+        context.cleanAfterSample();
+        assertNotSame(doc, XPathUtil.getDocument(response, false, false, false, false, true, false, false, false));
+    }
+
+    @Test
+    public void testNothingIsCachedOutsideOfSampling() {
+        context.setSamplingStarted(false);
+        String response = new String(XML);
+        ParsedResponseCache.put(response, "kind", "parsed");
+        assertNull(ParsedResponseCache.get(response, "kind"));
+    }
+
+    @Test
+    public void testKindsAreSeparated() {
+        String response = new String(XML);
+        ParsedResponseCache.put(response, "kind1", "parsed1");
+        ParsedResponseCache.put(response, "kind2", "parsed2");
+        assertEquals("parsed1", ParsedResponseCache.get(response, "kind1"));
+        assertEquals("parsed2", ParsedResponseCache.get(response, "kind2"));
+        assertNull(ParsedResponseCache.get(new String(XML), "kind1"));
+    }
+}
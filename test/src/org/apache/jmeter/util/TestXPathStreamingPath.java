@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class TestXPathStreamingPath extends JMeterTestCase {
+
+    private static final String XML = "<?xml version='1.0'?>"
+            + "<!-- comment --><root xmlns:s='urn:s'>"
+            + "<item id='1' type='a'>one</item>"
+            + "<item id='2'><![CDATA[two]]> and more</item>"
+            + "<item id='3' type='a'><name>three</name>text<name>3</name></item>"
+            + "<group><item id='4' type='b'>four</item><item/><item><!-- c --></item></group>"
+            + "<s:item id='5'>ns</s:item>"
+            + "<match>x<b/>y</match><match>z</match>"
+            + "</root>";
+
+    private static final String UNPREFIXED_XML = XML.replace("s:", "");
+
+    private static final String[] EXPRESSIONS = {
+            "/root/item", "/root/item/@id", "//item", "//item/@id", "//@type", "/root//@id", "/root/*",
+            "//item[@type]", "//item[@type='a']/@id", "//item[2]", "//item[2]/@id", "/root/item[@type='a'][2]",
+            "//name/text()", "/root/item/text()", "//text()", "//item[text()='four']/@id",
+            "//match[text()='y']", "//match[text()='z']/text()", "//item[@id=\"2\"]", "/root/missing", "/*/group/*",
+    };
+
+    private static List<String> dom(String xml, String expression, boolean namespace) throws Exception {
+        Document document = XPathUtil.makeDocument(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),
+                false, false, namespace, false, true, false, false, false, false);
+        List<String> values = new ArrayList<>();
+        XPathUtil.putValuesForXPathInList(document, expression, values, false);
+        return values;
+    }
+
+    private static List<String> stream(String xml, String expression, boolean namespace, int maxMatches)
+            throws Exception {
+        XPathStreamingPath path = XPathStreamingPath.compile(expression, namespace);
+        assertNotNull(expression, path);
+        return path.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), false, false, maxMatches);
+    }
+
+    @Test
+    public void testUnsupportedExpressions() {
+        for (String expression : Arrays.asList("/", "count(//item)", "//item[last()]", "//item[@id>1]",
+                "/root/item[1]/following-sibling::item", "//item[text()='x']/name", "//item[text()='x']//text()",
+                "/root/../root", "//item | //name", "/root/@id/x", "//item[1][2]", "root/item")) {
+            assertNull(expression, XPathStreamingPath.compile(expression, true));
+        }
+        assertNull(XPathStreamingPath.compile("//s:item", false));
+    }
+
+    @Test
+    public void testSameValuesAsDocument() throws Exception {
+        for (String expression : EXPRESSIONS) {
+            assertEquals(expression, dom(XML, expression, true), stream(XML, expression, true, 0));
+            assertEquals(expression, dom(UNPREFIXED_XML, expression, false),
+                    stream(UNPREFIXED_XML, expression, false, 0));
+        }
+    }
+
+    @Test
+    public void testNamespaces() throws Exception {
+        for (String expression : Arrays.asList("//s:item", "/root/s:item/@id", "//s:item/text()")) {
+            assertEquals(expression, dom(XML, expression, true), stream(XML, expression, true, 0));
+        }
+        try {
+            stream(XML, "//u:item", true, 0);
+            fail("Expected NotStreamableException");
+        } catch (XPathStreamingPath.NotStreamableException e) {
+            // expected, prefix is not declared
+        }
+    }
+
+    @Test
+    public void testPrefixedNamesWithoutNamespaceAwareness() throws Exception {
+        try {
+            stream(XML, "//item", false, 0);
+            fail("Expected NotStreamableException");
+        } catch (XPathStreamingPath.NotStreamableException e) {
+            // expected, Document is used
+        }
+    }
+
+    @Test
+    public void testStopsAtMaxMatches() throws Exception {
+        // Document is truncated after the second match
+        String xml = "<root><item>1</item><item>2</item><item>";
+        assertEquals(Arrays.asList("1", "2"), stream(xml, "/root/item", false, 2));
+        try {
+            stream(xml, "/root/item", false, 0);
+            fail("Expected NotStreamableException");
+        } catch (XPathStreamingPath.NotStreamableException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.util.regex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.util.ByteArrayCharSequence;
+import org.apache.oro.text.MalformedCachePatternException;
+import org.apache.oro.text.regex.MatchResult;
+import org.junit.Test;
+
+public class TestRegexEngines extends JMeterTestCase {
+
+    private static final String[] SYNTAX_PATTERNS = {
+            "a", "ab|cd", "a*", "a+?", "a{2}", "a{1,2}", "a{2,}?", "(a|ab)(c|bcd)(d*)", "x(a)?y", "(a)|b",
+            "[a-c]+", "[^a-c\\s]+", "[\\d.]+", "\\w+@\\w+\\.com", "\\bcat\\b", "\\Bat", "^\\w+", "\\w+$",
+            "(?m)^\\w+$", "(?i)CAT", "(?s)<b>.*</b>", "<b>.*?</b>", "\\x41", "(?:ab)+", "\\t|\\n",
+            "\\$\\d+", "", "(a+)*b", "(a|b)+c", "[]a]", "[a-]+",
+    };
+
+    // Syntax which is only known by the java engine, and groups nested in repeated groups, whose captures
+    // may be stale with ORO
+    private static final String[] JAVA_PATTERNS = { "(?i:c)AT", "\\Q*.*\\E+", "\\u0042", "((a)|(b))+" };
+
+    private static final String[] SYNTAX_INPUTS = {
+            "", "abcd abcbcdd aab xy xay ba", "cat concat CAT cAt scatter bat", "a@b.com x@yz.com 1.5 22",
+            "<b>one</b> and <b>two</b>\n<b>three</b>", "line1\nline two\nlast\n", "*.**.* AB a{,2}", "$12 $ 3",
+            "a\tb\nc aaaaab ac bc", "]a]- -a",
+    };
+
+    private static final String[] CORRELATION_PATTERNS = {
+            "name=\"csrf_token\" value=\"(.+?)\"", "<a href=\"([^\"]*)\"", "\"sessionId\":\"(\\w+)\"",
+            "<title>(.*?)</title>", "(?s)<script>(.*?)</script>", "item\\.do\\?id=(\\d+)&amp;page=(\\d+)",
+            "<input type=\"hidden\" name=\"(\\w+)\" value=\"([^\"]*)\"", "(?i)<TD CLASS=\"price\">([\\d.]+)</td>",
+            "id=\"row-(\\d+)\"[^>]*>\\s*<td>([^<]+)</td>", "not-present-(\\d+)",
+    };
+
+    private static final String[] QUANTIFIERS = { "", "", "", "*", "+", "?", "*?", "+?", "{1,2}" };
+
+    private static String largeHtml() {
+        StringBuilder html = new StringBuilder("<html><head><title>Catalog</title>\n");
+        html.append("<script>var config = {\"sessionId\":\"ABC123def\",\n\"user\":\"jdoe\"};</script></head><body>\n");
+        html.append("<form><input type=\"hidden\" name=\"csrf_token\" value=\"f8e7d6c5\"/>\n");
+        for (int i = 0; i < 5000; i++) {
+            html.append("<tr id=\"row-").append(i).append("\" class=\"line\">\n  <td>Product ").append(i)
+                .append("</td><td class=\"price\">").append(i % 100).append('.').append(i % 10).append("</td>")
+                .append("<td><a href=\"/shop/item.do?id=").append(i).append("&amp;page=").append(i / 20)
+                .append("\">details</a></td></tr>\n");
+            if (i % 1000 == 0) {
+                html.append("<input type=\"hidden\" name=\"state").append(i).append("\" value=\"v").append(i)
+                    .append("\"/>\n");
+            }
+        }
+        return html.append("</form></body></html>").toString();
+    }
+
+    private static List<String> describe(List<MatchResult> matches) {
+        List<String> descriptions = new ArrayList<>();
+        for (MatchResult match : matches) {
+            StringBuilder description = new StringBuilder();
+            for (int group = 0; group < match.groups(); group++) {
+                description.append(match.beginOffset(group)).append('-').append(match.endOffset(group))
+                    .append(':').append(match.group(group)).append(' ');
+            }
+            descriptions.add(description.toString());
+        }
+        return descriptions;
+    }
+
+    private static List<String> findAll(String engine, String pattern, String input) {
+        return describe(RegexEngine.getEngine(engine).getPattern(pattern).findAll(input, 0));
+    }
+
+    private static void assertSameMatches(String message, RegexPattern expected, RegexPattern actual, String input) {
+        assertEquals(message, describe(expected.findAll(input, 0)), describe(actual.findAll(input, 0)));
+        assertEquals(message, expected.contains(input), actual.contains(input));
+        assertEquals(message, expected.matches(input), actual.matches(input));
+    }
+
+    @Test
+    public void testSameMatchesAsOro() {
+        for (String pattern : SYNTAX_PATTERNS) {
+            RegexPattern expected = RegexEngine.getEngine(RegexEngine.ORO).getPattern(pattern);
+            RegexPattern linear = RegexEngine.getEngine(RegexEngine.LINEAR).getPattern(pattern);
+            for (String input : SYNTAX_INPUTS) {
+                assertSameMatches(pattern + " in " + input, expected, linear, input);
+            }
+        }
+        for (String pattern : JAVA_PATTERNS) {
+            RegexPattern expected = RegexEngine.getEngine(RegexEngine.JAVA).getPattern(pattern);
+            RegexPattern linear = RegexEngine.getEngine(RegexEngine.LINEAR).getPattern(pattern);
+            for (String input : SYNTAX_INPUTS) {
+                assertSameMatches(pattern + " in " + input, expected, linear, input);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyMatches() {
+        // as in Perl, a match cannot be empty where the previous match ended
+        assertEquals(Arrays.asList("0-1:x ", "1-2:b "), findAll(RegexEngine.LINEAR, "x*|b", "xb"));
+        assertEquals(Arrays.asList("0-0: ", "0-1:a ", "1-2:a "), findAll(RegexEngine.LINEAR, "a*?", "aa"));
+        assertEquals(Arrays.asList("0-2:ab ", "3-3: "), findAll(RegexEngine.LINEAR, "[ab]*", "abc"));
+        // as in ORO, the input matches only if the preferred match covers it
+        assertFalse(RegexEngine.getEngine(RegexEngine.LINEAR).getPattern("a|ab").matches("ab"));
+        assertTrue(RegexEngine.getEngine(RegexEngine.LINEAR).getPattern("ab|a").matches("ab"));
+        RegexPattern oro = RegexEngine.getEngine(RegexEngine.ORO).getPattern("x*|b");
+        assertSameMatches("x*|b", oro, RegexEngine.getEngine(RegexEngine.LINEAR).getPattern("x*|b"), "xb");
+    }
+
+    private static String randomAtom(Random random, int depth) {
+        switch (random.nextInt(depth > 2 ? 6 : 11)) {
+        case 0:
+            return "a";
+        case 1:
+            return "b";
+        case 2:
+            return ".";
+        case 3:
+            return "[ab]";
+        case 4:
+            return "[^a]";
+        case 5:
+            return "c";
+        case 6:
+            // ORO may report stale captures for groups nested in repeated groups, so only the top level captures
+            return (depth == 0 ? "(" : "(?:") + randomPattern(random, depth + 1) + ")";
+        case 7:
+            return "(?:" + randomPattern(random, depth + 1) + ")";
+        case 8:
+            return (depth == 0 ? "(" : "(?:") + randomPattern(random, depth + 1) + "|"
+                    + randomPattern(random, depth + 1) + ")";
+        case 9:
+            return "\\w";
+        default:
+            return "\\d";
+        }
+    }
+
+    private static String randomPattern(Random random, int depth) {
+        StringBuilder pattern = new StringBuilder();
+        if (random.nextInt(10) == 0) {
+            pattern.append('^');
+        }
+        for (int i = random.nextInt(3); i >= 0; i--) {
+            String atom = randomAtom(random, depth);
+            pattern.append(atom);
+            int quantifier = random.nextInt(QUANTIFIERS.length);
+            if (atom.startsWith("(") && !atom.startsWith("(?:")) {
+                // nor for repeated capturing groups
+                quantifier = quantifier < 7 ? 0 : 5;
+            }
+            pattern.append(QUANTIFIERS[quantifier]);
+        }
+        if (random.nextInt(10) == 0) {
+            pattern.append('$');
+        }
+        return pattern.toString();
+    }
+
+    @Test
+    public void testRandomPatternsSameAsOro() {
+        Random random = new Random(42);
+        RegexEngine oro = RegexEngine.getEngine(RegexEngine.ORO);
+        RegexEngine linear = RegexEngine.getEngine(RegexEngine.LINEAR);
+        int compared = 0;
+        for (int i = 0; i < 5000; i++) {
+            String pattern = randomPattern(random, 0);
+            StringBuilder input = new StringBuilder();
+            for (int length = random.nextInt(12); length > 0; length--) {
+                input.append("abc1 \n".charAt(random.nextInt(6)));
+            }
+            RegexPattern expected = oro.getPattern(pattern);
+            RegexPattern actual = linear.getPattern(pattern);
+            if (actual != expected) { // not delegated to the fallback
+                assertSameMatches(pattern + " in " + input, expected, actual, input.toString());
+                compared++;
+            }
+        }
+        assertTrue("Compared " + compared, compared > 4000);
+    }
+
+    @Test
+    public void testCorrelationPatternsOnLargeHtml() {
+        String html = largeHtml();
+        for (String pattern : CORRELATION_PATTERNS) {
+            List<String> expected = findAll(RegexEngine.ORO, pattern, html);
+            assertEquals(pattern, expected, findAll(RegexEngine.JAVA, pattern, html));
+            assertEquals(pattern, expected, findAll(RegexEngine.LINEAR, pattern, html));
+        }
+        assertEquals(5000, findAll(RegexEngine.LINEAR, CORRELATION_PATTERNS[5], html).size());
+    }
+
+    @Test
+    public void testCharSequenceInput() {
+        String html = largeHtml();
+        CharSequence view = new ByteArrayCharSequence(html.getBytes(StandardCharsets.ISO_8859_1));
+        for (String engine : RegexEngine.getEngineNames()) {
+            for (String pattern : CORRELATION_PATTERNS) {
+                RegexPattern compiled = RegexEngine.getEngine(engine).getPattern(pattern);
+                assertEquals(engine + " " + pattern, describe(compiled.findAll(html, 0)),
+                        describe(compiled.findAll(view, 0)));
+                assertEquals(engine + " " + pattern, compiled.contains(html), compiled.contains(view));
+            }
+        }
+    }
+
+    @Test
+    public void testMaxMatches() {
+        for (String engine : RegexEngine.getEngineNames()) {
+            List<MatchResult> matches = RegexEngine.getEngine(engine).getPattern("\\d").findAll("1a2b3c", 2);
+            assertEquals(engine, Arrays.asList("0-1:1 ", "2-3:2 "), describe(matches));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testLinearTimeOnBacktrackingPattern() {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            input.append('x');
+        }
+        RegexPattern pattern = RegexEngine.getEngine(RegexEngine.LINEAR).getPattern("(x+x+)+y");
+        assertFalse(pattern.contains(input.toString()));
+        assertTrue(pattern.contains(input.append('y').toString()));
+    }
+
+    @Test
+    public void testUnsupportedFeaturesUseOro() {
+        RegexPattern pattern = RegexEngine.getEngine(RegexEngine.LINEAR).getPattern("(\\w)\\1");
+        assertSame(RegexEngine.getEngine(RegexEngine.ORO).getPattern("(\\w)\\1"), pattern);
+        assertEquals(Arrays.asList("1-3:oo 1-2:o "), describe(pattern.findAll("look", 0)));
+        // a repetition of an expression which can match an empty string
+        for (String nullable : Arrays.asList("(?:(\\w?)+?[^a]*?)*", "(\\w?a*?\\w?|.+)+b*?$",
+                "c(a*\\d*|^[ab])*")) {
+            assertSame(nullable, RegexEngine.getEngine(RegexEngine.ORO).getPattern(nullable),
+                    RegexEngine.getEngine(RegexEngine.LINEAR).getPattern(nullable));
+        }
+    }
+
+    @Test
+    public void testMalformedPatterns() {
+        for (String pattern : Arrays.asList("(a", "a)", "[a", "*a", "a{2,1}", "\\")) {
+            try {
+                RegexEngine.getEngine(RegexEngine.LINEAR).getPattern(pattern);
+                fail("Expected MalformedCachePatternException for " + pattern);
+            } catch (MalformedCachePatternException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testEngineSelection() {
+        assertSame(RegexEngine.getDefault(), RegexEngine.getEngine(""));
+        assertSame(RegexEngine.getDefault(), RegexEngine.getEngine("unknown"));
+        assertEquals(RegexEngine.LINEAR, RegexEngine.getEngine(" Linear ").getName());
+    }
+}